@@ -0,0 +1,275 @@
+package com.clothblockchain.extractor;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Streams image entries out of a .zip, .tar, .tar.gz or .tgz archive
+ *
+ * Entries are read sequentially straight from the archive stream into memory. Nothing is
+ * extracted to disk. Non-image entries and directories are skipped. The tar reader
+ * understands ustar and GNU long names and pax path records, which covers archives written
+ * by GNU tar, bsdtar and Python's tarfile.
+ *
+ * hasNext()/next() wrap I/O errors in UncheckedIOException.
+ *
+ * @author ClothBlockchain Team
+ * @version 1.0
+ */
+public class ArchiveImageReader implements Iterator<ArchiveImageReader.Entry>, Closeable {
+
+    public static final int MAX_ENTRY_BYTES = 64 * 1024 * 1024;
+
+    private static final int TAR_BLOCK = 512;
+
+    private final Path archive;
+    private final InputStream in;
+    private final boolean zip;
+    private final byte[] header = new byte[TAR_BLOCK];
+    private Entry next;
+    private boolean finished;
+
+    public ArchiveImageReader(Path archive) throws IOException {
+        this.archive = archive;
+        String name = archive.getFileName().toString().toLowerCase(Locale.ROOT);
+        InputStream file = new BufferedInputStream(Files.newInputStream(archive), 1 << 16);
+        if (name.endsWith(".zip")) {
+            this.zip = true;
+            this.in = new ZipInputStream(file);
+        } else if (name.endsWith(".tar")) {
+            this.zip = false;
+            this.in = file;
+        } else if (name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+            this.zip = false;
+            this.in = new BufferedInputStream(new GZIPInputStream(file, 1 << 16), 1 << 16);
+        } else {
+            file.close();
+            throw new IOException("Not a .zip, .tar, .tar.gz or .tgz archive: " + archive);
+        }
+    }
+
+    public static boolean isArchive(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".zip") || name.endsWith(".tar") || name.endsWith(".tar.gz") || name.endsWith(".tgz");
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !finished) {
+            try {
+                next = zip ? readZipEntry() : readTarEntry();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read " + archive, e);
+            }
+            finished = next == null;
+        }
+        return next != null;
+    }
+
+    @Override
+    public Entry next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Entry entry = next;
+        next = null;
+        return entry;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private Entry readZipEntry() throws IOException {
+        ZipInputStream zipIn = (ZipInputStream) in;
+        ZipEntry entry;
+        while ((entry = zipIn.getNextEntry()) != null) {
+            if (!entry.isDirectory() && ClothIngestionPipeline.isImageName(entry.getName())) {
+                return new Entry(entry.getName(), readEntry(zipIn, entry.getSize(), entry.getName()));
+            }
+        }
+        return null;
+    }
+
+    private Entry readTarEntry() throws IOException {
+        String longName = null;
+        while (true) {
+            if (!readBlock(header)) {
+                return null;
+            }
+            if (isZeroBlock(header)) {
+                return null; // end-of-archive marker
+            }
+            if (!checksumMatches(header)) {
+                throw new IOException("Corrupt tar header in " + archive);
+            }
+
+            long size = parseSize(header);
+            char type = (char) header[156];
+            if (type == 'L' || type == 'x') {
+                // GNU long name or pax extended header: both describe the next entry
+                byte[] data = readEntry(in, size, "extended header");
+                skipPadding(size);
+                String name = type == 'L' ? cString(data, 0, data.length) : paxPath(data);
+                if (name != null) {
+                    longName = name;
+                }
+                continue;
+            }
+
+            String name = longName != null ? longName : headerName(header);
+            longName = null;
+            boolean regular = type == '0' || type == '\0' || type == '7';
+            if (regular && ClothIngestionPipeline.isImageName(name)) {
+                byte[] data = readEntry(in, size, name);
+                skipPadding(size);
+                return new Entry(name, data);
+            }
+            skipFully(size + padding(size));
+        }
+    }
+
+    private byte[] readEntry(InputStream stream, long declaredSize, String name) throws IOException {
+        if (declaredSize > MAX_ENTRY_BYTES) {
+            throw new IOException("Entry " + name + " is larger than " + MAX_ENTRY_BYTES + " bytes");
+        }
+        if (declaredSize >= 0) {
+            byte[] data = new byte[(int) declaredSize];
+            int read = stream.readNBytes(data, 0, data.length);
+            if (read != data.length) {
+                throw new EOFException("Truncated entry " + name + " in " + archive);
+            }
+            return data;
+        }
+        // Zip entries written by streaming tools may not declare their size up front
+        byte[] data = stream.readNBytes(MAX_ENTRY_BYTES + 1);
+        if (data.length > MAX_ENTRY_BYTES) {
+            throw new IOException("Entry " + name + " is larger than " + MAX_ENTRY_BYTES + " bytes");
+        }
+        return data;
+    }
+
+    private boolean readBlock(byte[] block) throws IOException {
+        int read = in.readNBytes(block, 0, block.length);
+        if (read == 0) {
+            return false;
+        }
+        if (read != block.length) {
+            throw new EOFException("Truncated tar header in " + archive);
+        }
+        return true;
+    }
+
+    private void skipPadding(long size) throws IOException {
+        skipFully(padding(size));
+    }
+
+    private void skipFully(long count) throws IOException {
+        while (count > 0) {
+            long skipped = in.skip(count);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("Truncated entry in " + archive);
+                }
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+
+    private static long padding(long size) {
+        return (TAR_BLOCK - size % TAR_BLOCK) % TAR_BLOCK;
+    }
+
+    private static boolean isZeroBlock(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Header checksum: sum of all bytes with the checksum field itself read as spaces
+    private static boolean checksumMatches(byte[] block) {
+        long sum = 0;
+        for (int i = 0; i < TAR_BLOCK; i++) {
+            sum += i >= 148 && i < 156 ? ' ' : block[i] & 0xFF;
+        }
+        return sum == parseOctal(block, 148, 8);
+    }
+
+    private static long parseSize(byte[] block) {
+        if ((block[124] & 0x80) != 0) {
+            // GNU base-256 encoding for sizes that don't fit 11 octal digits
+            long size = 0;
+            for (int i = 125; i < 136; i++) {
+                size = (size << 8) | (block[i] & 0xFF);
+            }
+            return size;
+        }
+        return parseOctal(block, 124, 12);
+    }
+
+    private static long parseOctal(byte[] block, int offset, int length) {
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            int c = block[i];
+            if (c >= '0' && c <= '7') {
+                value = value * 8 + (c - '0');
+            } else if (c == 0 || (c == ' ' && value > 0)) {
+                break;
+            }
+        }
+        return value;
+    }
+
+    private static String headerName(byte[] block) {
+        String name = cString(block, 0, 100);
+        boolean ustar = block[257] == 'u' && block[258] == 's' && block[259] == 't' && block[260] == 'a' && block[261] == 'r';
+        if (ustar && block[345] != 0) {
+            name = cString(block, 345, 155) + "/" + name;
+        }
+        return name;
+    }
+
+    private static String cString(byte[] bytes, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && bytes[end] != 0) {
+            end++;
+        }
+        return new String(bytes, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    // pax records: "<length> <key>=<value>\n"
+    private static String paxPath(byte[] data) {
+        String records = new String(data, StandardCharsets.UTF_8);
+        for (String record : records.split("\n")) {
+            int space = record.indexOf(' ');
+            if (space > 0 && record.startsWith("path=", space + 1)) {
+                return record.substring(space + 1 + "path=".length());
+            }
+        }
+        return null;
+    }
+
+    // Data classes
+    public static class Entry {
+        public final String name;
+        public final byte[] data;
+
+        public Entry(String name, byte[] data) {
+            this.name = name;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.clothblockchain.extractor;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Measures ClothCatalogExporter and reads its output back the way an analytics tool would
+ *
+ * Writes a temporary feature store of synthetic records. Every 50th record has no
+ * fingerprint, to exercise the nullable column. Then:
+ *   - json: writes `jsonSample` of them as `_full_data.json` files, the way the extractor's
+ *     JSON export does, and times parsing them back with Gson,
+ *   - export: exports the whole store to Arrow IPC,
+ *   - scan: memory-maps the Arrow file, walks the footer and record batch metadata with a
+ *     minimal flatbuffer reader, and sums every deepFeatures column straight out of the
+ *     mapping,
+ *   - check: compares those sums, the row count, sampled clothIds, the fingerprint null
+ *     count and the fixed-size-list widths with what the store holds.
+ *
+ * Usage: ClothCatalogExportDriver [records] [rowsPerBatch] [jsonSample]
+ *
+ * @author ClothBlockchain Team
+ * @version 1.0
+ */
+public class ClothCatalogExportDriver {
+
+    private static final int DEEP_DIMS = 256;
+    private static final int HISTOGRAM_DIMS = 96;
+    private static final int NO_FINGERPRINT_EVERY = 50;
+
+    public static void main(String[] args) throws IOException {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        ClothCatalogExporter.Config config = new ClothCatalogExporter.Config();
+        if (args.length > 1) {
+            config.rowsPerBatch = Integer.parseInt(args[1]);
+        }
+        int jsonSample = Math.min(records, args.length > 2 ? Integer.parseInt(args[2]) : 5_000);
+
+        Path directory = Files.createTempDirectory("cloth-export");
+        Path storeDirectory = directory.resolve("store");
+        Path jsonDirectory = directory.resolve("json");
+        Path arrowFile = directory.resolve("catalog.arrow");
+        try (ClothFeatureStore store = new ClothFeatureStore(storeDirectory, DEEP_DIMS, HISTOGRAM_DIMS)) {
+            System.out.println("📤 Writing " + records + " synthetic records...");
+            writeCatalog(store, records);
+            store.flush();
+
+            double jsonRate = timeJson(store, jsonDirectory, jsonSample);
+            System.out.println(String.format("  %-8s %,10.0f records/s  (Gson, %,d _full_data.json files)",
+                    "json", jsonRate, jsonSample));
+
+            ClothCatalogExporter.ExportReport report = new ClothCatalogExporter(store, config).exportArrow(arrowFile);
+            System.out.println(String.format("  %-8s %,10.0f records/s  (%,d batches, %,.1f MB, %,.0f MB/s)",
+                    "export", report.rowsPerSecond, report.batches, report.bytes / 1e6, report.megabytesPerSecond));
+
+            long start = System.nanoTime();
+            ArrowScan scan = scanDeepFeatures(arrowFile);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.println(String.format("  %-8s %,10.0f records/s  (mapped, %,.2f GB/s of deepFeatures)",
+                    "scan", scan.rows / seconds, scan.rows * DEEP_DIMS * 8.0 / 1e9 / seconds));
+
+            check(store, scan);
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    private static void writeCatalog(ClothFeatureStore store, int records) throws IOException {
+        Random random = new Random(42);
+        PerceptualFingerprint fingerprinter = new PerceptualFingerprint(DEEP_DIMS, HISTOGRAM_DIMS);
+        for (int n = 0; n < records; n++) {
+            ClothFeatureExtractor.ClothDNA dna = syntheticDNA("cloth_" + n, random);
+            ClothFeatureExtractor.BlockchainRecord record = new ClothFeatureExtractor.BlockchainRecord();
+            record.clothId = dna.clothId;
+            record.hash = String.format("%064x", n * 0x9E3779B97F4A7C15L);
+            if (n % NO_FINGERPRINT_EVERY != 0) {
+                record.fingerprint = PerceptualFingerprint.toHex(fingerprinter.compute(dna));
+            }
+            store.put(dna, record);
+        }
+    }
+
+    private static double timeJson(ClothFeatureStore store, Path jsonDirectory, int sample) throws IOException {
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        Files.createDirectories(jsonDirectory);
+        List<Path> files = new ArrayList<>();
+        for (int n = 0; n < sample; n++) {
+            Path file = jsonDirectory.resolve("cloth_" + n + "_full_data.json");
+            try (Writer writer = Files.newBufferedWriter(file)) {
+                gson.toJson(store.get("cloth_" + n).toClothDNA(), writer);
+            }
+            files.add(file);
+        }
+        long start = System.nanoTime();
+        double checksum = 0;
+        for (Path file : files) {
+            try (Reader reader = Files.newBufferedReader(file)) {
+                checksum += gson.fromJson(reader, ClothFeatureExtractor.ClothDNA.class).deepFeatures[0];
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        if (Double.isNaN(checksum)) {
+            System.out.println("  (unexpected NaN)");
+        }
+        return sample / seconds;
+    }
+
+    /**
+     * What the driver reads back from the Arrow file: schema facts, per-dimension sums of
+     * deepFeatures, and the clothIds of the first row of every batch
+     */
+    private static final class ArrowScan {
+        long rows;
+        int deepListSize;
+        int histogramListSize;
+        long fingerprintNulls;
+        double[] deepSums = new double[DEEP_DIMS];
+        List<String> firstClothIds = new ArrayList<>();
+        List<Long> firstRows = new ArrayList<>();
+    }
+
+    private static ArrowScan scanDeepFeatures(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer bb = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            int size = bb.capacity();
+            if (!"ARROW1".equals(new String(bytes(bb, size - 6, 6), StandardCharsets.US_ASCII))) {
+                throw new IOException("Not an Arrow file: " + file);
+            }
+            int footer = rootTable(bb, size - 10 - bb.getInt(size - 10));
+            int schema = indirect(bb, field(bb, footer, 1));
+
+            // Top-level columns: name -> index of its first field node and first buffer in
+            // each record batch
+            Map<String, Integer> firstNode = new HashMap<>();
+            Map<String, Integer> firstBuffer = new HashMap<>();
+            Map<String, Integer> listSizes = new HashMap<>();
+            int fields = indirect(bb, field(bb, schema, 1));
+            int nodes = 0;
+            int buffers = 0;
+            for (int i = 0; i < bb.getInt(fields); i++) {
+                int f = indirect(bb, fields + 4 + i * 4);
+                String name = string(bb, f, 0);
+                firstNode.put(name, nodes);
+                firstBuffer.put(name, buffers);
+                nodes += nodeCount(bb, f);
+                buffers += bufferCount(bb, f);
+                if (bb.get(field(bb, f, 2)) == 16) { // FixedSizeList
+                    listSizes.put(name, bb.getInt(field(bb, indirect(bb, field(bb, f, 3)), 0)));
+                }
+            }
+
+            ArrowScan scan = new ArrowScan();
+            scan.deepListSize = listSizes.getOrDefault("deepFeatures", -1);
+            scan.histogramListSize = listSizes.getOrDefault("colorHistogram", -1);
+            int deepData = firstBuffer.get("deepFeatures") + 2;
+            int idOffsets = firstBuffer.get("clothId") + 1;
+            int fingerprintNode = firstNode.get("fingerprint");
+
+            int blocks = indirect(bb, field(bb, footer, 3));
+            for (int b = 0; b < bb.getInt(blocks); b++) {
+                int block = blocks + 4 + b * 24;
+                int offset = (int) bb.getLong(block);
+                int metadataLength = bb.getInt(block + 8);
+                if (bb.getInt(offset) != -1 || bb.get(field(bb, rootTable(bb, offset + 8), 1)) != 3) {
+                    throw new IOException("Block " + b + " is not a record batch");
+                }
+                int recordBatch = indirect(bb, field(bb, rootTable(bb, offset + 8), 2));
+                int body = offset + metadataLength;
+                long rows = bb.getLong(field(bb, recordBatch, 0));
+                int nodeVector = indirect(bb, field(bb, recordBatch, 1));
+                int bufferVector = indirect(bb, field(bb, recordBatch, 2));
+                scan.fingerprintNulls += bb.getLong(nodeVector + 4 + fingerprintNode * 16 + 8);
+
+                int offsets = body + (int) bb.getLong(bufferVector + 4 + idOffsets * 16);
+                int chars = body + (int) bb.getLong(bufferVector + 4 + (idOffsets + 1) * 16);
+                byte[] id = bytes(bb, chars + bb.getInt(offsets), bb.getInt(offsets + 4) - bb.getInt(offsets));
+                scan.firstClothIds.add(new String(id, StandardCharsets.UTF_8));
+                scan.firstRows.add(scan.rows);
+
+                int data = body + (int) bb.getLong(bufferVector + 4 + deepData * 16);
+                DoubleBuffer values = bb.duplicate().position(data).slice().order(ByteOrder.LITTLE_ENDIAN)
+                        .asDoubleBuffer();
+                for (int r = 0; r < rows; r++) {
+                    for (int d = 0; d < DEEP_DIMS; d++) {
+                        scan.deepSums[d] += values.get(r * DEEP_DIMS + d);
+                    }
+                }
+                scan.rows += rows;
+            }
+            return scan;
+        }
+    }
+
+    private static void check(ClothFeatureStore store, ArrowScan scan) {
+        List<String> clothIds = store.clothIds();
+        Collections.sort(clothIds);
+        double[] sums = new double[DEEP_DIMS];
+        long missingFingerprints = 0;
+        for (String clothId : clothIds) {
+            ClothFeatureStore.RecordView view = store.get(clothId);
+            for (int d = 0; d < DEEP_DIMS; d++) {
+                sums[d] += view.deepFeature(d);
+            }
+            missingFingerprints += view.fingerprint() == null ? 1 : 0;
+        }
+        boolean idsMatch = true;
+        for (int i = 0; i < scan.firstRows.size(); i++) {
+            idsMatch &= clothIds.get(scan.firstRows.get(i).intValue()).equals(scan.firstClothIds.get(i));
+        }
+        boolean valid = scan.rows == clothIds.size() && Arrays.equals(sums, scan.deepSums) && idsMatch
+                && scan.fingerprintNulls == missingFingerprints
+                && scan.deepListSize == DEEP_DIMS && scan.histogramListSize == HISTOGRAM_DIMS;
+        System.out.println(String.format("  %-8s valid=%s (%,d rows, deepFeatures sums %s, batch-first ids %s, "
+                        + "%,d null fingerprints, list sizes %d/%d)", "check", valid, scan.rows,
+                Arrays.equals(sums, scan.deepSums) ? "equal" : "DIFFER", idsMatch ? "equal" : "DIFFER",
+                scan.fingerprintNulls, scan.deepListSize, scan.histogramListSize));
+    }
+
+    // Field nodes a field takes in a record batch: its own and its children's
+    private static int nodeCount(ByteBuffer bb, int field) {
+        int count = 1;
+        int children = indirect(bb, field(bb, field, 5));
+        for (int i = 0; i < bb.getInt(children); i++) {
+            count += nodeCount(bb, indirect(bb, children + 4 + i * 4));
+        }
+        return count;
+    }
+
+    // Buffers a field takes in a record batch, children included
+    private static int bufferCount(ByteBuffer bb, int field) {
+        byte type = bb.get(field(bb, field, 2));
+        int count = type == 5 ? 3 : type == 16 ? 1 : 2; // utf8: validity, offsets, data
+        int children = indirect(bb, field(bb, field, 5));
+        for (int i = 0; i < bb.getInt(children); i++) {
+            count += bufferCount(bb, indirect(bb, children + 4 + i * 4));
+        }
+        return count;
+    }
+
+    // Minimal flatbuffer access: tables find their fields through a vtable of uint16 offsets
+    private static int rootTable(ByteBuffer bb, int position) {
+        return position + bb.getInt(position);
+    }
+
+    private static int field(ByteBuffer bb, int table, int slot) {
+        int vtable = table - bb.getInt(table);
+        int entry = 4 + slot * 2;
+        int offset = entry < bb.getShort(vtable) ? bb.getShort(vtable + entry) : 0;
+        if (offset == 0) {
+            throw new IllegalStateException("Flatbuffer field " + slot + " missing");
+        }
+        return table + offset;
+    }
+
+    private static int indirect(ByteBuffer bb, int position) {
+        return position + bb.getInt(position);
+    }
+
+    private static String string(ByteBuffer bb, int table, int slot) {
+        int position = indirect(bb, field(bb, table, slot));
+        return new String(bytes(bb, position + 4, bb.getInt(position)), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(ByteBuffer bb, int position, int length) {
+        byte[] bytes = new byte[length];
+        bb.duplicate().position(position).get(bytes);
+        return bytes;
+    }
+
+    private static ClothFeatureExtractor.ClothDNA syntheticDNA(String clothId, Random random) {
+        ClothFeatureExtractor.ClothDNA dna = new ClothFeatureExtractor.ClothDNA();
+        dna.clothId = clothId;
+        dna.timestamp = "2024-01-01T00:00:00";
+        dna.featureExtractionVersion = ClothFeatureExtractor.FEATURE_EXTRACTION_VERSION;
+        dna.imageDimensions = new int[]{224, 224, 3};
+        dna.deepFeatures = new double[DEEP_DIMS];
+        for (int i = 0; i < DEEP_DIMS; i++) {
+            dna.deepFeatures[i] = Math.max(0.0, random.nextGaussian());
+        }
+
+        ClothFeatureExtractor.TraditionalFeatures tf = new ClothFeatureExtractor.TraditionalFeatures();
+        tf.avgBGR = new double[]{random.nextInt(256), random.nextInt(256), random.nextInt(256)};
+        tf.avgHSV = new double[]{random.nextInt(180), random.nextInt(256), random.nextInt(256)};
+        tf.textureKeypoints = random.nextInt(500);
+        tf.edgeDensity = random.nextDouble() * 0.3;
+        tf.gradientMean = random.nextDouble() * 60;
+        tf.gradientStd = random.nextDouble() * 40;
+        tf.brightnessMean = random.nextDouble() * 255;
+        tf.brightnessStd = random.nextDouble() * 60;
+        tf.contrast = random.nextDouble() * 2000;
+        tf.colorHistogram = new double[HISTOGRAM_DIMS];
+        for (int i = 0; i < HISTOGRAM_DIMS; i++) {
+            tf.colorHistogram[i] = random.nextDouble() / 32;
+        }
+        dna.traditionalFeatures = tf;
+        return dna;
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,668 @@
+package com.clothblockchain.extractor;
+
+import com.google.flatbuffers.FlatBufferBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Streams the feature catalog into one columnar Apache Arrow IPC file
+ *
+ * Analytics tools read features without parsing one `_full_data.json` per cloth. The file
+ * uses the Arrow random-access ("file") format, so pyarrow, Arrow Java, DuckDB or Polars
+ * can memory-map it and read any column without copying:
+ *
+ *   clothId, timestamp, featureExtractionVersion, hash    utf8
+ *   fingerprint                                           fixed_size_binary[32], null for
+ *                                                         records stored without one
+ *   imageDimensions                                       fixed_size_list<int32>[3]
+ *   avgBGR, avgHSV                                        fixed_size_list<float64>[3]
+ *   textureKeypoints                                      int32
+ *   edgeDensity ... contrast                              float64
+ *   colorHistogram, deepFeatures                          fixed_size_list<float64>[n]
+ *
+ * Records are written in clothId order, rowsPerBatch at a time. Each batch is filled
+ * straight from the memory-mapped store into reusable column buffers and then written out,
+ * so memory stays at one batch (about 11 MB at the default 4096 rows) whatever the
+ * catalog size. The fingerprint is stored as its four words in little-endian order, so
+ * bit i of the 256-bit fingerprint is bit (i % 8) of byte i / 8.
+ *
+ * The Arrow metadata (schema, record batch headers, footer) is flatbuffer-encoded with
+ * flatbuffers-java, the runtime ND4J already uses; no Arrow library is needed to write
+ * the file. The file is written next to the target and moved into place when complete.
+ * The store must not be compacted while an export runs.
+ *
+ * @author ClothBlockchain Team
+ * @version 1.0
+ */
+public class ClothCatalogExporter {
+
+    private static final Logger log = LoggerFactory.getLogger(ClothCatalogExporter.class);
+
+    private static final byte[] ARROW_MAGIC = "ARROW1".getBytes(StandardCharsets.US_ASCII);
+    private static final int CONTINUATION_MARKER = 0xFFFFFFFF;
+    private static final int ALIGNMENT = 8;
+
+    // Flatbuffer enum and union values from the Arrow format (Schema.fbs, Message.fbs)
+    private static final short METADATA_V5 = 4;
+    private static final byte HEADER_SCHEMA = 1;
+    private static final byte HEADER_RECORD_BATCH = 3;
+    private static final byte TYPE_INT = 2;
+    private static final byte TYPE_FLOATING_POINT = 3;
+    private static final byte TYPE_UTF8 = 5;
+    private static final byte TYPE_FIXED_SIZE_BINARY = 15;
+    private static final byte TYPE_FIXED_SIZE_LIST = 16;
+    private static final short PRECISION_DOUBLE = 2;
+
+    private static final String[] SCALAR_FEATURES = {
+            "edgeDensity", "gradientMean", "gradientStd", "brightnessMean", "brightnessStd", "contrast"};
+
+    private final ClothFeatureStore store;
+    private final Config config;
+
+    public ClothCatalogExporter(ClothFeatureStore store) {
+        this(store, new Config());
+    }
+
+    public ClothCatalogExporter(ClothFeatureStore store, Config config) {
+        if (config.rowsPerBatch < 1) {
+            throw new IllegalArgumentException("rowsPerBatch must be positive: " + config.rowsPerBatch);
+        }
+        this.store = store;
+        this.config = config;
+    }
+
+    /**
+     * Write every stored cloth to an Arrow IPC file at target (replacing it)
+     */
+    public ExportReport exportArrow(Path target) throws IOException {
+        long start = System.nanoTime();
+        List<String> clothIds = store.clothIds();
+        Collections.sort(clothIds);
+        List<Column> columns = columns(store, config.rowsPerBatch);
+        log.info("📤 Exporting {} records to {} ({} rows per batch)", clothIds.size(), target, config.rowsPerBatch);
+
+        ExportReport report = new ExportReport();
+        report.rowsPerBatch = config.rowsPerBatch;
+        Path tempPath = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ArrowFileWriter writer = new ArrowFileWriter(channel, columns);
+            writer.writeHeader();
+
+            int rows = 0;
+            for (String clothId : clothIds) {
+                ClothFeatureStore.RecordView view = store.get(clothId);
+                if (view == null) {
+                    continue; // deleted since clothIds() was taken
+                }
+                for (Column column : columns) {
+                    column.append(view, rows);
+                }
+                if (++rows == config.rowsPerBatch) {
+                    writer.writeBatch(rows);
+                    report.rows += rows;
+                    rows = 0;
+                }
+            }
+            if (rows > 0) {
+                writer.writeBatch(rows);
+                report.rows += rows;
+            }
+            writer.writeFooter();
+            report.batches = writer.blocks.size();
+            report.bytes = channel.position();
+            if (config.fsync) {
+                channel.force(true);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempPath);
+            throw e;
+        }
+        Files.move(tempPath, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        report.elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        double seconds = Math.max(1, report.elapsedMillis) / 1000.0;
+        report.rowsPerSecond = report.rows / seconds;
+        report.megabytesPerSecond = report.bytes / 1e6 / seconds;
+        log.info("📤 Exported {} records in {} batches ({} MB) in {} ms", report.rows, report.batches,
+                String.format("%.1f", report.bytes / 1e6), report.elapsedMillis);
+        return report;
+    }
+
+    // Schema order; the Arrow field order is the order of this list
+    private static List<Column> columns(ClothFeatureStore store, int capacity) {
+        List<Column> columns = new ArrayList<>();
+        columns.add(new Utf8Column("clothId", ClothFeatureStore.RecordView::clothId, capacity));
+        columns.add(new Utf8Column("timestamp", ClothFeatureStore.RecordView::timestamp, capacity));
+        columns.add(new Utf8Column("featureExtractionVersion",
+                ClothFeatureStore.RecordView::featureExtractionVersion, capacity));
+        columns.add(new Utf8Column("hash", ClothFeatureStore.RecordView::hash, capacity));
+        columns.add(new FingerprintColumn(capacity));
+        columns.add(new FixedSizeListColumn("imageDimensions", true, 3, capacity,
+                (view, data) -> {
+                    for (int i = 0; i < 3; i++) {
+                        data.putInt(view.imageDimension(i));
+                    }
+                }));
+        columns.add(new FixedSizeListColumn("avgBGR", false, 3, capacity,
+                (view, data) -> {
+                    for (int i = 0; i < 3; i++) {
+                        data.putDouble(view.avgBGR(i));
+                    }
+                }));
+        columns.add(new FixedSizeListColumn("avgHSV", false, 3, capacity,
+                (view, data) -> {
+                    for (int i = 0; i < 3; i++) {
+                        data.putDouble(view.avgHSV(i));
+                    }
+                }));
+        columns.add(new Int32Column("textureKeypoints", ClothFeatureStore.RecordView::textureKeypoints, capacity));
+        for (int s = 0; s < SCALAR_FEATURES.length; s++) {
+            int scalar = s;
+            columns.add(new Float64Column(SCALAR_FEATURES[s], view -> view.scalarFeature(scalar), capacity));
+        }
+        int histogramDims = store.colorHistogramCount();
+        columns.add(new FixedSizeListColumn("colorHistogram", false, histogramDims, capacity,
+                (view, data) -> {
+                    for (int i = 0; i < histogramDims; i++) {
+                        data.putDouble(view.colorHistogram(i));
+                    }
+                }));
+        int deepDims = store.deepFeatureCount();
+        columns.add(new FixedSizeListColumn("deepFeatures", false, deepDims, capacity,
+                (view, data) -> {
+                    for (int i = 0; i < deepDims; i++) {
+                        data.putDouble(view.deepFeature(i));
+                    }
+                }));
+        return columns;
+    }
+
+    /**
+     * Arrow IPC file layout: magic, schema message, one record batch message per batch,
+     * end-of-stream marker, footer (schema again plus the position of every batch), magic.
+     * Messages are a continuation marker, the padded flatbuffer length, the flatbuffer and
+     * then the body; every buffer in a body starts on an 8-byte boundary.
+     */
+    private static final class ArrowFileWriter {
+        private final FileChannel channel;
+        private final List<Column> columns;
+        private final List<long[]> blocks = new ArrayList<>(); // offset, metadata length, body length
+        private final ByteBuffer prefix = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        private final ByteBuffer padding = ByteBuffer.allocate(ALIGNMENT);
+
+        ArrowFileWriter(FileChannel channel, List<Column> columns) {
+            this.channel = channel;
+            this.columns = columns;
+        }
+
+        void writeHeader() throws IOException {
+            ByteBuffer magic = ByteBuffer.allocate(ALIGNMENT);
+            magic.put(ARROW_MAGIC).clear();
+            writeFully(magic);
+
+            FlatBufferBuilder fb = new FlatBufferBuilder(1024);
+            int schema = schema(fb);
+            fb.finish(message(fb, HEADER_SCHEMA, schema, 0));
+            writeMessage(fb.sizedByteArray());
+        }
+
+        void writeBatch(int rows) throws IOException {
+            List<long[]> nodes = new ArrayList<>();
+            List<ByteBuffer> buffers = new ArrayList<>();
+            for (Column column : columns) {
+                column.nodes(nodes, rows);
+                column.buffers(buffers, rows);
+            }
+
+            long bodyLength = 0;
+            long[] bufferOffsets = new long[buffers.size()];
+            for (int i = 0; i < buffers.size(); i++) {
+                bufferOffsets[i] = bodyLength;
+                bodyLength += align(buffers.get(i).remaining());
+            }
+
+            FlatBufferBuilder fb = new FlatBufferBuilder(4096);
+            fb.startVector(16, nodes.size(), 8);
+            for (int i = nodes.size() - 1; i >= 0; i--) {
+                fb.prep(8, 16);
+                fb.putLong(nodes.get(i)[1]); // null_count
+                fb.putLong(nodes.get(i)[0]); // length
+            }
+            int nodeVector = fb.endVector();
+            fb.startVector(16, buffers.size(), 8);
+            for (int i = buffers.size() - 1; i >= 0; i--) {
+                fb.prep(8, 16);
+                fb.putLong(buffers.get(i).remaining());
+                fb.putLong(bufferOffsets[i]);
+            }
+            int bufferVector = fb.endVector();
+            fb.startTable(4);
+            fb.addLong(0, rows, 0);
+            fb.addOffset(1, nodeVector, 0);
+            fb.addOffset(2, bufferVector, 0);
+            int recordBatch = fb.endTable();
+            fb.finish(message(fb, HEADER_RECORD_BATCH, recordBatch, bodyLength));
+
+            long offset = channel.position();
+            int metadataLength = writeMessage(fb.sizedByteArray());
+            for (ByteBuffer buffer : buffers) {
+                int length = buffer.remaining();
+                writeFully(buffer);
+                writePadding(align(length) - length);
+            }
+            blocks.add(new long[]{offset, metadataLength, bodyLength});
+        }
+
+        void writeFooter() throws IOException {
+            prefix.clear();
+            prefix.putInt(CONTINUATION_MARKER).putInt(0).flip();
+            writeFully(prefix);
+
+            FlatBufferBuilder fb = new FlatBufferBuilder(1024);
+            int schema = schema(fb);
+            fb.startVector(24, 0, 8);
+            int dictionaries = fb.endVector();
+            fb.startVector(24, blocks.size(), 8);
+            for (int i = blocks.size() - 1; i >= 0; i--) {
+                long[] block = blocks.get(i);
+                fb.prep(8, 24);
+                fb.putLong(block[2]);
+                fb.pad(4);
+                fb.putInt((int) block[1]);
+                fb.putLong(block[0]);
+            }
+            int recordBatches = fb.endVector();
+            fb.startTable(5);
+            fb.addOffset(1, schema, 0);
+            fb.addOffset(2, dictionaries, 0);
+            fb.addOffset(3, recordBatches, 0);
+            fb.addShort(0, METADATA_V5, 0);
+            fb.finish(fb.endTable());
+            byte[] footer = fb.sizedByteArray();
+
+            ByteBuffer tail = ByteBuffer.allocate(footer.length + 4 + ARROW_MAGIC.length).order(ByteOrder.LITTLE_ENDIAN);
+            tail.put(footer).putInt(footer.length).put(ARROW_MAGIC).flip();
+            writeFully(tail);
+        }
+
+        private int schema(FlatBufferBuilder fb) {
+            int[] fields = new int[columns.size()];
+            for (int i = 0; i < fields.length; i++) {
+                fields[i] = columns.get(i).field(fb);
+            }
+            int fieldVector = fb.createVectorOfTables(fields);
+            fb.startTable(4);
+            fb.addOffset(1, fieldVector, 0); // endianness defaults to little
+            return fb.endTable();
+        }
+
+        private static int message(FlatBufferBuilder fb, byte headerType, int header, long bodyLength) {
+            fb.startTable(5);
+            fb.addLong(3, bodyLength, 0);
+            fb.addOffset(2, header, 0);
+            fb.addShort(0, METADATA_V5, 0);
+            fb.addByte(1, headerType, 0);
+            return fb.endTable();
+        }
+
+        // Returns the metadata length recorded in the footer: prefix + flatbuffer + padding
+        private int writeMessage(byte[] flatbuffer) throws IOException {
+            int padded = align(8 + flatbuffer.length) - 8;
+            prefix.clear();
+            prefix.putInt(CONTINUATION_MARKER).putInt(padded).flip();
+            writeFully(prefix);
+            writeFully(ByteBuffer.wrap(flatbuffer));
+            writePadding(padded - flatbuffer.length);
+            return 8 + padded;
+        }
+
+        private void writePadding(int bytes) throws IOException {
+            padding.clear().limit(bytes);
+            writeFully(padding);
+        }
+
+        private void writeFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    private static int align(int length) {
+        return (length + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    private static long align(long length) {
+        return (length + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    // Field table for a column; type must already be built in fb
+    private static int field(FlatBufferBuilder fb, String name, boolean nullable, byte typeType, int type,
+                             int[] children) {
+        int nameOffset = fb.createString(name);
+        int childVector = fb.createVectorOfTables(children);
+        fb.startTable(7);
+        fb.addOffset(0, nameOffset, 0);
+        fb.addOffset(3, type, 0);
+        fb.addOffset(5, childVector, 0);
+        fb.addBoolean(1, nullable, false);
+        fb.addByte(2, typeType, 0);
+        return fb.endTable();
+    }
+
+    private static int primitiveField(FlatBufferBuilder fb, String name, boolean int32) {
+        int type;
+        if (int32) {
+            fb.startTable(2);
+            fb.addInt(0, 32, 0);
+            fb.addBoolean(1, true, false);
+            type = fb.endTable();
+        } else {
+            fb.startTable(1);
+            fb.addShort(0, PRECISION_DOUBLE, 0);
+            type = fb.endTable();
+        }
+        return field(fb, name, false, int32 ? TYPE_INT : TYPE_FLOATING_POINT, type, new int[0]);
+    }
+
+    private static ByteBuffer littleEndian(int bytes) {
+        return ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * One schema field and its reusable per-batch buffers
+     */
+    private abstract static class Column {
+        final String name;
+
+        Column(String name) {
+            this.name = name;
+        }
+
+        abstract int field(FlatBufferBuilder fb);
+
+        /** Add one record as row `row` of the current batch (rows arrive in order from 0) */
+        abstract void append(ClothFeatureStore.RecordView view, int row);
+
+        /** Field nodes (length, null count) in schema order, children after their parent */
+        abstract void nodes(List<long[]> nodes, int rows);
+
+        /**
+         * The batch's buffers, ready to write, and reset for the next batch; the contents
+         * stay valid until the next append
+         */
+        abstract void buffers(List<ByteBuffer> buffers, int rows);
+    }
+
+    private static final class Utf8Column extends Column {
+        private final Function<ClothFeatureStore.RecordView, String> reader;
+        private final ByteBuffer offsets;
+        private ByteBuffer data;
+
+        Utf8Column(String name, Function<ClothFeatureStore.RecordView, String> reader, int capacity) {
+            super(name);
+            this.reader = reader;
+            this.offsets = littleEndian((capacity + 1) * 4);
+            this.data = littleEndian(capacity * 32);
+        }
+
+        @Override
+        int field(FlatBufferBuilder fb) {
+            fb.startTable(0);
+            return ClothCatalogExporter.field(fb, name, false, TYPE_UTF8, fb.endTable(), new int[0]);
+        }
+
+        @Override
+        void append(ClothFeatureStore.RecordView view, int row) {
+            if (row == 0) {
+                offsets.putInt(0);
+            }
+            byte[] bytes = reader.apply(view).getBytes(StandardCharsets.UTF_8);
+            if (data.remaining() < bytes.length) {
+                ByteBuffer grown = littleEndian(Math.max(data.capacity() * 2, data.position() + bytes.length));
+                data.flip();
+                grown.put(data);
+                data = grown;
+            }
+            data.put(bytes);
+            offsets.putInt(data.position());
+        }
+
+        @Override
+        void nodes(List<long[]> nodes, int rows) {
+            nodes.add(new long[]{rows, 0});
+        }
+
+        @Override
+        void buffers(List<ByteBuffer> buffers, int rows) {
+            buffers.add(littleEndian(0)); // no validity bitmap: nothing is null
+            buffers.add(offsets.flip().duplicate());
+            buffers.add(data.flip().duplicate());
+            offsets.clear();
+            data.clear();
+        }
+    }
+
+    private static final class Int32Column extends Column {
+        private final ToIntFunction<ClothFeatureStore.RecordView> reader;
+        private final ByteBuffer values;
+
+        Int32Column(String name, ToIntFunction<ClothFeatureStore.RecordView> reader, int capacity) {
+            super(name);
+            this.reader = reader;
+            this.values = littleEndian(capacity * 4);
+        }
+
+        @Override
+        int field(FlatBufferBuilder fb) {
+            return primitiveField(fb, name, true);
+        }
+
+        @Override
+        void append(ClothFeatureStore.RecordView view, int row) {
+            values.putInt(reader.applyAsInt(view));
+        }
+
+        @Override
+        void nodes(List<long[]> nodes, int rows) {
+            nodes.add(new long[]{rows, 0});
+        }
+
+        @Override
+        void buffers(List<ByteBuffer> buffers, int rows) {
+            buffers.add(littleEndian(0));
+            buffers.add(values.flip().duplicate());
+            values.clear();
+        }
+    }
+
+    private static final class Float64Column extends Column {
+        private final ToDoubleFunction<ClothFeatureStore.RecordView> reader;
+        private final ByteBuffer values;
+
+        Float64Column(String name, ToDoubleFunction<ClothFeatureStore.RecordView> reader, int capacity) {
+            super(name);
+            this.reader = reader;
+            this.values = littleEndian(capacity * 8);
+        }
+
+        @Override
+        int field(FlatBufferBuilder fb) {
+            return primitiveField(fb, name, false);
+        }
+
+        @Override
+        void append(ClothFeatureStore.RecordView view, int row) {
+            values.putDouble(reader.applyAsDouble(view));
+        }
+
+        @Override
+        void nodes(List<long[]> nodes, int rows) {
+            nodes.add(new long[]{rows, 0});
+        }
+
+        @Override
+        void buffers(List<ByteBuffer> buffers, int rows) {
+            buffers.add(littleEndian(0));
+            buffers.add(values.flip().duplicate());
+            values.clear();
+        }
+    }
+
+    private interface ElementWriter {
+        void write(ClothFeatureStore.RecordView view, ByteBuffer data);
+    }
+
+    /**
+     * fixed_size_list<int32 or float64>[listSize]: the parent has only a (empty) validity
+     * buffer, the child "item" holds rows * listSize values back to back
+     */
+    private static final class FixedSizeListColumn extends Column {
+        private final boolean int32;
+        private final int listSize;
+        private final ElementWriter writer;
+        private final ByteBuffer values;
+
+        FixedSizeListColumn(String name, boolean int32, int listSize, int capacity, ElementWriter writer) {
+            super(name);
+            this.int32 = int32;
+            this.listSize = listSize;
+            this.writer = writer;
+            this.values = littleEndian(capacity * listSize * (int32 ? 4 : 8));
+        }
+
+        @Override
+        int field(FlatBufferBuilder fb) {
+            int item = primitiveField(fb, "item", int32);
+            fb.startTable(1);
+            fb.addInt(0, listSize, 0);
+            int type = fb.endTable();
+            return ClothCatalogExporter.field(fb, name, false, TYPE_FIXED_SIZE_LIST, type, new int[]{item});
+        }
+
+        @Override
+        void append(ClothFeatureStore.RecordView view, int row) {
+            writer.write(view, values);
+        }
+
+        @Override
+        void nodes(List<long[]> nodes, int rows) {
+            nodes.add(new long[]{rows, 0});
+            nodes.add(new long[]{(long) rows * listSize, 0});
+        }
+
+        @Override
+        void buffers(List<ByteBuffer> buffers, int rows) {
+            buffers.add(littleEndian(0));
+            buffers.add(littleEndian(0));
+            buffers.add(values.flip().duplicate());
+            values.clear();
+        }
+    }
+
+    /**
+     * fixed_size_binary[32], the only nullable column: records stored without a fingerprint
+     * (e.g. from format 1 segments) have none. The validity bitmap is only written when a
+     * batch has a null.
+     */
+    private static final class FingerprintColumn extends Column {
+        private static final int BYTE_WIDTH = PerceptualFingerprint.WORDS * 8;
+
+        private final ByteBuffer values;
+        private final ByteBuffer validity;
+        private int nulls;
+
+        FingerprintColumn(int capacity) {
+            super("fingerprint");
+            this.values = littleEndian(capacity * BYTE_WIDTH);
+            this.validity = littleEndian((capacity + 7) / 8);
+        }
+
+        @Override
+        int field(FlatBufferBuilder fb) {
+            fb.startTable(1);
+            fb.addInt(0, BYTE_WIDTH, 0);
+            return ClothCatalogExporter.field(fb, name, true, TYPE_FIXED_SIZE_BINARY, fb.endTable(), new int[0]);
+        }
+
+        @Override
+        void append(ClothFeatureStore.RecordView view, int row) {
+            long[] fingerprint = view.fingerprint();
+            if (fingerprint == null) {
+                nulls++;
+                for (int i = 0; i < PerceptualFingerprint.WORDS; i++) {
+                    values.putLong(0L);
+                }
+                return;
+            }
+            validity.put(row >>> 3, (byte) (validity.get(row >>> 3) | (1 << (row & 7))));
+            for (long word : fingerprint) {
+                values.putLong(word);
+            }
+        }
+
+        @Override
+        void nodes(List<long[]> nodes, int rows) {
+            nodes.add(new long[]{rows, nulls});
+        }
+
+        @Override
+        void buffers(List<ByteBuffer> buffers, int rows) {
+            if (nulls > 0) {
+                ByteBuffer bitmap = littleEndian((rows + 7) / 8);
+                for (int i = 0; i < bitmap.capacity(); i++) {
+                    bitmap.put(i, validity.get(i));
+                }
+                buffers.add(bitmap);
+            } else {
+                buffers.add(littleEndian(0));
+            }
+            buffers.add(values.flip().duplicate());
+            values.clear();
+            Arrays.fill(validity.array(), (byte) 0);
+            nulls = 0;
+        }
+    }
+
+    // Configuration and data classes
+    public static class Config {
+        /** Rows per Arrow record batch; memory use is one batch of column buffers */
+        public int rowsPerBatch = 4096;
+        /** fsync the file before it is moved into place */
+        public boolean fsync = true;
+    }
+
+    public static class ExportReport {
+        public long rows;
+        public int batches;
+        public int rowsPerBatch;
+        public long bytes;
+        public long elapsedMillis;
+        public double rowsPerSecond;
+        public double megabytesPerSecond;
+
+        public void print() {
+            System.out.println("=".repeat(60));
+            System.out.println("📤 CATALOG EXPORT (Arrow IPC)");
+            System.out.println("=".repeat(60));
+            System.out.println(String.format("Records:            %,d in %,d batches of up to %,d", rows, batches, rowsPerBatch));
+            System.out.println(String.format("File size:          %,.1f MB (%,.0f bytes/record)", bytes / 1e6,
+                    rows > 0 ? (double) bytes / rows : 0));
+            System.out.println(String.format("Time:               %,d ms", elapsedMillis));
+            System.out.println(String.format("Throughput:         %,.0f records/s, %,.0f MB/s", rowsPerSecond,
+                    megabytesPerSecond));
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.clothblockchain.extractor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Canonical binary encoding of a ClothDNA, used for the blockchain hash
+ *
+ * The byte layout is fixed by this class rather than by a JSON library, so the same
+ * ClothDNA hashes to the same value on every JVM. Encoding version 1, all big-endian:
+ *
+ *   magic "CDNA", int version
+ *   string clothId, string timestamp, string featureExtractionVersion
+ *   int[] imageDimensions, double[] deepFeatures
+ *   int 1 (traditionalFeatures present; -1 if null, and the next two lines are omitted)
+ *   double[] avgBGR, double[] avgHSV, double[] colorHistogram, int textureKeypoints
+ *   double edgeDensity, gradientMean, gradientStd, brightnessMean, brightnessStd, contrast
+ *
+ * Version 2 is used only for ClothDNA with tile statistics (tiled scans) and appends:
+ *
+ *   int tileSize, tilesAcross, tilesDown, tileCount
+ *   double[] deepFeatureMean, deepFeatureStd, textureMean, textureStd, textureMin, textureMax
+ *
+ * Strings are an int byte length and UTF-8 bytes, arrays an int length and the elements;
+ * a null string or array has length -1. Doubles are IEEE-754 bits with -0.0 written as 0.0
+ * and every NaN as the canonical NaN. Any change to this layout needs a new VERSION.
+ *
+ * Bytes go through a reused buffer straight into the digest (or a stream), so hashing a
+ * record does not build a String or a byte[] of the whole encoding. Not thread-safe; use
+ * one encoder per thread.
+ *
+ * @author ClothBlockchain Team
+ * @version 1.0
+ */
+public final class ClothDNAEncoder {
+
+    public static final int VERSION = 1;
+    public static final int TILED_VERSION = 2;
+    public static final String HASH_SCHEME = "sha256/clothdna-v" + VERSION;
+    public static final String TILED_HASH_SCHEME = "sha256/clothdna-v" + TILED_VERSION;
+
+    private static final int MAGIC = 0x43444E41; // "CDNA"
+    private static final int BUFFER_SIZE = 8192;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final MessageDigest digest;
+    private final byte[] hashBytes;
+    private OutputStream stream; // null while hashing
+
+    public ClothDNAEncoder() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e); // required on every JVM
+        }
+        hashBytes = new byte[digest.getDigestLength()];
+    }
+
+    /**
+     * Hash scheme a record of this ClothDNA carries
+     */
+    public static String hashSchemeFor(ClothFeatureExtractor.ClothDNA clothDNA) {
+        return clothDNA.tileStatistics != null ? TILED_HASH_SCHEME : HASH_SCHEME;
+    }
+
+    /**
+     * SHA-256 of the canonical encoding, as lowercase hex
+     */
+    public String hashHex(ClothFeatureExtractor.ClothDNA clothDNA) {
+        return Hex.encode(hash(clothDNA));
+    }
+
+    /**
+     * SHA-256 of the canonical encoding. The returned array is reused by the next call.
+     */
+    public byte[] hash(ClothFeatureExtractor.ClothDNA clothDNA) {
+        digest.reset();
+        stream = null;
+        encode(clothDNA);
+        try {
+            digest.digest(hashBytes, 0, hashBytes.length);
+        } catch (DigestException e) {
+            throw new IllegalStateException(e);
+        }
+        return hashBytes;
+    }
+
+    /**
+     * Write the canonical encoding to a stream, e.g. to hand verifiers the exact hashed bytes
+     */
+    public void writeTo(ClothFeatureExtractor.ClothDNA clothDNA, OutputStream out) throws IOException {
+        stream = out;
+        try {
+            encode(clothDNA);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            stream = null;
+        }
+    }
+
+    private void encode(ClothFeatureExtractor.ClothDNA dna) {
+        buffer.clear();
+        ClothFeatureExtractor.TileStatistics tiles = dna.tileStatistics;
+        putInt(MAGIC);
+        putInt(tiles != null ? TILED_VERSION : VERSION);
+        putString(dna.clothId);
+        putString(dna.timestamp);
+        putString(dna.featureExtractionVersion);
+        putInts(dna.imageDimensions);
+        putDoubles(dna.deepFeatures);
+
+        ClothFeatureExtractor.TraditionalFeatures tf = dna.traditionalFeatures;
+        if (tf == null) {
+            putInt(-1);
+        } else {
+            putInt(1);
+            putDoubles(tf.avgBGR);
+            putDoubles(tf.avgHSV);
+            putDoubles(tf.colorHistogram);
+            putInt(tf.textureKeypoints);
+            putDouble(tf.edgeDensity);
+            putDouble(tf.gradientMean);
+            putDouble(tf.gradientStd);
+            putDouble(tf.brightnessMean);
+            putDouble(tf.brightnessStd);
+            putDouble(tf.contrast);
+        }
+
+        if (tiles != null) {
+            putInt(tiles.tileSize);
+            putInt(tiles.tilesAcross);
+            putInt(tiles.tilesDown);
+            putInt(tiles.tileCount);
+            putDoubles(tiles.deepFeatureMean);
+            putDoubles(tiles.deepFeatureStd);
+            putDoubles(tiles.textureMean);
+            putDoubles(tiles.textureStd);
+            putDoubles(tiles.textureMin);
+            putDoubles(tiles.textureMax);
+        }
+        drain();
+    }
+
+    private void putInt(int value) {
+        ensure(4);
+        buffer.putInt(value);
+    }
+
+    private void putDouble(double value) {
+        ensure(8);
+        buffer.putLong(canonicalBits(value));
+    }
+
+    private void putInts(int[] values) {
+        if (values == null) {
+            putInt(-1);
+            return;
+        }
+        putInt(values.length);
+        for (int value : values) {
+            putInt(value);
+        }
+    }
+
+    private void putDoubles(double[] values) {
+        if (values == null) {
+            putInt(-1);
+            return;
+        }
+        putInt(values.length);
+        for (double value : values) {
+            putDouble(value);
+        }
+    }
+
+    private void putString(String value) {
+        if (value == null) {
+            putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putInt(bytes.length);
+        int offset = 0;
+        while (offset < bytes.length) {
+            ensure(1);
+            int chunk = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, chunk);
+            offset += chunk;
+        }
+    }
+
+    private static long canonicalBits(double value) {
+        if (value == 0.0) {
+            return 0L; // folds -0.0 into 0.0
+        }
+        return Double.doubleToLongBits(value); // folds every NaN into one
+    }
+
+    private void ensure(int bytes) {
+        if (buffer.remaining() < bytes) {
+            drain();
+        }
+    }
+
+    private void drain() {
+        if (buffer.position() == 0) {
+            return;
+        }
+        if (stream == null) {
+            digest.update(buffer.array(), 0, buffer.position());
+        } else {
+            try {
+                stream.write(buffer.array(), 0, buffer.position());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,517 @@
+package com.clothblockchain.extractor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * Catalog-wide near-duplicate detection (similarity self-join over the feature store)
+ *
+ * Finds groups of cloths whose deep features and color histograms are nearly identical:
+ * accidental double registrations and counterfeit clusters. Comparing all pairs is
+ * quadratic, so candidates come from LSH banding on the 256-bit perceptual fingerprint
+ * (random-hyperplane SimHash, one bit per hyperplane):
+ *
+ *   - The fingerprint is cut into `bands` bands of `rowsPerBand` bits. Two records are
+ *     candidates if they agree on every bit of at least one band. For records whose
+ *     fingerprints differ in h bits that happens with probability
+ *     1 - (1 - (1 - h/256)^rowsPerBand)^bands. With the defaults (12 x 20) that is
+ *     about 98% at h = 16 and 1e-5 for unrelated records (h ~ 128). Shorter bands
+ *     catch looser duplicates but produce many more candidates in catalogs where
+ *     items of one fabric already share most bits.
+ *   - Per band, one sort of (band value, record) keys lays the buckets out next to each
+ *     other. A pair in several buckets is only counted in the first band they share
+ *     whose bucket was joined. Buckets larger than maxBucketSize are skipped and counted
+ *     (their pairs can still meet in a later band). These are usually degenerate
+ *     fingerprints, such as blank images.
+ *   - Candidates are checked on their full Hamming distance first (four popcounts), then
+ *     on exact cosine similarity of the deep features and of the color histograms, read
+ *     from the memory-mapped store.
+ *
+ * Buckets are verified in parallel on a fork-join pool, split by the number of pairs they
+ * hold. Matching pairs are merged with union-find, and the resulting clusters are handed to
+ * a listener one at a time instead of being collected.
+ *
+ * Records stored without a fingerprint (format 1 segments) get one computed up front.
+ * The store must not be compacted while a scan runs.
+ *
+ * @author ClothBlockchain Team
+ * @version 1.0
+ */
+public class ClothDuplicateFinder {
+
+    private static final Logger log = LoggerFactory.getLogger(ClothDuplicateFinder.class);
+
+    // Candidate pairs per fork-join leaf
+    private static final long PAIRS_PER_TASK = 16_384;
+
+    private final ClothFeatureStore store;
+    private final PerceptualFingerprint fingerprinter;
+    private final Config config;
+
+    public ClothDuplicateFinder(ClothFeatureStore store, PerceptualFingerprint fingerprinter) {
+        this(store, fingerprinter, new Config());
+    }
+
+    public ClothDuplicateFinder(ClothFeatureStore store, PerceptualFingerprint fingerprinter, Config config) {
+        if (config.bands < 1 || config.rowsPerBand < 1 || config.rowsPerBand > 32
+                || config.bands * config.rowsPerBand > PerceptualFingerprint.BITS) {
+            throw new IllegalArgumentException("bands x rowsPerBand must fit in " + PerceptualFingerprint.BITS
+                    + " bits with at most 32 rows per band: " + config.bands + " x " + config.rowsPerBand);
+        }
+        this.store = store;
+        this.fingerprinter = fingerprinter;
+        this.config = config;
+    }
+
+    /**
+     * Scan the whole store and pass every cluster of two or more near-duplicates to the
+     * listener (on the calling thread, largest-first is not guaranteed)
+     */
+    public DuplicateScanReport scan(Consumer<DuplicateCluster> clusterListener) {
+        long start = System.nanoTime();
+        ForkJoinPool pool = config.parallelism > 0 ? new ForkJoinPool(config.parallelism) : ForkJoinPool.commonPool();
+        try {
+            Catalog catalog = loadCatalog(pool);
+            DuplicateScanReport report = new DuplicateScanReport();
+            report.records = catalog.size;
+            report.bands = config.bands;
+            report.rowsPerBand = config.rowsPerBand;
+            report.signatureMillis = (System.nanoTime() - start) / 1_000_000;
+            log.info("🧬 Duplicate scan: {} records, {} bands x {} bits", catalog.size, config.bands, config.rowsPerBand);
+
+            long joinStart = System.nanoTime();
+            UnionFind clusters = new UnionFind(catalog.size);
+            List<DuplicatePair> duplicates = new ArrayList<>();
+            long[] keys = new long[catalog.size];
+            for (int band = 0; band < config.bands; band++) {
+                int[] buckets = sortIntoBuckets(catalog, band, keys, report);
+                if (buckets.length == 0) {
+                    continue;
+                }
+                JoinResult result = pool.invoke(new BucketJoin(catalog, band, keys, buckets, 0, buckets.length / 2));
+                report.candidatePairs += result.candidates;
+                report.verifiedPairs += result.verified;
+                for (DuplicatePair pair : result.duplicates) {
+                    clusters.union(pair.first, pair.second);
+                    duplicates.add(pair);
+                }
+            }
+            report.joinMillis = (System.nanoTime() - joinStart) / 1_000_000;
+            report.duplicatePairs = duplicates.size();
+
+            emitClusters(catalog, clusters, duplicates, clusterListener, report);
+
+            report.elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            report.allPairs = (long) catalog.size * (catalog.size - 1) / 2;
+            report.pairsPerSecond = report.joinMillis > 0 ? report.candidatePairs * 1000.0 / report.joinMillis : 0;
+            report.effectivePairsPerSecond = report.elapsedMillis > 0 ? report.allPairs * 1000.0 / report.elapsedMillis : 0;
+            log.info("🧬 Duplicate scan done: {} clusters from {} candidate pairs in {} ms ({} pairs/s)",
+                    report.clusters, report.candidatePairs, report.elapsedMillis, Math.round(report.pairsPerSecond));
+            return report;
+        } finally {
+            if (pool != ForkJoinPool.commonPool()) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    // Fingerprints, norms and record views for every stored cloth, indexed 0..n-1
+    private Catalog loadCatalog(ForkJoinPool pool) {
+        List<String> clothIds = store.clothIds();
+        Collections.sort(clothIds);
+        Catalog catalog = new Catalog(clothIds.size(), config.bands);
+        pool.submit(() -> IntStream.range(0, catalog.size).parallel().forEach(i -> {
+            ClothFeatureStore.RecordView view = store.get(clothIds.get(i));
+            if (view == null) {
+                return; // deleted since clothIds() was taken
+            }
+            catalog.views[i] = view;
+            long[] fingerprint = view.fingerprint();
+            if (fingerprint == null) {
+                fingerprint = fingerprinter.compute(view.toClothDNA());
+            }
+            System.arraycopy(fingerprint, 0, catalog.fingerprints, i * PerceptualFingerprint.WORDS,
+                    PerceptualFingerprint.WORDS);
+            catalog.deepNorms[i] = Math.sqrt(deepDot(view, view));
+            catalog.histogramNorms[i] = Math.sqrt(histogramDot(view, view));
+        })).join();
+        return catalog;
+    }
+
+    /**
+     * Sort (band value << 32 | record) keys and return the [start, end) offsets of every
+     * bucket with at least two and at most maxBucketSize records
+     */
+    private int[] sortIntoBuckets(Catalog catalog, int band, long[] keys, DuplicateScanReport report) {
+        int count = 0;
+        for (int i = 0; i < catalog.size; i++) {
+            if (catalog.views[i] != null) {
+                keys[count++] = catalog.bandValue(i, band, config.rowsPerBand) << 32 | i;
+            }
+        }
+        Arrays.parallelSort(keys, 0, count);
+
+        int[] buckets = new int[16];
+        int bucketCount = 0;
+        int start = 0;
+        for (int i = 1; i <= count; i++) {
+            if (i < count && keys[i] >>> 32 == keys[start] >>> 32) {
+                continue;
+            }
+            int size = i - start;
+            if (size > config.maxBucketSize) {
+                report.oversizedBuckets++;
+                report.skippedPairs += (long) size * (size - 1) / 2;
+                for (int k = start; k < i; k++) {
+                    catalog.skipped[band].set((int) keys[k]);
+                }
+            } else if (size > 1) {
+                if (bucketCount * 2 + 2 > buckets.length) {
+                    buckets = Arrays.copyOf(buckets, buckets.length * 2);
+                }
+                buckets[bucketCount * 2] = start;
+                buckets[bucketCount * 2 + 1] = i;
+                bucketCount++;
+            }
+            start = i;
+        }
+        return Arrays.copyOf(buckets, bucketCount * 2);
+    }
+
+    /**
+     * Verifies the pairs of a range of buckets; splits until a range holds about
+     * PAIRS_PER_TASK pairs
+     */
+    private final class BucketJoin extends RecursiveTask<JoinResult> {
+        private static final long serialVersionUID = 1L;
+
+        private final Catalog catalog;
+        private final int band;
+        private final long[] keys;
+        private final int[] buckets;
+        private final int from;
+        private final int to;
+
+        BucketJoin(Catalog catalog, int band, long[] keys, int[] buckets, int from, int to) {
+            this.catalog = catalog;
+            this.band = band;
+            this.keys = keys;
+            this.buckets = buckets;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected JoinResult compute() {
+            if (to - from > 1 && pairsIn(from, to) > PAIRS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                BucketJoin left = new BucketJoin(catalog, band, keys, buckets, from, middle);
+                left.fork();
+                JoinResult right = new BucketJoin(catalog, band, keys, buckets, middle, to).compute();
+                return left.join().merge(right);
+            }
+
+            JoinResult result = new JoinResult();
+            for (int bucket = from; bucket < to; bucket++) {
+                int end = buckets[bucket * 2 + 1];
+                for (int i = buckets[bucket * 2]; i < end; i++) {
+                    int a = (int) keys[i];
+                    for (int j = i + 1; j < end; j++) {
+                        verify(a, (int) keys[j], result);
+                    }
+                }
+            }
+            return result;
+        }
+
+        private void verify(int a, int b, JoinResult result) {
+            // Counted once, in the first band the pair shares and was joined in (an oversized
+            // bucket is skipped, so its pairs are left to later bands)
+            for (int earlier = 0; earlier < band; earlier++) {
+                if (catalog.bandValue(a, earlier, config.rowsPerBand) == catalog.bandValue(b, earlier, config.rowsPerBand)
+                        && !catalog.skipped[earlier].get(a)) {
+                    return;
+                }
+            }
+            result.candidates++;
+
+            int distance = catalog.hammingDistance(a, b);
+            if (distance > config.maxHammingDistance) {
+                return;
+            }
+            result.verified++;
+
+            ClothFeatureStore.RecordView first = catalog.views[a];
+            ClothFeatureStore.RecordView second = catalog.views[b];
+            double deepSimilarity = cosine(deepDot(first, second), catalog.deepNorms[a], catalog.deepNorms[b]);
+            if (deepSimilarity < config.minDeepSimilarity) {
+                return;
+            }
+            double histogramSimilarity = cosine(histogramDot(first, second),
+                    catalog.histogramNorms[a], catalog.histogramNorms[b]);
+            if (histogramSimilarity < config.minHistogramSimilarity) {
+                return;
+            }
+            result.duplicates.add(new DuplicatePair(a, b, deepSimilarity, histogramSimilarity, distance));
+        }
+
+        private long pairsIn(int fromBucket, int toBucket) {
+            long pairs = 0;
+            for (int bucket = fromBucket; bucket < toBucket && pairs <= PAIRS_PER_TASK; bucket++) {
+                long size = buckets[bucket * 2 + 1] - buckets[bucket * 2];
+                pairs += size * (size - 1) / 2;
+            }
+            return pairs;
+        }
+    }
+
+    // Group records and pairs by cluster root without a map of lists, then emit one at a time
+    private void emitClusters(Catalog catalog, UnionFind clusters, List<DuplicatePair> duplicates,
+                              Consumer<DuplicateCluster> clusterListener, DuplicateScanReport report) {
+        if (duplicates.isEmpty()) {
+            return;
+        }
+        int[] members = new int[catalog.size];
+        int memberCount = 0;
+        for (int i = 0; i < catalog.size; i++) {
+            if (catalog.views[i] != null && clusters.size(i) > 1) {
+                members[memberCount++] = i;
+            }
+        }
+        Integer[] order = new Integer[memberCount];
+        for (int i = 0; i < memberCount; i++) {
+            order[i] = members[i];
+        }
+        Arrays.sort(order, Comparator.comparingInt((Integer i) -> clusters.find(i)).thenComparingInt(i -> i));
+        duplicates.sort(Comparator.comparingInt((DuplicatePair pair) -> clusters.find(pair.first)));
+
+        int pairIndex = 0;
+        int start = 0;
+        while (start < memberCount) {
+            int root = clusters.find(order[start]);
+            int end = start;
+            DuplicateCluster cluster = new DuplicateCluster();
+            while (end < memberCount && clusters.find(order[end]) == root) {
+                cluster.clothIds.add(catalog.views[order[end]].clothId());
+                end++;
+            }
+            while (pairIndex < duplicates.size() && clusters.find(duplicates.get(pairIndex).first) == root) {
+                DuplicatePair pair = duplicates.get(pairIndex++);
+                pair.firstClothId = catalog.views[pair.first].clothId();
+                pair.secondClothId = catalog.views[pair.second].clothId();
+                cluster.pairs.add(pair);
+            }
+
+            report.clusters++;
+            report.clusteredRecords += cluster.clothIds.size();
+            report.largestCluster = Math.max(report.largestCluster, cluster.clothIds.size());
+            if (clusterListener != null) {
+                clusterListener.accept(cluster);
+            }
+            start = end;
+        }
+    }
+
+    private static double cosine(double dot, double normA, double normB) {
+        return normA > 0 && normB > 0 ? dot / (normA * normB) : 0.0;
+    }
+
+    private static double deepDot(ClothFeatureStore.RecordView a, ClothFeatureStore.RecordView b) {
+        double sum = 0.0;
+        for (int i = 0, n = a.deepFeatureCount(); i < n; i++) {
+            sum += a.deepFeature(i) * b.deepFeature(i);
+        }
+        return sum;
+    }
+
+    private static double histogramDot(ClothFeatureStore.RecordView a, ClothFeatureStore.RecordView b) {
+        double sum = 0.0;
+        for (int i = 0, n = a.colorHistogramCount(); i < n; i++) {
+            sum += a.colorHistogram(i) * b.colorHistogram(i);
+        }
+        return sum;
+    }
+
+    /**
+     * Everything the join reads, in flat arrays indexed by record number
+     */
+    private static final class Catalog {
+        final int size;
+        final ClothFeatureStore.RecordView[] views;
+        final long[] fingerprints;
+        final double[] deepNorms;
+        final double[] histogramNorms;
+        // Per band, the records that sat in an oversized (skipped) bucket
+        final BitSet[] skipped;
+
+        Catalog(int size, int bands) {
+            this.size = size;
+            this.views = new ClothFeatureStore.RecordView[size];
+            this.fingerprints = new long[size * PerceptualFingerprint.WORDS];
+            this.deepNorms = new double[size];
+            this.histogramNorms = new double[size];
+            this.skipped = new BitSet[bands];
+            for (int band = 0; band < bands; band++) {
+                skipped[band] = new BitSet();
+            }
+        }
+
+        // Bits [band * rows, (band + 1) * rows) of the fingerprint
+        long bandValue(int record, int band, int rows) {
+            int firstBit = band * rows;
+            int word = firstBit >>> 6;
+            int shift = firstBit & 63;
+            long bits = fingerprints[record * PerceptualFingerprint.WORDS + word] >>> shift;
+            if (shift + rows > 64 && word + 1 < PerceptualFingerprint.WORDS) {
+                bits |= fingerprints[record * PerceptualFingerprint.WORDS + word + 1] << (64 - shift);
+            }
+            return bits & ((1L << rows) - 1);
+        }
+
+        int hammingDistance(int a, int b) {
+            int distance = 0;
+            for (int w = 0; w < PerceptualFingerprint.WORDS; w++) {
+                distance += Long.bitCount(fingerprints[a * PerceptualFingerprint.WORDS + w]
+                        ^ fingerprints[b * PerceptualFingerprint.WORDS + w]);
+            }
+            return distance;
+        }
+    }
+
+    private static final class UnionFind {
+        private final int[] parent;
+        private final int[] size;
+
+        UnionFind(int count) {
+            parent = new int[count];
+            size = new int[count];
+            for (int i = 0; i < count; i++) {
+                parent[i] = i;
+                size[i] = 1;
+            }
+        }
+
+        int find(int i) {
+            while (parent[i] != i) {
+                parent[i] = parent[parent[i]];
+                i = parent[i];
+            }
+            return i;
+        }
+
+        void union(int a, int b) {
+            int rootA = find(a);
+            int rootB = find(b);
+            if (rootA == rootB) {
+                return;
+            }
+            if (size[rootA] < size[rootB]) {
+                int swap = rootA;
+                rootA = rootB;
+                rootB = swap;
+            }
+            parent[rootB] = rootA;
+            size[rootA] += size[rootB];
+        }
+
+        int size(int i) {
+            return size[find(i)];
+        }
+    }
+
+    private static final class JoinResult {
+        long candidates;
+        long verified;
+        List<DuplicatePair> duplicates = new ArrayList<>();
+
+        JoinResult merge(JoinResult other) {
+            candidates += other.candidates;
+            verified += other.verified;
+            duplicates.addAll(other.duplicates);
+            return this;
+        }
+    }
+
+    // Configuration and data classes
+    public static class Config {
+        public int bands = 12;
+        public int rowsPerBand = 20;
+        /** Buckets with more records are skipped (and counted in the report) */
+        public int maxBucketSize = 2_000;
+        /** Candidates further apart in the fingerprint are rejected without reading features */
+        public int maxHammingDistance = 48;
+        public double minDeepSimilarity = 0.98;
+        public double minHistogramSimilarity = 0.95;
+        /** Fork-join parallelism; 0 = the common pool */
+        public int parallelism = 0;
+    }
+
+    public static class DuplicatePair {
+        public String firstClothId;
+        public String secondClothId;
+        public double deepSimilarity;
+        public double histogramSimilarity;
+        public int hammingDistance;
+        transient int first;
+        transient int second;
+
+        DuplicatePair(int first, int second, double deepSimilarity, double histogramSimilarity, int hammingDistance) {
+            this.first = first;
+            this.second = second;
+            this.deepSimilarity = deepSimilarity;
+            this.histogramSimilarity = histogramSimilarity;
+            this.hammingDistance = hammingDistance;
+        }
+    }
+
+    public static class DuplicateCluster {
+        public final List<String> clothIds = new ArrayList<>();
+        /** The verified pairs that joined the cluster (a spanning set, not every pair) */
+        public final List<DuplicatePair> pairs = new ArrayList<>();
+    }
+
+    public static class DuplicateScanReport {
+        public int records;
+        public int bands;
+        public int rowsPerBand;
+        public long candidatePairs;
+        public long verifiedPairs;
+        public long duplicatePairs;
+        public long clusters;
+        public long clusteredRecords;
+        public int largestCluster;
+        public long oversizedBuckets;
+        public long skippedPairs;
+        public long allPairs;
+        public long signatureMillis;
+        public long joinMillis;
+        public long elapsedMillis;
+        public double pairsPerSecond;
+        public double effectivePairsPerSecond;
+
+        public void print() {
+            System.out.println("=".repeat(60));
+            System.out.println("🧬 NEAR-DUPLICATE SCAN");
+            System.out.println("=".repeat(60));
+            System.out.println(String.format("Records:            %,d (%d bands x %d bits)", records, bands, rowsPerBand));
+            System.out.println(String.format("Candidate pairs:    %,d of %,d (%.4f%%)", candidatePairs, allPairs,
+                    allPairs > 0 ? candidatePairs * 100.0 / allPairs : 0));
+            System.out.println(String.format("Feature-checked:    %,d", verifiedPairs));
+            System.out.println(String.format("Duplicate pairs:    %,d in %,d clusters (%,d records, largest %d)",
+                    duplicatePairs, clusters, clusteredRecords, largestCluster));
+            if (oversizedBuckets > 0) {
+                System.out.println(String.format("Skipped buckets:    %,d (%,d pairs)", oversizedBuckets, skippedPairs));
+            }
+            System.out.println(String.format("Time:               %,d ms (signatures %,d ms, join %,d ms)",
+                    elapsedMillis, signatureMillis, joinMillis));
+            System.out.println(String.format("Throughput:         %,.0f candidate pairs/s, %,.0f all-pairs equivalent/s",
+                    pairsPerSecond, effectivePairsPerSecond));
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.clothblockchain.extractor;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Measures ClothDuplicateFinder on a synthetic catalog with planted duplicates
+ *
+ * Writes a temporary feature store of synthetic records shaped like real ones (deep
+ * features clustered by fabric, per-item noise, random color histograms). It then adds
+ * groups of two to four near-copies of some records: re-registrations with a little
+ * extraction noise. After one scan it reports:
+ *   - candidate pairs versus all pairs, and the time spent,
+ *   - recall: the share of planted pairs that ended up in the same cluster,
+ *   - precision: the share of clustered records that belong to a planted group,
+ *   - pairs per second.
+ *
+ * Usage: ClothDuplicateScanDriver [records] [plantedGroups] [bands] [rowsPerBand] [copyNoise]
+ *
+ * @author ClothBlockchain Team
+ * @version 1.0
+ */
+public class ClothDuplicateScanDriver {
+
+    private static final int DEEP_DIMS = 256;
+    private static final int HISTOGRAM_DIMS = 96;
+    private static final int FABRICS = 200;
+
+    public static void main(String[] args) throws IOException {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int plantedGroups = args.length > 1 ? Integer.parseInt(args[1]) : records / 100;
+        ClothDuplicateFinder.Config config = new ClothDuplicateFinder.Config();
+        if (args.length > 3) {
+            config.bands = Integer.parseInt(args[2]);
+            config.rowsPerBand = Integer.parseInt(args[3]);
+        }
+        double copyNoise = args.length > 4 ? Double.parseDouble(args[4]) : 0.03;
+
+        Path directory = Files.createTempDirectory("cloth-duplicates");
+        try (ClothFeatureStore store = new ClothFeatureStore(directory, DEEP_DIMS, HISTOGRAM_DIMS)) {
+            System.out.println("🧬 Writing " + records + " records with " + plantedGroups + " planted duplicate groups...");
+            Map<String, Integer> plantedGroupOf = writeCatalog(store, records, plantedGroups, copyNoise);
+            store.flush();
+
+            Set<String> clustered = new HashSet<>();
+            long[] recoveredPairs = new long[1];
+            ClothDuplicateFinder finder = new ClothDuplicateFinder(store,
+                    new PerceptualFingerprint(DEEP_DIMS, HISTOGRAM_DIMS), config);
+            ClothDuplicateFinder.DuplicateScanReport report = finder.scan(cluster -> {
+                clustered.addAll(cluster.clothIds);
+                Map<Integer, Integer> perGroup = new HashMap<>();
+                for (String clothId : cluster.clothIds) {
+                    Integer group = plantedGroupOf.get(clothId);
+                    if (group != null) {
+                        perGroup.merge(group, 1, Integer::sum);
+                    }
+                }
+                for (int members : perGroup.values()) {
+                    recoveredPairs[0] += (long) members * (members - 1) / 2;
+                }
+            });
+            report.print();
+
+            Map<Integer, Integer> groupSizes = new HashMap<>();
+            for (int group : plantedGroupOf.values()) {
+                groupSizes.merge(group, 1, Integer::sum);
+            }
+            long plantedPairs = 0;
+            for (int size : groupSizes.values()) {
+                plantedPairs += (long) size * (size - 1) / 2;
+            }
+            long truePositives = clustered.stream().filter(plantedGroupOf::containsKey).count();
+            System.out.println(String.format("Recall:             %.4f of %,d planted pairs",
+                    plantedPairs > 0 ? (double) recoveredPairs[0] / plantedPairs : 1.0, plantedPairs));
+            System.out.println(String.format("Precision:          %.4f of %,d clustered records",
+                    clustered.isEmpty() ? 1.0 : (double) truePositives / clustered.size(), clustered.size()));
+        } finally {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /**
+     * Unique records first, then the planted copies (deep features with copyNoise added);
+     * returns clothId -> planted group
+     */
+    private static Map<String, Integer> writeCatalog(ClothFeatureStore store, int records, int plantedGroups,
+                                                     double copyNoise)
+            throws IOException {
+        Random random = new Random(42);
+        PerceptualFingerprint fingerprinter = new PerceptualFingerprint(DEEP_DIMS, HISTOGRAM_DIMS);
+        double[][] fabrics = new double[FABRICS][DEEP_DIMS];
+        for (double[] fabric : fabrics) {
+            for (int i = 0; i < DEEP_DIMS; i++) {
+                fabric[i] = Math.max(0.0, random.nextGaussian());
+            }
+        }
+
+        List<ClothFeatureExtractor.ClothDNA> originals = new ArrayList<>();
+        Map<String, Integer> plantedGroupOf = new HashMap<>();
+        for (int n = 0; n < records; n++) {
+            ClothFeatureExtractor.ClothDNA dna = syntheticDNA("cloth_" + n,
+                    perturb(fabrics[random.nextInt(FABRICS)], 0.35, random), randomHistogram(random), random);
+            put(store, fingerprinter, dna);
+            if (n < plantedGroups) {
+                originals.add(dna);
+                plantedGroupOf.put(dna.clothId, n);
+            }
+        }
+        for (int group = 0; group < originals.size(); group++) {
+            ClothFeatureExtractor.ClothDNA original = originals.get(group);
+            int copies = 1 + random.nextInt(3);
+            for (int c = 0; c < copies; c++) {
+                ClothFeatureExtractor.ClothDNA copy = syntheticDNA(original.clothId + "_copy" + c,
+                        perturb(original.deepFeatures, copyNoise, random),
+                        perturb(original.traditionalFeatures.colorHistogram, 0.002, random), random);
+                copyScalars(original.traditionalFeatures, copy.traditionalFeatures);
+                put(store, fingerprinter, copy);
+                plantedGroupOf.put(copy.clothId, group);
+            }
+        }
+        return plantedGroupOf;
+    }
+
+    private static void put(ClothFeatureStore store, PerceptualFingerprint fingerprinter,
+                            ClothFeatureExtractor.ClothDNA dna) throws IOException {
+        ClothFeatureExtractor.BlockchainRecord record = new ClothFeatureExtractor.BlockchainRecord();
+        record.clothId = dna.clothId;
+        record.fingerprint = PerceptualFingerprint.toHex(fingerprinter.compute(dna));
+        store.put(dna, record);
+    }
+
+    private static ClothFeatureExtractor.ClothDNA syntheticDNA(String clothId, double[] deepFeatures,
+                                                               double[] colorHistogram, Random random) {
+        ClothFeatureExtractor.ClothDNA dna = new ClothFeatureExtractor.ClothDNA();
+        dna.clothId = clothId;
+        dna.timestamp = "2024-01-01T00:00:00";
+        dna.featureExtractionVersion = ClothFeatureExtractor.FEATURE_EXTRACTION_VERSION;
+        dna.imageDimensions = new int[]{224, 224, 3};
+        dna.deepFeatures = deepFeatures;
+
+        ClothFeatureExtractor.TraditionalFeatures tf = new ClothFeatureExtractor.TraditionalFeatures();
+        tf.avgBGR = new double[]{random.nextInt(256), random.nextInt(256), random.nextInt(256)};
+        tf.avgHSV = new double[]{random.nextInt(180), random.nextInt(256), random.nextInt(256)};
+        tf.textureKeypoints = random.nextInt(500);
+        tf.edgeDensity = random.nextDouble() * 0.3;
+        tf.gradientMean = random.nextDouble() * 60;
+        tf.gradientStd = random.nextDouble() * 40;
+        tf.brightnessMean = random.nextDouble() * 255;
+        tf.brightnessStd = random.nextDouble() * 60;
+        tf.contrast = random.nextDouble() * 2000;
+        tf.colorHistogram = colorHistogram;
+        dna.traditionalFeatures = tf;
+        return dna;
+    }
+
+    private static void copyScalars(ClothFeatureExtractor.TraditionalFeatures from,
+                                    ClothFeatureExtractor.TraditionalFeatures to) {
+        to.avgBGR = from.avgBGR.clone();
+        to.avgHSV = from.avgHSV.clone();
+        to.textureKeypoints = from.textureKeypoints;
+        to.edgeDensity = from.edgeDensity;
+        to.gradientMean = from.gradientMean;
+        to.gradientStd = from.gradientStd;
+        to.brightnessMean = from.brightnessMean;
+        to.brightnessStd = from.brightnessStd;
+        to.contrast = from.contrast;
+    }
+
+    private static double[] randomHistogram(Random random) {
+        double[] histogram = new double[HISTOGRAM_DIMS];
+        for (int channel = 0; channel < 3; channel++) {
+            double total = 0;
+            for (int i = 0; i < 32; i++) {
+                histogram[channel * 32 + i] = Math.pow(random.nextDouble(), 3);
+                total += histogram[channel * 32 + i];
+            }
+            for (int i = 0; i < 32; i++) {
+                histogram[channel * 32 + i] /= total;
+            }
+        }
+        return histogram;
+    }
+
+    private static double[] perturb(double[] base, double noise, Random random) {
+        double[] vector = new double[base.length];
+        for (int i = 0; i < base.length; i++) {
+            vector[i] = Math.max(0.0, base[i] + noise * random.nextGaussian());
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,185 @@
+package com.clothblockchain.extractor.benchmark;
+
+import com.clothblockchain.extractor.ClothFeatureExtractor;
+import com.clothblockchain.extractor.ClothFeatureExtractor.BlockchainRecord;
+import com.clothblockchain.extractor.ClothFeatureExtractor.ClothDNA;
+import org.opencv.core.*;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * JMH benchmarks for every stage of the extraction and hashing pipeline
+ *
+ * Images are generated (seeded noise, weave-like stripes and blur) so no data set is needed.
+ * Each trial runs against a fresh database in a temp directory. The extractor's per-image
+ * logging is at debug level, so it is off at the default log level and costs nothing here.
+ *
+ * Run with:
+ *   java -jar target/benchmarks.jar                     (throughput)
+ *   java -jar target/benchmarks.jar -prof gc            (plus allocation rate per op)
+ *   java -jar target/benchmarks.jar -rf json -rff results.json
+ *
+ * @author ClothBlockchain Team
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dfile.encoding=UTF-8"})
+public class ClothExtractorBenchmark {
+
+    private static final int BATCH_SIZE = 16;
+
+    static {
+        nu.pattern.OpenCV.loadShared();
+    }
+
+    @State(Scope.Benchmark)
+    public static class ExtractorState {
+        ClothFeatureExtractor extractor;
+        Path databaseDirectory;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            databaseDirectory = Files.createTempDirectory("cloth-benchmark");
+            extractor = new ClothFeatureExtractor(databaseDirectory);
+            extractor.warmUp();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            extractor.close();
+            deleteRecursively(databaseDirectory);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ImageFileState {
+        @Param({"640x480", "1920x1080", "4032x3024"})
+        String resolution;
+
+        Path imageFile;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            String[] size = resolution.split("x");
+            Mat image = syntheticCloth(Integer.parseInt(size[0]), Integer.parseInt(size[1]), 42);
+            imageFile = Files.createTempFile("cloth-benchmark-" + resolution, ".jpg");
+            Imgcodecs.imwrite(imageFile.toString(), image);
+            image.release();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(imageFile);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class FeatureState {
+        Mat image;
+        List<Mat> batch;
+        ClothDNA clothDNA;
+        BlockchainRecord blockchainRecord;
+        long nextClothId;
+
+        @Setup(Level.Trial)
+        public void setUp(ExtractorState state) throws Exception {
+            image = syntheticCloth(224, 224, 7);
+            batch = new ArrayList<>();
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                batch.add(syntheticCloth(224, 224, 100 + i));
+            }
+            clothDNA = state.extractor.createClothDigitalDNA(image, "benchmark-cloth");
+            blockchainRecord = state.extractor.generateBlockchainHash(clothDNA);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            image.release();
+            for (Mat mat : batch) {
+                mat.release();
+            }
+        }
+    }
+
+    @Benchmark
+    public void preprocessClothImage(ExtractorState state, ImageFileState file, Blackhole blackhole) throws IOException {
+        Mat processed = state.extractor.preprocessClothImage(file.imageFile.toString());
+        blackhole.consume(processed.rows());
+        processed.release();
+    }
+
+    @Benchmark
+    public ClothFeatureExtractor.TraditionalFeatures extractTraditionalFeatures(ExtractorState state, FeatureState features) {
+        return state.extractor.extractTraditionalFeatures(features.image);
+    }
+
+    @Benchmark
+    public double[] extractDeepFeaturesSingle(ExtractorState state, FeatureState features) {
+        return state.extractor.extractDeepFeatures(features.image);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public double[][] extractDeepFeaturesBatched(ExtractorState state, FeatureState features) {
+        return state.extractor.extractDeepFeatures(features.batch);
+    }
+
+    @Benchmark
+    public BlockchainRecord generateBlockchainHash(ExtractorState state, FeatureState features) throws Exception {
+        return state.extractor.generateBlockchainHash(features.clothDNA);
+    }
+
+    @Benchmark
+    public void storeClothData(ExtractorState state, FeatureState features) throws IOException {
+        // A new id every time: measures appends to a growing catalog, not replacements
+        String clothId = "benchmark-" + features.nextClothId++;
+        features.clothDNA.clothId = clothId;
+        features.blockchainRecord.clothId = clothId;
+        state.extractor.storeClothData(features.clothDNA, features.blockchainRecord);
+    }
+
+    /**
+     * Fabric-like test image: seeded noise, a regular weave of stripes, then a light blur
+     */
+    static Mat syntheticCloth(int width, int height, int seed) {
+        Core.setRNGSeed(seed);
+        Mat image = new Mat(height, width, CvType.CV_8UC3);
+        Core.randu(image, 0, 256);
+
+        Scalar warp = new Scalar(40 + seed % 150, 90, 160);
+        Scalar weft = new Scalar(200, 60 + seed % 120, 30);
+        int pitch = Math.max(4, width / 80);
+        for (int x = 0; x < width; x += pitch) {
+            Imgproc.line(image, new Point(x, 0), new Point(x, height), warp, Math.max(1, pitch / 3));
+        }
+        for (int y = 0; y < height; y += pitch) {
+            Imgproc.line(image, new Point(0, y), new Point(width, y), weft, Math.max(1, pitch / 3));
+        }
+        Imgproc.GaussianBlur(image, image, new Size(3, 3), 0);
+        return image;
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.clothblockchain.extractor;
+
+import com.clothblockchain.extractor.ClothFeatureExtractor.BlockchainRecord;
+import com.clothblockchain.extractor.ClothFeatureExtractor.ClothDNA;
+import org.opencv.core.*;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Hammers one shared ClothFeatureExtractor from many threads
+ *
+ * Every task preprocesses an image, extracts its DNA, hashes, stores and looks it up again,
+ * and checks the features against a single-threaded reference run. The run is repeated at
+ * 1, 2, 4, ... threads up to the requested maximum and prints throughput for each; any
+ * mismatch, exception or lost record fails the run with exit code 1.
+ *
+ * Usage: ClothExtractorStressDriver [maxThreads] [tasksPerRun] [imageDirectory]
+ * Without an image directory, synthetic cloth images are generated.
+ *
+ * @author ClothBlockchain Team
+ * @version 1.0
+ */
+public class ClothExtractorStressDriver {
+
+    private static final int SYNTHETIC_IMAGES = 8;
+
+    static {
+        nu.pattern.OpenCV.loadShared();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors() * 2;
+        int tasksPerRun = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+
+        Path databaseDirectory = Files.createTempDirectory("cloth-stress");
+        Path imageDirectory = args.length > 2 ? Paths.get(args[2]) : writeSyntheticImages(databaseDirectory.resolve("images"));
+        List<Path> images = listImages(imageDirectory);
+        if (images.isEmpty()) {
+            throw new IllegalArgumentException("No images in " + imageDirectory);
+        }
+
+        boolean passed = true;
+        try (ClothFeatureExtractor extractor = new ClothFeatureExtractor(databaseDirectory.resolve("db"))) {
+            extractor.warmUp();
+
+            // Single-threaded reference features for every image
+            Map<Path, ClothDNA> reference = new HashMap<>();
+            for (Path image : images) {
+                Mat processed = extractor.preprocessClothImage(image.toString());
+                reference.put(image, extractor.createClothDigitalDNA(processed, "reference"));
+                processed.release();
+            }
+
+            System.out.println("🔨 Stress run: " + images.size() + " images, " + tasksPerRun + " tasks per run, " +
+                    extractor.getModelReplicas() + " model replicas, " + Runtime.getRuntime().availableProcessors() + " cores");
+            long stored = 0;
+            double baseline = 0;
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                RunResult result = run(extractor, images, reference, threads, tasksPerRun);
+                stored += result.completed;
+                if (threads == 1) {
+                    baseline = result.throughput;
+                }
+                System.out.println(String.format("  threads=%-3d %7.1f cloths/sec  (x%.2f)  failures=%d",
+                        threads, result.throughput, result.throughput / baseline, result.failures));
+                for (String failure : result.failureMessages) {
+                    System.out.println("    ❌ " + failure);
+                }
+                passed &= result.failures == 0;
+            }
+
+            int inStore = extractor.getFeatureStore().size();
+            if (inStore != stored) {
+                System.out.println("❌ Store holds " + inStore + " records, expected " + stored);
+                passed = false;
+            }
+        } finally {
+            deleteRecursively(databaseDirectory);
+        }
+
+        System.out.println(passed ? "✅ Stress run passed" : "❌ Stress run failed");
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    private static RunResult run(ClothFeatureExtractor extractor, List<Path> images, Map<Path, ClothDNA> reference,
+                                 int threads, int tasks) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch startSignal = new CountDownLatch(1);
+        AtomicInteger completed = new AtomicInteger();
+        AtomicLong failures = new AtomicLong();
+        Queue<String> failureMessages = new ConcurrentLinkedQueue<>();
+
+        for (int task = 0; task < tasks; task++) {
+            Path image = images.get(task % images.size());
+            String clothId = "stress-" + threads + "-" + task;
+            pool.execute(() -> {
+                try {
+                    startSignal.await();
+                    String problem = exercise(extractor, image, clothId, reference.get(image));
+                    if (problem == null) {
+                        completed.incrementAndGet();
+                    } else {
+                        failures.incrementAndGet();
+                        failureMessages.add(clothId + ": " + problem);
+                    }
+                } catch (Exception | AssertionError e) {
+                    failures.incrementAndGet();
+                    failureMessages.add(clothId + ": " + e);
+                }
+            });
+        }
+
+        long start = System.nanoTime();
+        startSignal.countDown();
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.HOURS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        RunResult result = new RunResult();
+        result.completed = completed.get();
+        result.failures = failures.get();
+        result.throughput = result.completed / seconds;
+        result.failureMessages = failureMessages;
+        return result;
+    }
+
+    /**
+     * One full round trip for an image; returns a description of the first problem, or null
+     */
+    private static String exercise(ClothFeatureExtractor extractor, Path image, String clothId, ClothDNA expected)
+            throws Exception {
+        Mat processed = extractor.preprocessClothImage(image.toString());
+        ClothDNA clothDNA;
+        try {
+            clothDNA = extractor.createClothDigitalDNA(processed, clothId);
+        } finally {
+            processed.release();
+        }
+
+        if (!Arrays.equals(clothDNA.deepFeatures, expected.deepFeatures)) {
+            return "deep features differ from the single-threaded run";
+        }
+        if (!Arrays.equals(clothDNA.traditionalFeatures.colorHistogram, expected.traditionalFeatures.colorHistogram) ||
+                clothDNA.traditionalFeatures.textureKeypoints != expected.traditionalFeatures.textureKeypoints ||
+                clothDNA.traditionalFeatures.edgeDensity != expected.traditionalFeatures.edgeDensity) {
+            return "traditional features differ from the single-threaded run";
+        }
+
+        BlockchainRecord record = extractor.generateBlockchainHash(clothDNA);
+        extractor.storeClothData(clothDNA, record);
+
+        ClothFeatureExtractor.ClothData stored = extractor.getClothData(clothId);
+        if (stored == null || !record.hash.equals(stored.blockchainRecord.hash)) {
+            return "stored record missing or hash changed";
+        }
+        if (extractor.getFeatureStore().get(clothId) == null) {
+            return "record not in the feature store";
+        }
+        return null;
+    }
+
+    static Path writeSyntheticImages(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        for (int i = 0; i < SYNTHETIC_IMAGES; i++) {
+            Core.setRNGSeed(i);
+            Mat image = new Mat(480, 640, CvType.CV_8UC3);
+            Core.randu(image, 0, 256);
+            Scalar stripe = new Scalar(30 * i % 256, 120, 200 - 20 * i);
+            for (int x = 0; x < image.cols(); x += 8 + i) {
+                Imgproc.line(image, new Point(x, 0), new Point(x, image.rows()), stripe, 2);
+            }
+            Imgproc.GaussianBlur(image, image, new Size(3, 3), 0);
+            Imgcodecs.imwrite(directory.resolve("synthetic_" + i + ".jpg").toString(), image);
+            image.release();
+        }
+        return directory;
+    }
+
+    static List<Path> listImages(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            List<Path> images = new ArrayList<>();
+            paths.filter(path -> path.toString().toLowerCase(Locale.ROOT).matches(".*\\.(jpe?g|png|bmp)"))
+                    .sorted()
+                    .forEach(images::add);
+            return images;
+        }
+    }
+
+    static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private static class RunResult {
+        int completed;
+        long failures;
+        double throughput;
+        Collection<String> failureMessages;
+    }
+}
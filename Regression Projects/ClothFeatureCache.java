@@ -0,0 +1,753 @@
+package com.clothblockchain.extractor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+
+/**
+ * Content-addressed cache of extracted features, keyed by the encoded image bytes
+ *
+ * The key is the SHA-256 of the raw file or upload bytes plus their length, and a hit
+ * compares the full digest. Uploads come from outside (/verify), so a short or unkeyed
+ * hash would let a crafted image collide with a stored one and pick up its features.
+ * Disk records carry the feature extraction version, so features from an older pipeline
+ * are never returned. A hit hands back what decode + CNN + OpenCV would have produced (deep features,
+ * traditional features, processed image dimensions) without decoding the image at all.
+ *
+ * The memory tier is bounded by a byte budget and evicts W-TinyLFU style. New entries enter
+ * a small LRU window. An entry pushed out of the window only moves into the main area
+ * (segmented LRU: probation and protected) if a count-min sketch has seen it requested more
+ * often than the entry it would displace. A burst of one-off images therefore cannot flush
+ * the scans that are verified again and again.
+ *
+ * The optional disk tier is an append-only log that survives restarts. It keeps two
+ * generations of half the disk budget each. When the current log is full it becomes the
+ * previous one and the older log is deleted. A hit in the previous generation is copied
+ * forward, so entries still in use survive the rotation.
+ *
+ * Thread-safe. Hashing and copying happen outside the lock; a memory hit takes a few
+ * microseconds plus the time to hash the bytes.
+ *
+ * @author ClothBlockchain Team
+ * @version 1.0
+ */
+public class ClothFeatureCache implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ClothFeatureCache.class);
+
+    public static final long DEFAULT_MAX_MEMORY_BYTES = 64L * 1024 * 1024;
+
+    // Share of the memory budget for the admission window and, of the rest, for protected entries
+    private static final double WINDOW_SHARE = 0.01;
+    private static final double PROTECTED_SHARE = 0.8;
+
+    // Rough heap size of an entry with 256 deep features and a 96-bin histogram, for sizing the sketch
+    private static final int TYPICAL_ENTRY_BYTES = 3 * 1024;
+
+    private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(ClothFeatureCache::newDigest);
+
+    private final long maxMemoryBytes;
+    private final long maxWindowBytes;
+    private final long maxProtectedBytes;
+    private final FrequencySketch sketch;
+    private final DiskTier disk;
+
+    // Access order is kept by hand: remove + put moves an entry to the most recently used end
+    private final LinkedHashMap<Key, Node> window = new LinkedHashMap<>();
+    private final LinkedHashMap<Key, Node> probation = new LinkedHashMap<>();
+    private final LinkedHashMap<Key, Node> protectedArea = new LinkedHashMap<>();
+    private long windowBytes;
+    private long probationBytes;
+    private long protectedBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Memory-only cache
+     */
+    public ClothFeatureCache(long maxMemoryBytes) {
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxWindowBytes = Math.max(TYPICAL_ENTRY_BYTES, (long) (maxMemoryBytes * WINDOW_SHARE));
+        this.maxProtectedBytes = (long) ((maxMemoryBytes - maxWindowBytes) * PROTECTED_SHARE);
+        this.sketch = new FrequencySketch((int) Math.min(1 << 24, Math.max(64, maxMemoryBytes / TYPICAL_ENTRY_BYTES)));
+        this.disk = null;
+    }
+
+    /**
+     * Memory cache backed by a persistent log in diskDirectory of at most maxDiskBytes
+     */
+    public ClothFeatureCache(long maxMemoryBytes, Path diskDirectory, long maxDiskBytes) throws IOException {
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxWindowBytes = Math.max(TYPICAL_ENTRY_BYTES, (long) (maxMemoryBytes * WINDOW_SHARE));
+        this.maxProtectedBytes = (long) ((maxMemoryBytes - maxWindowBytes) * PROTECTED_SHARE);
+        this.sketch = new FrequencySketch((int) Math.min(1 << 24, Math.max(64, maxMemoryBytes / TYPICAL_ENTRY_BYTES)));
+        this.disk = new DiskTier(diskDirectory, maxDiskBytes / 2);
+    }
+
+    /**
+     * Cache key for an encoded image (the bytes exactly as read from disk or the network)
+     */
+    public Key keyFor(byte[] encodedImage) {
+        return keyFor(encodedImage, 0, encodedImage.length);
+    }
+
+    public Key keyFor(byte[] encodedImage, int offset, int length) {
+        MessageDigest digest = DIGESTS.get();
+        digest.update(encodedImage, offset, length);
+        return new Key(digest.digest(), length);
+    }
+
+    /**
+     * Features cached for the key (a private copy), or null on a miss
+     */
+    public Features get(Key key) {
+        Features found;
+        synchronized (this) {
+            sketch.increment(key.hash);
+            Node node = touch(key);
+            found = node != null ? node.features : null;
+        }
+        if (found != null) {
+            hits.increment();
+            return found.copy();
+        }
+
+        if (disk != null) {
+            found = disk.read(key);
+            if (found != null) {
+                diskHits.increment();
+                synchronized (this) {
+                    insert(key, found);
+                }
+                return found.copy();
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Cache the features extracted for the key's image (copied, so the caller keeps ownership)
+     */
+    public void put(Key key, Features features) {
+        Features copy = features.copy();
+        puts.increment();
+        synchronized (this) {
+            insert(key, copy);
+        }
+        if (disk != null) {
+            disk.append(key, copy);
+        }
+    }
+
+    public synchronized void clear() {
+        window.clear();
+        probation.clear();
+        protectedArea.clear();
+        windowBytes = probationBytes = protectedBytes = 0;
+    }
+
+    public Stats stats() {
+        Stats stats = new Stats();
+        synchronized (this) {
+            stats.entries = window.size() + probation.size() + protectedArea.size();
+            stats.memoryBytes = windowBytes + probationBytes + protectedBytes;
+        }
+        stats.maxMemoryBytes = maxMemoryBytes;
+        stats.hits = hits.sum();
+        stats.diskHits = diskHits.sum();
+        stats.misses = misses.sum();
+        stats.puts = puts.sum();
+        stats.evictions = evictions.sum();
+        if (disk != null) {
+            disk.fillStats(stats);
+        }
+        return stats;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (disk != null) {
+            disk.close();
+        }
+    }
+
+    // Memory tier (caller holds the lock)
+
+    private Node touch(Key key) {
+        Node node = window.remove(key);
+        if (node != null) {
+            window.put(key, node);
+            return node;
+        }
+        node = protectedArea.remove(key);
+        if (node != null) {
+            protectedArea.put(key, node);
+            return node;
+        }
+        node = probation.remove(key);
+        if (node != null) {
+            // Second access: promote, demoting the coldest protected entries if protected is full
+            probationBytes -= node.weight;
+            protectedArea.put(key, node);
+            protectedBytes += node.weight;
+            while (protectedBytes > maxProtectedBytes && protectedArea.size() > 1) {
+                Node demoted = removeEldest(protectedArea);
+                protectedBytes -= demoted.weight;
+                probation.put(demoted.key, demoted);
+                probationBytes += demoted.weight;
+            }
+        }
+        return node;
+    }
+
+    private void insert(Key key, Features features) {
+        Node node = new Node(key, features);
+        if (replace(window, key, node)) {
+            windowBytes += node.weight;
+        } else if (replace(probation, key, node)) {
+            probationBytes += node.weight;
+        } else if (replace(protectedArea, key, node)) {
+            protectedBytes += node.weight;
+        } else {
+            window.put(key, node);
+            windowBytes += node.weight;
+        }
+
+        while (windowBytes > maxWindowBytes && !window.isEmpty()) {
+            Node candidate = removeEldest(window);
+            windowBytes -= candidate.weight;
+            admit(candidate);
+        }
+    }
+
+    private boolean replace(LinkedHashMap<Key, Node> area, Key key, Node node) {
+        Node old = area.get(key);
+        if (old == null) {
+            return false;
+        }
+        area.put(key, node);
+        if (area == window) {
+            windowBytes -= old.weight;
+        } else if (area == probation) {
+            probationBytes -= old.weight;
+        } else {
+            protectedBytes -= old.weight;
+        }
+        return true;
+    }
+
+    /**
+     * TinyLFU admission: a window evictee replaces the main area's LRU victim only if it is
+     * requested more often; otherwise the evictee itself is dropped
+     */
+    private void admit(Node candidate) {
+        long maxMainBytes = maxMemoryBytes - maxWindowBytes;
+        if (probationBytes + protectedBytes + candidate.weight > maxMainBytes) {
+            Node victim = eldest(probation.isEmpty() ? protectedArea : probation);
+            if (victim == null || sketch.frequency(candidate.key.hash) <= sketch.frequency(victim.key.hash)) {
+                evictions.increment();
+                return;
+            }
+        }
+
+        probation.put(candidate.key, candidate);
+        probationBytes += candidate.weight;
+        while (probationBytes + protectedBytes > maxMainBytes) {
+            LinkedHashMap<Key, Node> area = probation.size() > 1 || protectedArea.isEmpty() ? probation : protectedArea;
+            Node evicted = removeEldest(area);
+            if (area == probation) {
+                probationBytes -= evicted.weight;
+            } else {
+                protectedBytes -= evicted.weight;
+            }
+            evictions.increment();
+        }
+    }
+
+    private static Node eldest(LinkedHashMap<Key, Node> area) {
+        Iterator<Node> iterator = area.values().iterator();
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    private static Node removeEldest(LinkedHashMap<Key, Node> area) {
+        Iterator<Node> iterator = area.values().iterator();
+        Node node = iterator.next();
+        iterator.remove();
+        return node;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Count-min sketch of 4-bit counters (16 per long, 4 rows hashed into one table). All
+     * counters are halved every 10 x table size increments, so old popularity fades out.
+     */
+    static final class FrequencySketch {
+        private static final long[] SEEDS = {0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final long[] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int expectedEntries) {
+            int size = Integer.highestOneBit(Math.max(expectedEntries, 64) - 1) << 1;
+            this.table = new long[size];
+            this.mask = size - 1;
+            this.sampleSize = 10 * size;
+        }
+
+        int frequency(long hash) {
+            int frequency = 15;
+            for (int row = 0; row < 4; row++) {
+                long slot = slot(hash, row);
+                frequency = Math.min(frequency, (int) ((table[(int) slot] >>> (slot >>> 32)) & 0xF));
+            }
+            return frequency;
+        }
+
+        void increment(long hash) {
+            boolean added = false;
+            for (int row = 0; row < 4; row++) {
+                long slot = slot(hash, row);
+                int index = (int) slot;
+                int shift = (int) (slot >>> 32);
+                if (((table[index] >>> shift) & 0xF) < 15) {
+                    table[index] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (table[i] >>> 1) & RESET_MASK;
+                }
+                additions /= 2;
+            }
+        }
+
+        // Table index in the low 32 bits, bit shift of the 4-bit counter in the high bits
+        private long slot(long hash, int row) {
+            long h = (hash + SEEDS[row]) * SEEDS[row];
+            h ^= h >>> 29;
+            int index = (int) h & mask;
+            long shift = ((h >>> 40) & 0xF) << 2;
+            return shift << 32 | index;
+        }
+    }
+
+    /**
+     * Append-only persistent tier in two generations: cache-NNNNNN.log files, newest is current
+     *
+     * Record: int magic, int payload length, payload, int CRC32 of the payload. The payload is
+     * key digest, key length, feature extraction version and the features; see writePayload.
+     * Logs of the older XXH64-keyed format have another magic and are dropped on open.
+     * A torn record at the end of the current log (crash mid-write) is truncated on open.
+     */
+    private static final class DiskTier implements Closeable {
+        private static final int RECORD_MAGIC = 0x43464332; // "CFC2"
+        private static final int XXH64_RECORD_MAGIC = 0x43464352; // "CFCR", keyed on XXH64
+        private static final int RECORD_OVERHEAD = 12;
+
+        private final Path directory;
+        private final long maxGenerationBytes;
+        private Generation current;
+        private Generation previous;
+        private ByteBuffer buffer = ByteBuffer.allocate(4096);
+        private final CRC32 crc = new CRC32();
+
+        DiskTier(Path directory, long maxGenerationBytes) throws IOException {
+            this.directory = directory;
+            this.maxGenerationBytes = maxGenerationBytes;
+            Files.createDirectories(directory);
+
+            List<Path> logs = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "cache-*.log")) {
+                stream.forEach(logs::add);
+            }
+            Collections.sort(logs);
+            for (int i = 0; i < logs.size() - 2; i++) {
+                Files.deleteIfExists(logs.get(i));
+            }
+            if (logs.size() >= 2) {
+                previous = open(logs.get(logs.size() - 2));
+            }
+            current = logs.isEmpty() ? create(1) : open(logs.get(logs.size() - 1));
+            log.info("💾 Feature cache disk tier: {} entries in {}", current.index.size()
+                    + (previous != null ? previous.index.size() : 0), directory);
+        }
+
+        synchronized Features read(Key key) {
+            try {
+                Long offset = current.index.get(key);
+                if (offset != null) {
+                    return readRecord(current, offset);
+                }
+                offset = previous != null ? previous.index.get(key) : null;
+                if (offset != null) {
+                    Features features = readRecord(previous, offset);
+                    if (features != null) {
+                        appendRecord(key, features); // keep it alive past the next rotation
+                    }
+                    return features;
+                }
+            } catch (IOException e) {
+                log.warn("Feature cache read failed: {}", e.getMessage());
+            }
+            return null;
+        }
+
+        synchronized void append(Key key, Features features) {
+            if (current.index.containsKey(key)) {
+                return;
+            }
+            try {
+                appendRecord(key, features);
+            } catch (IOException e) {
+                log.warn("Feature cache write failed: {}", e.getMessage());
+            }
+        }
+
+        synchronized void fillStats(Stats stats) {
+            stats.diskEntries = current.index.size() + (previous != null ? previous.index.size() : 0);
+            stats.diskBytes = current.size + (previous != null ? previous.size : 0);
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            try {
+                current.channel.close();
+            } finally {
+                if (previous != null) {
+                    previous.channel.close();
+                }
+            }
+        }
+
+        private void appendRecord(Key key, Features features) throws IOException {
+            buffer.clear();
+            buffer.position(8);
+            writePayload(key, features);
+            int payloadLength = buffer.position() - 8;
+            crc.reset();
+            crc.update(buffer.array(), 8, payloadLength);
+            ensureCapacity(4);
+            buffer.putInt((int) crc.getValue());
+            buffer.putInt(0, RECORD_MAGIC);
+            buffer.putInt(4, payloadLength);
+            buffer.flip();
+
+            if (current.size + buffer.remaining() > maxGenerationBytes && current.size > 0) {
+                rotate();
+            }
+            long offset = current.size;
+            while (buffer.hasRemaining()) {
+                current.channel.write(buffer, current.size + buffer.position());
+            }
+            current.size += buffer.limit();
+            current.index.put(key, offset);
+        }
+
+        private Features readRecord(Generation generation, long offset) throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(8);
+            readFully(generation.channel, header, offset);
+            int payloadLength = header.getInt(4);
+            ByteBuffer payload = ByteBuffer.allocate(payloadLength);
+            readFully(generation.channel, payload, offset + 8);
+            payload.flip();
+            payload.position(Key.DIGEST_BYTES + 4); // key digest and length were checked when the log was indexed
+            readString(payload);
+            return readFeatures(payload);
+        }
+
+        private void rotate() throws IOException {
+            if (previous != null) {
+                previous.channel.close();
+                Files.deleteIfExists(previous.path);
+            }
+            previous = current;
+            current = create(previous.number + 1);
+            log.debug("Feature cache rotated to {}", current.path.getFileName());
+        }
+
+        private Generation create(int number) throws IOException {
+            Path path = directory.resolve(String.format("cache-%06d.log", number));
+            return new Generation(number, path, FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE));
+        }
+
+        /**
+         * Index every intact record of this version; stop (and truncate) at the first torn one
+         */
+        private Generation open(Path path) throws IOException {
+            String name = path.getFileName().toString();
+            int number = Integer.parseInt(name.substring("cache-".length(), name.length() - ".log".length()));
+            Generation generation = new Generation(number, path,
+                    FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE));
+            String version = ClothFeatureExtractor.FEATURE_EXTRACTION_VERSION;
+            long fileSize = generation.channel.size();
+            ByteBuffer header = ByteBuffer.allocate(8);
+            long offset = 0;
+            while (offset + RECORD_OVERHEAD <= fileSize) {
+                header.clear();
+                readFully(generation.channel, header, offset);
+                int payloadLength = header.getInt(4);
+                if (header.getInt(0) != RECORD_MAGIC || payloadLength <= 0
+                        || offset + RECORD_OVERHEAD + payloadLength > fileSize) {
+                    break;
+                }
+                ByteBuffer payload = ByteBuffer.allocate(payloadLength + 4);
+                readFully(generation.channel, payload, offset + 8);
+                crc.reset();
+                crc.update(payload.array(), 0, payloadLength);
+                if ((int) crc.getValue() != payload.getInt(payloadLength)) {
+                    break;
+                }
+                payload.flip();
+                byte[] digest = new byte[Key.DIGEST_BYTES];
+                payload.get(digest);
+                Key key = new Key(digest, payload.getInt());
+                if (version.equals(readString(payload))) {
+                    generation.index.put(key, offset);
+                }
+                offset += RECORD_OVERHEAD + payloadLength;
+            }
+            if (offset == 0 && fileSize >= RECORD_OVERHEAD && header.getInt(0) == XXH64_RECORD_MAGIC) {
+                log.info("Feature cache {}: dropping a log of the older XXH64-keyed format", name);
+                generation.channel.truncate(0);
+            } else if (offset < fileSize) {
+                log.warn("Feature cache {}: dropping {} bytes after the last intact record", name, fileSize - offset);
+                generation.channel.truncate(offset);
+            }
+            generation.size = offset;
+            return generation;
+        }
+
+        // Payload layout, big-endian like the rest of the store formats
+
+        private void writePayload(Key key, Features features) {
+            ClothFeatureExtractor.TraditionalFeatures traditional = features.traditionalFeatures;
+            ensureCapacity(64 + 8 * (features.deepFeatures.length + traditional.colorHistogram.length + 32));
+            buffer.put(key.digest);
+            buffer.putInt(key.length);
+            byte[] version = ClothFeatureExtractor.FEATURE_EXTRACTION_VERSION.getBytes(StandardCharsets.UTF_8);
+            buffer.putShort((short) version.length);
+            buffer.put(version);
+            putInts(features.imageDimensions);
+            putDoubles(features.deepFeatures);
+            putDoubles(traditional.avgBGR);
+            putDoubles(traditional.avgHSV);
+            putDoubles(traditional.colorHistogram);
+            buffer.putInt(traditional.textureKeypoints);
+            buffer.putDouble(traditional.edgeDensity);
+            buffer.putDouble(traditional.gradientMean);
+            buffer.putDouble(traditional.gradientStd);
+            buffer.putDouble(traditional.brightnessMean);
+            buffer.putDouble(traditional.brightnessStd);
+            buffer.putDouble(traditional.contrast);
+        }
+
+        private static Features readFeatures(ByteBuffer payload) {
+            Features features = new Features();
+            features.imageDimensions = getInts(payload);
+            features.deepFeatures = getDoubles(payload);
+            ClothFeatureExtractor.TraditionalFeatures traditional = new ClothFeatureExtractor.TraditionalFeatures();
+            traditional.avgBGR = getDoubles(payload);
+            traditional.avgHSV = getDoubles(payload);
+            traditional.colorHistogram = getDoubles(payload);
+            traditional.textureKeypoints = payload.getInt();
+            traditional.edgeDensity = payload.getDouble();
+            traditional.gradientMean = payload.getDouble();
+            traditional.gradientStd = payload.getDouble();
+            traditional.brightnessMean = payload.getDouble();
+            traditional.brightnessStd = payload.getDouble();
+            traditional.contrast = payload.getDouble();
+            features.traditionalFeatures = traditional;
+            return features;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (buffer.remaining() < extra) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + extra));
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+        }
+
+        private void putInts(int[] values) {
+            buffer.putInt(values.length);
+            for (int value : values) {
+                buffer.putInt(value);
+            }
+        }
+
+        private void putDoubles(double[] values) {
+            buffer.putInt(values.length);
+            for (double value : values) {
+                buffer.putDouble(value);
+            }
+        }
+
+        private static int[] getInts(ByteBuffer payload) {
+            int[] values = new int[payload.getInt()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = payload.getInt();
+            }
+            return values;
+        }
+
+        private static double[] getDoubles(ByteBuffer payload) {
+            double[] values = new double[payload.getInt()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = payload.getDouble();
+            }
+            return values;
+        }
+
+        private static String readString(ByteBuffer payload) {
+            byte[] bytes = new byte[payload.getShort()];
+            payload.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private static void readFully(FileChannel channel, ByteBuffer target, long position) throws IOException {
+            while (target.hasRemaining()) {
+                if (channel.read(target, position + target.position()) < 0) {
+                    throw new IOException("Unexpected end of feature cache log");
+                }
+            }
+        }
+
+        private static final class Generation {
+            final int number;
+            final Path path;
+            final FileChannel channel;
+            final Map<Key, Long> index = new HashMap<>();
+            long size;
+
+            Generation(int number, Path path, FileChannel channel) {
+                this.number = number;
+                this.path = path;
+                this.channel = channel;
+            }
+        }
+    }
+
+    private static final class Node {
+        final Key key;
+        final Features features;
+        final long weight;
+
+        Node(Key key, Features features) {
+            this.key = key;
+            this.features = features;
+            this.weight = features.estimatedBytes();
+        }
+    }
+
+    // Data classes
+    public static final class Key {
+        static final int DIGEST_BYTES = 32;
+
+        final byte[] digest;
+        final int length;
+        // First 8 digest bytes, for the frequency sketch and hash tables
+        final long hash;
+
+        Key(byte[] digest, int length) {
+            this.digest = digest;
+            this.length = length;
+            this.hash = ByteBuffer.wrap(digest).getLong();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && ((Key) other).length == length && Arrays.equals(((Key) other).digest, digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(hash);
+        }
+
+        @Override
+        public String toString() {
+            return Hex.encode(digest) + "/" + length;
+        }
+    }
+
+    public static class Features {
+        public double[] deepFeatures;
+        public ClothFeatureExtractor.TraditionalFeatures traditionalFeatures;
+        public int[] imageDimensions;
+
+        Features copy() {
+            ClothFeatureExtractor.TraditionalFeatures source = traditionalFeatures;
+            ClothFeatureExtractor.TraditionalFeatures traditional = new ClothFeatureExtractor.TraditionalFeatures();
+            traditional.avgBGR = source.avgBGR.clone();
+            traditional.avgHSV = source.avgHSV.clone();
+            traditional.colorHistogram = source.colorHistogram.clone();
+            traditional.textureKeypoints = source.textureKeypoints;
+            traditional.edgeDensity = source.edgeDensity;
+            traditional.gradientMean = source.gradientMean;
+            traditional.gradientStd = source.gradientStd;
+            traditional.brightnessMean = source.brightnessMean;
+            traditional.brightnessStd = source.brightnessStd;
+            traditional.contrast = source.contrast;
+
+            Features copy = new Features();
+            copy.deepFeatures = deepFeatures.clone();
+            copy.traditionalFeatures = traditional;
+            copy.imageDimensions = imageDimensions.clone();
+            return copy;
+        }
+
+        // Heap footprint: array headers and elements, the two objects, plus the cache's key and map entries
+        long estimatedBytes() {
+            ClothFeatureExtractor.TraditionalFeatures traditional = traditionalFeatures;
+            return 5 * 16L + 8L * (deepFeatures.length + traditional.avgBGR.length + traditional.avgHSV.length
+                    + traditional.colorHistogram.length) + 4L * imageDimensions.length + 96 + 208;
+        }
+    }
+
+    public static class Stats {
+        public long entries;
+        public long memoryBytes;
+        public long maxMemoryBytes;
+        public long hits;
+        public long diskHits;
+        public long misses;
+        public long puts;
+        public long evictions;
+        public long diskEntries;
+        public long diskBytes;
+
+        public double hitRate() {
+            long lookups = hits + diskHits + misses;
+            return lookups > 0 ? (double) (hits + diskHits) / lookups : 0.0;
+        }
+    }
+}
@@ -0,0 +1,1213 @@
+package com.clothblockchain.extractor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary store for cloth feature records
+ *
+ * Every cloth is one fixed-width binary record (ids, hash, scalar features, deep feature
+ * vector and color histogram as raw doubles) appended to the current segment file.
+ * Segments are memory-mapped, so writes are a memcpy and reads go straight to the page
+ * cache without parsing. When a segment is full it is sealed and a new one is started.
+ *
+ * A small append-only index log (clothId -> segment, record) lets the store reopen without
+ * touching the segments. Records that were replaced or deleted stay in their segment until
+ * compact() copies the live ones forward and drops segments that are mostly garbage.
+ *
+ * Layout on disk:
+ *   segment-NNNNNN.seg : 64-byte header + records of recordSize bytes
+ *   index.log          : PUT/DELETE entries in write order
+ *   tiles.log          : tile statistics of tiled scans, one entry per put
+ *
+ * Tile statistics are a few KB and only exist for tiled scans, so they go to a side log
+ * instead of widening every record. The record carries FLAG_TILE_STATISTICS, and the entry
+ * carries the record's checksum, so an entry whose record never made it to disk is ignored.
+ *
+ * Format 2 adds the 256-bit perceptual fingerprint to each record. Format 3 adds a flags
+ * word whose FLAG_FINGERPRINT bit says whether the fingerprint was stored, so an all-zero
+ * fingerprint is a real value; in format 2 segments all zeros still means none. Format 4
+ * adds the record's hash scheme; hashScheme() is null for older records, which may hold a
+ * hash from before ClothDNAEncoder. Older segments stay readable (format 1 has no
+ * fingerprints) and are upgraded when compaction copies their records forward.
+ *
+ * @author ClothBlockchain Team
+ * @version 1.0
+ */
+public class ClothFeatureStore implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ClothFeatureStore.class);
+
+    private static final long SEGMENT_MAGIC = 0x434C5448_53454731L; // "CLTHSEG1"
+    private static final int FORMAT_VERSION = 4;
+    private static final int HEADER_SIZE = 64;
+    private static final int DEFAULT_RECORDS_PER_SEGMENT = 16384;
+    private static final double COMPACTION_GARBAGE_RATIO = 0.3;
+
+    private static final byte INDEX_PUT = 1;
+    private static final byte INDEX_DELETE = 2;
+    // Set on entries that end with a CRC32; entries from older stores carry none
+    private static final byte INDEX_CHECKED = 0x10;
+
+    // Fixed-width text fields
+    private static final int MAX_ID_BYTES = 96;
+    private static final int TIMESTAMP_BYTES = 32;
+    private static final int VERSION_BYTES = 16;
+    private static final int HASH_BYTES = 32;
+    private static final int HASH_SCHEME_BYTES = 32;
+    private static final int FINGERPRINT_BYTES = PerceptualFingerprint.WORDS * 8;
+
+    // Record flags (format 3+)
+    private static final int FLAG_FINGERPRINT = 1;
+    private static final int FLAG_TILE_STATISTICS = 2;
+
+    // Tile statistics side log: int payload length, int payload CRC, payload
+    private static final int TILE_ENTRY_HEADER = 8;
+
+    // Record layout (byte offsets inside a record)
+    private static final int OFF_ID_LENGTH = 0;
+    private static final int OFF_ID = OFF_ID_LENGTH + 2;
+    private static final int OFF_TIMESTAMP = OFF_ID + MAX_ID_BYTES;
+    private static final int OFF_VERSION = OFF_TIMESTAMP + TIMESTAMP_BYTES;
+    private static final int OFF_HASH = OFF_VERSION + VERSION_BYTES;
+    private static final int OFF_IMAGE_DIMS = OFF_HASH + HASH_BYTES;
+    private static final int OFF_AVG_BGR = OFF_IMAGE_DIMS + 3 * 4;
+    private static final int OFF_AVG_HSV = OFF_AVG_BGR + 3 * 8;
+    private static final int OFF_KEYPOINTS = OFF_AVG_HSV + 3 * 8;
+    private static final int OFF_SCALARS = OFF_KEYPOINTS + 4;
+    private static final int SCALAR_COUNT = 6;
+    private static final int OFF_DEEP = OFF_SCALARS + SCALAR_COUNT * 8;
+
+    private final Path directory;
+    private final int deepDims;
+    private final int histogramDims;
+    private final int recordSize;
+    private final int recordsPerSegment;
+    private final int offHistogram;
+    private final int offFingerprint;
+    private final int offFlags;
+    private final int offHashScheme;
+    private final int offCrc;
+
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    private final Map<String, Long> locations = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ByteBuffer recordBuffer;
+    private final ByteBuffer indexEntryBuffer = ByteBuffer.allocate(1 + 2 + MAX_ID_BYTES + 4 + 4 + 4);
+    private final CRC32 indexEntryCrc = new CRC32();
+    private final CRC32 crc = new CRC32();
+
+    private Segment active;
+    private FileChannel indexLog;
+
+    // clothId -> offset of its latest entry in tiles.log
+    private final Map<String, Long> tileEntries = new HashMap<>();
+    private FileChannel tileLog;
+    private long tileLogLength;
+    private int tileLogEntryCount;
+
+    public ClothFeatureStore(Path directory, int deepDims, int histogramDims) throws IOException {
+        this(directory, deepDims, histogramDims, DEFAULT_RECORDS_PER_SEGMENT);
+    }
+
+    public ClothFeatureStore(Path directory, int deepDims, int histogramDims, int recordsPerSegment) throws IOException {
+        this.directory = directory;
+        this.deepDims = deepDims;
+        this.histogramDims = histogramDims;
+        this.recordsPerSegment = recordsPerSegment;
+        this.offHistogram = OFF_DEEP + deepDims * 8;
+        this.offFingerprint = offHistogram + histogramDims * 8;
+        this.offFlags = offFingerprint + FINGERPRINT_BYTES;
+        this.offHashScheme = offFlags + 4;
+        this.offCrc = crcOffsetFor(FORMAT_VERSION);
+        this.recordSize = offCrc + 4;
+        this.recordBuffer = ByteBuffer.allocate(recordSize);
+
+        Files.createDirectories(directory);
+        open();
+    }
+
+    /**
+     * Append (or replace) the record for a cloth
+     */
+    public void put(ClothFeatureExtractor.ClothDNA clothDNA, ClothFeatureExtractor.BlockchainRecord blockchainRecord)
+            throws IOException {
+        lock.writeLock().lock();
+        try {
+            encode(clothDNA, blockchainRecord, recordBuffer);
+            // Side entry first: if the record write is lost, its checksum will not match
+            if (clothDNA.tileStatistics != null) {
+                appendTileStatistics(clothDNA.clothId, recordBuffer.getInt(offCrc), clothDNA.tileStatistics);
+            } else {
+                tileEntries.remove(clothDNA.clothId);
+            }
+            appendRecord(clothDNA.clothId, recordBuffer);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Zero-copy view of a cloth's record, or null if unknown
+     */
+    public RecordView get(String clothId) {
+        lock.readLock().lock();
+        try {
+            Long location = locations.get(clothId);
+            if (location == null) {
+                return null;
+            }
+            Segment segment = segments.get(segmentOf(location));
+            return new RecordView(segment, HEADER_SIZE + recordOf(location) * segment.recordSize);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(String clothId) {
+        lock.readLock().lock();
+        try {
+            return locations.containsKey(clothId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean delete(String clothId) throws IOException {
+        lock.writeLock().lock();
+        try {
+            Long location = locations.remove(clothId);
+            if (location == null) {
+                return false;
+            }
+            segments.get(segmentOf(location)).liveRecords--;
+            tileEntries.remove(clothId);
+            writeIndexEntry(INDEX_DELETE, clothId, 0, 0);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Snapshot of all stored cloth ids
+     */
+    public List<String> clothIds() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(locations.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return locations.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Copy live records out of sealed segments that are mostly garbage, then drop those segments
+     */
+    public int compact() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (tileLogEntryCount > tileEntries.size()) {
+                rewriteTileLog();
+            }
+
+            List<Segment> victims = new ArrayList<>();
+            for (Segment segment : segments.values()) {
+                if (segment != active && segment.garbageRatio() >= COMPACTION_GARBAGE_RATIO) {
+                    victims.add(segment);
+                }
+            }
+            if (victims.isEmpty()) {
+                return 0;
+            }
+            log.info("🗜️ Compacting {} segment(s)...", victims.size());
+
+            Set<Integer> victimIds = new HashSet<>();
+            for (Segment victim : victims) {
+                victimIds.add(victim.id);
+            }
+
+            // Move live records forward; raw bytes are copied, nothing is decoded (older
+            // records get the newer fields zeroed, their flags set and a new checksum)
+            List<String> moving = new ArrayList<>();
+            for (Map.Entry<String, Long> entry : locations.entrySet()) {
+                if (victimIds.contains(segmentOf(entry.getValue()))) {
+                    moving.add(entry.getKey());
+                }
+            }
+            for (String clothId : moving) {
+                long location = locations.get(clothId);
+                copyRecord(segments.get(segmentOf(location)), recordOf(location), recordBuffer);
+                appendRecord(clothId, recordBuffer);
+            }
+
+            // The rewritten index must not mention the dropped segments before they are deleted
+            rewriteIndexLog();
+            for (Segment victim : victims) {
+                segments.remove(victim.id);
+                victim.channel.close();
+                Files.deleteIfExists(victim.path);
+            }
+            return victims.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Force segment contents and the index log to disk
+     */
+    public void flush() throws IOException {
+        lock.writeLock().lock();
+        try {
+            active.buffer.force();
+            indexLog.force(false);
+            tileLog.force(false);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Bytes appended per put (current format)
+     */
+    public int recordSize() {
+        return recordSize;
+    }
+
+    public int deepFeatureCount() {
+        return deepDims;
+    }
+
+    public int colorHistogramCount() {
+        return histogramDims;
+    }
+
+    public StoreStats stats() {
+        lock.readLock().lock();
+        try {
+            StoreStats stats = new StoreStats();
+            stats.segments = segments.size();
+            stats.recordSize = recordSize;
+            for (Segment segment : segments.values()) {
+                stats.liveRecords += segment.liveRecords;
+                stats.deadRecords += segment.recordCount - segment.liveRecords;
+                stats.bytesOnDisk += HEADER_SIZE + (long) segment.recordCount * segment.recordSize;
+            }
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (active != null) {
+                // Stays appendable: only the unused preallocated tail is trimmed
+                active.buffer.force();
+                active.channel.truncate(HEADER_SIZE + (long) active.recordCount * active.recordSize);
+            }
+            for (Segment segment : segments.values()) {
+                segment.channel.close();
+            }
+            if (indexLog != null) {
+                indexLog.force(false);
+                indexLog.close();
+            }
+            if (tileLog != null) {
+                tileLog.force(false);
+                tileLog.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Opening and recovery
+    private void open() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "segment-*.seg")) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                int id = Integer.parseInt(name.substring("segment-".length(), name.length() - ".seg".length()));
+                segments.put(id, openSegment(id, path, false));
+            }
+        }
+
+        Path indexPath = directory.resolve("index.log");
+        replayIndexLog(indexPath);
+        indexLog = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+        // Reopen the newest segment for writing and pick up records the index log missed
+        if (!segments.isEmpty() && !segments.lastEntry().getValue().sealed) {
+            Segment last = segments.lastEntry().getValue();
+            last.channel.close();
+            active = openSegment(last.id, last.path, true);
+            active.recordCount = last.recordCount;
+            active.liveRecords = last.liveRecords;
+            segments.put(active.id, active);
+            recoverActiveTail();
+            if (active.version != FORMAT_VERSION) {
+                sealActiveSegment(); // never append new-format records to an old-format segment
+            }
+        } else {
+            startNewSegment();
+        }
+        openTileLog();
+    }
+
+    private Segment openSegment(int id, Path path, boolean writable) throws IOException {
+        Segment segment = new Segment(id, path);
+        if (writable) {
+            segment.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            segment.buffer = segment.channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) recordsPerSegment * recordSize);
+            // Sized for the current format, which is never smaller than an older one
+            if (segment.buffer.getLong(0) != SEGMENT_MAGIC) {
+                writeHeader(segment.buffer);
+            }
+        } else {
+            segment.channel = FileChannel.open(path, StandardOpenOption.READ);
+            segment.buffer = segment.channel.map(FileChannel.MapMode.READ_ONLY, 0, segment.channel.size());
+        }
+        checkHeader(segment);
+        return segment;
+    }
+
+    private void writeHeader(ByteBuffer buffer) {
+        buffer.putLong(0, SEGMENT_MAGIC);
+        buffer.putInt(8, FORMAT_VERSION);
+        buffer.putInt(12, recordSize);
+        buffer.putInt(16, deepDims);
+        buffer.putInt(20, histogramDims);
+        buffer.putInt(24, -1); // sealed record count, -1 while active
+    }
+
+    private void checkHeader(Segment segment) throws IOException {
+        ByteBuffer buffer = segment.buffer;
+        int version = buffer.getInt(8);
+        if (buffer.getLong(0) != SEGMENT_MAGIC || version < 1 || version > FORMAT_VERSION) {
+            throw new IOException("Not a cloth feature segment (or unsupported version): " + segment.path);
+        }
+        segment.version = version;
+        segment.offCrc = crcOffsetFor(version);
+        segment.recordSize = segment.offCrc + 4;
+        if (buffer.getInt(12) != segment.recordSize || buffer.getInt(16) != deepDims || buffer.getInt(20) != histogramDims) {
+            throw new IOException("Segment " + segment.path + " was written with different feature dimensions");
+        }
+        int sealedCount = buffer.getInt(24);
+        segment.sealed = sealedCount >= 0;
+        segment.recordCount = segment.sealed ? sealedCount : 0;
+    }
+
+    private void replayIndexLog(Path indexPath) throws IOException {
+        if (!Files.exists(indexPath)) {
+            return;
+        }
+
+        long validLength;
+        long size;
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+            size = channel.size();
+            ByteBuffer log = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            validLength = readIndexEntries(log, (op, clothId, segmentId, record) -> {
+                if (op == INDEX_PUT) {
+                    Segment segment = segments.get(segmentId);
+                    if (segment == null) {
+                        return; // segment dropped by a compaction that finished after this entry
+                    }
+                    forget(clothId);
+                    locations.put(clothId, location(segmentId, record));
+                    segment.liveRecords++;
+                    if (!segment.sealed) {
+                        segment.recordCount = Math.max(segment.recordCount, record + 1);
+                    }
+                } else if (op == INDEX_DELETE) {
+                    forget(clothId);
+                }
+            });
+        }
+        // Later entries are appended after this point, so a torn tail has to go first
+        if (validLength < size) {
+            log.warn("🩹 Dropped {} bytes of a torn entry at the end of index.log", size - validLength);
+            try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.WRITE)) {
+                channel.truncate(validLength);
+                channel.force(false);
+            }
+        }
+    }
+
+    /**
+     * Decode index entries from the buffer's position; a torn or corrupt entry (crash) ends the scan.
+     * Returns the position just past the last valid entry.
+     */
+    private static int readIndexEntries(ByteBuffer log, IndexEntryVisitor visitor) {
+        byte[] idBytes = new byte[MAX_ID_BYTES];
+        CRC32 check = new CRC32();
+        int valid = log.position();
+        while (log.remaining() >= 3) {
+            int start = log.position();
+            byte flags = log.get();
+            byte op = (byte) (flags & ~INDEX_CHECKED);
+            boolean checked = (flags & INDEX_CHECKED) != 0;
+            int idLength = log.getShort();
+            if ((op != INDEX_PUT && op != INDEX_DELETE) || idLength <= 0 || idLength > MAX_ID_BYTES
+                    || log.remaining() < idLength + 8 + (checked ? 4 : 0)) {
+                break;
+            }
+            log.get(idBytes, 0, idLength);
+            int segmentId = log.getInt();
+            int record = log.getInt();
+            if (checked) {
+                ByteBuffer entry = log.duplicate();
+                entry.position(start).limit(log.position());
+                check.reset();
+                check.update(entry);
+                if (log.getInt() != (int) check.getValue()) {
+                    break;
+                }
+            }
+            visitor.visit(op, new String(idBytes, 0, idLength, StandardCharsets.UTF_8), segmentId, record);
+            valid = log.position();
+        }
+        return valid;
+    }
+
+    interface IndexEntryVisitor {
+        void visit(byte op, String clothId, int segmentId, int record);
+    }
+
+    /**
+     * Position in the index log; anything derived from the store (e.g. a similarity index
+     * snapshot) can remember it and later ask which ids changed since
+     */
+    public IndexCheckpoint checkpoint() throws IOException {
+        lock.readLock().lock();
+        try {
+            IndexCheckpoint checkpoint = new IndexCheckpoint();
+            checkpoint.logLength = indexLog.size();
+            checkpoint.tailChecksum = indexLogTailChecksum(checkpoint.logLength);
+            return checkpoint;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ids written or deleted after the checkpoint, or null if the log was rewritten
+     * (compaction) and the checkpoint no longer applies
+     */
+    public Set<String> changedSince(IndexCheckpoint checkpoint) throws IOException {
+        lock.readLock().lock();
+        try {
+            long length = indexLog.size();
+            if (length < checkpoint.logLength || indexLogTailChecksum(checkpoint.logLength) != checkpoint.tailChecksum) {
+                return null;
+            }
+
+            Set<String> changed = new HashSet<>();
+            try (FileChannel channel = FileChannel.open(directory.resolve("index.log"), StandardOpenOption.READ)) {
+                ByteBuffer log = channel.map(FileChannel.MapMode.READ_ONLY, checkpoint.logLength, length - checkpoint.logLength);
+                readIndexEntries(log, (op, clothId, segmentId, record) -> changed.add(clothId));
+            }
+            return changed;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The last few KB before the checkpoint identify this particular log file
+    private long indexLogTailChecksum(long length) throws IOException {
+        long start = Math.max(0, length - 4096);
+        ByteBuffer tail = ByteBuffer.allocate((int) (length - start));
+        try (FileChannel channel = FileChannel.open(directory.resolve("index.log"), StandardOpenOption.READ)) {
+            while (tail.hasRemaining() && channel.read(tail, start + tail.position()) > 0) {
+                // keep reading until the window is full
+            }
+        }
+        CRC32 check = new CRC32();
+        tail.flip();
+        check.update(tail);
+        return check.getValue();
+    }
+
+    /**
+     * Records appended after the last index entry (crash before the index write) are
+     * still valid if their checksum matches; re-index them
+     */
+    private void recoverActiveTail() throws IOException {
+        int recovered = 0;
+        for (int record = active.recordCount; record < recordsPerSegment; record++) {
+            int offset = HEADER_SIZE + record * active.recordSize;
+            int idLength = active.buffer.getShort(offset + OFF_ID_LENGTH);
+            if (idLength <= 0 || idLength > MAX_ID_BYTES || !checksumMatches(active.buffer, offset, active.offCrc)) {
+                break;
+            }
+            String clothId = readString(active.buffer, offset + OFF_ID, idLength);
+            forget(clothId);
+            locations.put(clothId, location(active.id, record));
+            active.liveRecords++;
+            active.recordCount = record + 1;
+            writeIndexEntry(INDEX_PUT, clothId, active.id, record);
+            recovered++;
+        }
+        if (recovered > 0) {
+            log.warn("🩹 Recovered {} unindexed record(s) in {}", recovered, active.path.getFileName());
+        }
+    }
+
+    private void forget(String clothId) {
+        Long previous = locations.remove(clothId);
+        if (previous != null) {
+            Segment segment = segments.get(segmentOf(previous));
+            if (segment != null) {
+                segment.liveRecords--;
+            }
+        }
+    }
+
+    // Tile statistics side log
+    private void openTileLog() throws IOException {
+        tileLog = FileChannel.open(directory.resolve("tiles.log"), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(TILE_ENTRY_HEADER);
+        long position = 0;
+        long size = tileLog.size();
+        while (position + TILE_ENTRY_HEADER <= size) {
+            header.clear();
+            readFully(tileLog, header, position);
+            int length = header.getInt(0);
+            if (length <= 0 || position + TILE_ENTRY_HEADER + length > size) {
+                break;
+            }
+            ByteBuffer payload = readTileEntry(position, length, header.getInt(4));
+            if (payload == null) {
+                break;
+            }
+            int idLength = payload.getShort(0);
+            tileEntries.put(readString(payload, 2, idLength), position);
+            tileLogEntryCount++;
+            position += TILE_ENTRY_HEADER + length;
+        }
+        if (position < size) {
+            log.warn("🩹 Dropped a torn tile statistics entry at the end of tiles.log");
+            tileLog.truncate(position);
+        }
+        tileLogLength = position;
+        // Entries of deleted or replaced cloths are dropped on the next compaction
+        tileEntries.keySet().retainAll(locations.keySet());
+    }
+
+    private void appendTileStatistics(String clothId, int recordCrc, ClothFeatureExtractor.TileStatistics tiles)
+            throws IOException {
+        byte[] idBytes = clothId.getBytes(StandardCharsets.UTF_8);
+        double[][] arrays = tileArrays(tiles);
+        int length = 2 + idBytes.length + 4 + 4 * 4;
+        for (double[] array : arrays) {
+            length += 4 + (array != null ? array.length * 8 : 0);
+        }
+
+        ByteBuffer entry = ByteBuffer.allocate(TILE_ENTRY_HEADER + length);
+        entry.position(TILE_ENTRY_HEADER);
+        entry.putShort((short) idBytes.length).put(idBytes).putInt(recordCrc);
+        entry.putInt(tiles.tileSize).putInt(tiles.tilesAcross).putInt(tiles.tilesDown).putInt(tiles.tileCount);
+        for (double[] array : arrays) {
+            if (array == null) {
+                entry.putInt(-1);
+                continue;
+            }
+            entry.putInt(array.length);
+            for (double value : array) {
+                entry.putDouble(value);
+            }
+        }
+        crc.reset();
+        crc.update(entry.array(), TILE_ENTRY_HEADER, length);
+        entry.putInt(0, length).putInt(4, (int) crc.getValue());
+        entry.clear();
+
+        long position = tileLogLength;
+        while (entry.hasRemaining()) {
+            tileLog.write(entry, position + entry.position());
+        }
+        tileLogLength += entry.capacity();
+        tileLogEntryCount++;
+        tileEntries.put(clothId, position);
+    }
+
+    /**
+     * Tile statistics stored for a record with the given checksum, or null if its entry is
+     * missing or belongs to another version of the record
+     */
+    private ClothFeatureExtractor.TileStatistics readTileStatistics(String clothId, int recordCrc) {
+        lock.readLock().lock();
+        try {
+            Long position = tileEntries.get(clothId);
+            if (position == null) {
+                return null;
+            }
+            ByteBuffer header = ByteBuffer.allocate(TILE_ENTRY_HEADER);
+            readFully(tileLog, header, position);
+            ByteBuffer payload = readTileEntry(position, header.getInt(0), header.getInt(4));
+            if (payload == null) {
+                return null;
+            }
+            payload.position(2 + payload.getShort(0));
+            if (payload.getInt() != recordCrc) {
+                return null;
+            }
+
+            ClothFeatureExtractor.TileStatistics tiles = new ClothFeatureExtractor.TileStatistics();
+            tiles.tileSize = payload.getInt();
+            tiles.tilesAcross = payload.getInt();
+            tiles.tilesDown = payload.getInt();
+            tiles.tileCount = payload.getInt();
+            tiles.deepFeatureMean = getDoubles(payload);
+            tiles.deepFeatureStd = getDoubles(payload);
+            tiles.textureMean = getDoubles(payload);
+            tiles.textureStd = getDoubles(payload);
+            tiles.textureMin = getDoubles(payload);
+            tiles.textureMax = getDoubles(payload);
+            return tiles;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read tile statistics for cloth: " + clothId, e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Payload of one entry, or null if its checksum does not match (torn write)
+    private ByteBuffer readTileEntry(long position, int length, int expectedCrc) throws IOException {
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(tileLog, payload, position + TILE_ENTRY_HEADER);
+        CRC32 check = new CRC32();
+        check.update(payload.array(), 0, length);
+        return (int) check.getValue() == expectedCrc ? payload : null;
+    }
+
+    /**
+     * Copy the live entries to a fresh log; entries are moved as raw bytes
+     */
+    private void rewriteTileLog() throws IOException {
+        Path tilePath = directory.resolve("tiles.log");
+        Path tempPath = directory.resolve("tiles.log.tmp");
+
+        Map<String, Long> moved = new HashMap<>();
+        long length = 0;
+        try (FileChannel temp = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(TILE_ENTRY_HEADER);
+            for (Map.Entry<String, Long> entry : tileEntries.entrySet()) {
+                header.clear();
+                readFully(tileLog, header, entry.getValue());
+                ByteBuffer bytes = ByteBuffer.allocate(TILE_ENTRY_HEADER + header.getInt(0));
+                readFully(tileLog, bytes, entry.getValue());
+                bytes.flip();
+                while (bytes.hasRemaining()) {
+                    temp.write(bytes);
+                }
+                moved.put(entry.getKey(), length);
+                length += bytes.capacity();
+            }
+            temp.force(false);
+        }
+
+        tileLog.close();
+        Files.move(tempPath, tilePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        tileLog = FileChannel.open(tilePath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        tileEntries.putAll(moved);
+        tileLogLength = length;
+        tileLogEntryCount = moved.size();
+    }
+
+    private static double[][] tileArrays(ClothFeatureExtractor.TileStatistics tiles) {
+        return new double[][]{tiles.deepFeatureMean, tiles.deepFeatureStd, tiles.textureMean, tiles.textureStd,
+                tiles.textureMin, tiles.textureMax};
+    }
+
+    private static double[] getDoubles(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        double[] values = new double[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = buffer.getDouble();
+        }
+        return values;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer target, long position) throws IOException {
+        while (target.hasRemaining()) {
+            if (channel.read(target, position + target.position()) < 0) {
+                throw new EOFException("Unexpected end of " + channel);
+            }
+        }
+    }
+
+    // Writing
+    private void appendRecord(String clothId, ByteBuffer record) throws IOException {
+        if (active.recordCount == recordsPerSegment) {
+            sealActiveSegment();
+        }
+
+        int recordIndex = active.recordCount;
+        ByteBuffer target = active.buffer.duplicate();
+        target.position(HEADER_SIZE + recordIndex * recordSize);
+        record.clear();
+        target.put(record);
+        active.recordCount++;
+
+        forget(clothId);
+        locations.put(clothId, location(active.id, recordIndex));
+        active.liveRecords++;
+        writeIndexEntry(INDEX_PUT, clothId, active.id, recordIndex);
+    }
+
+    /**
+     * Record the final count in the header, trim the preallocated tail and roll to a new segment
+     */
+    private void sealActiveSegment() throws IOException {
+        active.buffer.putInt(24, active.recordCount);
+        active.buffer.force();
+        active.channel.truncate(HEADER_SIZE + (long) active.recordCount * active.recordSize);
+        active.sealed = true;
+        indexLog.force(false);
+        startNewSegment();
+    }
+
+    private void startNewSegment() throws IOException {
+        int id = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+        Path path = directory.resolve(String.format("segment-%06d.seg", id));
+        active = openSegment(id, path, true);
+        segments.put(id, active);
+    }
+
+    private void writeIndexEntry(byte op, String clothId, int segmentId, int record) throws IOException {
+        byte[] idBytes = clothId.getBytes(StandardCharsets.UTF_8);
+        indexEntryBuffer.clear();
+        indexEntryBuffer.put((byte) (op | INDEX_CHECKED));
+        indexEntryBuffer.putShort((short) idBytes.length);
+        indexEntryBuffer.put(idBytes);
+        indexEntryBuffer.putInt(segmentId);
+        indexEntryBuffer.putInt(record);
+        indexEntryCrc.reset();
+        indexEntryCrc.update(indexEntryBuffer.array(), 0, indexEntryBuffer.position());
+        indexEntryBuffer.putInt((int) indexEntryCrc.getValue());
+        indexEntryBuffer.flip();
+        while (indexEntryBuffer.hasRemaining()) {
+            indexLog.write(indexEntryBuffer);
+        }
+    }
+
+    private void rewriteIndexLog() throws IOException {
+        Path indexPath = directory.resolve("index.log");
+        Path tempPath = directory.resolve("index.log.tmp");
+
+        indexLog.force(false);
+        indexLog.close();
+        indexLog = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        for (Map.Entry<String, Long> entry : locations.entrySet()) {
+            writeIndexEntry(INDEX_PUT, entry.getKey(), segmentOf(entry.getValue()), recordOf(entry.getValue()));
+        }
+        indexLog.force(false);
+        indexLog.close();
+
+        Files.move(tempPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        indexLog = FileChannel.open(indexPath, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    // Encoding
+    private void encode(ClothFeatureExtractor.ClothDNA dna, ClothFeatureExtractor.BlockchainRecord record, ByteBuffer out) {
+        if (dna.deepFeatures.length != deepDims || dna.traditionalFeatures.colorHistogram.length != histogramDims) {
+            throw new IllegalArgumentException("Feature dimensions do not match store layout (" +
+                    deepDims + "/" + histogramDims + ") for cloth: " + dna.clothId);
+        }
+
+        Arrays.fill(out.array(), (byte) 0);
+        byte[] idBytes = dna.clothId.getBytes(StandardCharsets.UTF_8);
+        if (idBytes.length > MAX_ID_BYTES) {
+            throw new IllegalArgumentException("Cloth id longer than " + MAX_ID_BYTES + " bytes: " + dna.clothId);
+        }
+        out.putShort(OFF_ID_LENGTH, (short) idBytes.length);
+        putBytes(out, OFF_ID, idBytes);
+        putFixedString(out, OFF_TIMESTAMP, dna.timestamp, TIMESTAMP_BYTES);
+        putFixedString(out, OFF_VERSION, dna.featureExtractionVersion, VERSION_BYTES);
+        if (record != null && record.hash != null) {
+            putBytes(out, OFF_HASH, Arrays.copyOf(Hex.decode(record.hash), HASH_BYTES));
+        }
+
+        int[] dims = dna.imageDimensions != null ? dna.imageDimensions : new int[3];
+        for (int i = 0; i < 3; i++) {
+            out.putInt(OFF_IMAGE_DIMS + i * 4, dims[i]);
+        }
+
+        ClothFeatureExtractor.TraditionalFeatures tf = dna.traditionalFeatures;
+        for (int i = 0; i < 3; i++) {
+            out.putDouble(OFF_AVG_BGR + i * 8, tf.avgBGR[i]);
+            out.putDouble(OFF_AVG_HSV + i * 8, tf.avgHSV[i]);
+        }
+        out.putInt(OFF_KEYPOINTS, tf.textureKeypoints);
+        out.putDouble(OFF_SCALARS, tf.edgeDensity);
+        out.putDouble(OFF_SCALARS + 8, tf.gradientMean);
+        out.putDouble(OFF_SCALARS + 16, tf.gradientStd);
+        out.putDouble(OFF_SCALARS + 24, tf.brightnessMean);
+        out.putDouble(OFF_SCALARS + 32, tf.brightnessStd);
+        out.putDouble(OFF_SCALARS + 40, tf.contrast);
+
+        for (int i = 0; i < deepDims; i++) {
+            out.putDouble(OFF_DEEP + i * 8, dna.deepFeatures[i]);
+        }
+        for (int i = 0; i < histogramDims; i++) {
+            out.putDouble(offHistogram + i * 8, tf.colorHistogram[i]);
+        }
+        int flags = 0;
+        if (record != null && record.fingerprint != null) {
+            long[] fingerprint = PerceptualFingerprint.fromHex(record.fingerprint);
+            for (int i = 0; i < PerceptualFingerprint.WORDS; i++) {
+                out.putLong(offFingerprint + i * 8, fingerprint[i]);
+            }
+            flags |= FLAG_FINGERPRINT;
+        }
+        if (dna.tileStatistics != null) {
+            flags |= FLAG_TILE_STATISTICS;
+        }
+        out.putInt(offFlags, flags);
+        if (record != null) {
+            putFixedString(out, offHashScheme, record.hashScheme, HASH_SCHEME_BYTES);
+        }
+
+        writeChecksum(out);
+    }
+
+    /**
+     * Copy one stored record into the buffer in the current format
+     */
+    private void copyRecord(Segment source, int record, ByteBuffer out) {
+        ByteBuffer sourceRecord = source.buffer.duplicate();
+        int start = HEADER_SIZE + record * source.recordSize;
+        out.clear();
+        if (source.version == FORMAT_VERSION) {
+            sourceRecord.position(start).limit(start + source.recordSize);
+            out.put(sourceRecord);
+            return;
+        }
+
+        // Older layouts are a prefix of the current one up to their checksum
+        Arrays.fill(out.array(), (byte) 0);
+        sourceRecord.position(start).limit(start + source.offCrc);
+        out.put(sourceRecord);
+        if (source.version == 2 && legacyFingerprintPresent(out, 0)) {
+            out.putInt(offFlags, FLAG_FINGERPRINT);
+        }
+        writeChecksum(out);
+    }
+
+    private void writeChecksum(ByteBuffer out) {
+        crc.reset();
+        crc.update(out.array(), 0, offCrc);
+        out.putInt(offCrc, (int) crc.getValue());
+    }
+
+    private static boolean checksumMatches(ByteBuffer buffer, int offset, int crcOffset) {
+        CRC32 check = new CRC32();
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(offset).limit(offset + crcOffset);
+        check.update(slice);
+        return (int) check.getValue() == buffer.getInt(offset + crcOffset);
+    }
+
+    private int crcOffsetFor(int version) {
+        switch (version) {
+            case 1:
+                return offFingerprint;
+            case 2:
+                return offFlags;
+            case 3:
+                return offHashScheme;
+            default:
+                return offHashScheme + HASH_SCHEME_BYTES;
+        }
+    }
+
+    // Format 2 had no flags: an all-zero fingerprint was how "none" was written
+    private boolean legacyFingerprintPresent(ByteBuffer buffer, int offset) {
+        for (int i = 0; i < PerceptualFingerprint.WORDS; i++) {
+            if (buffer.getLong(offset + offFingerprint + i * 8) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void putBytes(ByteBuffer out, int offset, byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            out.put(offset + i, bytes[i]);
+        }
+    }
+
+    private static void putFixedString(ByteBuffer out, int offset, String value, int width) {
+        if (value == null) {
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putBytes(out, offset, Arrays.copyOf(bytes, Math.min(bytes.length, width)));
+    }
+
+    private static String readString(ByteBuffer buffer, int offset, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String readFixedString(ByteBuffer buffer, int offset, int width) {
+        int length = 0;
+        while (length < width && buffer.get(offset + length) != 0) {
+            length++;
+        }
+        return readString(buffer, offset, length);
+    }
+
+
+    private static long location(int segmentId, int record) {
+        return ((long) segmentId << 32) | (record & 0xFFFFFFFFL);
+    }
+
+    private static int segmentOf(long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int recordOf(long location) {
+        return (int) location;
+    }
+
+    /**
+     * Read-only view over one record inside a mapped segment; nothing is copied until asked
+     */
+    public final class RecordView {
+        private final ByteBuffer buffer;
+        private final int offset;
+        private final int version;
+
+        RecordView(Segment segment, int offset) {
+            this.buffer = segment.buffer;
+            this.offset = offset;
+            this.version = segment.version;
+        }
+
+        public String clothId() {
+            return readString(buffer, offset + OFF_ID, buffer.getShort(offset + OFF_ID_LENGTH));
+        }
+
+        public String timestamp() {
+            return readFixedString(buffer, offset + OFF_TIMESTAMP, TIMESTAMP_BYTES);
+        }
+
+        public String featureExtractionVersion() {
+            return readFixedString(buffer, offset + OFF_VERSION, VERSION_BYTES);
+        }
+
+        public String hash() {
+            byte[] bytes = new byte[HASH_BYTES];
+            for (int i = 0; i < HASH_BYTES; i++) {
+                bytes[i] = buffer.get(offset + OFF_HASH + i);
+            }
+            return Hex.encode(bytes);
+        }
+
+        /**
+         * Scheme the hash was computed with (e.g. ClothDNAEncoder.HASH_SCHEME), or null if
+         * the record was stored without one
+         */
+        public String hashScheme() {
+            if (version < 4) {
+                return null;
+            }
+            String scheme = readFixedString(buffer, offset + offHashScheme, HASH_SCHEME_BYTES);
+            return scheme.isEmpty() ? null : scheme;
+        }
+
+        /**
+         * Perceptual fingerprint, or null if the record was stored without one
+         */
+        public long[] fingerprint() {
+            boolean present = version >= 3
+                    ? (buffer.getInt(offset + offFlags) & FLAG_FINGERPRINT) != 0
+                    : version == 2 && legacyFingerprintPresent(buffer, offset);
+            if (!present) {
+                return null;
+            }
+            long[] fingerprint = new long[PerceptualFingerprint.WORDS];
+            for (int i = 0; i < fingerprint.length; i++) {
+                fingerprint[i] = buffer.getLong(offset + offFingerprint + i * 8);
+            }
+            return fingerprint;
+        }
+
+        /** Image height, width and channels for i = 0, 1, 2 */
+        public int imageDimension(int i) {
+            return buffer.getInt(offset + OFF_IMAGE_DIMS + i * 4);
+        }
+
+        public double avgBGR(int i) {
+            return buffer.getDouble(offset + OFF_AVG_BGR + i * 8);
+        }
+
+        public double avgHSV(int i) {
+            return buffer.getDouble(offset + OFF_AVG_HSV + i * 8);
+        }
+
+        public int textureKeypoints() {
+            return buffer.getInt(offset + OFF_KEYPOINTS);
+        }
+
+        /**
+         * Scalar traditional features in stored order: edgeDensity, gradientMean, gradientStd,
+         * brightnessMean, brightnessStd, contrast
+         */
+        public double scalarFeature(int i) {
+            return buffer.getDouble(offset + OFF_SCALARS + i * 8);
+        }
+
+        public int deepFeatureCount() {
+            return deepDims;
+        }
+
+        public double deepFeature(int i) {
+            return buffer.getDouble(offset + OFF_DEEP + i * 8);
+        }
+
+        public int colorHistogramCount() {
+            return histogramDims;
+        }
+
+        public double colorHistogram(int i) {
+            return buffer.getDouble(offset + offHistogram + i * 8);
+        }
+
+        /**
+         * Copy the deep features into a caller-owned float array (e.g. for similarity search)
+         */
+        public void deepFeaturesInto(float[] target) {
+            for (int i = 0; i < deepDims; i++) {
+                target[i] = (float) deepFeature(i);
+            }
+        }
+
+        /**
+         * Statistics over the tiles of a tiled scan, or null for ordinary photos. Read from
+         * tiles.log on every call.
+         */
+        public ClothFeatureExtractor.TileStatistics tileStatistics() {
+            if (version < 4 || (buffer.getInt(offset + offFlags) & FLAG_TILE_STATISTICS) == 0) {
+                return null;
+            }
+            return readTileStatistics(clothId(), buffer.getInt(offset + offCrc));
+        }
+
+        /**
+         * Materialise the full ClothDNA
+         */
+        public ClothFeatureExtractor.ClothDNA toClothDNA() {
+            ClothFeatureExtractor.ClothDNA dna = new ClothFeatureExtractor.ClothDNA();
+            dna.clothId = clothId();
+            dna.timestamp = timestamp();
+            dna.featureExtractionVersion = featureExtractionVersion();
+            dna.imageDimensions = new int[3];
+            for (int i = 0; i < 3; i++) {
+                dna.imageDimensions[i] = buffer.getInt(offset + OFF_IMAGE_DIMS + i * 4);
+            }
+
+            dna.deepFeatures = new double[deepDims];
+            for (int i = 0; i < deepDims; i++) {
+                dna.deepFeatures[i] = deepFeature(i);
+            }
+
+            ClothFeatureExtractor.TraditionalFeatures tf = new ClothFeatureExtractor.TraditionalFeatures();
+            tf.avgBGR = new double[3];
+            tf.avgHSV = new double[3];
+            for (int i = 0; i < 3; i++) {
+                tf.avgBGR[i] = buffer.getDouble(offset + OFF_AVG_BGR + i * 8);
+                tf.avgHSV[i] = buffer.getDouble(offset + OFF_AVG_HSV + i * 8);
+            }
+            tf.textureKeypoints = buffer.getInt(offset + OFF_KEYPOINTS);
+            tf.edgeDensity = buffer.getDouble(offset + OFF_SCALARS);
+            tf.gradientMean = buffer.getDouble(offset + OFF_SCALARS + 8);
+            tf.gradientStd = buffer.getDouble(offset + OFF_SCALARS + 16);
+            tf.brightnessMean = buffer.getDouble(offset + OFF_SCALARS + 24);
+            tf.brightnessStd = buffer.getDouble(offset + OFF_SCALARS + 32);
+            tf.contrast = buffer.getDouble(offset + OFF_SCALARS + 40);
+            tf.colorHistogram = new double[histogramDims];
+            for (int i = 0; i < histogramDims; i++) {
+                tf.colorHistogram[i] = colorHistogram(i);
+            }
+            dna.traditionalFeatures = tf;
+            dna.tileStatistics = tileStatistics();
+            return dna;
+        }
+    }
+
+    /**
+     * One segment file and its mapping
+     */
+    private static final class Segment {
+        final int id;
+        final Path path;
+        FileChannel channel;
+        MappedByteBuffer buffer;
+        int version;
+        int recordSize;
+        int offCrc;
+        boolean sealed;
+        int recordCount;
+        int liveRecords;
+
+        Segment(int id, Path path) {
+            this.id = id;
+            this.path = path;
+        }
+
+        double garbageRatio() {
+            return recordCount == 0 ? 0.0 : 1.0 - (double) liveRecords / recordCount;
+        }
+    }
+
+    // Data classes
+    public static class IndexCheckpoint {
+        public long logLength;
+        public long tailChecksum;
+    }
+
+    public static class StoreStats {
+        public int segments;
+        public int recordSize;
+        public long liveRecords;
+        public long deadRecords;
+        public long bytesOnDisk;
+    }
+}
@@ -0,0 +1,172 @@
+package com.clothblockchain.extractor;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Decodes cloth photos at the smallest resolution the model input still needs
+ *
+ * The JPEG header is read first. If the shorter side is at least 2, 4 or 8 times the
+ * target size, the image is decoded with IMREAD_REDUCED_COLOR_2/4/8. libjpeg then scales
+ * in the DCT domain and never produces the full-resolution pixels. A 12 MP photo decodes
+ * to about 500x380 instead of 4032x3024. Other formats, and JPEGs too small to reduce,
+ * are decoded at full size.
+ *
+ * In-memory sources go through imdecode: byte arrays are copied once into a native Mat,
+ * and direct buffers (including memory-mapped files) are wrapped without copying.
+ *
+ * @author ClothBlockchain Team
+ * @version 1.0
+ */
+final class ClothImageDecoder {
+
+    // Enough for the APP segments phones write (EXIF, XMP, ICC, MPF) before the frame header
+    private static final int HEADER_WINDOW = 256 * 1024;
+
+    private final int targetSize;
+
+    ClothImageDecoder(int targetSize) {
+        this.targetSize = targetSize;
+    }
+
+    /**
+     * Decode an image file (empty Mat if it cannot be read, like imread)
+     */
+    Mat read(Path path) {
+        int flag = Imgcodecs.IMREAD_COLOR;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate((int) Math.min(HEADER_WINDOW, channel.size()));
+            while (header.hasRemaining() && channel.read(header) > 0) {
+                // fill the header window
+            }
+            header.flip();
+            flag = readFlagFor(header);
+        } catch (IOException e) {
+            // Unreadable here means unreadable for imread too; it reports that with an empty Mat
+        }
+        return Imgcodecs.imread(path.toString(), flag);
+    }
+
+    Mat decode(byte[] encoded, int offset, int length) {
+        Mat buffer = new Mat(1, length, CvType.CV_8UC1);
+        try {
+            buffer.put(0, 0, encoded, offset, length);
+            return Imgcodecs.imdecode(buffer, readFlagFor(ByteBuffer.wrap(encoded, offset, length)));
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Decode the buffer's remaining bytes; direct buffers are read in place
+     */
+    Mat decode(ByteBuffer encoded) {
+        if (!encoded.isDirect()) {
+            if (encoded.hasArray()) {
+                return decode(encoded.array(), encoded.arrayOffset() + encoded.position(), encoded.remaining());
+            }
+            byte[] copy = new byte[encoded.remaining()];
+            encoded.duplicate().get(copy);
+            return decode(copy, 0, copy.length);
+        }
+
+        ByteBuffer view = encoded.slice();
+        Mat buffer = new Mat(1, view.remaining(), CvType.CV_8UC1, view);
+        try {
+            return Imgcodecs.imdecode(buffer, readFlagFor(view));
+        } finally {
+            buffer.release();
+            // The Mat only borrows the memory; a mapping must not be unmapped while it is decoded
+            Reference.reachabilityFence(encoded);
+        }
+    }
+
+    /**
+     * Map the file and decode it straight from the page cache
+     */
+    Mat decodeMapped(Path path) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        return decode(mapped);
+    }
+
+    /**
+     * imread/imdecode flag for the encoded image whose first bytes are in header
+     */
+    int readFlagFor(ByteBuffer header) {
+        int[] size = jpegSize(header);
+        if (size == null) {
+            return Imgcodecs.IMREAD_COLOR;
+        }
+        int shorter = Math.min(size[0], size[1]);
+        if (shorter >= targetSize * 8) {
+            return Imgcodecs.IMREAD_REDUCED_COLOR_8;
+        }
+        if (shorter >= targetSize * 4) {
+            return Imgcodecs.IMREAD_REDUCED_COLOR_4;
+        }
+        if (shorter >= targetSize * 2) {
+            return Imgcodecs.IMREAD_REDUCED_COLOR_2;
+        }
+        return Imgcodecs.IMREAD_COLOR;
+    }
+
+    /**
+     * {width, height} from the JPEG frame header, or null if this is not a JPEG or the
+     * frame header is not within the buffer. Reads by absolute index; the buffer is untouched.
+     */
+    static int[] jpegSize(ByteBuffer buffer) {
+        int base = buffer.position();
+        int end = buffer.limit();
+        if (end - base < 4 || (buffer.get(base) & 0xFF) != 0xFF || (buffer.get(base + 1) & 0xFF) != 0xD8) {
+            return null;
+        }
+
+        int i = base + 2;
+        while (i + 4 <= end) {
+            if ((buffer.get(i) & 0xFF) != 0xFF) {
+                return null; // not at a marker: corrupt or not a JPEG after all
+            }
+            int marker = buffer.get(i + 1) & 0xFF;
+            if (marker == 0xFF) {
+                i++; // fill byte
+                continue;
+            }
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD8)) {
+                i += 2; // standalone marker, no length
+                continue;
+            }
+            if (marker == 0xD9 || marker == 0xDA) {
+                return null; // end of image or start of scan before any frame header
+            }
+
+            int length = ((buffer.get(i + 2) & 0xFF) << 8) | (buffer.get(i + 3) & 0xFF);
+            if (isStartOfFrame(marker)) {
+                if (i + 9 > end || length < 7) {
+                    return null;
+                }
+                int height = ((buffer.get(i + 5) & 0xFF) << 8) | (buffer.get(i + 6) & 0xFF);
+                int width = ((buffer.get(i + 7) & 0xFF) << 8) | (buffer.get(i + 8) & 0xFF);
+                return height == 0 || width == 0 ? null : new int[]{width, height};
+            }
+            i += 2 + length;
+        }
+        return null;
+    }
+
+    // SOF0-SOF15 except DHT (C4), JPG (C8) and DAC (CC)
+    private static boolean isStartOfFrame(int marker) {
+        return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+    }
+}
@@ -0,0 +1,495 @@
+package com.clothblockchain.extractor;
+
+import org.opencv.core.Mat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Staged batch ingestion pipeline for cloth images
+ *
+ * Runs the same steps as processClothForBlockchain (decode -> features -> hash -> store)
+ * as independent stages, each with its own worker pool, connected by bounded queues.
+ * A full queue blocks the stage in front of it, so a slow disk or a huge JPEG only
+ * stalls its own stage instead of the whole run. A failing image is recorded and
+ * dropped without affecting the rest of the batch.
+ *
+ * Input is either image files on disk or the entries of a zip/tar archive, which are read
+ * straight from the archive stream and decoded in memory.
+ *
+ * @author ClothBlockchain Team
+ * @version 1.0
+ */
+public class ClothIngestionPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(ClothIngestionPipeline.class);
+
+    // Marks the end of the input; passed from stage to stage once all workers of a stage are done
+    private static final WorkItem END_OF_INPUT = new WorkItem(null, null, null, null);
+
+    private final ClothFeatureExtractor extractor;
+    private final Config config;
+    private Consumer<ClothFeatureExtractor.ProcessingResult> resultListener;
+
+    public ClothIngestionPipeline(ClothFeatureExtractor extractor) {
+        this(extractor, new Config());
+    }
+
+    public ClothIngestionPipeline(ClothFeatureExtractor extractor, Config config) {
+        this.extractor = extractor;
+        this.config = config;
+    }
+
+    /**
+     * Register a callback invoked (from a persistence worker) for every stored cloth
+     */
+    public void setResultListener(Consumer<ClothFeatureExtractor.ProcessingResult> resultListener) {
+        this.resultListener = resultListener;
+    }
+
+    /**
+     * Ingest every image file (jpg, jpeg, png, bmp) found in a directory
+     */
+    public IngestionSummary ingestDirectory(Path directory) throws IOException, InterruptedException {
+        if (!Files.isDirectory(directory)) {
+            throw new IOException("Directory not found: " + directory);
+        }
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, ClothIngestionPipeline::isImageFile)) {
+            return ingest(stream.iterator());
+        }
+    }
+
+    /**
+     * Ingest images from an iterator of paths. The cloth id is the file name without extension.
+     * The iterator is consumed lazily on the calling thread, which blocks while the decode queue is full.
+     */
+    public IngestionSummary ingest(Iterator<Path> imagePaths) throws InterruptedException {
+        return run(new Iterator<WorkItem>() {
+            @Override
+            public boolean hasNext() {
+                return imagePaths.hasNext();
+            }
+
+            @Override
+            public WorkItem next() {
+                Path path = imagePaths.next();
+                return new WorkItem(path.toString(), clothIdFor(path.getFileName().toString()), path, null);
+            }
+        });
+    }
+
+    /**
+     * Ingest the images inside a .zip, .tar, .tar.gz or .tgz archive without extracting it.
+     * Entries are streamed into memory one by one and decoded from there; the cloth id is
+     * the entry's file name without directory and extension.
+     */
+    public IngestionSummary ingestArchive(Path archive) throws IOException, InterruptedException {
+        try (ArchiveImageReader reader = new ArchiveImageReader(archive)) {
+            return run(new Iterator<WorkItem>() {
+                @Override
+                public boolean hasNext() {
+                    return reader.hasNext();
+                }
+
+                @Override
+                public WorkItem next() {
+                    ArchiveImageReader.Entry entry = reader.next();
+                    String fileName = entry.name.substring(entry.name.lastIndexOf('/') + 1);
+                    return new WorkItem(archive + "!/" + entry.name, clothIdFor(fileName), null, entry.data);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private IngestionSummary run(Iterator<WorkItem> items) throws InterruptedException {
+        log.info("🚀 Starting batch ingestion pipeline...");
+
+        // Build stages back to front so each one knows where to hand its items
+        Stage store = new Stage("store", config.storeWorkers, 1, config.queueCapacity, null, this::storeBatch);
+        Stage hash = new Stage("hash", config.hashWorkers, 1, config.queueCapacity, store, this::hashBatch);
+        int extractBatchSize = config.extractBatchSize > 0 ? config.extractBatchSize : extractor.getInferenceBatchSize();
+        Stage extract = new Stage("extract", config.extractWorkers, extractBatchSize, config.queueCapacity, hash, this::extractBatch);
+        Stage decode = new Stage("decode", config.decodeWorkers, 1, config.queueCapacity, extract, this::decodeBatch);
+        List<Stage> stages = Arrays.asList(decode, extract, hash, store);
+
+        IngestionSummary summary = new IngestionSummary();
+        long startNanos = System.nanoTime();
+
+        for (Stage stage : stages) {
+            stage.start(summary);
+        }
+
+        try {
+            // Feed the first stage; put() blocks when decoding falls behind (backpressure)
+            while (items.hasNext()) {
+                decode.input.put(items.next());
+                summary.submitted++;
+            }
+        } finally {
+            decode.input.put(END_OF_INPUT);
+            store.awaitCompletion();
+            for (Stage stage : stages) {
+                stage.shutdown();
+            }
+        }
+
+        summary.elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        summary.succeeded = store.processed.get();
+        summary.failed = summary.failures.size();
+        for (Stage stage : stages) {
+            summary.stages.add(stage.snapshot(summary.elapsedMillis));
+        }
+
+        summary.print();
+        return summary;
+    }
+
+    // Stage handlers
+    private void decodeBatch(List<WorkItem> batch) throws Exception {
+        for (WorkItem item : batch) {
+            byte[] encoded = item.encoded;
+            if (encoded == null && extractor.getFeatureCache() != null) {
+                encoded = extractor.readImageBytes(item.path);
+            }
+            if (encoded == null) {
+                item.image = extractor.preprocessClothImage(item.path.toString());
+                continue;
+            }
+
+            // Images already seen skip decoding and the extract stage passes them through
+            item.cacheKey = extractor.featureCacheKey(encoded);
+            item.clothDNA = extractor.cachedClothDNA(item.cacheKey, item.clothId);
+            if (item.clothDNA == null) {
+                item.image = extractor.preprocessClothImage(encoded);
+            }
+            item.encoded = null;
+        }
+    }
+
+    private void extractBatch(List<WorkItem> batch) throws Exception {
+        List<WorkItem> pending = new ArrayList<>(batch.size());
+        List<Mat> images = new ArrayList<>(batch.size());
+        List<String> clothIds = new ArrayList<>(batch.size());
+        for (WorkItem item : batch) {
+            if (item.clothDNA == null) {
+                pending.add(item);
+                images.add(item.image);
+                clothIds.add(item.clothId);
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        // One CNN forward pass for the whole batch
+        List<ClothFeatureExtractor.ClothDNA> dnas = extractor.createClothDigitalDNA(images, clothIds);
+        for (int i = 0; i < pending.size(); i++) {
+            WorkItem item = pending.get(i);
+            item.clothDNA = dnas.get(i);
+            item.releaseImage();
+            extractor.cacheFeatures(item.cacheKey, item.clothDNA);
+        }
+    }
+
+    private void hashBatch(List<WorkItem> batch) throws Exception {
+        for (WorkItem item : batch) {
+            item.blockchainRecord = extractor.generateBlockchainHash(item.clothDNA);
+        }
+    }
+
+    private void storeBatch(List<WorkItem> batch) throws Exception {
+        for (WorkItem item : batch) {
+            extractor.storeClothData(item.clothDNA, item.blockchainRecord);
+
+            if (resultListener != null) {
+                ClothFeatureExtractor.ProcessingResult result = new ClothFeatureExtractor.ProcessingResult();
+                result.clothDNA = item.clothDNA;
+                result.blockchainHash = item.blockchainRecord.hash;
+                result.blockchainRecord = item.blockchainRecord;
+                resultListener.accept(result);
+            }
+        }
+    }
+
+    private static boolean isImageFile(Path path) {
+        return isImageName(path.getFileName().toString());
+    }
+
+    static boolean isImageName(String name) {
+        String lower = name.toLowerCase();
+        return lower.endsWith(".jpg") || lower.endsWith(".jpeg") ||
+               lower.endsWith(".png") || lower.endsWith(".bmp");
+    }
+
+    private static String clothIdFor(String fileName) {
+        return fileName.replaceFirst("[.][^.]+$", "");
+    }
+
+    /**
+     * Processes a list of items in place; throwing fails the whole list
+     */
+    interface StageHandler {
+        void process(List<WorkItem> batch) throws Exception;
+    }
+
+    /**
+     * One pipeline stage: a bounded input queue drained by a dedicated pool of workers
+     */
+    private static final class Stage {
+        final String name;
+        final int workers;
+        final int batchSize;
+        final Stage next;
+        final StageHandler handler;
+        final BlockingQueue<WorkItem> input;
+        final AtomicInteger liveWorkers;
+        final AtomicLong processed = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final AtomicLong busyNanos = new AtomicLong();
+        final CountDownLatch finished = new CountDownLatch(1);
+        ExecutorService pool;
+
+        Stage(String name, int workers, int batchSize, int queueCapacity, Stage next, StageHandler handler) {
+            this.name = name;
+            this.workers = Math.max(1, workers);
+            this.batchSize = Math.max(1, batchSize);
+            this.next = next;
+            this.handler = handler;
+            // A queue must hold at least one batch per worker, otherwise drainTo never fills a batch
+            this.input = new ArrayBlockingQueue<>(Math.max(queueCapacity, this.workers * this.batchSize));
+            this.liveWorkers = new AtomicInteger(this.workers);
+        }
+
+        void start(IngestionSummary summary) {
+            AtomicInteger threadCount = new AtomicInteger();
+            pool = Executors.newFixedThreadPool(workers, runnable -> {
+                Thread thread = new Thread(runnable, "ingest-" + name + "-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            for (int i = 0; i < workers; i++) {
+                pool.execute(() -> runWorker(summary));
+            }
+        }
+
+        private void runWorker(IngestionSummary summary) {
+            List<WorkItem> batch = new ArrayList<>(batchSize);
+            boolean sawEnd = false;
+            try {
+                while (!sawEnd) {
+                    batch.clear();
+                    batch.add(input.take());
+                    if (batchSize > 1) {
+                        input.drainTo(batch, batchSize - 1);
+                    }
+
+                    // Items always precede the end marker, so anything after it cannot exist
+                    int endIndex = batch.indexOf(END_OF_INPUT);
+                    List<WorkItem> items = endIndex < 0 ? batch : batch.subList(0, endIndex);
+                    if (!items.isEmpty()) {
+                        processItems(items, summary);
+                    }
+
+                    sawEnd = endIndex >= 0;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                // However the worker ends, the stage must still complete or run() waits forever
+                retire(sawEnd);
+            }
+        }
+
+        private void retire(boolean sawEnd) {
+            try {
+                if (liveWorkers.decrementAndGet() == 0) {
+                    if (next != null) {
+                        next.input.put(END_OF_INPUT);
+                    }
+                } else if (sawEnd) {
+                    // Leave the marker for the remaining workers of this stage
+                    input.put(END_OF_INPUT);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                if (liveWorkers.get() == 0) {
+                    finished.countDown();
+                }
+            }
+        }
+
+        private void processItems(List<WorkItem> items, IngestionSummary summary) throws InterruptedException {
+            long start = System.nanoTime();
+            try {
+                handler.process(items);
+                busyNanos.addAndGet(System.nanoTime() - start);
+                forward(items);
+            } catch (Throwable batchError) {
+                // Errors too (OutOfMemoryError, UnsatisfiedLinkError from OpenCV): the item
+                // fails and the worker lives on
+                busyNanos.addAndGet(System.nanoTime() - start);
+                if (items.size() == 1) {
+                    fail(items.get(0), batchError, summary);
+                    return;
+                }
+
+                // Retry one by one so a single bad item does not take the batch down with it
+                for (WorkItem item : items) {
+                    long itemStart = System.nanoTime();
+                    try {
+                        handler.process(Collections.singletonList(item));
+                        busyNanos.addAndGet(System.nanoTime() - itemStart);
+                        forward(Collections.singletonList(item));
+                    } catch (Throwable itemError) {
+                        busyNanos.addAndGet(System.nanoTime() - itemStart);
+                        fail(item, itemError, summary);
+                    }
+                }
+            }
+        }
+
+        private void forward(List<WorkItem> items) throws InterruptedException {
+            processed.addAndGet(items.size());
+            if (next != null) {
+                for (WorkItem item : items) {
+                    next.input.put(item);
+                }
+            }
+        }
+
+        private void fail(WorkItem item, Throwable error, IngestionSummary summary) {
+            failed.incrementAndGet();
+            item.releaseImage();
+
+            ItemFailure failure = new ItemFailure();
+            failure.imagePath = item.source;
+            failure.clothId = item.clothId;
+            failure.stage = name;
+            failure.message = error.getMessage() != null ? error.getMessage() : error.toString();
+            synchronized (summary.failures) {
+                summary.failures.add(failure);
+            }
+        }
+
+        void awaitCompletion() throws InterruptedException {
+            finished.await();
+        }
+
+        void shutdown() {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+
+        StageStats snapshot(long elapsedMillis) {
+            StageStats stats = new StageStats();
+            stats.stage = name;
+            stats.workers = workers;
+            stats.processed = processed.get();
+            stats.failed = failed.get();
+            stats.busyMillis = busyNanos.get() / 1_000_000;
+            stats.itemsPerSecond = elapsedMillis > 0 ? stats.processed * 1000.0 / elapsedMillis : 0.0;
+            long attempted = stats.processed + stats.failed;
+            stats.avgMillisPerItem = attempted > 0 ? (double) stats.busyMillis / attempted : 0.0;
+            return stats;
+        }
+    }
+
+    /**
+     * State of one image as it moves through the stages
+     */
+    static final class WorkItem {
+        final String source;
+        final String clothId;
+        final Path path;
+        byte[] encoded; // archive entries arrive already in memory; dropped once decoded
+        ClothFeatureCache.Key cacheKey; // null when the feature cache is off
+        Mat image;
+        ClothFeatureExtractor.ClothDNA clothDNA;
+        ClothFeatureExtractor.BlockchainRecord blockchainRecord;
+
+        WorkItem(String source, String clothId, Path path, byte[] encoded) {
+            this.source = source;
+            this.clothId = clothId;
+            this.path = path;
+            this.encoded = encoded;
+        }
+
+        void releaseImage() {
+            if (image != null) {
+                image.release();
+                image = null;
+            }
+        }
+    }
+
+    // Data classes
+    public static class Config {
+        public int decodeWorkers = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+        public int extractWorkers = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        public int extractBatchSize = 0; // 0 = extractor's inference batch size
+        public int hashWorkers = 1;
+        public int storeWorkers = 2;
+        public int queueCapacity = 64;
+    }
+
+    public static class StageStats {
+        public String stage;
+        public int workers;
+        public long processed;
+        public long failed;
+        public long busyMillis;
+        public double itemsPerSecond;
+        public double avgMillisPerItem;
+    }
+
+    public static class ItemFailure {
+        public String imagePath;
+        public String clothId;
+        public String stage;
+        public String message;
+    }
+
+    public static class IngestionSummary {
+        public long submitted;
+        public long succeeded;
+        public long failed;
+        public long elapsedMillis;
+        public List<StageStats> stages = new ArrayList<>();
+        public final List<ItemFailure> failures = new ArrayList<>();
+
+        /**
+         * Print per-stage throughput and failures
+         */
+        public void print() {
+            System.out.println("=".repeat(60));
+            System.out.println("📊 BATCH INGESTION SUMMARY");
+            System.out.println("=".repeat(60));
+            System.out.println("Submitted: " + submitted + ", stored: " + succeeded + ", failed: " + failed);
+            System.out.println("Elapsed: " + elapsedMillis + " ms (" +
+                    String.format("%.1f", elapsedMillis > 0 ? succeeded * 1000.0 / elapsedMillis : 0.0) + " images/sec)");
+
+            for (StageStats stats : stages) {
+                System.out.println(String.format("  %-8s workers=%-3d done=%-7d failed=%-5d %.1f items/sec, %.1f ms/item",
+                        stats.stage, stats.workers, stats.processed, stats.failed,
+                        stats.itemsPerSecond, stats.avgMillisPerItem));
+            }
+
+            for (ItemFailure failure : failures) {
+                System.out.println("❌ " + failure.imagePath + " [" + failure.stage + "] " + failure.message);
+            }
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.clothblockchain.extractor;
+
+import org.bytedeco.javacpp.Pointer;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Per-stage latency histograms, counters and memory gauges for the extractor
+ *
+ * Recording is lock-free and allocation-free, so it stays on in production. Values are
+ * read through JMX (ClothMetricsMXBean) or as Prometheus text (toPrometheusText, served by
+ * ClothMetricsEndpoint).
+ *
+ * @author ClothBlockchain Team
+ * @version 1.0
+ */
+public class ClothMetrics implements ClothMetricsMXBean {
+
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    public enum Stage {
+        DECODE("decode"),
+        RESIZE("resize"),
+        TRADITIONAL_FEATURES("traditional_features"),
+        DEEP_FEATURES("deep_features"),
+        HASH("hash"),
+        STORE("store"),
+        FEATURE_CACHE("feature_cache"), // feature cache hits: lookup and copy-out
+        SCAN_TILE("scan_tile"); // traditional features of one full-resolution scan tile
+
+        public final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+    }
+
+    private final EnumMap<Stage, LatencyHistogram> latencies = new EnumMap<>(Stage.class);
+    private final EnumMap<Stage, LongAdder> failures = new EnumMap<>(Stage.class);
+    private final LongAdder bytesWritten = new LongAdder();
+    private volatile long inferenceWorkspaceBytes;
+    private ObjectName registeredName;
+
+    public ClothMetrics() {
+        for (Stage stage : Stage.values()) {
+            latencies.put(stage, new LatencyHistogram());
+            failures.put(stage, new LongAdder());
+        }
+    }
+
+    /**
+     * Record a successful stage that started at startNanos (System.nanoTime())
+     */
+    public void record(Stage stage, long startNanos) {
+        latencies.get(stage).record(System.nanoTime() - startNanos);
+    }
+
+    public void recordFailure(Stage stage) {
+        failures.get(stage).increment();
+    }
+
+    public void addBytesWritten(long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    void setInferenceWorkspaceBytes(long bytes) {
+        inferenceWorkspaceBytes = bytes;
+    }
+
+    public LatencyHistogram latency(Stage stage) {
+        return latencies.get(stage);
+    }
+
+    // JMX
+    @Override
+    public Map<String, Long> getStageCounts() {
+        return perStage(LatencyHistogram::count);
+    }
+
+    @Override
+    public Map<String, Double> getStageMeanMillis() {
+        return perStageMillis(h -> h.count() == 0 ? 0.0 : (double) h.totalNanos() / h.count());
+    }
+
+    @Override
+    public Map<String, Double> getStageP50Millis() {
+        return perStageMillis(h -> h.quantileNanos(0.5));
+    }
+
+    @Override
+    public Map<String, Double> getStageP99Millis() {
+        return perStageMillis(h -> h.quantileNanos(0.99));
+    }
+
+    @Override
+    public Map<String, Double> getStageMaxMillis() {
+        return perStageMillis(LatencyHistogram::maxNanos);
+    }
+
+    @Override
+    public Map<String, Long> getStageFailures() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (Stage stage : Stage.values()) {
+            values.put(stage.label, failures.get(stage).sum());
+        }
+        return values;
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    /**
+     * Resident memory of the process as JavaCPP measures it (covers OpenCV and ND4J buffers)
+     */
+    @Override
+    public long getNativePhysicalBytes() {
+        return Pointer.physicalBytes();
+    }
+
+    /**
+     * Off-heap bytes allocated through JavaCPP (ND4J arrays and workspaces)
+     */
+    @Override
+    public long getJavacppTrackedBytes() {
+        return Pointer.totalBytes();
+    }
+
+    @Override
+    public long getDirectBufferBytes() {
+        return bufferPoolBytes("direct");
+    }
+
+    @Override
+    public long getMappedBufferBytes() {
+        return bufferPoolBytes("mapped");
+    }
+
+    @Override
+    public long getInferenceWorkspaceBytes() {
+        return inferenceWorkspaceBytes;
+    }
+
+    /**
+     * All metrics in the Prometheus text exposition format (version 0.0.4)
+     */
+    public String toPrometheusText() {
+        StringBuilder out = new StringBuilder(4096);
+
+        out.append("# HELP cloth_stage_latency_seconds Latency of each extraction stage\n");
+        out.append("# TYPE cloth_stage_latency_seconds summary\n");
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = latencies.get(stage);
+            for (double quantile : QUANTILES) {
+                out.append("cloth_stage_latency_seconds{stage=\"").append(stage.label)
+                        .append("\",quantile=\"").append(quantile).append("\"} ")
+                        .append(seconds(histogram.quantileNanos(quantile))).append('\n');
+            }
+            out.append("cloth_stage_latency_seconds_sum{stage=\"").append(stage.label).append("\"} ")
+                    .append(seconds(histogram.totalNanos())).append('\n');
+            out.append("cloth_stage_latency_seconds_count{stage=\"").append(stage.label).append("\"} ")
+                    .append(histogram.count()).append('\n');
+        }
+
+        out.append("# HELP cloth_stage_failures_total Failed executions of each stage\n");
+        out.append("# TYPE cloth_stage_failures_total counter\n");
+        for (Stage stage : Stage.values()) {
+            out.append("cloth_stage_failures_total{stage=\"").append(stage.label).append("\"} ")
+                    .append(failures.get(stage).sum()).append('\n');
+        }
+
+        appendSingle(out, "cloth_store_bytes_written_total", "counter", "Bytes appended to the feature store",
+                getBytesWritten());
+        appendSingle(out, "cloth_native_physical_bytes", "gauge", "Process resident memory (JavaCPP)",
+                getNativePhysicalBytes());
+        appendSingle(out, "cloth_javacpp_tracked_bytes", "gauge", "Off-heap bytes allocated through JavaCPP",
+                getJavacppTrackedBytes());
+        appendSingle(out, "cloth_direct_buffer_bytes", "gauge", "NIO direct buffer memory",
+                getDirectBufferBytes());
+        appendSingle(out, "cloth_mapped_buffer_bytes", "gauge", "Memory-mapped feature store segments",
+                getMappedBufferBytes());
+        appendSingle(out, "cloth_inference_workspace_bytes", "gauge", "ND4J inference workspace size",
+                getInferenceWorkspaceBytes());
+        return out.toString();
+    }
+
+    /**
+     * Register with the platform MBean server; a second extractor in the same JVM gets its own name
+     */
+    public synchronized ObjectName registerMBean() throws JMException {
+        if (registeredName == null) {
+            int instance = INSTANCES.incrementAndGet();
+            String name = "com.clothblockchain.extractor:type=ClothMetrics" + (instance == 1 ? "" : ",instance=" + instance);
+            registeredName = new ObjectName(name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, registeredName);
+        }
+        return registeredName;
+    }
+
+    public synchronized void unregisterMBean() throws JMException {
+        if (registeredName != null) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(registeredName)) {
+                server.unregisterMBean(registeredName);
+            }
+            registeredName = null;
+        }
+    }
+
+    private Map<String, Long> perStage(ToLongFunction<LatencyHistogram> value) {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (Stage stage : Stage.values()) {
+            values.put(stage.label, value.applyAsLong(latencies.get(stage)));
+        }
+        return values;
+    }
+
+    private Map<String, Double> perStageMillis(ToDoubleFunction<LatencyHistogram> nanos) {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (Stage stage : Stage.values()) {
+            values.put(stage.label, nanos.applyAsDouble(latencies.get(stage)) / 1_000_000.0);
+        }
+        return values;
+    }
+
+    private static void appendSingle(StringBuilder out, String name, String type, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+
+    private static long bufferPoolBytes(String pool) {
+        for (BufferPoolMXBean bean : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (bean.getName().equals(pool)) {
+                return bean.getMemoryUsed();
+            }
+        }
+        return -1;
+    }
+}
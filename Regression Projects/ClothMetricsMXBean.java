@@ -0,0 +1,39 @@
+package com.clothblockchain.extractor;
+
+import java.util.Map;
+
+/**
+ * JMX view of ClothMetrics (registered under com.clothblockchain.extractor:type=ClothMetrics)
+ *
+ * Per-stage maps are keyed by stage label: decode, resize, traditional_features,
+ * deep_features, hash, store.
+ *
+ * @author ClothBlockchain Team
+ * @version 1.0
+ */
+public interface ClothMetricsMXBean {
+
+    Map<String, Long> getStageCounts();
+
+    Map<String, Double> getStageMeanMillis();
+
+    Map<String, Double> getStageP50Millis();
+
+    Map<String, Double> getStageP99Millis();
+
+    Map<String, Double> getStageMaxMillis();
+
+    Map<String, Long> getStageFailures();
+
+    long getBytesWritten();
+
+    long getNativePhysicalBytes();
+
+    long getJavacppTrackedBytes();
+
+    long getDirectBufferBytes();
+
+    long getMappedBufferBytes();
+
+    long getInferenceWorkspaceBytes();
+}
@@ -0,0 +1,683 @@
+package com.clothblockchain.extractor;
+
+import org.opencv.core.Mat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Background re-extraction of stored records after a feature extraction version change
+ *
+ * Records written by an older pipeline (featureExtractionVersion != the current one) are
+ * re-extracted from their source images into a side store, store-v<version>, next to the
+ * live store. Records already on the current version are copied across unchanged. The live
+ * store keeps serving verification throughout; nothing in it is modified.
+ *
+ * The job is meant to run next to live traffic for hours:
+ *   - it runs on one low-priority daemon thread and, after every record, sleeps long
+ *     enough that it is busy at most dutyCycle of the wall time;
+ *   - it waits while pauseWhile says so (e.g. while the verification server has requests
+ *     in flight);
+ *   - every checkpointEvery records it seals the side store's Merkle batch, flushes, and
+ *     writes its position to reindex.checkpoint, so a crash or restart resumes from there
+ *     and redoes at most that many records.
+ *
+ * Registrations and deletions that hit the live store while the job runs are picked up
+ * from the store's index log (changedSince) once the pass over the catalog is done, and
+ * again at cut-over. A record is only complete when it is both in the side store and
+ * anchored in the side store's proof log.
+ *
+ * Cut-over (cutOver, with the extractor closed) appends the side proof log to the live one
+ * so old proofs stay valid, and swaps the directories: store becomes store-retired-<time>
+ * and store-v<version> becomes store. The similarity index is rebuilt on the next start.
+ *
+ * The store does not remember where a record's image came from, so the caller supplies
+ * the lookup (imageSource, or imageDirectory for files named after the cloth id).
+ *
+ * @author ClothBlockchain Team
+ * @version 1.0
+ */
+public class ClothReindexer implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ClothReindexer.class);
+
+    static final String SIDE_STORE_PREFIX = "store-v";
+    static final String RETIRED_STORE_PREFIX = "store-retired-";
+    static final String CHECKPOINT_FILE = "reindex.checkpoint";
+
+    // Batches sealed into the side proof log are numbered from here so they never collide
+    // with the live log's batch ids once the two logs are joined at cut-over
+    static final long FIRST_SIDE_BATCH_ID = 1L << 40;
+
+    private static final String[] IMAGE_EXTENSIONS = {".jpg", ".jpeg", ".png", ".bmp", ".tif", ".tiff"};
+
+    private final ClothFeatureExtractor extractor;
+    private final ClothFeatureStore live;
+    private final Config config;
+    private final Function<String, Path> imageSource;
+    private final Path sideDirectory;
+    private final String targetVersion = ClothFeatureExtractor.FEATURE_EXTRACTION_VERSION;
+
+    private final Object stateLock = new Object();
+    private Thread worker;
+    private volatile boolean stopRequested;
+    private volatile IOException failure;
+
+    // Counters and position, guarded by stateLock; persisted in the checkpoint
+    private final Checkpoint state;
+    private long startedNanos;
+    private long busyNanos;
+
+    public ClothReindexer(ClothFeatureExtractor extractor, Config config) throws IOException {
+        if (config.dutyCycle <= 0 || config.dutyCycle > 1) {
+            throw new IllegalArgumentException("dutyCycle must be in (0, 1]: " + config.dutyCycle);
+        }
+        if (config.imageSource == null && config.imageDirectory == null) {
+            throw new IllegalArgumentException("imageSource or imageDirectory is required");
+        }
+        this.extractor = extractor;
+        this.live = extractor.getFeatureStore();
+        this.config = config;
+        this.imageSource = config.imageSource != null ? config.imageSource : imagesIn(config.imageDirectory);
+        this.sideDirectory = sideStoreDirectory(extractor.getDatabaseDirectory());
+
+        Checkpoint saved = Checkpoint.load(sideDirectory.resolve(CHECKPOINT_FILE));
+        if (saved != null && targetVersion.equals(saved.targetVersion)) {
+            this.state = saved;
+            log.info("🔁 Resuming re-indexing to v{} after {} ({} records done)",
+                    targetVersion, saved.lastClothId, saved.scanned);
+        } else {
+            this.state = new Checkpoint();
+            state.targetVersion = targetVersion;
+            state.sync = live.checkpoint();
+        }
+    }
+
+    /**
+     * Side store directory for the current feature extraction version
+     */
+    public static Path sideStoreDirectory(Path databaseDirectory) {
+        return databaseDirectory.resolve(SIDE_STORE_PREFIX + ClothFeatureExtractor.FEATURE_EXTRACTION_VERSION);
+    }
+
+    /**
+     * Run the job on a background thread
+     */
+    public void start() {
+        synchronized (stateLock) {
+            if (worker != null) {
+                throw new IllegalStateException("Re-indexing was already started");
+            }
+            worker = new Thread(() -> {
+                try {
+                    run();
+                } catch (IOException e) {
+                    failure = e;
+                    log.error("❌ Re-indexing stopped: {}", e.getMessage());
+                }
+            }, "cloth-reindexer");
+            worker.setDaemon(true);
+            worker.setPriority(Thread.MIN_PRIORITY);
+            worker.start();
+        }
+    }
+
+    /**
+     * Run the job on the calling thread until the catalog is migrated or stop() is called
+     */
+    public Progress run() throws IOException {
+        synchronized (stateLock) {
+            startedNanos = System.nanoTime();
+            busyNanos = 0;
+        }
+        try (ClothFeatureStore side = new ClothFeatureStore(sideDirectory, ClothFeatureExtractor.FEATURE_VECTOR_SIZE,
+                ClothFeatureExtractor.COLOR_HISTOGRAM_SIZE);
+             MerkleBatchAnchor sideAnchor = new MerkleBatchAnchor(sideDirectory.resolve(ClothFeatureExtractor.MERKLE_PROOF_LOG))) {
+            sideAnchor.reserveBatchIdsFrom(FIRST_SIDE_BATCH_ID);
+            sideAnchor.setAnchorListener(config.anchorListener);
+            try {
+                if (!state.passComplete) {
+                    migrateCatalog(side, sideAnchor);
+                }
+                if (state.passComplete && !stopRequested) {
+                    catchUp(side, sideAnchor);
+                }
+            } finally {
+                saveCheckpoint(side, sideAnchor);
+            }
+        }
+
+        Progress progress = progress();
+        if (progress.complete) {
+            log.info("✅ Re-indexing to v{} complete: {} re-extracted, {} copied, {} without source image, "
+                    + "{} failed (kept on their old version)",
+                    targetVersion, progress.reextracted, progress.copied, progress.missingSource, progress.failed);
+        } else {
+            log.info("⏸️ Re-indexing to v{} stopped after {}; it resumes from the checkpoint",
+                    targetVersion, progress.lastClothId);
+        }
+        return progress;
+    }
+
+    /**
+     * Ask the job to stop after the current record and wait for it; the checkpoint is kept
+     */
+    public void stop() throws IOException {
+        stopRequested = true;
+        Thread thread;
+        synchronized (stateLock) {
+            thread = worker;
+        }
+        synchronized (stateLock) {
+            stateLock.notifyAll();
+        }
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Wait for the background job to finish (or fail)
+     */
+    public Progress awaitCompletion() throws IOException, InterruptedException {
+        Thread thread;
+        synchronized (stateLock) {
+            thread = worker;
+        }
+        if (thread != null) {
+            thread.join();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return progress();
+    }
+
+    public boolean isRunning() {
+        synchronized (stateLock) {
+            return worker != null && worker.isAlive();
+        }
+    }
+
+    public Progress progress() {
+        synchronized (stateLock) {
+            Progress progress = new Progress();
+            progress.targetVersion = state.targetVersion;
+            progress.lastClothId = state.lastClothId;
+            progress.scanned = state.scanned;
+            progress.reextracted = state.reextracted;
+            progress.copied = state.copied;
+            progress.deleted = state.deleted;
+            progress.missingSource = state.missingSource;
+            progress.failed = state.failed;
+            progress.complete = state.complete;
+            progress.running = worker != null && worker.isAlive();
+            progress.total = live.size();
+            if (startedNanos != 0) {
+                long elapsed = System.nanoTime() - startedNanos;
+                progress.elapsedMillis = elapsed / 1_000_000;
+                progress.measuredDutyCycle = elapsed > 0 ? (double) busyNanos / elapsed : 0;
+            }
+            return progress;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        stop();
+    }
+
+    // One pass over the live catalog in id order, so a checkpoint is just the last id done
+    private void migrateCatalog(ClothFeatureStore side, MerkleBatchAnchor sideAnchor) throws IOException {
+        List<String> clothIds = live.clothIds();
+        Collections.sort(clothIds);
+        String resumeAfter = state.lastClothId;
+        int sinceCheckpoint = 0;
+
+        for (String clothId : clothIds) {
+            if (resumeAfter != null && clothId.compareTo(resumeAfter) <= 0) {
+                continue;
+            }
+            if (!awaitTurn()) {
+                return;
+            }
+            long start = System.nanoTime();
+            reconcile(clothId, side, sideAnchor);
+            synchronized (stateLock) {
+                state.lastClothId = clothId;
+                state.scanned++;
+            }
+            throttle(System.nanoTime() - start);
+            if (++sinceCheckpoint >= config.checkpointEvery) {
+                saveCheckpoint(side, sideAnchor);
+                sinceCheckpoint = 0;
+            }
+        }
+        synchronized (stateLock) {
+            state.passComplete = true;
+        }
+        saveCheckpoint(side, sideAnchor);
+    }
+
+    // Apply what changed in the live store since the last sync point, until nothing does
+    private void catchUp(ClothFeatureStore side, MerkleBatchAnchor sideAnchor) throws IOException {
+        while (!stopRequested) {
+            ClothFeatureStore.IndexCheckpoint next = live.checkpoint();
+            Collection<String> changed = changedIds(live, side, state.sync);
+            if (changed.isEmpty()) {
+                break;
+            }
+            log.info("🔄 Re-indexing {} records changed in the live store", changed.size());
+            for (String clothId : changed) {
+                if (!awaitTurn()) {
+                    return;
+                }
+                long start = System.nanoTime();
+                reconcile(clothId, side, sideAnchor);
+                throttle(System.nanoTime() - start);
+            }
+            synchronized (stateLock) {
+                state.sync = next;
+            }
+            saveCheckpoint(side, sideAnchor);
+        }
+        if (!stopRequested) {
+            synchronized (stateLock) {
+                state.complete = true;
+            }
+        }
+    }
+
+    // Bring the side store's record for one cloth in line with the live store
+    private void reconcile(String clothId, ClothFeatureStore side, MerkleBatchAnchor sideAnchor) throws IOException {
+        ClothFeatureStore.RecordView current = live.get(clothId);
+        if (current == null) {
+            if (side.delete(clothId)) {
+                synchronized (stateLock) {
+                    state.deleted++;
+                }
+            }
+            return;
+        }
+
+        if (targetVersion.equals(current.featureExtractionVersion())) {
+            copyRecord(current, side);
+            synchronized (stateLock) {
+                state.copied++;
+            }
+            return;
+        }
+
+        Path image = imageSource.apply(clothId);
+        if (image == null || !Files.isRegularFile(image)) {
+            // Carried over as it is so cut-over loses nothing; it stays verifiable only against its old hash
+            log.debug("No source image for {}; kept on v{}", clothId, current.featureExtractionVersion());
+            copyRecord(current, side);
+            synchronized (stateLock) {
+                state.missingSource++;
+            }
+            return;
+        }
+        try {
+            ClothFeatureExtractor.ClothDNA clothDNA = extract(image, clothId);
+            ClothFeatureExtractor.BlockchainRecord record = extractor.generateBlockchainHash(clothDNA);
+            side.put(clothDNA, record);
+            sideAnchor.submit(record);
+            synchronized (stateLock) {
+                state.reextracted++;
+            }
+        } catch (IOException | RuntimeException e) {
+            // Kept on the old version like a missing source, or cut-over would drop the cloth
+            log.warn("Could not re-extract {} from {}; kept on v{}: {}", clothId, image,
+                    current.featureExtractionVersion(), e.toString());
+            copyRecord(current, side);
+            synchronized (stateLock) {
+                state.failed++;
+            }
+        } catch (Exception e) {
+            throw new IOException("Failed to hash re-extracted record " + clothId, e);
+        }
+    }
+
+    // Same path a registration takes, minus the feature cache (its entries are for this
+    // version already, and a miss would only fill it with bulk work)
+    private ClothFeatureExtractor.ClothDNA extract(Path image, String clothId) throws IOException {
+        String name = image.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".tif") || name.endsWith(".tiff")) {
+            return extractor.createTiledClothDNA(image, clothId);
+        }
+        Mat processedImage = extractor.preprocessClothImage(image.toString());
+        try {
+            return extractor.createClothDigitalDNA(processedImage, clothId);
+        } finally {
+            processedImage.release();
+        }
+    }
+
+    // Current-version records (registered since the upgrade) keep their hash and proof
+    private static void copyRecord(ClothFeatureStore.RecordView view, ClothFeatureStore side) throws IOException {
+        ClothFeatureExtractor.BlockchainRecord record = new ClothFeatureExtractor.BlockchainRecord();
+        record.clothId = view.clothId();
+        record.hash = view.hash();
+        record.hashScheme = view.hashScheme();
+        record.timestamp = view.timestamp();
+        long[] fingerprint = view.fingerprint();
+        record.fingerprint = fingerprint != null ? PerceptualFingerprint.toHex(fingerprint) : null;
+        side.put(view.toClothDNA(), record);
+    }
+
+    /**
+     * Ids to reconcile after a sync point: the live store's index log since then, or every
+     * id on either side if the log was compacted in between
+     */
+    private static Collection<String> changedIds(ClothFeatureStore live, ClothFeatureStore side,
+                                                 ClothFeatureStore.IndexCheckpoint since) throws IOException {
+        Set<String> changed = live.changedSince(since);
+        if (changed != null) {
+            return new TreeSet<>(changed);
+        }
+        Set<String> all = new TreeSet<>(live.clothIds());
+        all.addAll(side.clothIds());
+        all.removeIf(clothId -> {
+            ClothFeatureStore.RecordView current = live.get(clothId);
+            ClothFeatureStore.RecordView migrated = side.get(clothId);
+            if (current == null || migrated == null) {
+                return current == null && migrated == null;
+            }
+            // Old-version records were re-extracted (new hash); current-version ones must match
+            return !ClothFeatureExtractor.FEATURE_EXTRACTION_VERSION.equals(current.featureExtractionVersion())
+                    || current.hash().equals(migrated.hash());
+        });
+        return all;
+    }
+
+    // Wait while live traffic asks us to; false once stop() was called
+    private boolean awaitTurn() {
+        while (!stopRequested && config.pauseWhile != null && config.pauseWhile.getAsBoolean()) {
+            sleep(config.pausePollMillis * 1_000_000);
+        }
+        return !stopRequested;
+    }
+
+    // Sleep so that busy time stays at dutyCycle of the wall time
+    private void throttle(long busy) {
+        synchronized (stateLock) {
+            busyNanos += busy;
+        }
+        if (config.dutyCycle >= 1) {
+            return;
+        }
+        sleep((long) (busy * (1 - config.dutyCycle) / config.dutyCycle));
+    }
+
+    // Not Thread.interrupt: an interrupt mid-write would close the stores' file channels
+    private void sleep(long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        synchronized (stateLock) {
+            long remaining;
+            while (!stopRequested && (remaining = deadline - System.nanoTime()) > 0) {
+                try {
+                    stateLock.wait(remaining / 1_000_000, (int) (remaining % 1_000_000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    stopRequested = true;
+                }
+            }
+        }
+    }
+
+    // Everything before the checkpoint must be durable and anchored before it is written
+    private void saveCheckpoint(ClothFeatureStore side, MerkleBatchAnchor sideAnchor) throws IOException {
+        sideAnchor.flush();
+        side.flush();
+        Checkpoint snapshot;
+        synchronized (stateLock) {
+            snapshot = state.copy();
+        }
+        snapshot.save(sideDirectory.resolve(CHECKPOINT_FILE));
+    }
+
+    /**
+     * Make the re-indexed store the live one. The extractor using databaseDirectory must be
+     * closed. Changes made to the live store since the job's last sync are copied first;
+     * the job must have completed its pass, and an interrupted cut-over can simply be run
+     * again. Returns the directory the old store was moved to.
+     */
+    public static Path cutOver(Path databaseDirectory) throws IOException {
+        Path liveDirectory = databaseDirectory.resolve(ClothFeatureExtractor.FEATURE_STORE_DIR);
+        Path sideDirectory = sideStoreDirectory(databaseDirectory);
+        Path checkpointPath = sideDirectory.resolve(CHECKPOINT_FILE);
+
+        Checkpoint checkpoint = Checkpoint.load(checkpointPath);
+        if (checkpoint == null) {
+            throw new IOException("No re-indexing checkpoint in " + sideDirectory);
+        }
+        if (!checkpoint.complete) {
+            throw new IllegalStateException("Re-indexing to v" + checkpoint.targetVersion + " has not finished ("
+                    + checkpoint.scanned + " records scanned)");
+        }
+
+        if (!checkpoint.proofsMerged) {
+            syncForCutOver(liveDirectory, sideDirectory, checkpoint);
+            mergeProofLogs(liveDirectory.resolve(ClothFeatureExtractor.MERKLE_PROOF_LOG),
+                    sideDirectory.resolve(ClothFeatureExtractor.MERKLE_PROOF_LOG));
+            Path model = liveDirectory.resolve(ClothFeatureExtractor.FEATURE_MODEL_FILE);
+            if (Files.exists(model)) {
+                Files.copy(model, sideDirectory.resolve(ClothFeatureExtractor.FEATURE_MODEL_FILE),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+            checkpoint.proofsMerged = true;
+            checkpoint.save(checkpointPath);
+        }
+
+        // From here on only renames; a crash between them leaves store missing, which a
+        // second run completes
+        Path retired = null;
+        if (Files.exists(liveDirectory)) {
+            retired = databaseDirectory.resolve(RETIRED_STORE_PREFIX
+                    + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")));
+            Files.move(liveDirectory, retired, StandardCopyOption.ATOMIC_MOVE);
+        }
+        Files.move(sideDirectory, liveDirectory, StandardCopyOption.ATOMIC_MOVE);
+        Files.deleteIfExists(liveDirectory.resolve(CHECKPOINT_FILE));
+
+        log.info("🔀 Cut over to feature extraction v{}; previous store kept in {}", checkpoint.targetVersion,
+                retired != null ? retired.getFileName() : "(already moved)");
+        return retired;
+    }
+
+    // Offline, so every change is a copy or a delete: the extractor only writes the current version
+    private static void syncForCutOver(Path liveDirectory, Path sideDirectory, Checkpoint checkpoint)
+            throws IOException {
+        try (ClothFeatureStore live = new ClothFeatureStore(liveDirectory, ClothFeatureExtractor.FEATURE_VECTOR_SIZE,
+                ClothFeatureExtractor.COLOR_HISTOGRAM_SIZE);
+             ClothFeatureStore side = new ClothFeatureStore(sideDirectory, ClothFeatureExtractor.FEATURE_VECTOR_SIZE,
+                     ClothFeatureExtractor.COLOR_HISTOGRAM_SIZE)) {
+            int synced = 0;
+            for (String clothId : changedIds(live, side, checkpoint.sync)) {
+                ClothFeatureStore.RecordView current = live.get(clothId);
+                if (current == null) {
+                    side.delete(clothId);
+                } else if (checkpoint.targetVersion.equals(current.featureExtractionVersion())) {
+                    copyRecord(current, side);
+                } else if (!side.contains(clothId)) {
+                    // Only possible if an older build wrote to the store after the job's last sync
+                    throw new IllegalStateException("Record " + clothId + " is still on v"
+                            + current.featureExtractionVersion() + "; run the re-indexer again before cutting over");
+                }
+                synced++;
+            }
+            checkpoint.sync = live.checkpoint();
+            if (synced > 0) {
+                log.info("🔄 Copied {} late changes into the re-indexed store", synced);
+            }
+        }
+    }
+
+    // Old proofs first, then the re-extracted ones: the proof log keeps the last entry per id
+    private static void mergeProofLogs(Path liveLog, Path sideLog) throws IOException {
+        // Opening an anchor drops a torn tail entry; closing an idle one writes nothing
+        new MerkleBatchAnchor(liveLog).close();
+        new MerkleBatchAnchor(sideLog).close();
+
+        Path tempPath = sideLog.resolveSibling(sideLog.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tempPath)) {
+            Files.copy(liveLog, out);
+            Files.copy(sideLog, out);
+        }
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(tempPath, sideLog, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Function<String, Path> imagesIn(Path directory) {
+        return clothId -> {
+            for (String extension : IMAGE_EXTENSIONS) {
+                Path candidate = directory.resolve(clothId + extension);
+                if (Files.isRegularFile(candidate)) {
+                    return candidate;
+                }
+            }
+            return null;
+        };
+    }
+
+    /**
+     * Position and counters of a run, stored as a properties file next to the side store
+     */
+    private static final class Checkpoint {
+        String targetVersion;
+        String lastClothId;
+        long scanned;
+        long reextracted;
+        long copied;
+        long deleted;
+        long missingSource;
+        long failed;
+        boolean passComplete;
+        boolean complete;
+        boolean proofsMerged;
+        ClothFeatureStore.IndexCheckpoint sync = new ClothFeatureStore.IndexCheckpoint();
+
+        Checkpoint copy() {
+            Checkpoint copy = new Checkpoint();
+            copy.targetVersion = targetVersion;
+            copy.lastClothId = lastClothId;
+            copy.scanned = scanned;
+            copy.reextracted = reextracted;
+            copy.copied = copied;
+            copy.deleted = deleted;
+            copy.missingSource = missingSource;
+            copy.failed = failed;
+            copy.passComplete = passComplete;
+            copy.complete = complete;
+            copy.proofsMerged = proofsMerged;
+            copy.sync = new ClothFeatureStore.IndexCheckpoint();
+            copy.sync.logLength = sync.logLength;
+            copy.sync.tailChecksum = sync.tailChecksum;
+            return copy;
+        }
+
+        void save(Path path) throws IOException {
+            Properties properties = new Properties();
+            properties.setProperty("targetVersion", targetVersion);
+            if (lastClothId != null) {
+                properties.setProperty("lastClothId", lastClothId);
+            }
+            properties.setProperty("scanned", Long.toString(scanned));
+            properties.setProperty("reextracted", Long.toString(reextracted));
+            properties.setProperty("copied", Long.toString(copied));
+            properties.setProperty("deleted", Long.toString(deleted));
+            properties.setProperty("missingSource", Long.toString(missingSource));
+            properties.setProperty("failed", Long.toString(failed));
+            properties.setProperty("passComplete", Boolean.toString(passComplete));
+            properties.setProperty("complete", Boolean.toString(complete));
+            properties.setProperty("proofsMerged", Boolean.toString(proofsMerged));
+            properties.setProperty("syncLogLength", Long.toString(sync.logLength));
+            properties.setProperty("syncTailChecksum", Long.toString(sync.tailChecksum));
+
+            Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(tempPath)) {
+                properties.store(out, "Cloth feature re-indexing checkpoint");
+            }
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        static Checkpoint load(Path path) throws IOException {
+            if (!Files.exists(path)) {
+                return null;
+            }
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(path)) {
+                properties.load(in);
+            }
+            Checkpoint checkpoint = new Checkpoint();
+            checkpoint.targetVersion = properties.getProperty("targetVersion");
+            checkpoint.lastClothId = properties.getProperty("lastClothId");
+            checkpoint.scanned = Long.parseLong(properties.getProperty("scanned", "0"));
+            checkpoint.reextracted = Long.parseLong(properties.getProperty("reextracted", "0"));
+            checkpoint.copied = Long.parseLong(properties.getProperty("copied", "0"));
+            checkpoint.deleted = Long.parseLong(properties.getProperty("deleted", "0"));
+            checkpoint.missingSource = Long.parseLong(properties.getProperty("missingSource", "0"));
+            checkpoint.failed = Long.parseLong(properties.getProperty("failed", "0"));
+            checkpoint.passComplete = Boolean.parseBoolean(properties.getProperty("passComplete"));
+            checkpoint.complete = Boolean.parseBoolean(properties.getProperty("complete"));
+            checkpoint.proofsMerged = Boolean.parseBoolean(properties.getProperty("proofsMerged"));
+            checkpoint.sync.logLength = Long.parseLong(properties.getProperty("syncLogLength", "0"));
+            checkpoint.sync.tailChecksum = Long.parseLong(properties.getProperty("syncTailChecksum", "0"));
+            return checkpoint;
+        }
+    }
+
+    // Configuration and data classes
+    public static class Config {
+        /** Source image for a cloth id, or null if there is none */
+        public Function<String, Path> imageSource;
+        /** Used when imageSource is not set: <clothId>.jpg/.jpeg/.png/.bmp/.tif/.tiff in this directory */
+        public Path imageDirectory;
+        /** Share of wall time the job may be busy, in (0, 1] */
+        public double dutyCycle = 0.25;
+        /** The job waits while this returns true, e.g. server::inFlightRequests > 0 */
+        public BooleanSupplier pauseWhile;
+        public long pausePollMillis = 20;
+        public int checkpointEvery = 200;
+        /** Receives the side store's sealed batches, to anchor their roots on chain */
+        public Consumer<MerkleBatchAnchor.AnchoredBatch> anchorListener;
+    }
+
+    public static class Progress {
+        public String targetVersion;
+        public String lastClothId;
+        public long total;
+        public long scanned;
+        public long reextracted;
+        public long copied;
+        public long deleted;
+        public long missingSource;
+        public long failed;
+        public boolean running;
+        public boolean complete;
+        public long elapsedMillis;
+        public double measuredDutyCycle;
+    }
+}
@@ -0,0 +1,454 @@
+package com.clothblockchain.extractor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Similarity search over every cloth in the feature store
+ *
+ * Owns the HNSW index used by verifyBySimilarity. The graph is saved next to the feature
+ * store on close and reloaded on startup; only cloths written after the snapshot (found via
+ * the store's index log) are re-inserted, so a restart does not rebuild millions of nodes.
+ * Loading runs on a background thread; callers that need the index wait for it.
+ *
+ * The graph can hold its vectors as float16 or int8 instead of float32 to cut the heap it
+ * needs (2 and ~4 times smaller). The store keeps the full-precision features, so quantized
+ * searches fetch RERANK_FACTOR times more candidates and re-rank them exactly from the store.
+ *
+ * Next to the graph it keeps a HammingIndex of perceptual fingerprints for exact-radius
+ * lookups. That one is cheap to rebuild (32 bytes per record), so it is not snapshotted;
+ * records stored before fingerprints existed get theirs computed while loading.
+ *
+ * Changing the vector layout or encoding builds the new graph off to the side while adds and
+ * searches keep using the old one, then swaps graph and layout together. The same rebuild runs
+ * in the background once re-stored cloths have left too many dead nodes in the graph; it
+ * rebuilds the fingerprint index as well, which keeps dead entries the same way.
+ *
+ * @author ClothBlockchain Team
+ * @version 1.0
+ */
+public class ClothSimilarityCatalog {
+
+    private static final Logger log = LoggerFactory.getLogger(ClothSimilarityCatalog.class);
+
+    private static final double HISTOGRAM_WEIGHT = 0.5;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int RERANK_FACTOR = 4;
+    private static final int COMPACT_MIN_DELETED = 1024;
+    private static final double COMPACT_DELETED_RATIO = 0.25;
+
+    private final ClothFeatureStore store;
+    private final Path snapshotPath;
+    private final int deepDims;
+    private final int histogramDims;
+    private final PerceptualFingerprint fingerprinter;
+    private final CountDownLatch ready = new CountDownLatch(1);
+
+    // Held for reading by add/search and for writing while a rebuilt index is swapped in,
+    // so a vector is always built for the layout of the index it goes into
+    private final ReentrantReadWriteLock layoutLock = new ReentrantReadWriteLock();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+
+    private volatile boolean includeColorHistogram = false;
+    private volatile HnswIndex.Encoding vectorEncoding = HnswIndex.Encoding.INT8;
+    private volatile HnswIndex index;
+    private volatile HammingIndex fingerprintIndex;
+    private volatile IOException loadFailure;
+
+    // Filled in by the loader
+    volatile long loadMillis = -1;
+    volatile String loadSource = "loading";
+
+    public ClothSimilarityCatalog(ClothFeatureStore store, Path snapshotPath, int deepDims, int histogramDims,
+                                  PerceptualFingerprint fingerprinter) {
+        this.store = store;
+        this.snapshotPath = snapshotPath;
+        this.deepDims = deepDims;
+        this.histogramDims = histogramDims;
+        this.fingerprinter = fingerprinter;
+    }
+
+    /**
+     * Load (or rebuild) the index on a background thread
+     */
+    public void loadAsync() {
+        Thread loader = new Thread(() -> {
+            long start = System.nanoTime();
+            try {
+                index = load();
+                fingerprintIndex = loadFingerprints();
+            } catch (IOException e) {
+                loadFailure = e;
+                log.error("Failed to load similarity index: {}", e.getMessage());
+            } finally {
+                loadMillis = (System.nanoTime() - start) / 1_000_000;
+                ready.countDown();
+            }
+            log.info("🔎 Similarity index ready: {} cloths, {} fingerprints ({}, {} ms)",
+                    index != null ? index.size() : 0, fingerprintIndex != null ? fingerprintIndex.size() : 0,
+                    loadSource, loadMillis);
+        }, "similarity-index-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    public boolean isReady() {
+        return ready.getCount() == 0;
+    }
+
+    public void add(ClothFeatureExtractor.ClothDNA clothDNA, long[] fingerprint) throws IOException {
+        awaitReady();
+        HnswIndex current;
+        layoutLock.readLock().lock();
+        try {
+            current = index;
+            current.add(clothDNA.clothId, vectorOf(clothDNA.deepFeatures, clothDNA.traditionalFeatures.colorHistogram,
+                    includeColorHistogram));
+            fingerprintIndex.add(clothDNA.clothId, fingerprint);
+        } finally {
+            layoutLock.readLock().unlock();
+        }
+        compactIfNeeded(current);
+    }
+
+    public List<HnswIndex.Neighbor> search(ClothFeatureExtractor.ClothDNA query, int k) throws IOException {
+        awaitReady();
+        layoutLock.readLock().lock();
+        try {
+            HnswIndex current = index;
+            boolean include = includeColorHistogram;
+            float[] vector = vectorOf(query.deepFeatures, query.traditionalFeatures.colorHistogram, include);
+            if (current.encoding() == HnswIndex.Encoding.FLOAT32) {
+                return current.search(vector, k);
+            }
+            return rerank(vector, current.search(vector, k * RERANK_FACTOR), k, include);
+        } finally {
+            layoutLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Registered cloths whose fingerprint is within maxDistance bits, closest first
+     */
+    public List<HammingIndex.Match> searchFingerprint(long[] fingerprint, int maxDistance) throws IOException {
+        awaitReady();
+        return fingerprintIndex.search(fingerprint, maxDistance);
+    }
+
+    /**
+     * Switch the vector layout and rebuild the index from the store
+     */
+    public synchronized void setIncludeColorHistogram(boolean include) throws IOException {
+        awaitReady();
+        if (include == includeColorHistogram) {
+            return;
+        }
+        rebuild(include, vectorEncoding);
+    }
+
+    /**
+     * Switch how the graph stores vectors and rebuild the index from the store
+     */
+    public synchronized void setVectorEncoding(HnswIndex.Encoding encoding) throws IOException {
+        awaitReady();
+        if (encoding == vectorEncoding) {
+            return;
+        }
+        rebuild(includeColorHistogram, encoding);
+    }
+
+    public HnswIndex.Encoding getVectorEncoding() {
+        return vectorEncoding;
+    }
+
+    /**
+     * Persist the graph together with the store position it reflects
+     */
+    public synchronized void saveSnapshot() throws IOException {
+        if (!isReady() || index == null) {
+            return;
+        }
+
+        // Checkpoint first: anything written while serializing is simply re-applied on load
+        ClothFeatureStore.IndexCheckpoint checkpoint = store.checkpoint();
+        Path tempPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath), 1 << 16))) {
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(checkpoint.logLength);
+            out.writeLong(checkpoint.tailChecksum);
+            out.writeBoolean(includeColorHistogram);
+            index.writeTo(out);
+        }
+        Files.move(tempPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private HnswIndex awaitReady() throws IOException {
+        try {
+            ready.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the similarity index");
+        }
+        if (index == null) {
+            throw new IOException("Similarity index unavailable", loadFailure);
+        }
+        return index;
+    }
+
+    /**
+     * Build an index for the given layout from the store without blocking add/search, then
+     * swap it in together with the layout. Cloths stored while it was building are applied
+     * under the write lock before the swap, so none are lost.
+     */
+    private synchronized void rebuild(boolean include, HnswIndex.Encoding encoding) throws IOException {
+        rebuild(include, encoding, false);
+    }
+
+    private synchronized void rebuild(boolean include, HnswIndex.Encoding encoding, boolean withFingerprints)
+            throws IOException {
+        ClothFeatureStore.IndexCheckpoint checkpoint = store.checkpoint();
+        HnswIndex rebuilt = rebuildFromStore(include, encoding);
+        HammingIndex rebuiltFingerprints = withFingerprints ? loadFingerprints() : null;
+
+        layoutLock.writeLock().lock();
+        try {
+            Set<String> changed = store.changedSince(checkpoint);
+            if (changed == null) {
+                // The store was compacted meanwhile; rebuild again, this time holding off writers
+                rebuilt = rebuildFromStore(include, encoding);
+                rebuiltFingerprints = withFingerprints ? loadFingerprints() : null;
+            } else {
+                applyChanges(rebuilt, changed, include);
+                if (withFingerprints) {
+                    applyFingerprintChanges(rebuiltFingerprints, changed);
+                }
+            }
+            index = rebuilt;
+            if (withFingerprints) {
+                fingerprintIndex = rebuiltFingerprints;
+            }
+            includeColorHistogram = include;
+            vectorEncoding = encoding;
+        } finally {
+            layoutLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Rebuild on a background thread once dead nodes (the old nodes of re-stored cloths) make
+     * up too much of the graph; HnswIndex and HammingIndex never reuse their slots
+     */
+    private void compactIfNeeded(HnswIndex current) {
+        int deleted = current.deletedCount();
+        if (deleted < COMPACT_MIN_DELETED || deleted < current.size() * COMPACT_DELETED_RATIO) {
+            return;
+        }
+        if (!compacting.compareAndSet(false, true)) {
+            return;
+        }
+        Thread compactor = new Thread(() -> {
+            try {
+                compact();
+            } catch (IOException | RuntimeException e) {
+                log.warn("Failed to compact similarity index: {}", e.getMessage());
+            } finally {
+                compacting.set(false);
+            }
+        }, "similarity-index-compactor");
+        compactor.setDaemon(true);
+        compactor.start();
+    }
+
+    private synchronized void compact() throws IOException {
+        // A layout switch may have rebuilt the index already
+        int deleted = index.deletedCount();
+        if (deleted < COMPACT_MIN_DELETED) {
+            return;
+        }
+        int deletedFingerprints = fingerprintIndex.deletedCount();
+        rebuild(includeColorHistogram, vectorEncoding, true);
+        log.info("🧹 Compacted similarity index: dropped {} dead node(s) and {} dead fingerprint(s)",
+                deleted, deletedFingerprints);
+    }
+
+    private HnswIndex load() throws IOException {
+        boolean include = includeColorHistogram;
+        HnswIndex.Encoding encoding = vectorEncoding;
+        if (!Files.exists(snapshotPath)) {
+            loadSource = "rebuilt";
+            return rebuildFromStore(include, encoding);
+        }
+
+        HnswIndex loaded;
+        ClothFeatureStore.IndexCheckpoint checkpoint = new ClothFeatureStore.IndexCheckpoint();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath), 1 << 16))) {
+            if (in.readInt() != SNAPSHOT_VERSION) {
+                loadSource = "rebuilt, snapshot version changed";
+                return rebuildFromStore(include, encoding);
+            }
+            checkpoint.logLength = in.readLong();
+            checkpoint.tailChecksum = in.readLong();
+            if (in.readBoolean() != include) {
+                loadSource = "rebuilt, vector layout changed";
+                return rebuildFromStore(include, encoding);
+            }
+            loaded = HnswIndex.readFrom(in);
+        }
+        if (loaded.encoding() != encoding) {
+            loadSource = "rebuilt, vector encoding changed";
+            return rebuildFromStore(include, encoding);
+        }
+
+        Set<String> changed = store.changedSince(checkpoint);
+        if (changed == null) {
+            loadSource = "rebuilt, store was compacted";
+            return rebuildFromStore(include, encoding);
+        }
+
+        // Bring the snapshot up to date with cloths stored or deleted after it was taken
+        applyChanges(loaded, changed, include);
+        loadSource = "snapshot + " + changed.size() + " change(s)";
+        return loaded;
+    }
+
+    private HammingIndex loadFingerprints() {
+        HammingIndex loaded = new HammingIndex();
+        int computed = 0;
+        for (String clothId : store.clothIds()) {
+            ClothFeatureStore.RecordView record = store.get(clothId);
+            if (record == null) {
+                continue;
+            }
+            long[] fingerprint = record.fingerprint();
+            if (fingerprint == null) {
+                fingerprint = fingerprinter.compute(record.toClothDNA());
+                computed++;
+            }
+            loaded.add(clothId, fingerprint);
+        }
+        if (computed > 0) {
+            log.info("🧬 Computed {} fingerprint(s) missing from older records", computed);
+        }
+        return loaded;
+    }
+
+    private HnswIndex rebuildFromStore(boolean include, HnswIndex.Encoding encoding) {
+        HnswIndex rebuilt = new HnswIndex(include ? deepDims + histogramDims : deepDims, encoding);
+        for (String clothId : store.clothIds()) {
+            ClothFeatureStore.RecordView record = store.get(clothId);
+            if (record != null) {
+                rebuilt.add(clothId, vectorOf(record, include));
+            }
+        }
+        return rebuilt;
+    }
+
+    private void applyChanges(HnswIndex target, Set<String> changed, boolean include) {
+        for (String clothId : changed) {
+            ClothFeatureStore.RecordView record = store.get(clothId);
+            if (record != null) {
+                target.add(clothId, vectorOf(record, include));
+            } else {
+                target.remove(clothId);
+            }
+        }
+    }
+
+    private void applyFingerprintChanges(HammingIndex target, Set<String> changed) {
+        for (String clothId : changed) {
+            ClothFeatureStore.RecordView record = store.get(clothId);
+            if (record != null) {
+                long[] fingerprint = record.fingerprint();
+                target.add(clothId, fingerprint != null ? fingerprint : fingerprinter.compute(record.toClothDNA()));
+            } else {
+                target.remove(clothId);
+            }
+        }
+    }
+
+    /**
+     * Exact cosine distances for the candidates a quantized graph returned, closest k first.
+     * Candidates deleted since the search are dropped.
+     */
+    private List<HnswIndex.Neighbor> rerank(float[] query, List<HnswIndex.Neighbor> candidates, int k, boolean include) {
+        double queryNorm = norm(query);
+        List<HnswIndex.Neighbor> exact = new ArrayList<>(candidates.size());
+        for (HnswIndex.Neighbor candidate : candidates) {
+            ClothFeatureStore.RecordView record = store.get(candidate.clothId);
+            if (record == null) {
+                continue;
+            }
+            float[] vector = vectorOf(record, include);
+            double dot = 0.0;
+            for (int i = 0; i < vector.length; i++) {
+                dot += (double) query[i] * vector[i];
+            }
+            double distance = Math.max(0.0, 1.0 - dot / (queryNorm * norm(vector)));
+            exact.add(new HnswIndex.Neighbor(candidate.clothId, distance));
+        }
+        exact.sort(Comparator.comparingDouble(neighbor -> neighbor.distance));
+        return exact.size() > k ? new ArrayList<>(exact.subList(0, k)) : exact;
+    }
+
+    /**
+     * Vector used for similarity search: normalized deep features, optionally followed by
+     * the normalized color histogram at a lower weight
+     */
+    private float[] vectorOf(double[] deep, double[] histogram, boolean include) {
+        float[] vector = new float[include ? deepDims + histogramDims : deepDims];
+        double deepNorm = norm(deep);
+        for (int i = 0; i < deepDims; i++) {
+            vector[i] = (float) (deep[i] / deepNorm);
+        }
+
+        if (include) {
+            double histogramNorm = norm(histogram);
+            for (int i = 0; i < histogramDims; i++) {
+                vector[deepDims + i] = (float) (HISTOGRAM_WEIGHT * histogram[i] / histogramNorm);
+            }
+        }
+        return vector;
+    }
+
+    // Same as above, straight from the mapped record without materialising a ClothDNA
+    private float[] vectorOf(ClothFeatureStore.RecordView record, boolean include) {
+        double[] deep = new double[deepDims];
+        for (int i = 0; i < deepDims; i++) {
+            deep[i] = record.deepFeature(i);
+        }
+        double[] histogram = null;
+        if (include) {
+            histogram = new double[histogramDims];
+            for (int i = 0; i < histogramDims; i++) {
+                histogram[i] = record.colorHistogram(i);
+            }
+        }
+        return vectorOf(deep, histogram, include);
+    }
+
+    private static double norm(float[] values) {
+        double sum = 0.0;
+        for (float value : values) {
+            sum += (double) value * value;
+        }
+        return sum > 0 ? Math.sqrt(sum) : 1.0;
+    }
+
+    private static double norm(double[] values) {
+        double sum = 0.0;
+        for (double value : values) {
+            sum += value * value;
+        }
+        return sum > 0 ? Math.sqrt(sum) : 1.0;
+    }
+}
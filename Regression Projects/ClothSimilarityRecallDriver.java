@@ -0,0 +1,195 @@
+package com.clothblockchain.extractor;
+
+import java.util.*;
+
+/**
+ * Measures what quantizing the similarity catalog costs in recall and buys in memory and speed
+ *
+ * Builds a catalog of synthetic feature vectors shaped like the CNN output (non-negative,
+ * clustered by fabric, with per-item noise) and queries it with noisy re-scans of
+ * registered items. The ground truth is an exact brute-force search in double precision.
+ * For every vector encoding it reports:
+ *   - bytes per vector,
+ *   - recall@1 and recall@10 of the HNSW graph,
+ *   - recall@10 after re-ranking 4k graph candidates exactly, as ClothSimilarityCatalog does,
+ *   - recall@10 and time per query of an exhaustive scan with the encoding's kernel,
+ *   - nanoseconds per distance of the raw kernel (Vector API when started with
+ *     --add-modules jdk.incubator.vector on JDK 17+ from the multi-release jar).
+ *
+ * Usage: ClothSimilarityRecallDriver [vectors] [queries] [dimension]
+ *
+ * @author ClothBlockchain Team
+ * @version 1.0
+ */
+public class ClothSimilarityRecallDriver {
+
+    private static final int K = 10;
+    private static final int CLUSTERS = 200;
+    private static final int RERANK_FACTOR = 4;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        int dimension = args.length > 2 ? Integer.parseInt(args[2]) : 256;
+
+        Random random = new Random(42);
+        float[][] centers = new float[CLUSTERS][dimension];
+        for (float[] center : centers) {
+            for (int i = 0; i < dimension; i++) {
+                center[i] = (float) Math.max(0.0, random.nextGaussian());
+            }
+        }
+        float[][] catalog = new float[count][];
+        for (int n = 0; n < count; n++) {
+            catalog[n] = perturb(centers[random.nextInt(CLUSTERS)], 0.35, random);
+        }
+        float[][] queryVectors = new float[queries][];
+        for (int q = 0; q < queries; q++) {
+            queryVectors[q] = perturb(catalog[random.nextInt(count)], 0.1, random);
+        }
+
+        System.out.println("🎯 Recall: " + count + " vectors x " + dimension + " dims, " + queries + " queries, k=" + K
+                + ", " + VectorKernels.implementation() + " kernels");
+        int[][] truth = exactTopK(catalog, queryVectors);
+
+        for (HnswIndex.Encoding encoding : HnswIndex.Encoding.values()) {
+            HnswIndex index = new HnswIndex(dimension, encoding);
+            long buildStart = System.nanoTime();
+            for (int n = 0; n < count; n++) {
+                index.add(Integer.toString(n), catalog[n]);
+            }
+            long buildMillis = (System.nanoTime() - buildStart) / 1_000_000;
+
+            double graphRecall1 = 0, graphRecall10 = 0, rerankRecall10 = 0, scanRecall10 = 0;
+            for (int q = 0; q < queries; q++) {
+                List<HnswIndex.Neighbor> found = index.search(queryVectors[q], K);
+                graphRecall1 += !found.isEmpty() && Integer.parseInt(found.get(0).clothId) == truth[q][0] ? 1 : 0;
+                graphRecall10 += overlap(found, truth[q]);
+                rerankRecall10 += overlap(rerank(catalog, queryVectors[q], index.search(queryVectors[q], K * RERANK_FACTOR)), truth[q]);
+            }
+            // Warm the scan up before timing it
+            for (int q = 0; q < Math.min(queries, 50); q++) {
+                index.searchExhaustive(queryVectors[q], K);
+            }
+            long scanStart = System.nanoTime();
+            for (int q = 0; q < queries; q++) {
+                scanRecall10 += overlap(index.searchExhaustive(queryVectors[q], K), truth[q]);
+            }
+            double scanMicros = (System.nanoTime() - scanStart) / 1e3 / queries;
+
+            System.out.println(String.format("  %-8s %5d B/vector  build %6d ms  graph recall@1 %.4f  @10 %.4f  "
+                            + "reranked @10 %.4f  scan recall@10 %.4f  scan %8.1f µs/query  kernel %5.1f ns",
+                    encoding, index.vectorBytes() / count, buildMillis, graphRecall1 / queries,
+                    graphRecall10 / queries / K, rerankRecall10 / queries / K, scanRecall10 / queries / K, scanMicros,
+                    kernelNanos(encoding, catalog, queryVectors[0])));
+        }
+        System.out.println("  (double baseline: " + dimension * 8 + " B/vector)");
+    }
+
+    private static float[] perturb(float[] base, double noise, Random random) {
+        float[] vector = new float[base.length];
+        for (int i = 0; i < base.length; i++) {
+            vector[i] = (float) Math.max(0.0, base[i] + noise * random.nextGaussian());
+        }
+        return vector;
+    }
+
+    private static int[][] exactTopK(float[][] catalog, float[][] queries) {
+        double[] norms = new double[catalog.length];
+        for (int n = 0; n < catalog.length; n++) {
+            norms[n] = Math.sqrt(dot(catalog[n], catalog[n]));
+        }
+        int[][] truth = new int[queries.length][];
+        for (int q = 0; q < queries.length; q++) {
+            double queryNorm = Math.sqrt(dot(queries[q], queries[q]));
+            Integer[] order = new Integer[catalog.length];
+            double[] similarity = new double[catalog.length];
+            for (int n = 0; n < catalog.length; n++) {
+                order[n] = n;
+                similarity[n] = dot(queries[q], catalog[n]) / (queryNorm * norms[n]);
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(similarity[b], similarity[a]));
+            truth[q] = new int[K];
+            for (int i = 0; i < K; i++) {
+                truth[q][i] = order[i];
+            }
+        }
+        return truth;
+    }
+
+    private static List<HnswIndex.Neighbor> rerank(float[][] catalog, float[] query, List<HnswIndex.Neighbor> candidates) {
+        double queryNorm = Math.sqrt(dot(query, query));
+        List<HnswIndex.Neighbor> exact = new ArrayList<>(candidates.size());
+        for (HnswIndex.Neighbor candidate : candidates) {
+            float[] vector = catalog[Integer.parseInt(candidate.clothId)];
+            double similarity = dot(query, vector) / (queryNorm * Math.sqrt(dot(vector, vector)));
+            exact.add(new HnswIndex.Neighbor(candidate.clothId, 1.0 - similarity));
+        }
+        exact.sort(Comparator.comparingDouble(neighbor -> neighbor.distance));
+        return exact.subList(0, Math.min(K, exact.size()));
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            sum += (double) a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static int overlap(List<HnswIndex.Neighbor> found, int[] truth) {
+        Set<Integer> expected = new HashSet<>();
+        for (int id : truth) {
+            expected.add(id);
+        }
+        int hits = 0;
+        for (HnswIndex.Neighbor neighbor : found) {
+            hits += expected.contains(Integer.parseInt(neighbor.clothId)) ? 1 : 0;
+        }
+        return hits;
+    }
+
+    /**
+     * Time of one query-against-stored distance with the encoding's kernel, averaged over the catalog
+     */
+    private static double kernelNanos(HnswIndex.Encoding encoding, float[][] catalog, float[] query) {
+        int count = Math.min(catalog.length, 4096);
+        float[][] floats = new float[count][];
+        short[][] halves = new short[count][];
+        byte[][] codes = new byte[count][];
+        float[] offsets = new float[count];
+        float[] scales = new float[count];
+        for (int n = 0; n < count; n++) {
+            floats[n] = catalog[n];
+            halves[n] = VectorKernels.toHalf(catalog[n]);
+            codes[n] = new byte[query.length];
+            float[] offsetAndScale = VectorKernels.quantizeInt8(catalog[n], codes[n]);
+            offsets[n] = offsetAndScale[0];
+            scales[n] = offsetAndScale[1];
+        }
+
+        float querySum = VectorKernels.sum(query);
+        double sink = 0;
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 20; round++) {
+            long start = System.nanoTime();
+            for (int n = 0; n < count; n++) {
+                switch (encoding) {
+                    case FLOAT16:
+                        sink += VectorKernels.dot(query, halves[n]);
+                        break;
+                    case INT8:
+                        sink += offsets[n] * querySum + scales[n] * VectorKernels.dot(query, codes[n]);
+                        break;
+                    default:
+                        sink += VectorKernels.dot(query, floats[n]);
+                }
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        if (sink == 42) {
+            System.out.print(""); // keep the loop from being optimised away
+        }
+        return (double) best / count;
+    }
+}
@@ -0,0 +1,164 @@
+package com.clothblockchain.extractor;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop load generator for ClothVerificationServer
+ *
+ * Each of the client threads sends a verification request, waits for the answer and sends
+ * the next one, until the request budget is spent. Latency is measured per request on the
+ * client side and reported as p50/p90/p99/max together with throughput.
+ *
+ * Without a server URL the generator starts a server in this JVM (temp database, synthetic
+ * images) and runs three times: with batching disabled (batch size 1) and with the given
+ * batch settings, both with the feature cache off, so the effect of micro-batching can be
+ * read off directly; then once more with the feature cache on, where every repeat image is
+ * a cache hit.
+ *
+ * Usage: ClothVerificationLoadGenerator [clients] [requests] [maxBatchSize] [maxBatchWaitMicros] [serverUrl] [imageDirectory]
+ *
+ * @author ClothBlockchain Team
+ * @version 1.0
+ */
+public class ClothVerificationLoadGenerator {
+
+    private static final String EXPECTED_HASH = "00".repeat(32);
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 512;
+        int maxBatchSize = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+        long maxBatchWaitMicros = args.length > 3 ? Long.parseLong(args[3]) : 5_000;
+        String serverUrl = args.length > 4 && !args[4].equals("-") ? args[4] : null;
+
+        Path scratch = Files.createTempDirectory("cloth-load");
+        try {
+            Path imageDirectory = args.length > 5 ? Paths.get(args[5])
+                    : ClothExtractorStressDriver.writeSyntheticImages(scratch.resolve("images"));
+            List<byte[]> images = new ArrayList<>();
+            for (Path image : ClothExtractorStressDriver.listImages(imageDirectory)) {
+                images.add(Files.readAllBytes(image));
+            }
+            if (images.isEmpty()) {
+                throw new IllegalArgumentException("No images in " + imageDirectory);
+            }
+
+            System.out.println("📈 Load: " + clients + " clients, " + requests + " requests, " + images.size() + " images");
+            if (serverUrl != null) {
+                report("remote " + serverUrl, run(serverUrl, images, clients, requests), null);
+                return;
+            }
+
+            try (ClothFeatureExtractor extractor = new ClothFeatureExtractor(scratch.resolve("db"))) {
+                extractor.warmUp();
+                // The same few images are sent over and over; measure extraction first, then cache hits
+                ClothFeatureCache featureCache = extractor.getFeatureCache();
+                extractor.setFeatureCache(null);
+                runInProcess(extractor, images, clients, requests, 1, 0);
+                runInProcess(extractor, images, clients, requests, maxBatchSize, maxBatchWaitMicros);
+                extractor.setFeatureCache(featureCache);
+                runInProcess(extractor, images, clients, requests, maxBatchSize, maxBatchWaitMicros);
+            }
+        } finally {
+            ClothExtractorStressDriver.deleteRecursively(scratch);
+        }
+    }
+
+    private static void runInProcess(ClothFeatureExtractor extractor, List<byte[]> images, int clients, int requests,
+                                     int maxBatchSize, long maxBatchWaitMicros) throws Exception {
+        ClothVerificationServer.Config config = new ClothVerificationServer.Config();
+        config.port = 0;
+        config.maxBatchSize = maxBatchSize;
+        config.maxBatchWaitMicros = maxBatchWaitMicros;
+        try (ClothVerificationServer server = new ClothVerificationServer(extractor, config)) {
+            String url = "http://localhost:" + server.getAddress().getPort();
+            String label = (maxBatchSize == 1 ? "no batching" : "batch<=" + maxBatchSize + ", wait " + maxBatchWaitMicros + " µs") +
+                    (server.usesVirtualThreads() ? ", virtual threads" : ", platform threads") +
+                    (extractor.getFeatureCache() != null ? ", feature cache" : "");
+            report(label, run(url, images, clients, requests), server.getBatcher());
+        }
+    }
+
+    private static LoadResult run(String serverUrl, List<byte[]> images, int clients, int requests)
+            throws InterruptedException {
+        ExecutorService clientThreads = Executors.newFixedThreadPool(clients);
+        HttpClient http = HttpClient.newBuilder().executor(clientThreads).build();
+        URI uri = URI.create(serverUrl + "/verify?expectedHash=" + EXPECTED_HASH);
+
+        // The first round of requests per client warms up JIT, workspaces and replicas and isn't counted
+        int warmup = Math.min(clients, requests / 4);
+        AtomicInteger issued = new AtomicInteger();
+        AtomicLong errors = new AtomicLong();
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicLong measuredStart = new AtomicLong();
+
+        ExecutorService workers = Executors.newFixedThreadPool(clients);
+        for (int client = 0; client < clients; client++) {
+            workers.execute(() -> {
+                int sequence;
+                while ((sequence = issued.getAndIncrement()) < requests) {
+                    if (sequence == warmup) {
+                        measuredStart.set(System.nanoTime());
+                    }
+                    HttpRequest request = HttpRequest.newBuilder(uri)
+                            .POST(HttpRequest.BodyPublishers.ofByteArray(images.get(sequence % images.size())))
+                            .build();
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+                        if (response.statusCode() != 200) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        errors.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    if (sequence >= warmup) {
+                        latency.record(System.nanoTime() - start);
+                    }
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.HOURS);
+        long end = System.nanoTime();
+        clientThreads.shutdown();
+
+        LoadResult result = new LoadResult();
+        result.latency = latency;
+        result.errors = errors.get();
+        result.seconds = (end - measuredStart.get()) / 1e9;
+        return result;
+    }
+
+    private static void report(String label, LoadResult result, DeepFeatureBatcher batcher) {
+        LatencyHistogram latency = result.latency;
+        System.out.println(String.format("  %-60s %6.1f req/s  p50 %7.1f ms  p90 %7.1f ms  p99 %7.1f ms  max %7.1f ms  errors %d%s",
+                label, latency.count() / result.seconds,
+                latency.quantileNanos(0.5) / 1e6, latency.quantileNanos(0.9) / 1e6,
+                latency.quantileNanos(0.99) / 1e6, latency.maxNanos() / 1e6, result.errors,
+                batcher == null ? "" : String.format("  (avg batch %.1f)", batcher.averageBatchSize())));
+    }
+
+    private static class LoadResult {
+        LatencyHistogram latency;
+        long errors;
+        double seconds;
+    }
+}
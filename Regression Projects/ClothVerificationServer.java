@@ -0,0 +1,349 @@
+package com.clothblockchain.extractor;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.opencv.core.Mat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local HTTP service for verification and registration requests from retail scanners
+ *
+ * Endpoints (all on localhost; the request body is the encoded image):
+ *   POST /verify?expectedHash=HEX   -> AuthenticationResult as JSON
+ *   POST /register?clothId=ID       -> BlockchainRecord as JSON
+ *   GET  /metrics                   -> extractor metrics, Prometheus text
+ *
+ * Requests are handled on virtual threads when the JVM has them (JDK 21+), otherwise on a
+ * bounded platform-thread pool. Handlers only do I/O and wait: decoding, traditional
+ * features and hashing run on a CPU pool sized to the cores, and deep features go through
+ * a DeepFeatureBatcher so concurrent requests share CNN forward passes.
+ *
+ * @author ClothBlockchain Team
+ * @version 1.0
+ */
+public class ClothVerificationServer implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ClothVerificationServer.class);
+    private static final int MAX_IMAGE_BYTES = 32 * 1024 * 1024;
+
+    private final ClothFeatureExtractor extractor;
+    private final HttpServer server;
+    private final ExecutorService requestExecutor;
+    private final ExecutorService cpuPool;
+    private final DeepFeatureBatcher batcher;
+    private final Gson gson = new Gson();
+    private final boolean virtualThreads;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public ClothVerificationServer(ClothFeatureExtractor extractor) throws IOException {
+        this(extractor, new Config());
+    }
+
+    public ClothVerificationServer(ClothFeatureExtractor extractor, Config config) throws IOException {
+        this.extractor = extractor;
+        this.cpuPool = Executors.newFixedThreadPool(config.cpuThreads, daemonThreads("verification-cpu"));
+        this.batcher = new DeepFeatureBatcher(extractor, config.maxBatchSize, config.maxBatchWaitMicros,
+                config.parallelBatches);
+
+        ExecutorService virtualExecutor = config.useVirtualThreads ? newVirtualThreadExecutor() : null;
+        this.virtualThreads = virtualExecutor != null;
+        this.requestExecutor = virtualThreads ? virtualExecutor
+                : Executors.newFixedThreadPool(config.fallbackRequestThreads, daemonThreads("verification-http"));
+
+        this.server = HttpServer.create(new InetSocketAddress("localhost", config.port), config.backlog);
+        server.createContext("/verify", exchange -> handle(exchange, "POST", this::verify));
+        server.createContext("/register", exchange -> handle(exchange, "POST", this::register));
+        server.createContext("/metrics", exchange -> handle(exchange, "GET", this::metrics));
+        server.setExecutor(requestExecutor);
+        server.start();
+
+        log.info("🛰️ Verification server on http://localhost:{} ({}, batches of up to {} / {} µs)",
+                getAddress().getPort(), virtualThreads ? "virtual threads" : "platform threads",
+                config.maxBatchSize, config.maxBatchWaitMicros);
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public DeepFeatureBatcher getBatcher() {
+        return batcher;
+    }
+
+    /**
+     * Requests currently being handled; background work can back off while this is non-zero
+     */
+    public int inFlightRequests() {
+        return inFlight.get();
+    }
+
+    /**
+     * Stop accepting requests, let in-flight ones finish (up to a second), then stop the pools
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        batcher.close();
+        requestExecutor.shutdown();
+        cpuPool.shutdown();
+    }
+
+    private Response verify(HttpExchange exchange, Map<String, String> query) throws Exception {
+        String expectedHash = query.get("expectedHash");
+        if (expectedHash == null || expectedHash.isEmpty()) {
+            return Response.error(400, "expectedHash is required");
+        }
+        ClothFeatureExtractor.ClothDNA clothDNA = extract(readImage(exchange), null);
+        ClothFeatureExtractor.AuthenticationResult result =
+                onCpu(() -> extractor.verifyClothAuthenticity(clothDNA, expectedHash));
+        return Response.json(200, gson.toJson(result));
+    }
+
+    private Response register(HttpExchange exchange, Map<String, String> query) throws Exception {
+        String clothId = query.get("clothId");
+        if (clothId == null || clothId.isEmpty()) {
+            return Response.error(400, "clothId is required");
+        }
+        ClothFeatureExtractor.ClothDNA clothDNA = extract(readImage(exchange), clothId);
+        ClothFeatureExtractor.ProcessingResult result = onCpu(() -> extractor.processClothForBlockchain(clothDNA));
+        return Response.json(200, gson.toJson(result.blockchainRecord));
+    }
+
+    private Response metrics(HttpExchange exchange, Map<String, String> query) {
+        Response response = new Response();
+        response.status = 200;
+        response.contentType = "text/plain; version=0.0.4; charset=utf-8";
+        response.body = extractor.getMetrics().toPrometheusText().getBytes(StandardCharsets.UTF_8);
+        return response;
+    }
+
+    /**
+     * Hash and look up the bytes on the CPU pool; on a cache miss decode there too, deep
+     * features in a shared batch, then the rest of the DNA on the CPU pool
+     */
+    private ClothFeatureExtractor.ClothDNA extract(byte[] encodedImage, String clothId) throws Exception {
+        ClothFeatureCache.Key cacheKey = onCpu(() -> extractor.featureCacheKey(encodedImage));
+        ClothFeatureExtractor.ClothDNA cached = extractor.cachedClothDNA(cacheKey, clothId);
+        if (cached != null) {
+            return cached;
+        }
+
+        Mat processed;
+        try {
+            processed = onCpu(() -> extractor.preprocessClothImage(encodedImage));
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+        CompletableFuture<ClothFeatureExtractor.ClothDNA> extracted;
+        try {
+            extracted = batcher.submit(processed).thenCompose(deepFeatures ->
+                    supplyOnCpu(() -> extractor.createClothDigitalDNA(processed, clothId, deepFeatures)));
+        } catch (RuntimeException e) {
+            processed.release();
+            throw e;
+        }
+        // The batcher and the CPU pool read the image until this completes, even if the
+        // request thread stops waiting (interrupt), so the release hangs off the future
+        extracted.whenComplete((clothDNA, failure) -> processed.release());
+        ClothFeatureExtractor.ClothDNA clothDNA = await(extracted);
+        extractor.cacheFeatures(cacheKey, clothDNA);
+        return clothDNA;
+    }
+
+    private <T> T onCpu(Callable<T> task) throws Exception {
+        return await(supplyOnCpu(task));
+    }
+
+    private <T> CompletableFuture<T> supplyOnCpu(Callable<T> task) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return task.call();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, cpuPool);
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException && e.getCause().getCause() != null
+                    ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    private void handle(HttpExchange exchange, String method, Handler handler) {
+        inFlight.incrementAndGet();
+        Response response;
+        try {
+            if (!method.equals(exchange.getRequestMethod())) {
+                response = Response.error(405, method + " required");
+            } else {
+                response = handler.handle(exchange, parseQuery(exchange.getRequestURI().getRawQuery()));
+            }
+        } catch (IllegalArgumentException e) {
+            response = Response.error(400, e.getMessage());
+        } catch (Exception e) {
+            // The detail stays in the log; it may name files, classes or internal state
+            log.warn("Request {} failed", exchange.getRequestURI(), e);
+            response = Response.error(500, "Internal server error");
+        }
+
+        try {
+            exchange.getResponseHeaders().set("Content-Type", response.contentType);
+            exchange.sendResponseHeaders(response.status, response.body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response.body);
+            }
+        } catch (IOException e) {
+            log.debug("Client went away before the response was sent: {}", e.getMessage());
+        } finally {
+            exchange.close();
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private static byte[] readImage(HttpExchange exchange) throws IOException {
+        String length = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (length != null && Long.parseLong(length) > MAX_IMAGE_BYTES) {
+            throw new IllegalArgumentException("Image larger than " + MAX_IMAGE_BYTES + " bytes");
+        }
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_IMAGE_BYTES + 1);
+            if (body.length > MAX_IMAGE_BYTES) {
+                throw new IllegalArgumentException("Image larger than " + MAX_IMAGE_BYTES + " bytes");
+            }
+            if (body.length == 0) {
+                throw new IllegalArgumentException("Request body must be the encoded image");
+            }
+            return body;
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                query.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor() looked up reflectively, so the code still
+     * compiles and runs on JDK 11/17; null when the running JVM has no virtual threads
+     */
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Run the service against ./cloth_database until the process is stopped.
+     * Usage: ClothVerificationServer [port] [maxBatchSize] [maxBatchWaitMicros]
+     */
+    public static void main(String[] args) throws Exception {
+        Config config = new Config();
+        if (args.length > 0) {
+            config.port = Integer.parseInt(args[0]);
+        }
+        if (args.length > 1) {
+            config.maxBatchSize = Integer.parseInt(args[1]);
+        }
+        if (args.length > 2) {
+            config.maxBatchWaitMicros = Long.parseLong(args[2]);
+        }
+
+        ClothFeatureExtractor extractor = new ClothFeatureExtractor();
+        extractor.warmUp();
+        ClothVerificationServer server = new ClothVerificationServer(extractor, config);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            try {
+                extractor.close();
+            } catch (IOException e) {
+                log.error("Failed to close extractor: {}", e.getMessage());
+            }
+        }, "verification-shutdown"));
+        System.out.println("🛰️ Listening on http://localhost:" + server.getAddress().getPort() + " (Ctrl+C to stop)");
+        new CountDownLatch(1).await();
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Response handle(HttpExchange exchange, Map<String, String> query) throws Exception;
+    }
+
+    private static final class Response {
+        int status;
+        String contentType;
+        byte[] body;
+
+        static Response json(int status, String json) {
+            Response response = new Response();
+            response.status = status;
+            response.contentType = "application/json; charset=utf-8";
+            response.body = json.getBytes(StandardCharsets.UTF_8);
+            return response;
+        }
+
+        static Response error(int status, String message) {
+            JsonObject error = new JsonObject();
+            error.addProperty("error", message);
+            return json(status, error.toString());
+        }
+    }
+
+    public static class Config {
+        public int port = 8080;
+        public int backlog = 256;
+        public int maxBatchSize = 16;
+        public long maxBatchWaitMicros = 5_000;
+        public int parallelBatches = 2; // one batch runs while the next one fills
+        public int cpuThreads = Runtime.getRuntime().availableProcessors();
+        public boolean useVirtualThreads = true;
+        public int fallbackRequestThreads = Math.max(16, Runtime.getRuntime().availableProcessors() * 4);
+    }
+}
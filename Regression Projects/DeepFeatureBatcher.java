@@ -0,0 +1,175 @@
+package com.clothblockchain.extractor;
+
+import org.opencv.core.Mat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces single-image deep feature requests from many threads into micro-batches
+ *
+ * A dispatcher thread waits for a free inference slot, then collects requests until it has
+ * maxBatchSize of them or maxWaitMicros have passed since the first one, and runs them as
+ * one extractDeepFeatures call. While every slot is busy, requests pile up in the queue and
+ * the next batch is taken from them at once, so batches grow with load and a lone request
+ * waits at most maxWaitMicros.
+ *
+ * @author ClothBlockchain Team
+ * @version 1.0
+ */
+public class DeepFeatureBatcher implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(DeepFeatureBatcher.class);
+
+    private final ClothFeatureExtractor extractor;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Semaphore inferenceSlots;
+    private final ExecutorService inferencePool;
+    private final Thread dispatcher;
+    private volatile boolean closed;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedImages = new LongAdder();
+
+    public DeepFeatureBatcher(ClothFeatureExtractor extractor, int maxBatchSize, long maxWaitMicros, int parallelBatches) {
+        if (maxBatchSize < 1 || maxWaitMicros < 0 || parallelBatches < 1) {
+            throw new IllegalArgumentException("Invalid batcher settings: maxBatchSize=" + maxBatchSize +
+                    ", maxWaitMicros=" + maxWaitMicros + ", parallelBatches=" + parallelBatches);
+        }
+        this.extractor = extractor;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = TimeUnit.MICROSECONDS.toNanos(maxWaitMicros);
+        this.inferenceSlots = new Semaphore(parallelBatches);
+        this.inferencePool = Executors.newFixedThreadPool(parallelBatches, runnable -> {
+            Thread thread = new Thread(runnable, "deep-feature-batch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.dispatcher = new Thread(this::dispatch, "deep-feature-batcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * Queue a preprocessed image; the future completes when its batch has run
+     */
+    public CompletableFuture<double[]> submit(Mat processedImage) {
+        Request request = new Request(processedImage);
+        if (closed) {
+            request.result.completeExceptionally(new IllegalStateException("Batcher is closed"));
+        } else {
+            queue.add(request);
+        }
+        return request.result;
+    }
+
+    public long batchCount() {
+        return batches.sum();
+    }
+
+    public double averageBatchSize() {
+        long count = batches.sum();
+        return count == 0 ? 0 : (double) batchedImages.sum() / count;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        dispatcher.interrupt();
+        try {
+            dispatcher.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        inferencePool.shutdown();
+        Request request;
+        while ((request = queue.poll()) != null) {
+            request.result.completeExceptionally(new IllegalStateException("Batcher closed before the request ran"));
+        }
+    }
+
+    private void dispatch() {
+        List<Request> batch = new ArrayList<>(maxBatchSize);
+        while (!closed) {
+            try {
+                inferenceSlots.acquire();
+                try {
+                    collectBatch(batch);
+                } catch (InterruptedException e) {
+                    inferenceSlots.release();
+                    throw e;
+                }
+                List<Request> ready = new ArrayList<>(batch);
+                batch.clear();
+                inferencePool.execute(() -> runBatch(ready));
+            } catch (InterruptedException e) {
+                break;
+            } catch (RejectedExecutionException e) {
+                failAll(batch, e);
+                break;
+            }
+        }
+        failAll(batch, new IllegalStateException("Batcher closed before the request ran"));
+    }
+
+    private void collectBatch(List<Request> batch) throws InterruptedException {
+        batch.add(queue.take());
+        queue.drainTo(batch, maxBatchSize - batch.size());
+        long deadline = System.nanoTime() + maxWaitNanos;
+        while (batch.size() < maxBatchSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            Request next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+            queue.drainTo(batch, maxBatchSize - batch.size());
+        }
+    }
+
+    private void runBatch(List<Request> batch) {
+        try {
+            List<Mat> images = new ArrayList<>(batch.size());
+            for (Request request : batch) {
+                images.add(request.image);
+            }
+            double[][] features = extractor.extractDeepFeatures(images);
+            batches.increment();
+            batchedImages.add(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result.complete(features[i]);
+            }
+        } catch (RuntimeException | Error e) {
+            log.warn("Deep feature batch of {} failed: {}", batch.size(), e.toString());
+            failAll(batch, e);
+        } finally {
+            inferenceSlots.release();
+        }
+    }
+
+    private static void failAll(List<Request> batch, Throwable cause) {
+        for (Request request : batch) {
+            request.result.completeExceptionally(cause);
+        }
+        batch.clear();
+    }
+
+    private static final class Request {
+        final Mat image;
+        final CompletableFuture<double[]> result = new CompletableFuture<>();
+
+        Request(Mat image) {
+            this.image = image;
+        }
+    }
+}
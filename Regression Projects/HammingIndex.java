@@ -0,0 +1,211 @@
+package com.clothblockchain.extractor;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Multi-index hashing table for 256-bit fingerprints
+ *
+ * The fingerprint is cut into 16 chunks of 16 bits and every chunk value has its own bucket
+ * table. Two fingerprints within Hamming distance r must agree on some chunk to within
+ * r / 16 bits (pigeonhole), so a lookup only probes a handful of buckets per table and then
+ * checks candidates with XOR + popcount. No floating point is involved.
+ *
+ * @author ClothBlockchain Team
+ * @version 1.0
+ */
+public class HammingIndex {
+
+    private static final int CHUNKS = 16;
+    private static final int CHUNK_BITS = PerceptualFingerprint.BITS / CHUNKS;
+    private static final int BUCKETS = 1 << CHUNK_BITS;
+    private static final int MAX_RADIUS = 3 * CHUNKS - 1; // at most 2 flipped bits per probed chunk
+
+    // tables[chunk][value] = {count, node, node, ...}
+    private final int[][][] tables = new int[CHUNKS][BUCKETS][];
+
+    private long[] fingerprints = new long[1024 * PerceptualFingerprint.WORDS];
+    private String[] ids = new String[1024];
+    private boolean[] deleted = new boolean[1024];
+    private int size;
+    private final Map<String, Integer> nodeById = new HashMap<>();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ThreadLocal<SeenSet> seenSets = ThreadLocal.withInitial(SeenSet::new);
+
+    /**
+     * Add a fingerprint. Re-adding an id replaces its previous fingerprint.
+     */
+    public void add(String id, long[] fingerprint) {
+        lock.writeLock().lock();
+        try {
+            Integer previous = nodeById.get(id);
+            if (previous != null) {
+                deleted[previous] = true;
+            }
+
+            if (size == ids.length) {
+                int capacity = size * 2;
+                fingerprints = Arrays.copyOf(fingerprints, capacity * PerceptualFingerprint.WORDS);
+                ids = Arrays.copyOf(ids, capacity);
+                deleted = Arrays.copyOf(deleted, capacity);
+            }
+            int node = size++;
+            System.arraycopy(fingerprint, 0, fingerprints, node * PerceptualFingerprint.WORDS, PerceptualFingerprint.WORDS);
+            ids[node] = id;
+            nodeById.put(id, node);
+
+            for (int chunk = 0; chunk < CHUNKS; chunk++) {
+                int value = chunkOf(fingerprint, chunk);
+                int[] bucket = tables[chunk][value];
+                if (bucket == null) {
+                    bucket = new int[3];
+                } else if (bucket[0] + 1 == bucket.length) {
+                    bucket = Arrays.copyOf(bucket, bucket.length * 2);
+                }
+                bucket[++bucket[0]] = node;
+                tables[chunk][value] = bucket;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removed and replaced ids keep their node and bucket entries (skipped by searches) until
+     * the index is rebuilt; see deletedCount
+     */
+    public boolean remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Integer node = nodeById.remove(id);
+            if (node == null) {
+                return false;
+            }
+            deleted[node] = true;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * All ids within maxDistance bits of the query, closest first
+     */
+    public List<Match> search(long[] query, int maxDistance) {
+        if (maxDistance > MAX_RADIUS) {
+            throw new IllegalArgumentException("Radius above " + MAX_RADIUS + " bits is not supported: " + maxDistance);
+        }
+        int chunkRadius = maxDistance / CHUNKS;
+
+        lock.readLock().lock();
+        try {
+            // A node shows up in several tables; check each one only once per query
+            SeenSet seenSet = seenSets.get();
+            int generation = seenSet.next(size);
+            int[] seen = seenSet.marks;
+
+            List<Match> matches = new ArrayList<>();
+            for (int chunk = 0; chunk < CHUNKS; chunk++) {
+                int value = chunkOf(query, chunk);
+                probe(chunk, value, query, maxDistance, seen, generation, matches);
+                if (chunkRadius >= 1) {
+                    for (int a = 0; a < CHUNK_BITS; a++) {
+                        int flippedA = value ^ (1 << a);
+                        probe(chunk, flippedA, query, maxDistance, seen, generation, matches);
+                        if (chunkRadius >= 2) {
+                            for (int b = a + 1; b < CHUNK_BITS; b++) {
+                                probe(chunk, flippedA ^ (1 << b), query, maxDistance, seen, generation, matches);
+                            }
+                        }
+                    }
+                }
+            }
+
+            matches.sort(Comparator.comparingInt(match -> match.distance));
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodeById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Nodes of removed or replaced ids still taking up space
+     */
+    public int deletedCount() {
+        lock.readLock().lock();
+        try {
+            return size - nodeById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void probe(int chunk, int value, long[] query, int maxDistance, int[] seen, int generation, List<Match> matches) {
+        int[] bucket = tables[chunk][value];
+        if (bucket == null) {
+            return;
+        }
+        for (int i = 1; i <= bucket[0]; i++) {
+            int node = bucket[i];
+            if (seen[node] == generation) {
+                continue;
+            }
+            seen[node] = generation;
+            if (deleted[node]) {
+                continue;
+            }
+
+            int distance = 0;
+            int base = node * PerceptualFingerprint.WORDS;
+            for (int w = 0; w < PerceptualFingerprint.WORDS; w++) {
+                distance += Long.bitCount(query[w] ^ fingerprints[base + w]);
+            }
+            if (distance <= maxDistance) {
+                matches.add(new Match(ids[node], distance));
+            }
+        }
+    }
+
+    private static int chunkOf(long[] fingerprint, int chunk) {
+        int bit = chunk * CHUNK_BITS;
+        return (int) (fingerprint[bit >>> 6] >>> (bit & 63)) & (BUCKETS - 1);
+    }
+
+    private static final class SeenSet {
+        int[] marks = new int[1024];
+        int generation;
+
+        int next(int nodes) {
+            if (marks.length < nodes) {
+                marks = new int[Math.max(nodes, marks.length * 2)];
+                generation = 0;
+            }
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                generation = 1;
+            }
+            return generation;
+        }
+    }
+
+    // Data classes
+    public static class Match {
+        public String clothId;
+        public int distance;
+
+        public Match(String clothId, int distance) {
+            this.clothId = clothId;
+            this.distance = distance;
+        }
+    }
+}
@@ -0,0 +1,727 @@
+package com.clothblockchain.extractor;
+
+import com.google.gson.Gson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Local append-only, hash-chained ledger of blockchain records and Merkle batch roots
+ *
+ * Every entry carries the hash of the entry before it, and its own hash is
+ *   SHA-256(previous hash || sequence || timestamp || type || payload),
+ * so changing, dropping or reordering any entry breaks every later link. verifyChain()
+ * recomputes the chain; comparing its head against a hash kept elsewhere (or anchored on
+ * chain) also catches a rewrite of the whole tail.
+ *
+ * Appends use group commit. Callers hand entries to one writer thread and get a future.
+ * The writer takes everything queued, chains it, writes it with one FileChannel write and
+ * makes it durable with one force(). Each future completes only after that force, so an
+ * acknowledged entry survives a crash. Under concurrent load, one fsync covers hundreds of
+ * records.
+ *
+ * It also serves as the offline stand-in for a chain. Register it as the extractor's
+ * anchor listener to log batch roots, and use setLedger() to log every stored record.
+ *
+ * Layout of an entry (big-endian):
+ *   int length of what follows | long sequence | long timestamp millis | byte type |
+ *   int payload length | payload (UTF-8 JSON) | 32-byte previous hash | 32-byte hash |
+ *   int CRC32 of everything before it
+ * The CRC only finds torn writes. On open, a damaged tail with no intact entry after it
+ * (the unacknowledged last group of a crash) is moved to a .damaged file and cut off.
+ * Damage followed by intact entries is not a torn write: open() fails, and repair() has
+ * to be run on purpose to cut the ledger off there.
+ *
+ * @author ClothBlockchain Team
+ * @version 1.0
+ */
+public class HashChainLedger implements Closeable, Consumer<MerkleBatchAnchor.AnchoredBatch> {
+
+    private static final Logger log = LoggerFactory.getLogger(HashChainLedger.class);
+
+    public static final int HASH_BYTES = 32;
+    private static final int HEADER_BYTES = 4 + 8 + 8 + 1 + 4;
+    private static final int TRAILER_BYTES = HASH_BYTES * 2 + 4;
+    private static final int MIN_ENTRY_BYTES = HEADER_BYTES + TRAILER_BYTES;
+    private static final int MAX_PAYLOAD_BYTES = 1 << 20;
+    private static final int MAX_ENTRY_BYTES = MIN_ENTRY_BYTES + MAX_PAYLOAD_BYTES;
+    private static final int REPLAY_BUFFER_BYTES = 1 << 20;
+    private static final byte[] GENESIS_HASH = new byte[HASH_BYTES];
+
+    // Queued by close(); the writer commits what is ahead of it and stops
+    private static final Pending CLOSE = new Pending(null, null, null);
+
+    public enum EntryType {
+        RECORD, BATCH_ROOT;
+
+        private static final EntryType[] VALUES = values();
+
+        static EntryType of(byte code) {
+            return code >= 0 && code < VALUES.length ? VALUES[code] : null;
+        }
+    }
+
+    private final Path path;
+    private final Config config;
+    private final FileChannel channel;
+    private final BlockingQueue<Pending> queue;
+    private final Thread writer;
+    private final Gson gson = new Gson();
+
+    // Writer thread state
+    private final MessageDigest digest = newDigest();
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer writeBuffer = ByteBuffer.allocateDirect(1 << 16);
+    private long nextSequence;
+    private byte[] headHash;
+
+    // Durable state, published by the writer after each force
+    private volatile long durableLength;
+    private volatile Receipt head;
+    private volatile IOException failure;
+    private volatile boolean closed;
+
+    // Group commit counters
+    private final GroupCommitCounters stats = new GroupCommitCounters();
+
+    public HashChainLedger(Path path) throws IOException {
+        this(path, new Config());
+    }
+
+    public HashChainLedger(Path path, Config config) throws IOException {
+        this.path = path;
+        this.config = config;
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            recover();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        this.queue = new ArrayBlockingQueue<>(config.queueCapacity);
+
+        this.writer = new Thread(this::writeLoop, "ledger-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Append a record; the future completes once it is durable
+     */
+    public CompletableFuture<Receipt> append(ClothFeatureExtractor.BlockchainRecord record) {
+        return append(EntryType.RECORD, gson.toJson(record).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Append a sealed Merkle batch (its root and cloth ids); completes once durable
+     */
+    public CompletableFuture<Receipt> append(MerkleBatchAnchor.AnchoredBatch batch) {
+        return append(EntryType.BATCH_ROOT, gson.toJson(batch).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Append a record and wait until it is durable
+     */
+    public Receipt appendAndSync(ClothFeatureExtractor.BlockchainRecord record) throws IOException {
+        return await(append(record));
+    }
+
+    /**
+     * Anchor listener: log the batch root and wait until it is durable
+     */
+    @Override
+    public void accept(MerkleBatchAnchor.AnchoredBatch batch) {
+        try {
+            await(append(batch));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to log Merkle batch " + batch.batchId, e);
+        }
+    }
+
+    private CompletableFuture<Receipt> append(EntryType type, byte[] payload) {
+        CompletableFuture<Receipt> future = new CompletableFuture<>();
+        if (payload.length > MAX_PAYLOAD_BYTES) {
+            future.completeExceptionally(new IllegalArgumentException("Ledger payload of " + payload.length + " bytes"));
+            return future;
+        }
+        if (closed || failure != null) {
+            future.completeExceptionally(failure != null ? failure : new IOException("Ledger is closed"));
+            return future;
+        }
+        try {
+            queue.put(new Pending(type, payload, future));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Last durable entry, or null while the ledger is empty
+     */
+    public Receipt head() {
+        return head;
+    }
+
+    public long size() {
+        Receipt current = head;
+        return current != null ? current.sequence + 1 : 0;
+    }
+
+    public LedgerStats stats() {
+        LedgerStats result = new LedgerStats();
+        result.entries = size();
+        result.bytes = durableLength;
+        result.syncs = stats.syncs;
+        result.syncedEntries = stats.entries;
+        result.entriesPerSync = stats.syncs > 0 ? (double) stats.entries / stats.syncs : 0;
+        result.avgSyncMicros = stats.syncs > 0 ? stats.syncNanos / 1_000.0 / stats.syncs : 0;
+        return result;
+    }
+
+    /**
+     * Read every durable entry in order. Reads large blocks sequentially and checks each
+     * entry's CRC but not the chain; see verifyChain.
+     */
+    public long replay(Consumer<Entry> consumer) throws IOException {
+        long[] count = new long[1];
+        scan(path, durableLength, entry -> {
+            consumer.accept(entry);
+            count[0]++;
+        });
+        return count[0];
+    }
+
+    /**
+     * Recompute every link of the chain. With expectedHeadHash (hex), also check that the
+     * chain ends there, which catches a rewritten tail.
+     */
+    public VerifyResult verifyChain(String expectedHeadHash) throws IOException {
+        long start = System.nanoTime();
+        VerifyResult result = new VerifyResult();
+        MessageDigest verifier = newDigest();
+        byte[][] previous = {GENESIS_HASH};
+        try {
+            scan(path, durableLength, entry -> {
+                if (!result.valid) {
+                    return;
+                }
+                if (entry.sequence != result.entries) {
+                    result.fail(entry.sequence, "sequence " + entry.sequence + " where " + result.entries + " was expected");
+                } else if (!Arrays.equals(entry.previousHash, previous[0])) {
+                    result.fail(entry.sequence, "previous hash does not match entry " + (entry.sequence - 1));
+                } else if (!Arrays.equals(entry.hash, entryHash(verifier, entry.previousHash, entry.sequence,
+                        entry.timestampMillis, (byte) entry.type.ordinal(), entry.payload))) {
+                    result.fail(entry.sequence, "hash does not match contents");
+                } else {
+                    previous[0] = entry.hash;
+                    result.entries++;
+                }
+            });
+        } catch (IOException e) {
+            result.fail(result.entries, e.getMessage());
+        }
+        result.headHash = result.entries > 0 ? Hex.encode(previous[0]) : null;
+        if (result.valid && expectedHeadHash != null && !expectedHeadHash.equalsIgnoreCase(String.valueOf(result.headHash))) {
+            result.fail(result.entries - 1, "head " + result.headHash + " is not the expected " + expectedHeadHash);
+        }
+        result.millis = (System.nanoTime() - start) / 1_000_000;
+        return result;
+    }
+
+    public VerifyResult verifyChain() throws IOException {
+        return verifyChain(null);
+    }
+
+    /**
+     * Write everything queued, then stop the writer and close the file
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // Not interrupt(): an interrupt during a write would close the channel
+        try {
+            queue.put(CLOSE);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Appends that raced with close() and landed behind the marker
+        Pending late;
+        while ((late = queue.poll()) != null) {
+            late.future.completeExceptionally(new IOException("Ledger is closed"));
+        }
+        channel.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // Group commit: take what is queued, chain it, one write and one force for all of it
+    private void writeLoop() {
+        List<Pending> group = new ArrayList<>(config.maxGroupSize);
+        boolean closing = false;
+        while (!closing) {
+            try {
+                group.add(queue.take());
+                if (config.groupWindowMicros > 0 && group.get(0) != CLOSE) {
+                    long deadline = System.nanoTime() + config.groupWindowMicros * 1_000;
+                    while (group.size() < config.maxGroupSize) {
+                        long remaining = deadline - System.nanoTime();
+                        Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                        if (next == null) {
+                            break;
+                        }
+                        group.add(next);
+                        if (next == CLOSE) {
+                            break;
+                        }
+                    }
+                }
+                queue.drainTo(group, config.maxGroupSize - group.size());
+            } catch (InterruptedException e) {
+                closing = true;
+            }
+            // The close marker goes last: everything queued before it is still written
+            closing |= group.remove(CLOSE);
+            if (!group.isEmpty()) {
+                commit(group);
+                group.clear();
+            }
+        }
+    }
+
+    private void commit(List<Pending> group) {
+        if (failure != null) {
+            for (Pending pending : group) {
+                pending.future.completeExceptionally(failure);
+            }
+            return;
+        }
+        long startSequence = nextSequence;
+        byte[] startHash = headHash;
+        Receipt[] receipts = new Receipt[group.size()];
+        try {
+            writeBuffer.clear();
+            for (int i = 0; i < group.size(); i++) {
+                receipts[i] = encode(group.get(i));
+            }
+            writeBuffer.flip();
+            long position = durableLength;
+            while (writeBuffer.hasRemaining()) {
+                position += channel.write(writeBuffer, position);
+            }
+            long syncStart = System.nanoTime();
+            if (config.sync) {
+                channel.force(false);
+            }
+            stats.record(group.size(), System.nanoTime() - syncStart);
+            durableLength = position;
+            head = receipts[receipts.length - 1];
+        } catch (IOException e) {
+            // Nothing after the last durable entry counts; later appends fail too
+            nextSequence = startSequence;
+            headHash = startHash;
+            failure = e;
+            log.error("❌ Ledger write failed, no further appends accepted: {}", e.getMessage());
+            for (Pending pending : group) {
+                pending.future.completeExceptionally(e);
+            }
+            return;
+        }
+        for (int i = 0; i < group.size(); i++) {
+            group.get(i).future.complete(receipts[i]);
+        }
+    }
+
+    private Receipt encode(Pending pending) {
+        long sequence = nextSequence++;
+        long timestamp = System.currentTimeMillis();
+        byte[] previousHash = headHash;
+        byte[] hash = entryHash(digest, previousHash, sequence, timestamp, (byte) pending.type.ordinal(), pending.payload);
+        headHash = hash;
+
+        int entryBytes = HEADER_BYTES + pending.payload.length + TRAILER_BYTES;
+        if (writeBuffer.remaining() < entryBytes) {
+            ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(writeBuffer.capacity() * 2, writeBuffer.position() + entryBytes));
+            writeBuffer.flip();
+            larger.put(writeBuffer);
+            writeBuffer = larger;
+        }
+        int start = writeBuffer.position();
+        writeBuffer.putInt(entryBytes - 4);
+        writeBuffer.putLong(sequence);
+        writeBuffer.putLong(timestamp);
+        writeBuffer.put((byte) pending.type.ordinal());
+        writeBuffer.putInt(pending.payload.length);
+        writeBuffer.put(pending.payload);
+        writeBuffer.put(previousHash);
+        writeBuffer.put(hash);
+        crc.reset();
+        ByteBuffer covered = writeBuffer.duplicate();
+        covered.position(start).limit(writeBuffer.position());
+        crc.update(covered);
+        writeBuffer.putInt((int) crc.getValue());
+
+        Receipt receipt = new Receipt();
+        receipt.sequence = sequence;
+        receipt.timestampMillis = timestamp;
+        receipt.hash = Hex.encode(hash);
+        return receipt;
+    }
+
+    private static byte[] entryHash(MessageDigest digest, byte[] previousHash, long sequence, long timestamp,
+                                    byte type, byte[] payload) {
+        digest.reset();
+        digest.update(previousHash);
+        ByteBuffer fields = ByteBuffer.allocate(17);
+        fields.putLong(sequence).putLong(timestamp).put(type);
+        digest.update(fields.array());
+        digest.update(payload);
+        return digest.digest();
+    }
+
+    /**
+     * Cut the ledger off at its first damaged entry, keeping everything from there on in a
+     * .damaged file. This is for damage that open() will not cut off by itself: the intact
+     * entries after it leave the chain too. Returns the number of bytes cut off.
+     */
+    public static long repair(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            long validLength = validLength(path, size, entry -> { });
+            if (validLength < size) {
+                cutOff(path, channel, validLength);
+            }
+            return size - validLength;
+        }
+    }
+
+    // Find the durable end and the head. A torn final write is moved aside; anything with
+    // intact entries after the damage needs an explicit repair().
+    private void recover() throws IOException {
+        long size = channel.size();
+        Entry[] last = new Entry[1];
+        long validLength = validLength(path, size, entry -> last[0] = entry);
+        if (validLength < size) {
+            long intact = findIntactEntry(path, validLength + 1, size);
+            if (intact >= 0) {
+                throw new IOException("Ledger " + path + " is damaged at offset " + validLength
+                        + " but has an intact entry at offset " + intact + ", so this is not a torn write;"
+                        + " inspect it and run HashChainLedger.repair to cut it off at the damage");
+            }
+            cutOff(path, channel, validLength);
+        }
+
+        durableLength = validLength;
+        if (last[0] != null) {
+            nextSequence = last[0].sequence + 1;
+            headHash = last[0].hash;
+            Receipt receipt = new Receipt();
+            receipt.sequence = last[0].sequence;
+            receipt.timestampMillis = last[0].timestampMillis;
+            receipt.hash = Hex.encode(last[0].hash);
+            head = receipt;
+        } else {
+            nextSequence = 0;
+            headHash = GENESIS_HASH;
+        }
+    }
+
+    private static long validLength(Path path, long size, Consumer<Entry> consumer) throws IOException {
+        try {
+            return scan(path, size, consumer);
+        } catch (TornEntryException e) {
+            return e.offset;
+        }
+    }
+
+    // Move [validLength, end) to a .damaged file next to the ledger and truncate
+    private static void cutOff(Path path, FileChannel channel, long validLength) throws IOException {
+        long size = channel.size();
+        Path damaged = path.resolveSibling(path.getFileName() + ".damaged-" + validLength);
+        try (FileChannel out = FileChannel.open(damaged, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.transferTo(validLength, size - validLength, out);
+            out.force(true);
+        }
+        channel.truncate(validLength);
+        channel.force(true);
+        log.warn("🩹 Dropped {} damaged bytes at the end of {} (kept in {})", size - validLength,
+                path.getFileName(), damaged.getFileName());
+    }
+
+    /**
+     * Offset of the first entry in [from, limit) that decodes with a valid CRC, looked for
+     * at every byte, or -1 if there is none
+     */
+    private static long findIntactEntry(Path path, long from, long limit) throws IOException {
+        CRC32 checksum = new CRC32();
+        try (FileChannel reader = FileChannel.open(path, StandardOpenOption.READ)) {
+            Block block = new Block(reader, limit);
+            for (long offset = from; offset + MIN_ENTRY_BYTES <= limit; offset++) {
+                ByteBuffer buffer = block.at(offset, 4);
+                int length = buffer.getInt(buffer.position());
+                if (length < MIN_ENTRY_BYTES - 4 || length > MAX_ENTRY_BYTES - 4 || offset + 4 + length > limit) {
+                    continue;
+                }
+                if (decode(block.at(offset, 4 + length), length, checksum) != null) {
+                    return offset;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decode entries in [0, limit) with large sequential reads; returns the end of the last
+     * entry, or throws TornEntryException at the first incomplete or damaged one
+     */
+    private static long scan(Path path, long limit, Consumer<Entry> consumer) throws IOException {
+        CRC32 checksum = new CRC32();
+        try (FileChannel reader = FileChannel.open(path, StandardOpenOption.READ)) {
+            Block block = new Block(reader, limit);
+            long offset = 0;
+            while (offset < limit) {
+                ByteBuffer buffer = block.at(offset, 4);
+                int length = buffer.getInt(buffer.position());
+                if (length < MIN_ENTRY_BYTES - 4 || length > MAX_ENTRY_BYTES - 4) {
+                    throw new TornEntryException(offset);
+                }
+                Entry entry = decode(block.at(offset, 4 + length), length, checksum);
+                if (entry == null) {
+                    throw new TornEntryException(offset);
+                }
+                consumer.accept(entry);
+
+                offset += 4 + length;
+            }
+            return offset;
+        }
+    }
+
+    // The entry at the buffer's position, or null if its CRC, type or payload length is off
+    private static Entry decode(ByteBuffer buffer, int length, CRC32 checksum) {
+        int start = buffer.position();
+        int end = start + 4 + length;
+
+        checksum.reset();
+        ByteBuffer covered = buffer.duplicate();
+        covered.limit(end - 4);
+        checksum.update(covered);
+        if ((int) checksum.getValue() != buffer.getInt(end - 4)) {
+            return null;
+        }
+
+        Entry entry = new Entry();
+        entry.sequence = buffer.getLong(start + 4);
+        entry.timestampMillis = buffer.getLong(start + 12);
+        entry.type = EntryType.of(buffer.get(start + 20));
+        int payloadLength = buffer.getInt(start + 21);
+        if (entry.type == null || payloadLength != length + 4 - MIN_ENTRY_BYTES) {
+            return null;
+        }
+        ByteBuffer fields = buffer.duplicate();
+        fields.position(start + HEADER_BYTES);
+        entry.payload = new byte[payloadLength];
+        fields.get(entry.payload);
+        entry.previousHash = new byte[HASH_BYTES];
+        fields.get(entry.previousHash);
+        entry.hash = new byte[HASH_BYTES];
+        fields.get(entry.hash);
+        return entry;
+    }
+
+    /**
+     * Sliding read window over the ledger file
+     */
+    private static final class Block {
+        private final FileChannel reader;
+        private final long limit;
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(REPLAY_BUFFER_BYTES);
+        private long start;
+
+        Block(FileChannel reader, long limit) {
+            this.reader = reader;
+            this.limit = limit;
+            buffer.limit(0);
+        }
+
+        /**
+         * Buffer positioned at offset with at least bytes readable
+         */
+        ByteBuffer at(long offset, int bytes) throws IOException {
+            if (offset < start || offset + bytes > start + buffer.limit()) {
+                if (bytes > buffer.capacity()) {
+                    buffer = ByteBuffer.allocateDirect(bytes);
+                }
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), limit - offset));
+                while (buffer.hasRemaining() && reader.read(buffer, offset + buffer.position()) >= 0) {
+                    // keep reading
+                }
+                buffer.flip();
+                start = offset;
+                if (buffer.limit() < bytes) {
+                    throw new TornEntryException(offset);
+                }
+            }
+            buffer.position((int) (offset - start));
+            return buffer;
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the ledger", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static final class Pending {
+        final EntryType type;
+        final byte[] payload;
+        final CompletableFuture<Receipt> future;
+
+        Pending(EntryType type, byte[] payload, CompletableFuture<Receipt> future) {
+            this.type = type;
+            this.payload = payload;
+            this.future = future;
+        }
+    }
+
+    // Written by the writer thread only; read for stats
+    private static final class GroupCommitCounters {
+        volatile long syncs;
+        volatile long entries;
+        volatile long syncNanos;
+
+        void record(int groupSize, long nanos) {
+            syncs++;
+            entries += groupSize;
+            syncNanos += nanos;
+        }
+    }
+
+    private static final class TornEntryException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        final long offset;
+
+        TornEntryException(long offset) {
+            super("Torn or damaged ledger entry at offset " + offset);
+            this.offset = offset;
+        }
+    }
+
+    // Configuration and data classes
+    public static class Config {
+        /** Entries per write + force at most */
+        public int maxGroupSize = 4096;
+        /** Extra time the writer waits for more entries after the first (0 = take what is queued) */
+        public long groupWindowMicros = 0;
+        /** Appends block when this many entries are waiting for the writer */
+        public int queueCapacity = 65_536;
+        /** force() after every group; off only for tests that do not need durability */
+        public boolean sync = true;
+    }
+
+    public static class Receipt {
+        public long sequence;
+        public long timestampMillis;
+        public String hash;
+    }
+
+    public static class Entry {
+        public long sequence;
+        public long timestampMillis;
+        public EntryType type;
+        public byte[] payload;
+        public byte[] previousHash;
+        public byte[] hash;
+
+        public String payloadJson() {
+            return new String(payload, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * The record of a RECORD entry
+         */
+        public ClothFeatureExtractor.BlockchainRecord record() {
+            return new Gson().fromJson(payloadJson(), ClothFeatureExtractor.BlockchainRecord.class);
+        }
+
+        /**
+         * The batch of a BATCH_ROOT entry
+         */
+        public MerkleBatchAnchor.AnchoredBatch batch() {
+            return new Gson().fromJson(payloadJson(), MerkleBatchAnchor.AnchoredBatch.class);
+        }
+    }
+
+    public static class VerifyResult {
+        public boolean valid = true;
+        public long entries;
+        public long firstBadSequence = -1;
+        public String problem;
+        public String headHash;
+        public long millis;
+
+        void fail(long sequence, String problem) {
+            if (valid) {
+                valid = false;
+                firstBadSequence = sequence;
+                this.problem = problem;
+            }
+        }
+    }
+
+    public static class LedgerStats {
+        public long entries;
+        public long bytes;
+        public long syncs;
+        public long syncedEntries;
+        public double entriesPerSync;
+        public double avgSyncMicros;
+    }
+}
@@ -0,0 +1,206 @@
+package com.clothblockchain.extractor;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Measures HashChainLedger throughput and checks that tampering is detected
+ *
+ * Phases, all on one temporary ledger file with fsync on:
+ *   - sync: `threads` writers each call appendAndSync in a loop, like concurrent
+ *     registrations waiting for durability; group commit shares the fsyncs,
+ *   - async: one thread submits every record and waits for the futures at the end,
+ *   - replay and verify-chain over everything written,
+ *   - tamper: one payload byte of a middle entry is changed and its CRC fixed up, and
+ *     verifyChain must point at that entry,
+ *   - damage: half an entry appended at the end is cut off on open, while a broken CRC in
+ *     the middle makes open fail until repair() cuts the ledger off there.
+ *
+ * With `repair`, runs HashChainLedger.repair on an existing ledger file instead.
+ *
+ * Usage: HashChainLedgerDriver [records] [threads]
+ *        HashChainLedgerDriver repair <ledger file>
+ *
+ * @author ClothBlockchain Team
+ * @version 1.0
+ */
+public class HashChainLedgerDriver {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 1 && args[0].equals("repair")) {
+            long dropped = HashChainLedger.repair(Paths.get(args[1]));
+            System.out.println("🩹 Cut off " + dropped + " bytes of " + args[1]);
+            return;
+        }
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+
+        Path directory = Files.createTempDirectory("cloth-ledger");
+        Path file = directory.resolve("ledger.log");
+        try {
+            System.out.println("⛓️ Ledger: " + records + " records per phase, " + threads + " sync writers");
+            try (HashChainLedger ledger = new HashChainLedger(file)) {
+                AtomicLong next = new AtomicLong();
+                long start = System.nanoTime();
+                List<Thread> writers = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    Thread writer = new Thread(() -> {
+                        try {
+                            long n;
+                            while ((n = next.getAndIncrement()) < records) {
+                                ledger.appendAndSync(record(n));
+                            }
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                    });
+                    writer.start();
+                    writers.add(writer);
+                }
+                for (Thread writer : writers) {
+                    writer.join();
+                }
+                report("sync x" + threads, records, start, ledger);
+
+                HashChainLedger.LedgerStats before = ledger.stats();
+                start = System.nanoTime();
+                List<CompletableFuture<HashChainLedger.Receipt>> pending = new ArrayList<>(records);
+                for (long n = records; n < 2L * records; n++) {
+                    pending.add(ledger.append(record(n)));
+                }
+                CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+                double seconds = (System.nanoTime() - start) / 1e9;
+                HashChainLedger.LedgerStats after = ledger.stats();
+                System.out.println(String.format("  %-10s %,10.0f records/s  %,8.1f records/fsync  %,8.0f µs/fsync",
+                        "async", records / seconds, (double) (after.syncedEntries - before.syncedEntries)
+                                / Math.max(1, after.syncs - before.syncs), after.avgSyncMicros));
+            }
+
+            try (HashChainLedger ledger = new HashChainLedger(file)) {
+                long start = System.nanoTime();
+                long[] bytes = new long[1];
+                long replayed = ledger.replay(entry -> bytes[0] += entry.payload.length);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.println(String.format("  %-10s %,10.0f entries/s  (%,d entries, %.1f MB)",
+                        "replay", replayed / seconds, replayed, Files.size(file) / 1e6));
+
+                HashChainLedger.VerifyResult verified = ledger.verifyChain(ledger.head().hash);
+                System.out.println(String.format("  %-10s %,10.0f entries/s  valid=%s, head %s",
+                        "verify", verified.entries * 1000.0 / Math.max(1, verified.millis), verified.valid,
+                        verified.headHash.substring(0, 16)));
+            }
+
+            long target = records;
+            tamper(file, target);
+            try (HashChainLedger ledger = new HashChainLedger(file)) {
+                HashChainLedger.VerifyResult verified = ledger.verifyChain();
+                System.out.println(String.format("  %-10s changed entry %d -> valid=%s, first bad entry %d (%s)",
+                        "tamper", target, verified.valid, verified.firstBadSequence, verified.problem));
+            }
+
+            long size = Files.size(file);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                channel.write(ByteBuffer.wrap(Arrays.copyOf(entryBytes(file, 0), 60)));
+            }
+            try (HashChainLedger ledger = new HashChainLedger(file)) {
+                System.out.println(String.format("  %-10s torn final write -> cut off on open=%s, %,d entries",
+                        "damage", Files.size(file) == size, ledger.size()));
+            }
+            corrupt(file, target);
+            try (HashChainLedger ledger = new HashChainLedger(file)) {
+                System.out.println("  damage     broken middle entry was opened (" + ledger.size() + " entries)");
+            } catch (IOException e) {
+                long dropped = HashChainLedger.repair(file);
+                try (HashChainLedger ledger = new HashChainLedger(file)) {
+                    System.out.println(String.format("  %-10s broken middle entry -> open refused, repair cut %,d bytes,"
+                            + " %,d entries", "damage", dropped, ledger.size()));
+                }
+            }
+        } finally {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path leftover : files) {
+                    Files.delete(leftover);
+                }
+            }
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private static ClothFeatureExtractor.BlockchainRecord record(long n) {
+        ClothFeatureExtractor.BlockchainRecord record = new ClothFeatureExtractor.BlockchainRecord();
+        record.clothId = "cloth_" + n;
+        record.hash = String.format("%064x", n * 0x9E3779B97F4A7C15L);
+        record.hashScheme = ClothDNAEncoder.HASH_SCHEME;
+        record.timestamp = "2024-01-01T00:00:00";
+        record.fingerprint = String.format("%064x", n);
+        return record;
+    }
+
+    private static void report(String phase, int records, long start, HashChainLedger ledger) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        HashChainLedger.LedgerStats stats = ledger.stats();
+        System.out.println(String.format("  %-10s %,10.0f records/s  %,8.1f records/fsync  %,8.0f µs/fsync",
+                phase, records / seconds, stats.entriesPerSync, stats.avgSyncMicros));
+    }
+
+    // Flip one payload byte of entry `sequence` and recompute its CRC, leaving the chain hash stale
+    private static void tamper(Path file, long sequence) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long offset = entryOffset(channel, sequence);
+            ByteBuffer entry = readEntry(channel, offset);
+            int payloadStart = 4 + 8 + 8 + 1 + 4;
+            entry.put(payloadStart + 2, (byte) (entry.get(payloadStart + 2) ^ 1));
+            CRC32 crc = new CRC32();
+            crc.update(entry.array(), 0, entry.capacity() - 4);
+            entry.putInt(entry.capacity() - 4, (int) crc.getValue());
+            entry.rewind();
+            channel.write(entry, offset);
+        }
+    }
+
+    // Flip one payload byte of entry `sequence` and leave its CRC, as a bad sector would
+    private static void corrupt(Path file, long sequence) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long offset = entryOffset(channel, sequence);
+            ByteBuffer flipped = ByteBuffer.allocate(1);
+            channel.read(flipped, offset + 30);
+            flipped.put(0, (byte) (flipped.get(0) ^ 1));
+            flipped.rewind();
+            channel.write(flipped, offset + 30);
+        }
+    }
+
+    private static byte[] entryBytes(Path file, long sequence) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return readEntry(channel, entryOffset(channel, sequence)).array();
+        }
+    }
+
+    // Walk the length prefixes up to entry `sequence`
+    private static long entryOffset(FileChannel channel, long sequence) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(4);
+        long offset = 0;
+        for (long n = 0; n < sequence; n++) {
+            length.clear();
+            channel.read(length, offset);
+            offset += 4 + length.getInt(0);
+        }
+        return offset;
+    }
+
+    private static ByteBuffer readEntry(FileChannel channel, long offset) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(4);
+        channel.read(length, offset);
+        ByteBuffer entry = ByteBuffer.allocate(4 + length.getInt(0));
+        channel.read(entry, offset);
+        return entry;
+    }
+}
@@ -0,0 +1,859 @@
+package com.clothblockchain.extractor;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory approximate nearest-neighbour index (HNSW) over cloth feature vectors
+ *
+ * Implements the hierarchical navigable small world graph of Malkov & Yashunin:
+ * every vector is linked to its M closest neighbours on a random number of layers,
+ * and a search descends greedily from the sparse top layer to the dense bottom one.
+ * Queries visit O(log n) nodes instead of scanning the whole catalog.
+ *
+ * Vectors are L2-normalised on insert and compared with cosine distance (1 - dot).
+ * Inserts take a write lock; searches run concurrently under a read lock.
+ *
+ * Vectors can be stored as float32, float16 or int8 with a per-vector offset and scale (4, 2 or 1
+ * byte per dimension). Queries stay float32 and are compared against the stored codes
+ * directly (see VectorKernels), so only the catalog side loses precision.
+ *
+ * @author ClothBlockchain Team
+ * @version 1.0
+ */
+public class HnswIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int SNAPSHOT_MAGIC = 0x484E5357; // "HNSW"
+    private static final int SNAPSHOT_VERSION = 2; // 2 adds the vector encoding
+
+    private final int dimension;
+    private final Encoding encoding;
+    private final int maxNeighbors;        // M: links per node on upper layers
+    private final int maxNeighborsLayer0;  // 2*M on the bottom layer
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private volatile int efSearch;
+
+    // Node storage, indexed by internal node id
+    private final VectorStorage vectors;
+    private String[] ids;
+    private int[][][] links;               // links[node][layer] = {count, n1, n2, ...}
+    private boolean[] deleted;
+    private int size;
+
+    private final Map<String, Integer> nodeById = new HashMap<>();
+    private int entryPoint = -1;
+    private int topLayer = -1;
+
+    private final Random levelRandom = new Random(42);
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ThreadLocal<VisitedSet> visitedSets = ThreadLocal.withInitial(VisitedSet::new);
+
+    public HnswIndex(int dimension) {
+        this(dimension, Encoding.FLOAT32);
+    }
+
+    public HnswIndex(int dimension, Encoding encoding) {
+        this(dimension, encoding, 16, 100, 64);
+    }
+
+    public HnswIndex(int dimension, int maxNeighbors, int efConstruction, int efSearch) {
+        this(dimension, Encoding.FLOAT32, maxNeighbors, efConstruction, efSearch);
+    }
+
+    public HnswIndex(int dimension, Encoding encoding, int maxNeighbors, int efConstruction, int efSearch) {
+        this.dimension = dimension;
+        this.encoding = encoding;
+        this.maxNeighbors = maxNeighbors;
+        this.maxNeighborsLayer0 = maxNeighbors * 2;
+        this.efConstruction = Math.max(efConstruction, maxNeighbors);
+        this.efSearch = efSearch;
+        this.levelMultiplier = 1.0 / Math.log(maxNeighbors);
+        this.vectors = VectorStorage.create(encoding, dimension, INITIAL_CAPACITY);
+        this.ids = new String[INITIAL_CAPACITY];
+        this.links = new int[INITIAL_CAPACITY][][];
+        this.deleted = new boolean[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Insert a vector. Re-adding an existing id replaces its previous vector.
+     */
+    public void add(String id, float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected dimension " + dimension + ", got " + vector.length);
+        }
+        float[] normalized = normalize(vector);
+
+        lock.writeLock().lock();
+        try {
+            Integer previous = nodeById.get(id);
+            if (previous != null) {
+                deleted[previous] = true;
+            }
+
+            int node = allocateNode(id, normalized);
+            nodeById.put(id, node);
+            insertNode(node, normalized);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove an id from search results. The node stays in the graph as a routing point
+     * until the index is rebuilt; see deletedCount().
+     */
+    public boolean remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Integer node = nodeById.remove(id);
+            if (node == null) {
+                return false;
+            }
+            deleted[node] = true;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Return up to k nearest ids, closest first
+     */
+    public List<Neighbor> search(float[] query, int k) {
+        if (query.length != dimension) {
+            throw new IllegalArgumentException("Expected dimension " + dimension + ", got " + query.length);
+        }
+        Query normalized = new Query(normalize(query));
+
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0) {
+                return Collections.emptyList();
+            }
+
+            int current = entryPoint;
+            for (int layer = topLayer; layer > 0; layer--) {
+                current = greedyClosest(normalized, current, layer);
+            }
+
+            // Deleted nodes still route but never count towards the result
+            LongHeap found = searchLayer(normalized, current, Math.max(efSearch, k), 0);
+            long[] sorted = found.drainAscending();
+            List<Neighbor> result = new ArrayList<>(Math.min(k, sorted.length));
+            for (long entry : sorted) {
+                int node = nodeOf(entry);
+                if (deleted[node]) {
+                    continue;
+                }
+                result.add(new Neighbor(ids[node], distanceOf(entry)));
+                if (result.size() == k) {
+                    break;
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodeById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Nodes kept only as routing points: removed ids and the old nodes of re-added ones.
+     * Their slots are never reused, so owners rebuild the index once this gets large.
+     */
+    public int deletedCount() {
+        lock.readLock().lock();
+        try {
+            return size - nodeById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public Encoding encoding() {
+        return encoding;
+    }
+
+    /**
+     * Approximate heap used by the stored vectors (graph links not included)
+     */
+    public long vectorBytes() {
+        lock.readLock().lock();
+        try {
+            return (long) size * vectors.bytesPerVector();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Exact k nearest by scanning every stored vector with the index's kernel. For small
+     * catalogs, re-ranking and measuring the graph's recall.
+     */
+    public List<Neighbor> searchExhaustive(float[] query, int k) {
+        if (query.length != dimension) {
+            throw new IllegalArgumentException("Expected dimension " + dimension + ", got " + query.length);
+        }
+        Query normalized = new Query(normalize(query));
+
+        lock.readLock().lock();
+        try {
+            LongHeap best = new LongHeap(k + 1, true);
+            for (int node = 0; node < size; node++) {
+                if (deleted[node]) {
+                    continue;
+                }
+                float d = vectors.distance(normalized, node);
+                if (best.size() < k || d < distanceOf(best.peek())) {
+                    best.push(encode(d, node));
+                    if (best.size() > k) {
+                        best.pop();
+                    }
+                }
+            }
+            long[] sorted = best.drainAscending();
+            List<Neighbor> result = new ArrayList<>(sorted.length);
+            for (long entry : sorted) {
+                result.add(new Neighbor(ids[nodeOf(entry)], distanceOf(entry)));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ids currently searchable
+     */
+    public Set<String> ids() {
+        lock.readLock().lock();
+        try {
+            return new HashSet<>(nodeById.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Serialize the whole graph so it can be reloaded without re-inserting every vector
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        lock.readLock().lock();
+        try {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(dimension);
+            out.writeInt(maxNeighbors);
+            out.writeInt(efConstruction);
+            out.writeInt(efSearch);
+            out.writeInt(size);
+            out.writeInt(entryPoint);
+            out.writeInt(topLayer);
+            out.writeByte(encoding.ordinal());
+
+            ByteBuffer vectorBytes = ByteBuffer.allocate(vectors.bytesPerVector());
+            for (int node = 0; node < size; node++) {
+                out.writeUTF(ids[node]);
+                out.writeBoolean(deleted[node]);
+                out.writeByte(links[node].length);
+                for (int[] list : links[node]) {
+                    out.writeShort(list[0]);
+                    for (int i = 1; i <= list[0]; i++) {
+                        out.writeInt(list[i]);
+                    }
+                }
+                vectorBytes.clear();
+                vectors.write(node, vectorBytes);
+                out.write(vectorBytes.array());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Load a graph written by writeTo
+     */
+    public static HnswIndex readFrom(DataInputStream in) throws IOException {
+        int version = in.readInt() == SNAPSHOT_MAGIC ? in.readInt() : -1;
+        if (version != 1 && version != SNAPSHOT_VERSION) {
+            throw new IOException("Not an HNSW snapshot (or unsupported version)");
+        }
+        int dimension = in.readInt();
+        int maxNeighbors = in.readInt();
+        int efConstruction = in.readInt();
+        int efSearch = in.readInt();
+        int size = in.readInt();
+
+        int entryPoint = in.readInt();
+        int topLayer = in.readInt();
+        Encoding encoding = version == 1 ? Encoding.FLOAT32 : Encoding.values()[in.readUnsignedByte()];
+
+        HnswIndex index = new HnswIndex(dimension, encoding, maxNeighbors, efConstruction, efSearch);
+        index.entryPoint = entryPoint;
+        index.topLayer = topLayer;
+        int capacity = Math.max(INITIAL_CAPACITY, size);
+        index.vectors.grow(capacity);
+        index.ids = new String[capacity];
+        index.links = new int[capacity][][];
+        index.deleted = new boolean[capacity];
+
+        byte[] vectorBytes = new byte[index.vectors.bytesPerVector()];
+        for (int node = 0; node < size; node++) {
+            index.ids[node] = in.readUTF();
+            index.deleted[node] = in.readBoolean();
+            int layers = in.readUnsignedByte();
+            index.links[node] = new int[layers][];
+            for (int layer = 0; layer < layers; layer++) {
+                int[] list = new int[(layer == 0 ? index.maxNeighborsLayer0 : maxNeighbors) + 1];
+                list[0] = in.readShort();
+                for (int i = 1; i <= list[0]; i++) {
+                    list[i] = in.readInt();
+                }
+                index.links[node][layer] = list;
+            }
+            in.readFully(vectorBytes);
+            index.vectors.read(node, ByteBuffer.wrap(vectorBytes));
+            if (!index.deleted[node]) {
+                index.nodeById.put(index.ids[node], node);
+            }
+        }
+        index.size = size;
+
+        // Keep the level distribution of new inserts independent of the snapshot
+        index.levelRandom.setSeed(42L + size);
+        return index;
+    }
+
+    /**
+     * Trade recall for latency at query time (larger = more accurate, slower)
+     */
+    public void setEfSearch(int efSearch) {
+        this.efSearch = efSearch;
+    }
+
+    // Graph construction
+    private int allocateNode(String id, float[] vector) {
+        if (size == ids.length) {
+            int capacity = size * 2;
+            vectors.grow(capacity);
+            ids = Arrays.copyOf(ids, capacity);
+            links = Arrays.copyOf(links, capacity);
+            deleted = Arrays.copyOf(deleted, capacity);
+        }
+
+        int node = size++;
+        int level = (int) (-Math.log(1.0 - levelRandom.nextDouble()) * levelMultiplier);
+        vectors.set(node, vector);
+        ids[node] = id;
+        links[node] = new int[level + 1][];
+        for (int layer = 0; layer <= level; layer++) {
+            links[node][layer] = new int[(layer == 0 ? maxNeighborsLayer0 : maxNeighbors) + 1];
+        }
+        return node;
+    }
+
+    private void insertNode(int node, float[] normalized) {
+        Query vector = new Query(normalized);
+        int level = links[node].length - 1;
+        if (entryPoint < 0) {
+            entryPoint = node;
+            topLayer = level;
+            return;
+        }
+
+        int current = entryPoint;
+        for (int layer = topLayer; layer > level; layer--) {
+            current = greedyClosest(vector, current, layer);
+        }
+
+        for (int layer = Math.min(level, topLayer); layer >= 0; layer--) {
+            LongHeap candidates = searchLayer(vector, current, efConstruction, layer);
+            long[] sorted = candidates.drainAscending();
+            int[] selected = selectNeighbors(sorted, maxNeighbors);
+
+            int[] own = links[node][layer];
+            for (int neighbor : selected) {
+                own[++own[0]] = neighbor;
+                connect(neighbor, node, layer);
+            }
+            current = nodeOf(sorted[0]);
+        }
+
+        if (level > topLayer) {
+            topLayer = level;
+            entryPoint = node;
+        }
+    }
+
+    /**
+     * Add a back-link, pruning the neighbour's list with the selection heuristic when it overflows
+     */
+    private void connect(int from, int to, int layer) {
+        int[] list = links[from][layer];
+        int capacity = list.length - 1;
+        if (list[0] < capacity) {
+            list[++list[0]] = to;
+            return;
+        }
+
+        LongHeap candidates = new LongHeap(capacity + 1, false);
+        candidates.push(encode(vectors.distance(from, to), to));
+        for (int i = 1; i <= list[0]; i++) {
+            candidates.push(encode(vectors.distance(from, list[i]), list[i]));
+        }
+
+        int[] selected = selectNeighbors(candidates.drainAscending(), capacity);
+        list[0] = selected.length;
+        System.arraycopy(selected, 0, list, 1, selected.length);
+    }
+
+    /**
+     * HNSW neighbour heuristic: keep a candidate only if it is closer to the base
+     * than to every neighbour already kept, which spreads links across directions
+     */
+    private int[] selectNeighbors(long[] ascending, int limit) {
+        int[] selected = new int[Math.min(limit, ascending.length)];
+        int count = 0;
+        for (long entry : ascending) {
+            if (count == selected.length) {
+                break;
+            }
+            int candidate = nodeOf(entry);
+            float candidateDistance = distanceOf(entry);
+            boolean keep = true;
+            for (int i = 0; i < count; i++) {
+                if (vectors.distance(candidate, selected[i]) < candidateDistance) {
+                    keep = false;
+                    break;
+                }
+            }
+            if (keep) {
+                selected[count++] = candidate;
+            }
+        }
+        return count == selected.length ? selected : Arrays.copyOf(selected, count);
+    }
+
+    // Graph search
+    private int greedyClosest(Query query, int start, int layer) {
+        int current = start;
+        float currentDistance = vectors.distance(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] list = links[current][layer];
+            for (int i = 1; i <= list[0]; i++) {
+                float d = vectors.distance(query, list[i]);
+                if (d < currentDistance) {
+                    currentDistance = d;
+                    current = list[i];
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Best-first search on one layer; returns a max-heap of the ef closest nodes
+     */
+    private LongHeap searchLayer(Query query, int start, int ef, int layer) {
+        VisitedSet visited = visitedSets.get();
+        visited.reset(size);
+
+        LongHeap candidates = new LongHeap(ef * 2, false);
+        LongHeap results = new LongHeap(ef + 1, true);
+
+        long startEntry = encode(vectors.distance(query, start), start);
+        candidates.push(startEntry);
+        results.push(startEntry);
+        visited.mark(start);
+
+        while (!candidates.isEmpty()) {
+            long closest = candidates.pop();
+            if (distanceOf(closest) > distanceOf(results.peek()) && results.size() >= ef) {
+                break;
+            }
+
+            int[] list = links[nodeOf(closest)][layer];
+            for (int i = 1; i <= list[0]; i++) {
+                int neighbor = list[i];
+                if (!visited.mark(neighbor)) {
+                    continue;
+                }
+                float d = vectors.distance(query, neighbor);
+                if (results.size() < ef || d < distanceOf(results.peek())) {
+                    long entry = encode(d, neighbor);
+                    candidates.push(entry);
+                    results.push(entry);
+                    if (results.size() > ef) {
+                        results.pop();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    // Distance helpers
+    private static float cosineDistance(float dot) {
+        return Math.max(0f, 1f - dot);
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0.0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        float[] result = new float[vector.length];
+        if (norm == 0.0) {
+            return result;
+        }
+        float scale = (float) (1.0 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            result[i] = vector[i] * scale;
+        }
+        return result;
+    }
+
+    // Non-negative floats order the same as their bit patterns, so (distance, node) packs into one sortable long
+    private static long encode(float distance, int node) {
+        return ((long) Float.floatToIntBits(distance) << 32) | (node & 0xFFFFFFFFL);
+    }
+
+    private static int nodeOf(long entry) {
+        return (int) entry;
+    }
+
+    private static float distanceOf(long entry) {
+        return Float.intBitsToFloat((int) (entry >>> 32));
+    }
+
+    /**
+     * Binary heap of packed (distance, node) entries, min- or max-ordered
+     */
+    private static final class LongHeap {
+        private long[] heap;
+        private int count;
+        private final boolean max;
+
+        LongHeap(int capacity, boolean max) {
+            this.heap = new long[Math.max(4, capacity)];
+            this.max = max;
+        }
+
+        boolean isEmpty() {
+            return count == 0;
+        }
+
+        int size() {
+            return count;
+        }
+
+        long peek() {
+            return heap[0];
+        }
+
+        void push(long value) {
+            if (count == heap.length) {
+                heap = Arrays.copyOf(heap, count * 2);
+            }
+            int i = count++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(value, heap[parent])) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = value;
+        }
+
+        long pop() {
+            long top = heap[0];
+            long last = heap[--count];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= count) {
+                    break;
+                }
+                if (child + 1 < count && before(heap[child + 1], heap[child])) {
+                    child++;
+                }
+                if (!before(heap[child], last)) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = last;
+            return top;
+        }
+
+        long[] drainAscending() {
+            long[] result = Arrays.copyOf(heap, count);
+            Arrays.sort(result);
+            count = 0;
+            return result;
+        }
+
+        private boolean before(long a, long b) {
+            return max ? a > b : a < b;
+        }
+    }
+
+    /**
+     * Per-thread visited marks; a generation counter avoids clearing the array for every search
+     */
+    private static final class VisitedSet {
+        private int[] marks = new int[INITIAL_CAPACITY];
+        private int generation;
+
+        void reset(int nodes) {
+            if (marks.length < nodes) {
+                marks = new int[Math.max(nodes, marks.length * 2)];
+                generation = 0;
+            }
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                generation = 1;
+            }
+        }
+
+        /**
+         * @return true if the node had not been visited yet
+         */
+        boolean mark(int node) {
+            if (marks[node] == generation) {
+                return false;
+            }
+            marks[node] = generation;
+            return true;
+        }
+    }
+
+    /**
+     * Per-node vector storage in one encoding. Distances are cosine distances of the
+     * (normalised) vectors: 1 - dot, clamped at 0.
+     */
+    private abstract static class VectorStorage {
+        final int dimension;
+
+        VectorStorage(int dimension) {
+            this.dimension = dimension;
+        }
+
+        static VectorStorage create(Encoding encoding, int dimension, int capacity) {
+            switch (encoding) {
+                case FLOAT16:
+                    return new HalfVectors(dimension, capacity);
+                case INT8:
+                    return new Int8Vectors(dimension, capacity);
+                default:
+                    return new FloatVectors(dimension, capacity);
+            }
+        }
+
+        abstract void grow(int capacity);
+
+        abstract void set(int node, float[] normalized);
+
+        abstract float distance(Query query, int node);
+
+        abstract float distance(int a, int b);
+
+        abstract int bytesPerVector();
+
+        abstract void write(int node, ByteBuffer target);
+
+        abstract void read(int node, ByteBuffer source);
+    }
+
+    private static final class FloatVectors extends VectorStorage {
+        private float[][] vectors;
+
+        FloatVectors(int dimension, int capacity) {
+            super(dimension);
+            vectors = new float[capacity][];
+        }
+
+        void grow(int capacity) {
+            vectors = Arrays.copyOf(vectors, capacity);
+        }
+
+        void set(int node, float[] normalized) {
+            vectors[node] = normalized;
+        }
+
+        float distance(Query query, int node) {
+            return cosineDistance(VectorKernels.dot(query.vector, vectors[node]));
+        }
+
+        float distance(int a, int b) {
+            return cosineDistance(VectorKernels.dot(vectors[a], vectors[b]));
+        }
+
+        int bytesPerVector() {
+            return dimension * 4;
+        }
+
+        void write(int node, ByteBuffer target) {
+            target.asFloatBuffer().put(vectors[node]);
+        }
+
+        void read(int node, ByteBuffer source) {
+            vectors[node] = new float[dimension];
+            source.asFloatBuffer().get(vectors[node]);
+        }
+    }
+
+    private static final class HalfVectors extends VectorStorage {
+        private short[][] vectors;
+
+        HalfVectors(int dimension, int capacity) {
+            super(dimension);
+            vectors = new short[capacity][];
+        }
+
+        void grow(int capacity) {
+            vectors = Arrays.copyOf(vectors, capacity);
+        }
+
+        void set(int node, float[] normalized) {
+            vectors[node] = VectorKernels.toHalf(normalized);
+        }
+
+        float distance(Query query, int node) {
+            return cosineDistance(VectorKernels.dot(query.vector, vectors[node]));
+        }
+
+        float distance(int a, int b) {
+            return cosineDistance(VectorKernels.dot(vectors[a], vectors[b]));
+        }
+
+        int bytesPerVector() {
+            return dimension * 2;
+        }
+
+        void write(int node, ByteBuffer target) {
+            target.asShortBuffer().put(vectors[node]);
+        }
+
+        void read(int node, ByteBuffer source) {
+            vectors[node] = new short[dimension];
+            source.asShortBuffer().get(vectors[node]);
+        }
+    }
+
+    private static final class Int8Vectors extends VectorStorage {
+        private byte[][] codes;
+        private float[] offsets;
+        private float[] scales;
+        private int[] codeSums;
+
+        Int8Vectors(int dimension, int capacity) {
+            super(dimension);
+            codes = new byte[capacity][];
+            offsets = new float[capacity];
+            scales = new float[capacity];
+            codeSums = new int[capacity];
+        }
+
+        void grow(int capacity) {
+            codes = Arrays.copyOf(codes, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            scales = Arrays.copyOf(scales, capacity);
+            codeSums = Arrays.copyOf(codeSums, capacity);
+        }
+
+        void set(int node, float[] normalized) {
+            codes[node] = new byte[dimension];
+            float[] offsetAndScale = VectorKernels.quantizeInt8(normalized, codes[node]);
+            offsets[node] = offsetAndScale[0];
+            scales[node] = offsetAndScale[1];
+            codeSums[node] = VectorKernels.codeSum(codes[node]);
+        }
+
+        float distance(Query query, int node) {
+            return cosineDistance(offsets[node] * query.sum + scales[node] * VectorKernels.dot(query.vector, codes[node]));
+        }
+
+        float distance(int a, int b) {
+            return cosineDistance(VectorKernels.dot(codes[a], offsets[a], scales[a], codeSums[a],
+                    codes[b], offsets[b], scales[b], codeSums[b]));
+        }
+
+        int bytesPerVector() {
+            return 12 + dimension;
+        }
+
+        void write(int node, ByteBuffer target) {
+            target.putFloat(offsets[node]);
+            target.putFloat(scales[node]);
+            target.putInt(codeSums[node]);
+            target.put(codes[node]);
+        }
+
+        void read(int node, ByteBuffer source) {
+            offsets[node] = source.getFloat();
+            scales[node] = source.getFloat();
+            codeSums[node] = source.getInt();
+            codes[node] = new byte[dimension];
+            source.get(codes[node]);
+        }
+    }
+
+    /**
+     * A normalised query with its component sum, which the int8 kernel needs to undo the offset
+     */
+    private static final class Query {
+        final float[] vector;
+        final float sum;
+
+        Query(float[] vector) {
+            this.vector = vector;
+            this.sum = VectorKernels.sum(vector);
+        }
+    }
+
+    /**
+     * How vectors are stored: bytes per dimension 4, 2 and 1 (+12 bytes offset, scale and code sum per vector)
+     */
+    public enum Encoding {
+        FLOAT32,
+        FLOAT16,
+        INT8
+    }
+
+    // Data classes
+    public static class Neighbor {
+        public String clothId;
+        public double distance;
+
+        public Neighbor(String clothId, double distance) {
+            this.clothId = clothId;
+            this.distance = distance;
+        }
+    }
+}
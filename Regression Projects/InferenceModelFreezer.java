@@ -0,0 +1,185 @@
+package com.clothblockchain.extractor;
+
+import org.deeplearning4j.nn.conf.CacheMode;
+import org.deeplearning4j.nn.conf.InputPreProcessor;
+import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.conf.WorkspaceMode;
+import org.deeplearning4j.nn.conf.layers.ActivationLayer;
+import org.deeplearning4j.nn.conf.layers.BaseLayer;
+import org.deeplearning4j.nn.conf.layers.BatchNormalization;
+import org.deeplearning4j.nn.conf.layers.ConvolutionLayer;
+import org.deeplearning4j.nn.conf.layers.Layer;
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.deeplearning4j.nn.params.BatchNormalizationParamInitializer;
+import org.deeplearning4j.nn.params.ConvolutionParamInitializer;
+import org.nd4j.linalg.activations.IActivation;
+import org.nd4j.linalg.activations.impl.ActivationIdentity;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.ops.transforms.Transforms;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns a feature model into an inference-only copy
+ *
+ * At inference time a BatchNormalization layer is a fixed per-channel affine map,
+ *   y = gamma * (x - mean) / sqrt(var + eps) + beta,
+ * so when it directly follows a convolution it folds into that convolution's weights and
+ * bias: W' = W * s and b' = (b - mean) * s + beta, with s = gamma / sqrt(var + eps). This
+ * only holds if the convolution's own activation is the identity. A conv(ReLU) -> BN pair
+ * (the pre-1.2 layout) is copied unchanged. An ActivationLayer right after the
+ * normalisation moves into the convolution. Dropout is removed everywhere. The result has
+ * fewer layers and no per-call normalisation work. Its outputs match the original's
+ * inference outputs up to float rounding.
+ *
+ * Layers that are not in a foldable conv -> BN (-> activation) run are copied unchanged,
+ * and every BatchNormalization layer left in the copy is logged.
+ *
+ * @author ClothBlockchain Team
+ * @version 1.0
+ */
+final class InferenceModelFreezer {
+
+    private static final Logger log = LoggerFactory.getLogger(InferenceModelFreezer.class);
+
+    private InferenceModelFreezer() {
+    }
+
+    /**
+     * Inference-only copy of the model. The model itself is not modified.
+     */
+    static MultiLayerNetwork freeze(MultiLayerNetwork model) {
+        MultiLayerConfiguration source = model.getLayerWiseConfigurations();
+        int layerCount = source.getConfs().size();
+
+        NeuralNetConfiguration.ListBuilder builder = new NeuralNetConfiguration.Builder()
+                .dataType(source.getDataType())
+                .trainingWorkspaceMode(WorkspaceMode.NONE)
+                .inferenceWorkspaceMode(WorkspaceMode.ENABLED)
+                .cacheMode(CacheMode.NONE)
+                .list();
+
+        // Parameters per frozen layer, folded where a normalisation was merged in
+        List<Map<String, INDArray>> parameters = new ArrayList<>();
+        int frozenIndex = 0;
+        for (int i = 0; i < layerCount; i++) {
+            Layer layer = source.getConf(i).getLayer().clone();
+            layer.setIDropout(null);
+
+            InputPreProcessor preProcessor = source.getInputPreProcess(i);
+            if (preProcessor != null) {
+                builder.inputPreProcessor(frozenIndex, preProcessor.clone());
+            }
+
+            Map<String, INDArray> layerParameters = copyParameters(model.getLayer(i).paramTable());
+            if (canFold(source, i)) {
+                BatchNormalization normalization = (BatchNormalization) source.getConf(i + 1).getLayer();
+                fold(layerParameters, normalization, model.getLayer(i + 1).paramTable(), ((ConvolutionLayer) layer).hasBias());
+                ((ConvolutionLayer) layer).setHasBias(true);
+                i++;
+
+                // The convolution is identity-activated, so a following activation can move into it
+                if (i + 1 < layerCount && source.getConf(i + 1).getLayer() instanceof ActivationLayer) {
+                    ((BaseLayer) layer).setActivationFn(((ActivationLayer) source.getConf(i + 1).getLayer()).getActivationFn());
+                    i++;
+                }
+            } else if (layer instanceof BatchNormalization) {
+                log.warn("BatchNormalization layer {} could not be folded (no preceding convolution with identity "
+                        + "activation) and is kept in the inference model", i);
+            }
+
+            builder.layer(frozenIndex++, layer);
+            parameters.add(layerParameters);
+        }
+
+        MultiLayerNetwork frozen = new MultiLayerNetwork(builder.build());
+        frozen.init();
+        for (int i = 0; i < parameters.size(); i++) {
+            for (Map.Entry<String, INDArray> entry : parameters.get(i).entrySet()) {
+                INDArray target = frozen.getLayer(i).getParam(entry.getKey());
+                target.assign(entry.getValue().reshape(target.shape()));
+            }
+        }
+        return frozen;
+    }
+
+    /**
+     * Number of BatchNormalization layers that freeze() folds away
+     */
+    static int foldableNormalizations(MultiLayerNetwork model) {
+        MultiLayerConfiguration source = model.getLayerWiseConfigurations();
+        int count = 0;
+        for (int i = 0; i < source.getConfs().size(); i++) {
+            if (canFold(source, i)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Whether layer i is a plain 2D convolution with identity activation followed by a
+     * BatchNormalization. Subclasses (depthwise, separable, deconvolution) lay their weights
+     * out differently and are left alone.
+     */
+    private static boolean canFold(MultiLayerConfiguration source, int i) {
+        if (i + 1 >= source.getConfs().size()) {
+            return false;
+        }
+        Layer layer = source.getConf(i).getLayer();
+        return layer.getClass() == ConvolutionLayer.class
+                && isIdentity(((ConvolutionLayer) layer).getActivationFn())
+                && source.getConf(i + 1).getLayer() instanceof BatchNormalization;
+    }
+
+    private static boolean isIdentity(IActivation activation) {
+        return activation == null || activation instanceof ActivationIdentity;
+    }
+
+    private static void fold(Map<String, INDArray> convolution, BatchNormalization normalization,
+                             Map<String, INDArray> statistics, boolean hasBias) {
+        INDArray weights = convolution.get(ConvolutionParamInitializer.WEIGHT_KEY);
+        long channels = weights.size(0);
+
+        INDArray mean = statistics.get(BatchNormalizationParamInitializer.GLOBAL_MEAN).reshape(channels);
+        INDArray std = normalization.isUseLogStd()
+                ? Transforms.pow(Nd4j.valueArrayOf(new long[]{channels}, 10.0, mean.dataType()),
+                        statistics.get(BatchNormalizationParamInitializer.GLOBAL_LOG_STD).reshape(channels))
+                : Transforms.sqrt(statistics.get(BatchNormalizationParamInitializer.GLOBAL_VAR).reshape(channels)
+                        .add(normalization.getEps()));
+        INDArray gamma = normalization.isLockGammaBeta()
+                ? Nd4j.valueArrayOf(new long[]{channels}, normalization.getGamma(), mean.dataType())
+                : statistics.get(BatchNormalizationParamInitializer.GAMMA).reshape(channels);
+        INDArray beta = normalization.isLockGammaBeta()
+                ? Nd4j.valueArrayOf(new long[]{channels}, normalization.getBeta(), mean.dataType())
+                : statistics.get(BatchNormalizationParamInitializer.BETA).reshape(channels);
+        INDArray scale = gamma.div(std);
+
+        // [nOut, nIn, kH, kW]: scale every output channel's kernel
+        INDArray scaledWeights = weights.reshape('c', channels, weights.length() / channels)
+                .mulColumnVector(scale.reshape(channels, 1))
+                .reshape('c', weights.shape());
+        INDArray bias = hasBias
+                ? convolution.get(ConvolutionParamInitializer.BIAS_KEY).reshape(channels)
+                : Nd4j.zeros(mean.dataType(), channels);
+        INDArray foldedBias = bias.sub(mean).muli(scale).addi(beta).reshape(1, channels);
+
+        convolution.put(ConvolutionParamInitializer.WEIGHT_KEY, scaledWeights);
+        convolution.put(ConvolutionParamInitializer.BIAS_KEY, foldedBias);
+    }
+
+    private static Map<String, INDArray> copyParameters(Map<String, INDArray> parameters) {
+        Map<String, INDArray> copy = new HashMap<>();
+        for (Map.Entry<String, INDArray> entry : parameters.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().dup());
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,430 @@
+package com.clothblockchain.extractor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Collects blockchain records into batches and anchors one Merkle root per batch
+ *
+ * A batch is sealed when it reaches maxBatchSize records or maxDelayMillis after its first
+ * record, whichever comes first. Sealing builds a MerkleTree over the record hashes, hands
+ * the root to the anchor listener (the one chain transaction for the whole batch) and
+ * attaches an inclusion proof to every record in it.
+ *
+ * Proofs are appended to a log file so they survive restarts; the log is scanned on open
+ * to find each cloth's latest proof. Each entry ends with a CRC32, so a torn entry is
+ * found even when its length fields look plausible. Records still pending when the process
+ * stops without close() are not anchored.
+ *
+ * If writing a batch's proofs fails, its entries are cut off the log again and the batch
+ * goes back to the front of the pending records, to be sealed (with the same batch id) by
+ * the next submit, flush or timer. If even cutting them off fails, the log may end in a
+ * partial entry, so the anchor stops accepting records, like the ledger does.
+ *
+ * @author ClothBlockchain Team
+ * @version 1.0
+ */
+public class MerkleBatchAnchor implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(MerkleBatchAnchor.class);
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 1024;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 60_000;
+
+    private static final int MAX_ID_BYTES = 96;
+    private static final int MAX_SIBLINGS = 32;
+    private static final int MAX_ENTRY_BYTES = 2 + MAX_ID_BYTES + 8 + 4 + 4 + MerkleTree.HASH_BYTES + 1 +
+            MAX_SIBLINGS * MerkleTree.HASH_BYTES + 4;
+    // Set in the id length of entries that end with a CRC32; entries from older logs carry none
+    private static final int ENTRY_CHECKED = 0x8000;
+
+    private final Path proofLogPath;
+    private final int maxBatchSize;
+    private final long maxDelayMillis;
+    private final ScheduledExecutorService timer;
+
+    // Pending batch, guarded by this
+    private List<ClothFeatureExtractor.BlockchainRecord> pending = new ArrayList<>();
+    private ScheduledFuture<?> pendingDeadline;
+
+    // Proof log, guarded by sealLock
+    private final Object sealLock = new Object();
+    private final Map<String, Long> proofOffsets = new HashMap<>();
+    private final FileChannel proofLog;
+    private final ByteBuffer entryBuffer = ByteBuffer.allocate(MAX_ENTRY_BYTES);
+    private final CRC32 entryCrc = new CRC32();
+    private long nextBatchId = 1;
+    private volatile IOException failure;
+
+    private volatile Consumer<AnchoredBatch> anchorListener;
+
+    public MerkleBatchAnchor(Path proofLogPath) throws IOException {
+        this(proofLogPath, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    public MerkleBatchAnchor(Path proofLogPath, int maxBatchSize, long maxDelayMillis) throws IOException {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be at least 1: " + maxBatchSize);
+        }
+        this.proofLogPath = proofLogPath;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayMillis = maxDelayMillis;
+
+        Files.createDirectories(proofLogPath.toAbsolutePath().getParent());
+        this.proofLog = FileChannel.open(proofLogPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        replayProofLog();
+
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "merkle-batch-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Called with every sealed batch; this is where the root gets anchored on chain
+     */
+    public void setAnchorListener(Consumer<AnchoredBatch> anchorListener) {
+        this.anchorListener = anchorListener;
+    }
+
+    /**
+     * Number batches from at least firstBatchId, so batches sealed into this log can be
+     * appended to another log without their ids colliding
+     */
+    void reserveBatchIdsFrom(long firstBatchId) {
+        synchronized (sealLock) {
+            nextBatchId = Math.max(nextBatchId, firstBatchId);
+        }
+    }
+
+    /**
+     * Add a record to the current batch. The record's merkleProof is filled in when the
+     * batch is sealed, which may happen on this thread (size window) or the timer (time window).
+     */
+    public void submit(ClothFeatureExtractor.BlockchainRecord record) throws IOException {
+        if (record.hash == null || record.hash.length() != MerkleTree.HASH_BYTES * 2) {
+            throw new IllegalArgumentException("Record has no SHA-256 hash: " + record.clothId);
+        }
+        // Checked here, not at seal time, so one bad record cannot keep a requeued batch failing
+        if (record.clothId.getBytes(StandardCharsets.UTF_8).length > MAX_ID_BYTES) {
+            throw new IllegalArgumentException("Cloth id longer than " + MAX_ID_BYTES + " bytes: " + record.clothId);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+
+        List<ClothFeatureExtractor.BlockchainRecord> full = null;
+        synchronized (this) {
+            pending.add(record);
+            if (pending.size() >= maxBatchSize) {
+                full = takePending();
+            } else if (pending.size() == 1 && maxDelayMillis > 0) {
+                pendingDeadline = timer.schedule(this::sealOnTimer, maxDelayMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full != null) {
+            seal(full);
+        }
+    }
+
+    /**
+     * Seal whatever is pending now, regardless of the windows
+     */
+    public AnchoredBatch flush() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        List<ClothFeatureExtractor.BlockchainRecord> batch;
+        synchronized (this) {
+            batch = takePending();
+        }
+        return batch.isEmpty() ? null : seal(batch);
+    }
+
+    public synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Latest inclusion proof for a cloth, or null if it has not been anchored
+     */
+    public MerkleTree.Proof proofFor(String clothId) throws IOException {
+        synchronized (sealLock) {
+            Long offset = proofOffsets.get(clothId);
+            if (offset == null) {
+                return null;
+            }
+            ByteBuffer entry = ByteBuffer.allocate(MAX_ENTRY_BYTES);
+            while (entry.hasRemaining() && proofLog.read(entry, offset + entry.position()) > 0) {
+                // an entry near the end of the log may be shorter than the window
+            }
+            entry.flip();
+            return readEntry(entry, null);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        timer.shutdownNow();
+        try {
+            flush();
+        } finally {
+            synchronized (sealLock) {
+                proofLog.force(false);
+                proofLog.close();
+            }
+        }
+    }
+
+    private List<ClothFeatureExtractor.BlockchainRecord> takePending() {
+        List<ClothFeatureExtractor.BlockchainRecord> batch = pending;
+        pending = new ArrayList<>();
+        if (pendingDeadline != null) {
+            pendingDeadline.cancel(false);
+            pendingDeadline = null;
+        }
+        return batch;
+    }
+
+    // Put a batch whose seal failed back in front of what was submitted since, and retry on the timer
+    private synchronized void requeue(List<ClothFeatureExtractor.BlockchainRecord> batch) {
+        batch.addAll(pending);
+        pending = batch;
+        if (pendingDeadline == null && maxDelayMillis > 0 && !timer.isShutdown()) {
+            pendingDeadline = timer.schedule(this::sealOnTimer, maxDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void sealOnTimer() {
+        try {
+            flush();
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to seal Merkle batch: {}", e.getMessage(), e);
+        }
+    }
+
+    private AnchoredBatch seal(List<ClothFeatureExtractor.BlockchainRecord> batch) throws IOException {
+        long start = System.nanoTime();
+        List<byte[]> leaves = new ArrayList<>(batch.size());
+        for (ClothFeatureExtractor.BlockchainRecord record : batch) {
+            leaves.add(Hex.decode(record.hash));
+        }
+        MerkleTree tree = MerkleTree.build(leaves);
+
+        AnchoredBatch anchored = new AnchoredBatch();
+        anchored.root = tree.rootHex();
+        anchored.leafCount = tree.leafCount();
+        anchored.clothIds = new ArrayList<>(batch.size());
+
+        try {
+            synchronized (sealLock) {
+                writeBatch(batch, tree, anchored);
+            }
+        } catch (IOException | RuntimeException e) {
+            requeue(batch);
+            throw e;
+        }
+        anchored.sealMillis = (System.nanoTime() - start) / 1_000_000.0;
+
+        if (log.isInfoEnabled()) {
+            log.info("⚓ Sealed Merkle batch {}: {} records, root {} ({} ms)", anchored.batchId, anchored.leafCount,
+                    anchored.root, String.format("%.1f", anchored.sealMillis));
+        }
+
+        Consumer<AnchoredBatch> listener = anchorListener;
+        if (listener != null) {
+            listener.accept(anchored);
+        }
+        return anchored;
+    }
+
+    // Caller holds sealLock. On failure the log, offsets and batch id are as they were before.
+    private void writeBatch(List<ClothFeatureExtractor.BlockchainRecord> batch, MerkleTree tree,
+                            AnchoredBatch anchored) throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        long batchStart = proofLog.size();
+        anchored.batchId = nextBatchId++;
+        MerkleTree.Proof[] proofs = new MerkleTree.Proof[batch.size()];
+        Map<String, Long> replaced = new HashMap<>();
+        try {
+            long offset = batchStart;
+            for (int i = 0; i < batch.size(); i++) {
+                String clothId = batch.get(i).clothId;
+                proofs[i] = tree.proof(i);
+                proofs[i].batchId = anchored.batchId;
+                long length = writeEntry(clothId, proofs[i], offset);
+                Long previous = proofOffsets.put(clothId, offset);
+                if (!replaced.containsKey(clothId)) {
+                    replaced.put(clothId, previous);
+                }
+                offset += length;
+            }
+            proofLog.force(false);
+        } catch (IOException | RuntimeException e) {
+            rollBack(batchStart, replaced, e);
+            nextBatchId = anchored.batchId;
+            throw e;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            ClothFeatureExtractor.BlockchainRecord record = batch.get(i);
+            record.merkleProof = proofs[i];
+            anchored.clothIds.add(record.clothId);
+        }
+    }
+
+    // Cut a failed batch's entries off the log; if that fails too, stop accepting records
+    private void rollBack(long batchStart, Map<String, Long> replaced, Exception cause) {
+        replaced.forEach((clothId, previous) -> {
+            if (previous == null) {
+                proofOffsets.remove(clothId);
+            } else {
+                proofOffsets.put(clothId, previous);
+            }
+        });
+        try {
+            proofLog.truncate(batchStart);
+            proofLog.force(false);
+            log.warn("Merkle batch could not be written and was requeued: {}", cause.getMessage());
+        } catch (IOException e) {
+            e.addSuppressed(cause);
+            failure = e;
+            log.error("❌ Merkle proof log could not be rolled back, no further records accepted: {}", e.getMessage());
+        }
+    }
+
+    // Log entry: id length (with ENTRY_CHECKED), id, batch id, leaf index, leaf count, root, sibling count,
+    // siblings, CRC32 of everything before it. Returns its length.
+    private int writeEntry(String clothId, MerkleTree.Proof proof, long offset) throws IOException {
+        byte[] idBytes = clothId.getBytes(StandardCharsets.UTF_8);
+        if (idBytes.length > MAX_ID_BYTES) {
+            throw new IllegalArgumentException("Cloth id longer than " + MAX_ID_BYTES + " bytes: " + clothId);
+        }
+        entryBuffer.clear();
+        entryBuffer.putShort((short) (idBytes.length | ENTRY_CHECKED));
+        entryBuffer.put(idBytes);
+        entryBuffer.putLong(proof.batchId);
+        entryBuffer.putInt(proof.leafIndex);
+        entryBuffer.putInt(proof.leafCount);
+        entryBuffer.put(Hex.decode(proof.root));
+        entryBuffer.put((byte) proof.siblings.size());
+        for (String sibling : proof.siblings) {
+            entryBuffer.put(Hex.decode(sibling));
+        }
+        entryCrc.reset();
+        entryCrc.update(entryBuffer.array(), 0, entryBuffer.position());
+        entryBuffer.putInt((int) entryCrc.getValue());
+        entryBuffer.flip();
+        int length = entryBuffer.remaining();
+        while (entryBuffer.hasRemaining()) {
+            offset += proofLog.write(entryBuffer, offset);
+        }
+        return length;
+    }
+
+    /**
+     * Decode one entry at the buffer's position, or return null if it is torn or fails its CRC
+     */
+    private static MerkleTree.Proof readEntry(ByteBuffer entry, String[] clothIdOut) {
+        if (entry.remaining() < 2) {
+            return null;
+        }
+        int start = entry.position();
+        int idField = entry.getShort() & 0xFFFF;
+        boolean checked = (idField & ENTRY_CHECKED) != 0;
+        int idLength = idField & ~ENTRY_CHECKED;
+        if (idLength <= 0 || idLength > MAX_ID_BYTES || entry.remaining() < idLength + 8 + 4 + 4 + MerkleTree.HASH_BYTES + 1) {
+            return null;
+        }
+        byte[] idBytes = new byte[idLength];
+        entry.get(idBytes);
+
+        MerkleTree.Proof proof = new MerkleTree.Proof();
+        proof.batchId = entry.getLong();
+        proof.leafIndex = entry.getInt();
+        proof.leafCount = entry.getInt();
+        byte[] hash = new byte[MerkleTree.HASH_BYTES];
+        entry.get(hash);
+        proof.root = Hex.encode(hash);
+
+        int siblingCount = entry.get() & 0xFF;
+        if (siblingCount > MAX_SIBLINGS || entry.remaining() < siblingCount * MerkleTree.HASH_BYTES) {
+            return null;
+        }
+        proof.siblings = new ArrayList<>(siblingCount);
+        for (int i = 0; i < siblingCount; i++) {
+            entry.get(hash);
+            proof.siblings.add(Hex.encode(hash));
+        }
+        if (checked) {
+            if (entry.remaining() < 4) {
+                return null;
+            }
+            ByteBuffer covered = entry.duplicate();
+            covered.position(start).limit(entry.position());
+            CRC32 crc = new CRC32();
+            crc.update(covered);
+            if (entry.getInt() != (int) crc.getValue()) {
+                return null;
+            }
+        }
+        if (clothIdOut != null) {
+            clothIdOut[0] = new String(idBytes, StandardCharsets.UTF_8);
+        }
+        return proof;
+    }
+
+    private void replayProofLog() throws IOException {
+        long size = proofLog.size();
+        if (size == 0) {
+            return;
+        }
+
+        ByteBuffer entries = proofLog.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        String[] clothId = new String[1];
+        long validLength = 0;
+        while (entries.hasRemaining()) {
+            int offset = entries.position();
+            MerkleTree.Proof proof = readEntry(entries, clothId);
+            if (proof == null) {
+                break;
+            }
+            proofOffsets.put(clothId[0], (long) offset);
+            nextBatchId = Math.max(nextBatchId, proof.batchId + 1);
+            validLength = entries.position();
+        }
+
+        // A crash mid-seal leaves a torn entry at the end; drop it
+        if (validLength < size) {
+            proofLog.truncate(validLength);
+            log.warn("🩹 Dropped torn entry at the end of {}", proofLogPath.getFileName());
+        }
+    }
+
+    // Data classes
+    public static class AnchoredBatch {
+        public long batchId;
+        public String root;
+        public int leafCount;
+        public List<String> clothIds;
+        public double sealMillis;
+    }
+}
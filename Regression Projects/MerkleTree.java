@@ -0,0 +1,209 @@
+package com.clothblockchain.extractor;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * SHA-256 Merkle tree over a batch of blockchain record hashes
+ *
+ * Leaves and inner nodes are hashed with different prefixes (0x00 / 0x01, as in RFC 6962)
+ * so a leaf can never be passed off as an inner node. A node without a sibling is carried
+ * up unchanged instead of being paired with itself, which keeps one tree per leaf list.
+ *
+ * Levels are kept as flat byte arrays (32 bytes per node). Wide levels are hashed in
+ * parallel on the common fork-join pool.
+ *
+ * @author ClothBlockchain Team
+ * @version 1.0
+ */
+public final class MerkleTree {
+
+    public static final int HASH_BYTES = 32;
+
+    private static final byte LEAF_PREFIX = 0x00;
+    private static final byte NODE_PREFIX = 0x01;
+    private static final int PARALLEL_THRESHOLD = 4096; // parents per level before going parallel
+
+    private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(MerkleTree::newDigest);
+
+    // levels[0] = leaf hashes, last level = root
+    private final byte[][] levels;
+    private final int leafCount;
+
+    private MerkleTree(byte[][] levels, int leafCount) {
+        this.levels = levels;
+        this.leafCount = leafCount;
+    }
+
+    /**
+     * Build a tree over record hashes (each HASH_BYTES long)
+     */
+    public static MerkleTree build(List<byte[]> recordHashes) {
+        int count = recordHashes.size();
+        if (count == 0) {
+            throw new IllegalArgumentException("Cannot build a Merkle tree over an empty batch");
+        }
+
+        byte[] leaves = new byte[count * HASH_BYTES];
+        forEach(count, i -> {
+            byte[] recordHash = recordHashes.get(i);
+            if (recordHash.length != HASH_BYTES) {
+                throw new IllegalArgumentException("Record hash " + i + " is " + recordHash.length + " bytes");
+            }
+            MessageDigest digest = DIGESTS.get();
+            digest.update(LEAF_PREFIX);
+            digest.update(recordHash);
+            finish(digest, leaves, i * HASH_BYTES);
+        });
+
+        List<byte[]> levels = new ArrayList<>();
+        levels.add(leaves);
+        int width = count;
+        while (width > 1) {
+            byte[] children = levels.get(levels.size() - 1);
+            int childWidth = width;
+            int parentWidth = (width + 1) / 2;
+            byte[] parents = new byte[parentWidth * HASH_BYTES];
+            forEach(parentWidth, i -> {
+                int left = 2 * i;
+                if (left + 1 < childWidth) {
+                    MessageDigest digest = DIGESTS.get();
+                    digest.update(NODE_PREFIX);
+                    digest.update(children, left * HASH_BYTES, 2 * HASH_BYTES);
+                    finish(digest, parents, i * HASH_BYTES);
+                } else {
+                    System.arraycopy(children, left * HASH_BYTES, parents, i * HASH_BYTES, HASH_BYTES);
+                }
+            });
+            levels.add(parents);
+            width = parentWidth;
+        }
+        return new MerkleTree(levels.toArray(new byte[0][]), count);
+    }
+
+    public int leafCount() {
+        return leafCount;
+    }
+
+    public byte[] root() {
+        return levels[levels.length - 1].clone();
+    }
+
+    public String rootHex() {
+        return Hex.encode(levels[levels.length - 1]);
+    }
+
+    /**
+     * Sibling hashes from the leaf up to the root (levels where the node was carried up
+     * contribute nothing)
+     */
+    public Proof proof(int leafIndex) {
+        if (leafIndex < 0 || leafIndex >= leafCount) {
+            throw new IndexOutOfBoundsException("Leaf " + leafIndex + " of " + leafCount);
+        }
+        Proof proof = new Proof();
+        proof.leafIndex = leafIndex;
+        proof.leafCount = leafCount;
+        proof.root = rootHex();
+        proof.siblings = new ArrayList<>();
+
+        int index = leafIndex;
+        int width = leafCount;
+        for (int level = 0; width > 1; level++) {
+            int sibling = (index & 1) == 1 ? index - 1 : index + 1;
+            if (sibling < width) {
+                proof.siblings.add(Hex.encode(levels[level], sibling * HASH_BYTES, HASH_BYTES));
+            }
+            index >>>= 1;
+            width = (width + 1) / 2;
+        }
+        return proof;
+    }
+
+    /**
+     * Check that a record hash is included under the given root
+     */
+    public static boolean verify(String recordHash, Proof proof, String root) {
+        if (recordHash == null || proof == null || root == null || proof.siblings == null ||
+                proof.leafIndex < 0 || proof.leafIndex >= proof.leafCount) {
+            return false;
+        }
+
+        try {
+            return Hex.encode(rootFromProof(Hex.decode(recordHash), proof)).equalsIgnoreCase(root);
+        } catch (IllegalArgumentException e) {
+            return false; // malformed hex or proof shape
+        }
+    }
+
+    private static byte[] rootFromProof(byte[] recordHash, Proof proof) {
+        MessageDigest digest = DIGESTS.get();
+        byte[] hash = new byte[HASH_BYTES];
+        digest.update(LEAF_PREFIX);
+        digest.update(recordHash);
+        finish(digest, hash, 0);
+
+        int index = proof.leafIndex;
+        int width = proof.leafCount;
+        int next = 0;
+        while (width > 1) {
+            boolean isRight = (index & 1) == 1;
+            if (isRight || index + 1 < width) {
+                if (next == proof.siblings.size()) {
+                    throw new IllegalArgumentException("Proof has too few siblings");
+                }
+                byte[] sibling = Hex.decode(proof.siblings.get(next++));
+                digest.update(NODE_PREFIX);
+                digest.update(isRight ? sibling : hash);
+                digest.update(isRight ? hash : sibling);
+                finish(digest, hash, 0);
+            }
+            index >>>= 1;
+            width = (width + 1) / 2;
+        }
+        if (next != proof.siblings.size()) {
+            throw new IllegalArgumentException("Proof has too many siblings");
+        }
+        return hash;
+    }
+
+    private static void forEach(int count, IntConsumer body) {
+        if (count >= PARALLEL_THRESHOLD) {
+            IntStream.range(0, count).parallel().forEach(body);
+        } else {
+            for (int i = 0; i < count; i++) {
+                body.accept(i);
+            }
+        }
+    }
+
+    private static void finish(MessageDigest digest, byte[] target, int offset) {
+        try {
+            digest.digest(target, offset, HASH_BYTES);
+        } catch (DigestException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // Data classes
+    public static class Proof {
+        public long batchId;
+        public int leafIndex;
+        public int leafCount;
+        public String root;
+        public List<String> siblings;
+    }
+}
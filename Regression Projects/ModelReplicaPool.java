@@ -0,0 +1,124 @@
+package com.clothblockchain.extractor;
+
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.buffer.DataType;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of feature-model replicas so several threads can run inference at once
+ *
+ * MultiLayerNetwork keeps per-call state (input, layer activations), so one network must
+ * not run two forward passes concurrently. Each replica is an independent copy of the
+ * model's parameters with its own input buffer; a thread checks one out for a whole
+ * extractDeepFeatures call and returns it afterwards. Replicas are cloned lazily, so a
+ * single-threaded caller never pays for more than one.
+ *
+ * @author ClothBlockchain Team
+ * @version 1.0
+ */
+final class ModelReplicaPool {
+
+    private final MultiLayerNetwork model;
+    private final int maxReplicas;
+    private final BlockingQueue<Replica> idle;
+    private final AtomicInteger created = new AtomicInteger();
+
+    ModelReplicaPool(MultiLayerNetwork model, int maxReplicas) {
+        if (maxReplicas < 1) {
+            throw new IllegalArgumentException("Need at least one model replica: " + maxReplicas);
+        }
+        this.model = model;
+        this.maxReplicas = maxReplicas;
+        this.idle = new ArrayBlockingQueue<>(maxReplicas);
+    }
+
+    /**
+     * Take an idle replica, cloning a new one while under the limit, otherwise wait for one.
+     * Waiting is not interruptible; the interrupt status is restored before returning.
+     */
+    Replica acquire() {
+        Replica replica = idle.poll();
+        if (replica != null) {
+            return replica;
+        }
+        while (true) {
+            int count = created.get();
+            if (count >= maxReplicas) {
+                break;
+            }
+            if (created.compareAndSet(count, count + 1)) {
+                // The first replica is the model itself; the rest are parameter copies
+                return new Replica(count == 0 ? model : model.clone());
+            }
+        }
+
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return idle.take();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    void release(Replica replica) {
+        idle.offer(replica);
+    }
+
+    /**
+     * The network replicas are cloned from
+     */
+    MultiLayerNetwork model() {
+        return model;
+    }
+
+    int maxReplicas() {
+        return maxReplicas;
+    }
+
+    int createdReplicas() {
+        return created.get();
+    }
+
+    /**
+     * One network copy plus the buffers its forward passes reuse. Used by one thread at a time.
+     */
+    static final class Replica {
+        final MultiLayerNetwork network;
+        private INDArray input;
+        private byte[] pixels;
+
+        Replica(MultiLayerNetwork network) {
+            this.network = network;
+        }
+
+        /**
+         * Reused [batchSize,3,size,size] float input, reallocated when the batch size changes
+         */
+        INDArray inputFor(int batchSize, int imageSize) {
+            if (input == null || input.size(0) != batchSize) {
+                input = Nd4j.create(DataType.FLOAT, batchSize, 3, imageSize, imageSize);
+            }
+            return input;
+        }
+
+        byte[] pixelsFor(int length) {
+            if (pixels == null || pixels.length < length) {
+                pixels = new byte[length];
+            }
+            return pixels;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.clothblockchain.extractor;
+
+import java.util.Random;
+
+/**
+ * 256-bit locality-sensitive fingerprint of a cloth's features (random-hyperplane SimHash)
+ *
+ * Each bit is the sign of the feature vector projected onto one fixed random hyperplane,
+ * so two extractions of the same garment differ in only a few bits while unrelated cloths
+ * differ in about half of them. Unlike the SHA-256 blockchain hash it ignores the timestamp
+ * and tolerates small feature noise, and it fits in 32 bytes on chain.
+ *
+ * The hyperplanes come from a fixed seed (java.util.Random is fully specified), so
+ * fingerprints are identical across JVMs. Changing the seed or the feature layout
+ * requires a new VERSION.
+ *
+ * @author ClothBlockchain Team
+ * @version 1.0
+ */
+public final class PerceptualFingerprint {
+
+    public static final String VERSION = "simhash256-v1";
+    public static final int BITS = 256;
+    public static final int WORDS = BITS / 64;
+
+    private static final long HYPERPLANE_SEED = 0x5EED_C10DL;
+    private static final double HISTOGRAM_WEIGHT = 0.5;
+    private static final double SCALAR_WEIGHT = 0.25;
+    private static final int SCALAR_COUNT = 6;
+
+    private final int deepDims;
+    private final int histogramDims;
+    private final int inputDims;
+    private final float[][] hyperplanes;
+
+    public PerceptualFingerprint(int deepDims, int histogramDims) {
+        this.deepDims = deepDims;
+        this.histogramDims = histogramDims;
+        this.inputDims = deepDims + histogramDims + SCALAR_COUNT;
+
+        Random random = new Random(HYPERPLANE_SEED);
+        this.hyperplanes = new float[BITS][inputDims];
+        for (float[] plane : hyperplanes) {
+            for (int i = 0; i < inputDims; i++) {
+                plane[i] = (float) random.nextGaussian();
+            }
+        }
+    }
+
+    /**
+     * Fingerprint of a cloth as WORDS longs. Non-finite inputs count as 0: an all-black
+     * image has a contrast of 0/0, which would otherwise turn every projection into NaN and
+     * every bit into 0.
+     */
+    public long[] compute(ClothFeatureExtractor.ClothDNA clothDNA) {
+        ClothFeatureExtractor.TraditionalFeatures tf = clothDNA.traditionalFeatures;
+        double[] scalars = {
+                tf.edgeDensity,
+                tf.gradientMean / 255.0,
+                tf.gradientStd / 255.0,
+                tf.brightnessMean / 255.0,
+                tf.brightnessStd / 255.0,
+                tf.contrast
+        };
+
+        // Each block is normalized on its own so no feature group dominates by scale
+        float[] input = new float[inputDims];
+        int offset = appendNormalized(input, 0, clothDNA.deepFeatures, 1.0);
+        offset = appendNormalized(input, offset, tf.colorHistogram, HISTOGRAM_WEIGHT);
+        appendNormalized(input, offset, scalars, SCALAR_WEIGHT);
+
+        long[] bits = new long[WORDS];
+        for (int bit = 0; bit < BITS; bit++) {
+            float[] plane = hyperplanes[bit];
+            float projection = 0f;
+            for (int i = 0; i < inputDims; i++) {
+                projection += plane[i] * input[i];
+            }
+            if (projection > 0f) {
+                bits[bit >>> 6] |= 1L << (bit & 63);
+            }
+        }
+        return bits;
+    }
+
+    private int appendNormalized(float[] target, int offset, double[] values, double weight) {
+        double norm = 0.0;
+        for (double value : values) {
+            double finite = finiteOrZero(value);
+            norm += finite * finite;
+        }
+        double scale = norm > 0 ? weight / Math.sqrt(norm) : 0.0;
+        for (int i = 0; i < values.length; i++) {
+            target[offset + i] = (float) (finiteOrZero(values[i]) * scale);
+        }
+        return offset + values.length;
+    }
+
+    private static double finiteOrZero(double value) {
+        return Double.isFinite(value) ? value : 0.0;
+    }
+
+    /**
+     * Number of differing bits
+     */
+    public static int hammingDistance(long[] a, long[] b) {
+        int distance = 0;
+        for (int i = 0; i < WORDS; i++) {
+            distance += Long.bitCount(a[i] ^ b[i]);
+        }
+        return distance;
+    }
+
+    public static String toHex(long[] fingerprint) {
+        StringBuilder hex = new StringBuilder(WORDS * 16);
+        for (long word : fingerprint) {
+            String part = Long.toHexString(word);
+            for (int i = part.length(); i < 16; i++) {
+                hex.append('0');
+            }
+            hex.append(part);
+        }
+        return hex.toString();
+    }
+
+    public static long[] fromHex(String hex) {
+        long[] fingerprint = new long[WORDS];
+        for (int i = 0; i < WORDS; i++) {
+            fingerprint[i] = Long.parseUnsignedLong(hex.substring(i * 16, i * 16 + 16), 16);
+        }
+        return fingerprint;
+    }
+}
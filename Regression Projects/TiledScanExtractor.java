@@ -0,0 +1,384 @@
+package com.clothblockchain.extractor;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Feature extraction for high-resolution fabric scans, one region at a time
+ *
+ * preprocessClothImage squashes a whole image to the model's 224x224. A flatbed scan of
+ * several hundred megapixels loses its weave detail that way, and decoding it into one Mat
+ * needs gigabytes. This extractor instead:
+ *   1. decodes a subsampled overview and extracts the usual global features from it,
+ *   2. streams the scan in full-width bands of one tile height (ImageIO source regions),
+ *   3. cuts each band into tiles and runs traditional features (native resolution) and
+ *      the CNN (tile downscaled to 224) on a worker pool, while the next band is read,
+ *   4. folds every tile into running statistics (TileStatistics), in tile order, so the
+ *      result does not depend on thread timing.
+ *
+ * At most two bands are in memory (width x tileSize x 3 bytes each), whatever the height.
+ * TIFF strips and tiles are read on demand. JPEG and PNG work too, but their readers decode
+ * from the top for every band, so large scans should be TIFF.
+ *
+ * @author ClothBlockchain Team
+ * @version 1.0
+ */
+public class TiledScanExtractor {
+
+    private static final Logger log = LoggerFactory.getLogger(TiledScanExtractor.class);
+
+    // Overview is decoded at about this multiple of the model input, then area-downscaled
+    private static final int OVERVIEW_OVERSAMPLING = 4;
+    // How long a failed scan waits for running tile tasks before leaving their band behind
+    private static final long WORKER_STOP_SECONDS = 60;
+
+    private final ClothFeatureExtractor extractor;
+    private final Config config;
+
+    public TiledScanExtractor(ClothFeatureExtractor extractor) {
+        this(extractor, new Config());
+    }
+
+    public TiledScanExtractor(ClothFeatureExtractor extractor, Config config) {
+        if (config.tileSize < ClothFeatureExtractor.IMAGE_SIZE) {
+            throw new IllegalArgumentException("Tile size must be at least " + ClothFeatureExtractor.IMAGE_SIZE +
+                    ": " + config.tileSize);
+        }
+        this.extractor = extractor;
+        this.config = config;
+    }
+
+    /**
+     * Multi-scale digital DNA of a scan: global features from the overview plus statistics
+     * over every tile
+     */
+    public ClothFeatureExtractor.ClothDNA extract(Path scanPath, String clothId) throws IOException {
+        if (!Files.isRegularFile(scanPath)) {
+            throw new IOException("Scan not found: " + scanPath);
+        }
+        long start = System.nanoTime();
+
+        try (ImageInputStream input = ImageIO.createImageInputStream(scanPath.toFile())) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("Unsupported scan format: " + scanPath);
+            }
+            ImageReader reader = readers.next();
+            ExecutorService workers = Executors.newFixedThreadPool(config.workers, daemonThreads());
+            try {
+                reader.setInput(input, false, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+
+                ClothFeatureExtractor.ClothDNA clothDNA = extractOverview(reader, width, height, clothId);
+                clothDNA.imageDimensions = new int[]{height, width, 3};
+                clothDNA.tileStatistics = extractTiles(reader, width, height, workers);
+
+                log.info("🧩 Tiled scan {} ({}x{}, {} tiles of {}px) in {} ms", scanPath.getFileName(), width, height,
+                        clothDNA.tileStatistics.tileCount, config.tileSize, (System.nanoTime() - start) / 1_000_000);
+                return clothDNA;
+            } finally {
+                workers.shutdownNow();
+                reader.dispose();
+            }
+        }
+    }
+
+    private ClothFeatureExtractor.ClothDNA extractOverview(ImageReader reader, int width, int height, String clothId)
+            throws IOException {
+        int period = Math.max(1, Math.min(width, height) / (ClothFeatureExtractor.IMAGE_SIZE * OVERVIEW_OVERSAMPLING));
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceSubsampling(period, period, 0, 0);
+
+        Mat overview = toBgrMat(reader.read(0, param));
+        Mat processed = extractor.resizeToModelInput(overview);
+        try {
+            return extractor.createClothDigitalDNA(processed, clothId);
+        } finally {
+            processed.release();
+        }
+    }
+
+    private ClothFeatureExtractor.TileStatistics extractTiles(ImageReader reader, int width, int height,
+                                                              ExecutorService workers) throws IOException {
+        int tileSize = config.tileSize;
+        int minimumEdge = tileSize / 2;
+        TileAccumulator accumulator = new TileAccumulator(tileSize);
+
+        // Band n is processed by the workers while band n + 1 is decoded
+        List<Future<TileResult[]>> pending = new ArrayList<>();
+        Mat pendingBand = null;
+        Mat nextBand = null;
+        int tilesDown = 0;
+        try {
+            for (int y = 0; y < height; y += tileSize) {
+                int bandHeight = Math.min(tileSize, height - y);
+                if (bandHeight < minimumEdge) {
+                    break;
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(new Rectangle(0, y, width, bandHeight));
+                nextBand = toBgrMat(reader.read(0, param));
+
+                collect(pending, accumulator);
+                release(pendingBand);
+                pendingBand = nextBand;
+                nextBand = null;
+                pending = submitBand(pendingBand, workers);
+                tilesDown++;
+            }
+            collect(pending, accumulator);
+        } finally {
+            release(nextBand);
+            // On failure, tasks may still be reading the band: stop them before freeing it
+            if (pending.isEmpty() || stopWorkers(pending, workers)) {
+                release(pendingBand);
+            } else {
+                log.warn("Tile workers did not stop within {} s; leaving their band to the Mat finalizer",
+                        WORKER_STOP_SECONDS);
+            }
+        }
+        return accumulator.finish(tilesAcross(width), tilesDown);
+    }
+
+    /**
+     * Split a band into tiles, in chunks of one inference batch per task
+     */
+    private List<Future<TileResult[]>> submitBand(Mat band, ExecutorService workers) {
+        int tileSize = config.tileSize;
+        int tiles = tilesAcross(band.cols());
+        int chunk = Math.max(1, extractor.getInferenceBatchSize());
+
+        List<Future<TileResult[]>> futures = new ArrayList<>();
+        for (int first = 0; first < tiles; first += chunk) {
+            int from = first;
+            int to = Math.min(tiles, first + chunk);
+            futures.add(workers.submit(() -> {
+                List<Mat> modelInputs = new ArrayList<>(to - from);
+                TileResult[] results = new TileResult[to - from];
+                try {
+                    for (int t = from; t < to; t++) {
+                        int x = t * tileSize;
+                        Rect region = new Rect(x, 0, Math.min(tileSize, band.cols() - x), band.rows());
+                        Mat tile = band.submat(region).clone();
+                        long start = System.nanoTime();
+                        results[t - from] = new TileResult(extractor.extractTraditionalFeatures(tile), tile.total());
+                        extractor.getMetrics().record(ClothMetrics.Stage.SCAN_TILE, start);
+                        modelInputs.add(extractor.resizeToModelInput(tile));
+                    }
+                    double[][] deepFeatures = extractor.extractDeepFeatures(modelInputs);
+                    for (int i = 0; i < results.length; i++) {
+                        results[i].deepFeatures = deepFeatures[i];
+                    }
+                    return results;
+                } finally {
+                    for (Mat input : modelInputs) {
+                        input.release();
+                    }
+                }
+            }));
+        }
+        return futures;
+    }
+
+    private void collect(List<Future<TileResult[]>> futures, TileAccumulator accumulator) throws IOException {
+        for (Future<TileResult[]> future : futures) {
+            try {
+                for (TileResult result : future.get()) {
+                    accumulator.add(result);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while extracting scan tiles");
+            } catch (ExecutionException e) {
+                throw new IOException("Tile extraction failed: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+        futures.clear();
+    }
+
+    /**
+     * Cancel the outstanding tile tasks and wait for running ones to finish. The pool belongs
+     * to this scan, so shutting it down is safe. True once no task can touch the band. Waits
+     * even if this thread was interrupted (the usual way to abort a scan), then re-asserts it.
+     */
+    private static boolean stopWorkers(List<Future<TileResult[]>> pending, ExecutorService workers) {
+        for (Future<TileResult[]> future : pending) {
+            future.cancel(true);
+        }
+        workers.shutdownNow();
+        boolean interrupted = Thread.interrupted();
+        try {
+            return workers.awaitTermination(WORKER_STOP_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            interrupted = true;
+            return false;
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Partial tiles at the right edge count if at least half a tile wide
+    private int tilesAcross(int width) {
+        int full = width / config.tileSize;
+        return width % config.tileSize >= config.tileSize / 2 ? full + 1 : full;
+    }
+
+    private static void release(Mat mat) {
+        if (mat != null) {
+            mat.release();
+        }
+    }
+
+    /**
+     * Copy a decoded region into an 8-bit BGR Mat. TYPE_3BYTE_BGR rasters already have
+     * OpenCV's byte order; anything else (grey, 16-bit, RGB) is converted first.
+     */
+    private static Mat toBgrMat(BufferedImage image) {
+        BufferedImage bgr = image;
+        if (image.getType() != BufferedImage.TYPE_3BYTE_BGR) {
+            bgr = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
+            Graphics2D graphics = bgr.createGraphics();
+            try {
+                graphics.drawImage(image, 0, 0, null);
+            } finally {
+                graphics.dispose();
+            }
+        }
+        byte[] pixels = ((DataBufferByte) bgr.getRaster().getDataBuffer()).getData();
+        Mat mat = new Mat(bgr.getHeight(), bgr.getWidth(), CvType.CV_8UC3);
+        mat.put(0, 0, pixels);
+        return mat;
+    }
+
+    private static ThreadFactory daemonThreads() {
+        ThreadFactory defaults = Executors.defaultThreadFactory();
+        return runnable -> {
+            Thread thread = defaults.newThread(runnable);
+            thread.setName("scan-tile-" + thread.getName());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class TileResult {
+        final ClothFeatureExtractor.TraditionalFeatures traditionalFeatures;
+        final long pixels;
+        double[] deepFeatures;
+
+        TileResult(ClothFeatureExtractor.TraditionalFeatures traditionalFeatures, long pixels) {
+            this.traditionalFeatures = traditionalFeatures;
+            this.pixels = pixels;
+        }
+    }
+
+    /**
+     * Running mean, variance (Welford), min and max over tiles, in constant memory
+     */
+    private static final class TileAccumulator {
+        private final int tileSize;
+        private int count;
+        private double[] deepMean;
+        private double[] deepM2;
+        private final double[] textureMean = new double[ClothFeatureExtractor.TileStatistics.TEXTURE_FEATURES.length];
+        private final double[] textureM2 = new double[textureMean.length];
+        private final double[] textureMin = new double[textureMean.length];
+        private final double[] textureMax = new double[textureMean.length];
+
+        TileAccumulator(int tileSize) {
+            this.tileSize = tileSize;
+            Arrays.fill(textureMin, Double.POSITIVE_INFINITY);
+            Arrays.fill(textureMax, Double.NEGATIVE_INFINITY);
+        }
+
+        void add(TileResult tile) {
+            count++;
+            if (deepMean == null) {
+                deepMean = new double[tile.deepFeatures.length];
+                deepM2 = new double[tile.deepFeatures.length];
+            }
+            update(deepMean, deepM2, tile.deepFeatures);
+
+            ClothFeatureExtractor.TraditionalFeatures tf = tile.traditionalFeatures;
+            double[] texture = {
+                    tf.edgeDensity,
+                    tf.gradientMean,
+                    tf.gradientStd,
+                    tf.brightnessStd,
+                    tf.contrast,
+                    tf.textureKeypoints * 1e6 / tile.pixels
+            };
+            update(textureMean, textureM2, texture);
+            for (int i = 0; i < texture.length; i++) {
+                textureMin[i] = Math.min(textureMin[i], texture[i]);
+                textureMax[i] = Math.max(textureMax[i], texture[i]);
+            }
+        }
+
+        private void update(double[] mean, double[] m2, double[] values) {
+            for (int i = 0; i < values.length; i++) {
+                double delta = values[i] - mean[i];
+                mean[i] += delta / count;
+                m2[i] += delta * (values[i] - mean[i]);
+            }
+        }
+
+        ClothFeatureExtractor.TileStatistics finish(int tilesAcross, int tilesDown) {
+            ClothFeatureExtractor.TileStatistics statistics = new ClothFeatureExtractor.TileStatistics();
+            statistics.tileSize = tileSize;
+            statistics.tilesAcross = tilesAcross;
+            statistics.tilesDown = tilesDown;
+            statistics.tileCount = count;
+            if (count == 0) {
+                return statistics;
+            }
+            statistics.deepFeatureMean = deepMean;
+            statistics.deepFeatureStd = std(deepM2);
+            statistics.textureMean = textureMean;
+            statistics.textureStd = std(textureM2);
+            statistics.textureMin = textureMin;
+            statistics.textureMax = textureMax;
+            return statistics;
+        }
+
+        private double[] std(double[] m2) {
+            double[] std = new double[m2.length];
+            for (int i = 0; i < m2.length; i++) {
+                std[i] = Math.sqrt(m2[i] / count);
+            }
+            return std;
+        }
+    }
+
+    /**
+     * Tile size in scan pixels (each tile is downscaled to the model input for the CNN) and
+     * worker threads
+     */
+    public static class Config {
+        public int tileSize = 448;
+        public int workers = Runtime.getRuntime().availableProcessors();
+    }
+}
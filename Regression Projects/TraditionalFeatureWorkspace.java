@@ -0,0 +1,79 @@
+package com.clothblockchain.extractor;
+
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfDouble;
+import org.opencv.core.MatOfKeyPoint;
+import org.opencv.features2d.ORB;
+
+/**
+ * Scratch buffers for traditional feature extraction, reused across calls on one thread
+ *
+ * Every native Mat the extraction needs is allocated once here; OpenCV reuses a Mat's
+ * buffer when the next result has the same size and type, so steady-state extraction
+ * allocates no native memory. Not thread-safe; the extractor lends each one to a single
+ * call at a time from a small pool and releases them in close().
+ *
+ * @author ClothBlockchain Team
+ * @version 1.0
+ */
+final class TraditionalFeatureWorkspace implements AutoCloseable {
+
+    static final int HISTOGRAM_BINS = 32;
+
+    final Mat gray = new Mat();
+    final Mat hsv = new Mat();
+    final Mat edges = new Mat();
+    final Mat gradX = new Mat();
+    final Mat gradY = new Mat();
+    final Mat gradMagnitude = new Mat();
+    final Mat noMask = new Mat();
+    final Mat descriptors = new Mat();
+    final MatOfKeyPoint keypoints = new MatOfKeyPoint();
+    final MatOfDouble mean = new MatOfDouble();
+    final MatOfDouble stddev = new MatOfDouble();
+    final ORB orb = ORB.create();
+
+    // Java-side buffers
+    final double[] statistic = new double[1];
+    final int[] histogramCounts = new int[HISTOGRAM_BINS * 3];
+    byte[] pixels = new byte[0];
+
+    private boolean closed;
+
+    /**
+     * Interleaved BGR pixel buffer large enough for the image
+     */
+    byte[] pixelsFor(Mat image) {
+        int length = (int) (image.total() * image.channels());
+        if (pixels.length < length) {
+            pixels = new byte[length];
+        }
+        return pixels;
+    }
+
+    void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Traditional feature workspace already closed");
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        gray.release();
+        hsv.release();
+        edges.release();
+        gradX.release();
+        gradY.release();
+        gradMagnitude.release();
+        noMask.release();
+        descriptors.release();
+        keypoints.release();
+        mean.release();
+        stddev.release();
+        orb.clear();
+    }
+}
@@ -0,0 +1,387 @@
+package com.clothblockchain.extractor;
+
+import java.util.Arrays;
+
+/**
+ * Distance kernels and quantizers for feature vectors
+ *
+ * Vectors are kept in one of three encodings:
+ *   - float32,
+ *   - float16 (IEEE half precision, held in a short[]),
+ *   - int8 with an offset and scale per vector (value = offset + scale * code, unsigned
+ *     codes 0-255).
+ * Every encoding has dot, L2 and cosine kernels against a float query, plus the
+ * stored-against-stored dot product the index needs while building its graph.
+ *
+ * The build targets Java 11, so the kernels here are plain Java, unrolled over four
+ * independent accumulators so the JIT can keep several multiply-adds in flight. On JDK 17+
+ * started with --add-modules jdk.incubator.vector, the float32 and int8 kernels hand off to
+ * SimdVectorKernels from the jar's multi-release part (java17/); see implementation().
+ * int8 x int8 accumulates in int, which is exact for up to 33,000 dimensions.
+ *
+ * @author ClothBlockchain Team
+ * @version 1.0
+ */
+public final class VectorKernels {
+
+    // Every half-precision bit pattern decoded once: 256 KB, faster than decoding per element
+    private static final float[] HALF_TO_FLOAT = new float[1 << 16];
+
+    static {
+        for (int bits = 0; bits < HALF_TO_FLOAT.length; bits++) {
+            HALF_TO_FLOAT[bits] = decodeHalf(bits);
+        }
+    }
+
+    // Null unless the Vector API kernels could be loaded
+    private static final Accelerator SIMD = loadAccelerator();
+
+    private VectorKernels() {
+    }
+
+    /**
+     * Which kernels are in use, for logs and benchmark reports
+     */
+    public static String implementation() {
+        return SIMD != null ? SIMD.toString() : "scalar";
+    }
+
+    // Dot products
+
+    public static float dot(float[] a, float[] b) {
+        if (SIMD != null) {
+            return SIMD.dot(a, b);
+        }
+        float dot0 = 0f, dot1 = 0f, dot2 = 0f, dot3 = 0f;
+        int i = 0;
+        for (int limit = a.length - 3; i < limit; i += 4) {
+            dot0 += a[i] * b[i];
+            dot1 += a[i + 1] * b[i + 1];
+            dot2 += a[i + 2] * b[i + 2];
+            dot3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < a.length; i++) {
+            dot0 += a[i] * b[i];
+        }
+        return dot0 + dot1 + dot2 + dot3;
+    }
+
+    /**
+     * Float vector against a float16 vector
+     */
+    public static float dot(float[] a, short[] halfB) {
+        float dot0 = 0f, dot1 = 0f, dot2 = 0f, dot3 = 0f;
+        int i = 0;
+        for (int limit = a.length - 3; i < limit; i += 4) {
+            dot0 += a[i] * HALF_TO_FLOAT[halfB[i] & 0xFFFF];
+            dot1 += a[i + 1] * HALF_TO_FLOAT[halfB[i + 1] & 0xFFFF];
+            dot2 += a[i + 2] * HALF_TO_FLOAT[halfB[i + 2] & 0xFFFF];
+            dot3 += a[i + 3] * HALF_TO_FLOAT[halfB[i + 3] & 0xFFFF];
+        }
+        for (; i < a.length; i++) {
+            dot0 += a[i] * HALF_TO_FLOAT[halfB[i] & 0xFFFF];
+        }
+        return dot0 + dot1 + dot2 + dot3;
+    }
+
+    public static float dot(short[] halfA, short[] halfB) {
+        float dot0 = 0f, dot1 = 0f, dot2 = 0f, dot3 = 0f;
+        int i = 0;
+        for (int limit = halfA.length - 3; i < limit; i += 4) {
+            dot0 += HALF_TO_FLOAT[halfA[i] & 0xFFFF] * HALF_TO_FLOAT[halfB[i] & 0xFFFF];
+            dot1 += HALF_TO_FLOAT[halfA[i + 1] & 0xFFFF] * HALF_TO_FLOAT[halfB[i + 1] & 0xFFFF];
+            dot2 += HALF_TO_FLOAT[halfA[i + 2] & 0xFFFF] * HALF_TO_FLOAT[halfB[i + 2] & 0xFFFF];
+            dot3 += HALF_TO_FLOAT[halfA[i + 3] & 0xFFFF] * HALF_TO_FLOAT[halfB[i + 3] & 0xFFFF];
+        }
+        for (; i < halfA.length; i++) {
+            dot0 += HALF_TO_FLOAT[halfA[i] & 0xFFFF] * HALF_TO_FLOAT[halfB[i] & 0xFFFF];
+        }
+        return dot0 + dot1 + dot2 + dot3;
+    }
+
+    /**
+     * Float vector against int8 codes read as unsigned (0-255). The real dot product with the
+     * vector offset + scale * code is offset * sum(a) + scale * this.
+     */
+    public static float dot(float[] a, byte[] codesB) {
+        if (SIMD != null) {
+            return SIMD.dot(a, codesB);
+        }
+        float dot0 = 0f, dot1 = 0f, dot2 = 0f, dot3 = 0f;
+        int i = 0;
+        for (int limit = a.length - 3; i < limit; i += 4) {
+            dot0 += a[i] * (codesB[i] & 0xFF);
+            dot1 += a[i + 1] * (codesB[i + 1] & 0xFF);
+            dot2 += a[i + 2] * (codesB[i + 2] & 0xFF);
+            dot3 += a[i + 3] * (codesB[i + 3] & 0xFF);
+        }
+        for (; i < a.length; i++) {
+            dot0 += a[i] * (codesB[i] & 0xFF);
+        }
+        return dot0 + dot1 + dot2 + dot3;
+    }
+
+    /**
+     * Unsigned int8 codes against unsigned int8 codes, exact
+     */
+    public static int dot(byte[] codesA, byte[] codesB) {
+        if (SIMD != null) {
+            return SIMD.dot(codesA, codesB);
+        }
+        int dot0 = 0, dot1 = 0, dot2 = 0, dot3 = 0;
+        int i = 0;
+        for (int limit = codesA.length - 3; i < limit; i += 4) {
+            dot0 += (codesA[i] & 0xFF) * (codesB[i] & 0xFF);
+            dot1 += (codesA[i + 1] & 0xFF) * (codesB[i + 1] & 0xFF);
+            dot2 += (codesA[i + 2] & 0xFF) * (codesB[i + 2] & 0xFF);
+            dot3 += (codesA[i + 3] & 0xFF) * (codesB[i + 3] & 0xFF);
+        }
+        for (; i < codesA.length; i++) {
+            dot0 += (codesA[i] & 0xFF) * (codesB[i] & 0xFF);
+        }
+        return dot0 + dot1 + dot2 + dot3;
+    }
+
+    /**
+     * Dot product of two int8-encoded vectors, expanded so the inner loop stays integer:
+     * (oA + sA*a).(oB + sB*b) = n*oA*oB + oA*sB*sum(b) + oB*sA*sum(a) + sA*sB*(a.b)
+     */
+    public static float dot(byte[] codesA, float offsetA, float scaleA, int codeSumA,
+                            byte[] codesB, float offsetB, float scaleB, int codeSumB) {
+        return codesA.length * offsetA * offsetB + offsetA * scaleB * codeSumB + offsetB * scaleA * codeSumA
+                + scaleA * scaleB * dot(codesA, codesB);
+    }
+
+    public static float sum(float[] a) {
+        float sum = 0f;
+        for (float value : a) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    public static int codeSum(byte[] codes) {
+        int sum = 0;
+        for (byte code : codes) {
+            sum += code & 0xFF;
+        }
+        return sum;
+    }
+
+    // Squared Euclidean distances
+
+    public static float l2Squared(float[] a, float[] b) {
+        if (SIMD != null) {
+            return SIMD.l2Squared(a, b);
+        }
+        float sum0 = 0f, sum1 = 0f, sum2 = 0f, sum3 = 0f;
+        int i = 0;
+        for (int limit = a.length - 3; i < limit; i += 4) {
+            float d0 = a[i] - b[i];
+            float d1 = a[i + 1] - b[i + 1];
+            float d2 = a[i + 2] - b[i + 2];
+            float d3 = a[i + 3] - b[i + 3];
+            sum0 += d0 * d0;
+            sum1 += d1 * d1;
+            sum2 += d2 * d2;
+            sum3 += d3 * d3;
+        }
+        for (; i < a.length; i++) {
+            float d = a[i] - b[i];
+            sum0 += d * d;
+        }
+        return sum0 + sum1 + sum2 + sum3;
+    }
+
+    public static float l2Squared(float[] a, short[] halfB) {
+        float sum0 = 0f, sum1 = 0f, sum2 = 0f, sum3 = 0f;
+        int i = 0;
+        for (int limit = a.length - 3; i < limit; i += 4) {
+            float d0 = a[i] - HALF_TO_FLOAT[halfB[i] & 0xFFFF];
+            float d1 = a[i + 1] - HALF_TO_FLOAT[halfB[i + 1] & 0xFFFF];
+            float d2 = a[i + 2] - HALF_TO_FLOAT[halfB[i + 2] & 0xFFFF];
+            float d3 = a[i + 3] - HALF_TO_FLOAT[halfB[i + 3] & 0xFFFF];
+            sum0 += d0 * d0;
+            sum1 += d1 * d1;
+            sum2 += d2 * d2;
+            sum3 += d3 * d3;
+        }
+        for (; i < a.length; i++) {
+            float d = a[i] - HALF_TO_FLOAT[halfB[i] & 0xFFFF];
+            sum0 += d * d;
+        }
+        return sum0 + sum1 + sum2 + sum3;
+    }
+
+    /**
+     * Float vector against the int8-encoded vector offset + scale * code
+     */
+    public static float l2Squared(float[] a, byte[] codesB, float offsetB, float scaleB) {
+        float sum0 = 0f, sum1 = 0f, sum2 = 0f, sum3 = 0f;
+        int i = 0;
+        for (int limit = a.length - 3; i < limit; i += 4) {
+            float d0 = a[i] - (offsetB + (codesB[i] & 0xFF) * scaleB);
+            float d1 = a[i + 1] - (offsetB + (codesB[i + 1] & 0xFF) * scaleB);
+            float d2 = a[i + 2] - (offsetB + (codesB[i + 2] & 0xFF) * scaleB);
+            float d3 = a[i + 3] - (offsetB + (codesB[i + 3] & 0xFF) * scaleB);
+            sum0 += d0 * d0;
+            sum1 += d1 * d1;
+            sum2 += d2 * d2;
+            sum3 += d3 * d3;
+        }
+        for (; i < a.length; i++) {
+            float d = a[i] - (offsetB + (codesB[i] & 0xFF) * scaleB);
+            sum0 += d * d;
+        }
+        return sum0 + sum1 + sum2 + sum3;
+    }
+
+    // Cosine similarity (1 = same direction); 0 when either vector is all zeros
+
+    public static float cosine(float[] a, float[] b) {
+        return cosine(dot(a, b), dot(a, a), dot(b, b));
+    }
+
+    public static float cosine(float[] a, short[] halfB) {
+        return cosine(dot(a, halfB), dot(a, a), dot(halfB, halfB));
+    }
+
+    public static float cosine(float[] a, byte[] codesB, float offsetB, float scaleB) {
+        float ab = 0f, bb = 0f;
+        for (int i = 0; i < a.length; i++) {
+            float b = offsetB + (codesB[i] & 0xFF) * scaleB;
+            ab += a[i] * b;
+            bb += b * b;
+        }
+        return cosine(ab, dot(a, a), bb);
+    }
+
+    private static float cosine(float ab, float aa, float bb) {
+        return aa > 0f && bb > 0f ? (float) (ab / Math.sqrt((double) aa * bb)) : 0f;
+    }
+
+    // Encodings
+
+    /**
+     * Affine int8 quantization over the vector's own range: value = offset + scale * code with
+     * unsigned codes 0-255, offset = min and scale = (max - min) / 255. Uses all 8 bits even
+     * for non-negative vectors such as ReLU outputs. Returns {offset, scale}.
+     */
+    public static float[] quantizeInt8(float[] source, byte[] codes) {
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+        for (float value : source) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        if (!(max > min)) {
+            Arrays.fill(codes, (byte) 0);
+            return new float[]{source.length > 0 ? min : 0f, 0f};
+        }
+        float scale = (max - min) / 255f;
+        float inverse = 1f / scale;
+        for (int i = 0; i < source.length; i++) {
+            codes[i] = (byte) Math.min(255, Math.round((source[i] - min) * inverse));
+        }
+        return new float[]{min, scale};
+    }
+
+    public static void dequantizeInt8(byte[] codes, float offset, float scale, float[] target) {
+        for (int i = 0; i < codes.length; i++) {
+            target[i] = offset + (codes[i] & 0xFF) * scale;
+        }
+    }
+
+    public static short[] toHalf(float[] source) {
+        short[] half = new short[source.length];
+        for (int i = 0; i < source.length; i++) {
+            half[i] = toHalf(source[i]);
+        }
+        return half;
+    }
+
+    public static float fromHalf(short half) {
+        return HALF_TO_FLOAT[half & 0xFFFF];
+    }
+
+    /**
+     * float32 to IEEE 754 binary16, round to nearest even; overflow becomes infinity
+     */
+    public static short toHalf(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int exponent = (bits >>> 23) & 0xFF;
+        int mantissa = bits & 0x7FFFFF;
+
+        if (exponent == 0xFF) {
+            return (short) (sign | 0x7C00 | (mantissa != 0 ? 0x200 : 0)); // infinity or NaN
+        }
+        int halfExponent = exponent - 127 + 15;
+        if (halfExponent >= 0x1F) {
+            return (short) (sign | 0x7C00);
+        }
+        if (halfExponent <= 0) {
+            // Subnormal half (or zero): shift the mantissa, implicit bit included, into place
+            if (halfExponent < -10) {
+                return (short) sign;
+            }
+            int shift = 14 - halfExponent;
+            int full = mantissa | 0x800000;
+            int half = full >>> shift;
+            int remainder = full & ((1 << shift) - 1);
+            int halfway = 1 << (shift - 1);
+            if (remainder > halfway || (remainder == halfway && (half & 1) != 0)) {
+                half++;
+            }
+            return (short) (sign | half);
+        }
+
+        int half = (halfExponent << 10) | (mantissa >>> 13);
+        int remainder = mantissa & 0x1FFF;
+        // A carry out of the mantissa correctly bumps the exponent (up to infinity)
+        if (remainder > 0x1000 || (remainder == 0x1000 && (half & 1) != 0)) {
+            half++;
+        }
+        return (short) (sign | half);
+    }
+
+    private static Accelerator loadAccelerator() {
+        if (!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            return null;
+        }
+        try {
+            // Only in the jar's META-INF/versions/17, so absent on older JVMs
+            Class<?> type = Class.forName("com.clothblockchain.extractor.SimdVectorKernels");
+            return (Accelerator) type.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    private static float decodeHalf(int bits) {
+        int sign = (bits & 0x8000) << 16;
+        int exponent = (bits >>> 10) & 0x1F;
+        int mantissa = bits & 0x3FF;
+        if (exponent == 0) {
+            float magnitude = Math.scalb((float) mantissa, -24);
+            return sign != 0 ? -magnitude : magnitude;
+        }
+        if (exponent == 0x1F) {
+            return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+        }
+        return Float.intBitsToFloat(sign | ((exponent + 112) << 23) | (mantissa << 13));
+    }
+
+    /**
+     * The kernels SimdVectorKernels implements with the Vector API
+     */
+    interface Accelerator {
+        float dot(float[] a, float[] b);
+
+        float dot(float[] a, byte[] codesB);
+
+        int dot(byte[] codesA, byte[] codesB);
+
+        float l2Squared(float[] a, float[] b);
+    }
+}
@@ -3,9 +3,6 @@ package com.clothblockchain.extractor;
 import org.opencv.core.*;
 import org.opencv.imgcodecs.Imgcodecs;
 import org.opencv.imgproc.Imgproc;
-import org.opencv.features2d.ORB;
-import org.opencv.core.MatOfKeyPoint;
-import org.opencv.core.KeyPoint;
 import org.deeplearning4j.nn.api.OptimizationAlgorithm;
 import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
@@ -13,26 +10,41 @@ import org.deeplearning4j.nn.conf.inputs.InputType;
 import org.deeplearning4j.nn.conf.layers.*;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.nn.weights.WeightInit;
+import org.deeplearning4j.util.ModelSerializer;
 import org.nd4j.linalg.activations.Activation;
+import org.nd4j.linalg.api.memory.MemoryWorkspace;
+import org.nd4j.linalg.api.memory.conf.WorkspaceConfiguration;
+import org.nd4j.linalg.api.memory.enums.AllocationPolicy;
+import org.nd4j.linalg.api.memory.enums.LearningPolicy;
+import org.nd4j.linalg.api.memory.enums.SpillPolicy;
+import org.nd4j.linalg.api.buffer.DataType;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.DataSet;
 import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.indexing.NDArrayIndex;
 import org.nd4j.linalg.learning.config.Adam;
 import org.nd4j.linalg.lossfunctions.LossFunctions;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.imageio.ImageIO;
+import javax.management.JMException;
 import java.awt.image.BufferedImage;
 import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
 import java.nio.file.*;
-import java.security.MessageDigest;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 /**
  * Cloth Feature Extraction & Blockchain Hash Generation System
@@ -41,40 +53,147 @@ import java.util.List;
  * This system extracts comprehensive features from cloth images and generates
  * blockchain-ready hash values for authentication purposes.
  * 
+ * One instance can be shared by many threads: extraction, hashing, storage and
+ * verification are all thread-safe, and CNN inference runs on a pool of model replicas.
+ * 
  * @author ClothBlockchain Team
  * @version 1.0
  */
-public class ClothFeatureExtractor {
+public class ClothFeatureExtractor implements AutoCloseable {
     
     // Load OpenCV native library
     static {
         nu.pattern.OpenCV.loadShared();
     }
     
-    private MultiLayerNetwork featureModel;
-    private Map<String, ClothData> clothDatabase;
-    private Gson gson;
+    private static final Logger log = LoggerFactory.getLogger(ClothFeatureExtractor.class);
+    
+    // The model is loaded or built once (on first use if not explicitly); inference runs on
+    // pooled replicas of its frozen, inference-only form
+    private final Object modelLock = new Object();
+    private volatile MultiLayerNetwork featureModel;
+    private volatile ModelReplicaPool modelReplicas;
+    private int modelReplicaCount = Runtime.getRuntime().availableProcessors();
+    private final Map<String, ClothData> clothDatabase;
+    private final Gson gson;
     private static final String DATABASE_DIR = "cloth_database";
-    private static final int IMAGE_SIZE = 224;
-    private static final int FEATURE_VECTOR_SIZE = 256;
+    private final Path databaseDirectory;
+    static final int IMAGE_SIZE = 224;
+    static final int FEATURE_VECTOR_SIZE = 256;
+    static final int COLOR_HISTOGRAM_SIZE = 32 * 3;
+    private static final int DEFAULT_INFERENCE_BATCH_SIZE = 16;
+    
+    // 1.1: images are decoded at reduced resolution and downscaled with area interpolation
+    // 1.2: conv blocks normalise before ReLU (foldable for inference); the model is persisted
+    static final String FEATURE_EXTRACTION_VERSION = "1.2";
+    static final String FEATURE_MODEL_FILE = "feature-model.zip";
+    
+    // Inference workspace: sized on the first batch (warmUp), then reused for every forward pass.
+    // A larger batch later grows it instead of spilling to allocations outside the workspace.
+    private static final String INFERENCE_WORKSPACE_ID = "CLOTH_INFERENCE_WS";
+    private static final WorkspaceConfiguration INFERENCE_WORKSPACE_CONFIG = WorkspaceConfiguration.builder()
+            .initialSize(0)
+            .overallocationLimit(0.2)
+            .policyAllocation(AllocationPolicy.OVERALLOCATE)
+            .policyLearning(LearningPolicy.FIRST_LOOP)
+            .policySpill(SpillPolicy.REALLOCATE)
+            .build();
+    
+    // Images per forward pass; each replica keeps its own input buffer of this size
+    private volatile int inferenceBatchSize = DEFAULT_INFERENCE_BATCH_SIZE;
+    
+    // High-resolution scans are processed in tiles of this many pixels (createTiledClothDNA)
+    private volatile int scanTileSize = 448;
+    
+    // Binary feature store; the per-cloth JSON files are an optional export
+    static final String FEATURE_STORE_DIR = "store";
+    private final ClothFeatureStore featureStore;
+    private volatile boolean jsonExportEnabled = false;
+    
+    // Similarity search over registered cloths, reloaded from a snapshot on startup
+    private static final String SIMILARITY_SNAPSHOT = "similarity.hnsw";
+    private final ClothSimilarityCatalog similarityCatalog;
+    private final PerceptualFingerprint perceptualFingerprint =
+            new PerceptualFingerprint(FEATURE_VECTOR_SIZE, COLOR_HISTOGRAM_SIZE);
+    private final StartupReport startupReport = new StartupReport();
+    
+    // Records are anchored in Merkle batches: one root per batch, one proof per cloth
+    static final String MERKLE_PROOF_LOG = "merkle-proofs.log";
+    private final MerkleBatchAnchor batchAnchor;
+    
+    // Optional local hash-chained ledger every stored record is appended to
+    private volatile HashChainLedger ledger;
+    
+    // Traditional features borrow native scratch Mats from a small pool rather than keeping
+    // them per thread: pipelines and tiled scans start fresh worker threads on every call.
+    // At most MAX_IDLE_TRADITIONAL_WORKSPACES stay allocated between calls; close() frees them.
+    private static final int MAX_IDLE_TRADITIONAL_WORKSPACES = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private final Deque<TraditionalFeatureWorkspace> idleTraditionalWorkspaces = new ArrayDeque<>();
+    private boolean traditionalWorkspacesClosed; // guarded by idleTraditionalWorkspaces
+    
+    // Canonical encoder for the blockchain hash; encoders reuse their buffers, so one per thread
+    private final ThreadLocal<ClothDNAEncoder> dnaEncoders = ThreadLocal.withInitial(ClothDNAEncoder::new);
+    
+    // Decodes straight to near model resolution when the format allows it
+    private final ClothImageDecoder imageDecoder = new ClothImageDecoder(IMAGE_SIZE);
+    
+    // Features by image content, so identical bytes are not decoded and run through the CNN again
+    private volatile ClothFeatureCache featureCache = new ClothFeatureCache(ClothFeatureCache.DEFAULT_MAX_MEMORY_BYTES);
+    
+    // Per-stage latency histograms and memory gauges, exported over JMX and optionally /metrics
+    private final ClothMetrics metrics = new ClothMetrics();
+    private ClothMetricsEndpoint metricsEndpoint;
+    
+    // Background re-extraction into a side-by-side store, at most one at a time
+    private ClothReindexer reindexer;
     
     /**
-     * Constructor - Initialize the cloth feature extractor
+     * Constructor - Initialize the cloth feature extractor.
+     * Persisted cloths are reopened from the store's index; nothing is parsed or materialised.
      */
     public ClothFeatureExtractor() {
-        this.clothDatabase = new HashMap<>();
+        this(Paths.get(DATABASE_DIR));
+    }
+    
+    /**
+     * Use a database directory other than ./cloth_database (e.g. a scratch directory for benchmarks)
+     */
+    public ClothFeatureExtractor(Path databaseDirectory) {
+        long start = System.nanoTime();
+        
+        this.databaseDirectory = databaseDirectory;
+        // clothDatabase only caches cloths touched in this process; the store holds the rest
+        this.clothDatabase = new ConcurrentHashMap<>();
         this.gson = new GsonBuilder().setPrettyPrinting().create();
         createDatabaseDirectory();
-        System.out.println("🧵 Cloth Feature Extractor initialized!");
+        this.featureStore = openFeatureStore();
+        this.similarityCatalog = new ClothSimilarityCatalog(featureStore, storeDirectory().resolve(SIMILARITY_SNAPSHOT),
+                FEATURE_VECTOR_SIZE, COLOR_HISTOGRAM_SIZE, perceptualFingerprint);
+        similarityCatalog.loadAsync();
+        this.batchAnchor = openBatchAnchor();
+        
+        startupReport.storeOpenMillis = (System.nanoTime() - start) / 1_000_000;
+        startupReport.registeredCloths = featureStore.size();
+        startupReport.mappedBytes = featureStore.stats().bytesOnDisk;
+        try {
+            metrics.registerMBean();
+        } catch (JMException e) {
+            log.warn("Could not register metrics MBean: {}", e.getMessage());
+        }
+        log.info("🧵 Cloth Feature Extractor initialized! ({} cloths, ready in {} ms)",
+                startupReport.registeredCloths, startupReport.storeOpenMillis);
     }
     
     /**
      * Build CNN model for deep feature extraction
-     * This model extracts fabric-specific features from cloth images
+     * This model extracts fabric-specific features from cloth images.
+     * Safe to call from any thread; callers already running inference finish on the old model.
+     * The new model is randomly initialised; use loadFeatureModel for trained weights.
      */
     public void buildFeatureExtractionModel() {
-        System.out.println("🔧 Building deep learning model for feature extraction...");
+        log.info("🔧 Building deep learning model for feature extraction...");
         
+        // Each block is conv -> batch norm -> ReLU, so the normalisation folds into the conv for inference
         MultiLayerConfiguration config = new NeuralNetConfiguration.Builder()
                 .seed(42)
                 .optimizationAlgo(OptimizationAlgorithm.STOCHASTIC_GRADIENT_DESCENT)
@@ -87,59 +206,63 @@ public class ClothFeatureExtractor {
                         .nOut(32)
                         .stride(1, 1)
                         .padding(1, 1)
-                        .activation(Activation.RELU)
+                        .activation(Activation.IDENTITY)
                         .build())
                 .layer(1, new BatchNormalization())
-                .layer(2, new SubsamplingLayer.Builder(SubsamplingLayer.PoolingType.MAX)
+                .layer(2, new ActivationLayer(Activation.RELU))
+                .layer(3, new SubsamplingLayer.Builder(SubsamplingLayer.PoolingType.MAX)
                         .kernelSize(2, 2)
                         .stride(2, 2)
                         .build())
                 
                 // Second Block - Extract fabric patterns
-                .layer(3, new ConvolutionLayer.Builder(3, 3)
+                .layer(4, new ConvolutionLayer.Builder(3, 3)
                         .nOut(64)
                         .stride(1, 1)
                         .padding(1, 1)
-                        .activation(Activation.RELU)
+                        .activation(Activation.IDENTITY)
                         .build())
-                .layer(4, new BatchNormalization())
-                .layer(5, new SubsamplingLayer.Builder(SubsamplingLayer.PoolingType.MAX)
+                .layer(5, new BatchNormalization())
+                .layer(6, new ActivationLayer(Activation.RELU))
+                .layer(7, new SubsamplingLayer.Builder(SubsamplingLayer.PoolingType.MAX)
                         .kernelSize(2, 2)
                         .stride(2, 2)
                         .build())
                 
                 // Third Block - Extract complex textures
-                .layer(6, new ConvolutionLayer.Builder(3, 3)
+                .layer(8, new ConvolutionLayer.Builder(3, 3)
                         .nOut(128)
                         .stride(1, 1)
                         .padding(1, 1)
-                        .activation(Activation.RELU)
+                        .activation(Activation.IDENTITY)
                         .build())
-                .layer(7, new BatchNormalization())
-                .layer(8, new SubsamplingLayer.Builder(SubsamplingLayer.PoolingType.MAX)
+                .layer(9, new BatchNormalization())
+                .layer(10, new ActivationLayer(Activation.RELU))
+                .layer(11, new SubsamplingLayer.Builder(SubsamplingLayer.PoolingType.MAX)
                         .kernelSize(2, 2)
                         .stride(2, 2)
                         .build())
                 
                 // Fourth Block - High-level fabric characteristics
-                .layer(9, new ConvolutionLayer.Builder(3, 3)
+                .layer(12, new ConvolutionLayer.Builder(3, 3)
                         .nOut(256)
                         .stride(1, 1)
                         .padding(1, 1)
-                        .activation(Activation.RELU)
+                        .activation(Activation.IDENTITY)
                         .build())
-                .layer(10, new BatchNormalization())
-                .layer(11, new GlobalPoolingLayer.Builder(PoolingType.AVG).build())
+                .layer(13, new BatchNormalization())
+                .layer(14, new ActivationLayer(Activation.RELU))
+                .layer(15, new GlobalPoolingLayer.Builder(PoolingType.AVG).build())
                 
                 // Dense layers for feature compression
-                .layer(12, new DenseLayer.Builder()
+                .layer(16, new DenseLayer.Builder()
                         .nOut(512)
                         .activation(Activation.RELU)
                         .dropOut(0.5)
                         .build())
                 
                 // Final feature vector (Digital DNA)
-                .layer(13, new OutputLayer.Builder(LossFunctions.LossFunction.MSE)
+                .layer(17, new OutputLayer.Builder(LossFunctions.LossFunction.MSE)
                         .nOut(FEATURE_VECTOR_SIZE)
                         .activation(Activation.RELU)
                         .build())
@@ -147,11 +270,162 @@ public class ClothFeatureExtractor {
                 .setInputType(InputType.convolutional(IMAGE_SIZE, IMAGE_SIZE, 3))
                 .build();
         
-        this.featureModel = new MultiLayerNetwork(config);
-        this.featureModel.init();
+        MultiLayerNetwork model = new MultiLayerNetwork(config);
+        model.init();
+        installFeatureModel(model);
+        
+        log.info("✅ Deep learning model built successfully! ({} parameters)", model.numParams());
+        if (log.isDebugEnabled()) {
+            log.debug("📊 Model summary:\n{}", model.summary());
+        }
+    }
+    
+    /**
+     * Load a feature model saved with saveFeatureModel or exportInferenceModel (ModelSerializer zip)
+     */
+    public void loadFeatureModel(Path modelPath) throws IOException {
+        long start = System.nanoTime();
+        MultiLayerNetwork model = ModelSerializer.restoreMultiLayerNetwork(modelPath.toFile(), false);
+        long[] probe = model.output(Nd4j.zeros(DataType.FLOAT, 1, 3, IMAGE_SIZE, IMAGE_SIZE), false).shape();
+        if (probe.length != 2 || probe[1] != FEATURE_VECTOR_SIZE) {
+            throw new IOException("Model " + modelPath + " produces " + Arrays.toString(probe) +
+                    ", expected [n, " + FEATURE_VECTOR_SIZE + "] features");
+        }
+        installFeatureModel(model);
+        log.info("📦 Loaded feature model from {} ({} parameters, {} ms)", modelPath, model.numParams(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+    
+    /**
+     * Save the current feature model (all layers, no updater state) so later processes extract
+     * identical features
+     */
+    public void saveFeatureModel(Path modelPath) throws IOException {
+        modelReplicas();
+        writeModel(featureModel, modelPath);
+    }
+    
+    /**
+     * Save the inference-only form of the current model: batch normalisation folded into the
+     * convolutions and dropout removed. Loads with loadFeatureModel like a full model.
+     */
+    public void exportInferenceModel(Path modelPath) throws IOException {
+        writeModel(modelReplicas().model(), modelPath);
+    }
+    
+    private static void writeModel(MultiLayerNetwork model, Path modelPath) throws IOException {
+        Path parent = modelPath.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tempPath = modelPath.resolveSibling(modelPath.getFileName() + ".tmp");
+        ModelSerializer.writeModel(model, tempPath.toFile(), false);
+        Files.move(tempPath, modelPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    /**
+     * Inference runs on the frozen form of the model; the full model is kept for saving
+     */
+    private void installFeatureModel(MultiLayerNetwork model) {
+        MultiLayerNetwork inferenceModel = InferenceModelFreezer.freeze(model);
+        synchronized (modelLock) {
+            this.featureModel = model;
+            this.modelReplicas = new ModelReplicaPool(inferenceModel, modelReplicaCount);
+        }
+        log.debug("🧊 Inference model: {} -> {} layers ({} batch norm layers folded)",
+                model.getnLayers(), inferenceModel.getnLayers(), InferenceModelFreezer.foldableNormalizations(model));
+    }
+    
+    /**
+     * Load the model persisted in the database directory, or build one and persist it, so
+     * features stay identical across restarts
+     */
+    private void loadOrBuildFeatureModel() {
+        Path modelPath = storeDirectory().resolve(FEATURE_MODEL_FILE);
+        if (Files.exists(modelPath)) {
+            try {
+                loadFeatureModel(modelPath);
+                return;
+            } catch (IOException e) {
+                log.warn("Could not load feature model {}, building a new one: {}", modelPath, e.getMessage());
+            }
+        }
+        buildFeatureExtractionModel();
+        try {
+            saveFeatureModel(modelPath);
+        } catch (IOException e) {
+            log.warn("Could not persist feature model to {}: {}", modelPath, e.getMessage());
+        }
+    }
+    
+    /**
+     * Replica pool for the current model, loading or building the model on first use
+     * (exactly once even when many threads arrive together)
+     */
+    private ModelReplicaPool modelReplicas() {
+        ModelReplicaPool pool = modelReplicas;
+        if (pool == null) {
+            synchronized (modelLock) {
+                pool = modelReplicas;
+                if (pool == null) {
+                    loadOrBuildFeatureModel();
+                    pool = modelReplicas;
+                }
+            }
+        }
+        return pool;
+    }
+    
+    /**
+     * Load the model and run one full inference batch so native kernels, JIT and the
+     * inference workspace are ready before the first request. Returns the time taken.
+     */
+    public long warmUp() {
+        long start = System.nanoTime();
+        ModelReplicaPool pool = modelReplicas();
+        long loadMillis = (System.nanoTime() - start) / 1_000_000;
+        
+        int batchSize = inferenceBatchSize;
+        List<Mat> images = new ArrayList<>(batchSize);
+        Mat blank = Mat.zeros(IMAGE_SIZE, IMAGE_SIZE, CvType.CV_8UC3);
+        for (int i = 0; i < batchSize; i++) {
+            images.add(blank);
+        }
+        ModelReplicaPool.Replica replica = pool.acquire();
+        try {
+            runInferenceBatch(replica, batchSize, images, 0, batchSize, new double[batchSize][]);
+        } finally {
+            pool.release(replica);
+            blank.release();
+        }
         
-        System.out.println("✅ Deep learning model built successfully!");
-        System.out.println("📊 Model summary: " + this.featureModel.summary());
+        long totalMillis = (System.nanoTime() - start) / 1_000_000;
+        startupReport.modelLoadMillis = loadMillis;
+        startupReport.warmUpMillis = totalMillis - loadMillis;
+        log.info("🔥 Feature model warm ({} ms load, {} ms first batch of {})", loadMillis, totalMillis - loadMillis, batchSize);
+        return totalMillis;
+    }
+    
+    /**
+     * Set how many threads may run CNN inference at the same time (default: one per core).
+     * Each replica holds its own copy of the model parameters.
+     */
+    public void setModelReplicas(int modelReplicas) {
+        if (modelReplicas < 1) {
+            throw new IllegalArgumentException("Model replica count must be positive: " + modelReplicas);
+        }
+        synchronized (modelLock) {
+            this.modelReplicaCount = modelReplicas;
+            if (featureModel != null) {
+                this.modelReplicas = new ModelReplicaPool(this.modelReplicas.model(), modelReplicas);
+            }
+        }
+    }
+    
+    public int getModelReplicas() {
+        synchronized (modelLock) {
+            return modelReplicaCount;
+        }
     }
     
     /**
@@ -159,107 +433,206 @@ public class ClothFeatureExtractor {
      * These complement the deep learning features
      */
     public TraditionalFeatures extractTraditionalFeatures(Mat image) {
-        System.out.println("🔍 Extracting traditional computer vision features...");
+        if (image.type() != CvType.CV_8UC3) {
+            throw new IllegalArgumentException("Expected an 8-bit BGR image, got type " + CvType.typeToString(image.type()));
+        }
         
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            TraditionalFeatures features = computeTraditionalFeatures(image);
+            succeeded = true;
+            return features;
+        } finally {
+            if (succeeded) {
+                metrics.record(ClothMetrics.Stage.TRADITIONAL_FEATURES, start);
+            } else {
+                metrics.recordFailure(ClothMetrics.Stage.TRADITIONAL_FEATURES);
+            }
+        }
+    }
+    
+    private TraditionalFeatures computeTraditionalFeatures(Mat image) {
+        // All scratch Mats live in a borrowed workspace; nothing native is allocated here
+        TraditionalFeatureWorkspace ws = acquireTraditionalWorkspace();
+        try {
+            return computeTraditionalFeatures(image, ws);
+        } finally {
+            releaseTraditionalWorkspace(ws);
+        }
+    }
+    
+    private TraditionalFeatureWorkspace acquireTraditionalWorkspace() {
+        synchronized (idleTraditionalWorkspaces) {
+            if (traditionalWorkspacesClosed) {
+                throw new IllegalStateException("Extractor is closed");
+            }
+            TraditionalFeatureWorkspace workspace = idleTraditionalWorkspaces.pollFirst();
+            if (workspace != null) {
+                return workspace;
+            }
+        }
+        return new TraditionalFeatureWorkspace();
+    }
+    
+    private void releaseTraditionalWorkspace(TraditionalFeatureWorkspace workspace) {
+        synchronized (idleTraditionalWorkspaces) {
+            // Most recently used first, so the warm workspaces keep being reused
+            if (!traditionalWorkspacesClosed && idleTraditionalWorkspaces.size() < MAX_IDLE_TRADITIONAL_WORKSPACES) {
+                idleTraditionalWorkspaces.addFirst(workspace);
+                return;
+            }
+        }
+        workspace.close();
+    }
+    
+    private TraditionalFeatures computeTraditionalFeatures(Mat image, TraditionalFeatureWorkspace ws) {
+        ws.checkOpen();
         TraditionalFeatures features = new TraditionalFeatures();
         
         // Convert to different color spaces
-        Mat gray = new Mat();
-        Mat hsv = new Mat();
-        Imgproc.cvtColor(image, gray, Imgproc.COLOR_BGR2GRAY);
-        Imgproc.cvtColor(image, hsv, Imgproc.COLOR_BGR2HSV);
+        Imgproc.cvtColor(image, ws.gray, Imgproc.COLOR_BGR2GRAY);
+        Imgproc.cvtColor(image, ws.hsv, Imgproc.COLOR_BGR2HSV);
         
         // 1. Color Features
-        Scalar meanBGR = Core.mean(image);
-        Scalar meanHSV = Core.mean(hsv);
-        
-        features.avgBGR = new double[]{meanBGR.val[0], meanBGR.val[1], meanBGR.val[2]};
-        features.avgHSV = new double[]{meanHSV.val[0], meanHSV.val[1], meanHSV.val[2]};
-        
-        // Color histogram
-        List<Mat> bgrPlanes = new ArrayList<>();
-        Core.split(image, bgrPlanes);
-        
-        Mat histB = new Mat(), histG = new Mat(), histR = new Mat();
-        int histSize = 32;
-        float[] range = {0, 256};
-        MatOfFloat histRange = new MatOfFloat(range);
-        
-        Imgproc.calcHist(Arrays.asList(bgrPlanes.get(0)), new MatOfInt(0), new Mat(), histB, new MatOfInt(histSize), histRange);
-        Imgproc.calcHist(Arrays.asList(bgrPlanes.get(1)), new MatOfInt(0), new Mat(), histG, new MatOfInt(histSize), histRange);
-        Imgproc.calcHist(Arrays.asList(bgrPlanes.get(2)), new MatOfInt(0), new Mat(), histR, new MatOfInt(histSize), histRange);
-        
+        features.avgBGR = new double[3];
+        features.avgHSV = new double[3];
+        Core.meanStdDev(image, ws.mean, ws.stddev);
+        ws.mean.get(0, 0, features.avgBGR);
+        Core.meanStdDev(ws.hsv, ws.mean, ws.stddev);
+        ws.mean.get(0, 0, features.avgHSV);
+        
+        // Color histogram: 32 uniform bins over [0, 256) per channel, counted straight from the
+        // pixel bytes (same counts as calcHist, without its per-call native conversions)
+        int histSize = TraditionalFeatureWorkspace.HISTOGRAM_BINS;
+        int[] counts = ws.histogramCounts;
+        Arrays.fill(counts, 0);
+        byte[] pixels = ws.pixelsFor(image);
+        int length = (int) (image.total() * 3);
+        image.get(0, 0, pixels);
+        for (int i = 0; i < length; i += 3) {
+            counts[((pixels[i] & 0xFF) * histSize) >> 8]++;
+            counts[histSize + (((pixels[i + 1] & 0xFF) * histSize) >> 8)]++;
+            counts[2 * histSize + (((pixels[i + 2] & 0xFF) * histSize) >> 8)]++;
+        }
         features.colorHistogram = new double[histSize * 3];
-        histB.get(0, 0, features.colorHistogram, 0, histSize);
-        histG.get(0, 0, features.colorHistogram, histSize, histSize);
-        histR.get(0, 0, features.colorHistogram, histSize * 2, histSize);
+        for (int i = 0; i < counts.length; i++) {
+            features.colorHistogram[i] = counts[i];
+        }
         
         // 2. Texture Features using ORB (instead of LBP for simplicity)
-        ORB orb = ORB.create();
-        MatOfKeyPoint keypoints = new MatOfKeyPoint();
-        Mat descriptors = new Mat();
-        orb.detectAndCompute(gray, new Mat(), keypoints, descriptors);
-        
-        KeyPoint[] keypointArray = keypoints.toArray();
-        features.textureKeypoints = keypointArray.length;
+        ws.orb.detectAndCompute(ws.gray, ws.noMask, ws.keypoints, ws.descriptors);
+        features.textureKeypoints = ws.keypoints.rows();
         
         // 3. Edge and Pattern Features
-        Mat edges = new Mat();
-        Imgproc.Canny(gray, edges, 50, 150);
+        Imgproc.Canny(ws.gray, ws.edges, 50, 150);
         
         // Calculate edge density
-        int totalPixels = edges.rows() * edges.cols();
-        int edgePixels = Core.countNonZero(edges);
+        int totalPixels = ws.edges.rows() * ws.edges.cols();
+        int edgePixels = Core.countNonZero(ws.edges);
         features.edgeDensity = (double) edgePixels / totalPixels;
         
         // Gradient features
-        Mat gradX = new Mat(), gradY = new Mat();
-        Imgproc.Sobel(gray, gradX, CvType.CV_64F, 1, 0, 3);
-        Imgproc.Sobel(gray, gradY, CvType.CV_64F, 0, 1, 3);
-        
-        Mat gradMagnitude = new Mat();
-        Core.magnitude(gradX, gradY, gradMagnitude);
+        Imgproc.Sobel(ws.gray, ws.gradX, CvType.CV_64F, 1, 0, 3);
+        Imgproc.Sobel(ws.gray, ws.gradY, CvType.CV_64F, 0, 1, 3);
+        Core.magnitude(ws.gradX, ws.gradY, ws.gradMagnitude);
         
-        Scalar gradMean = Core.mean(gradMagnitude);
-        features.gradientMean = gradMean.val[0];
-        
-        MatOfDouble mean = new MatOfDouble();
-        MatOfDouble stddev = new MatOfDouble();
-        Core.meanStdDev(gradMagnitude, mean, stddev);
-        features.gradientStd = stddev.get(0, 0)[0];
+        Core.meanStdDev(ws.gradMagnitude, ws.mean, ws.stddev);
+        features.gradientMean = singleValue(ws.mean, ws);
+        features.gradientStd = singleValue(ws.stddev, ws);
         
         // 4. Statistical Features
-        Core.meanStdDev(gray, mean, stddev);
-        features.brightnessMean = mean.get(0, 0)[0];
-        features.brightnessStd = stddev.get(0, 0)[0];
+        Core.meanStdDev(ws.gray, ws.mean, ws.stddev);
+        features.brightnessMean = singleValue(ws.mean, ws);
+        features.brightnessStd = singleValue(ws.stddev, ws);
         features.contrast = features.brightnessStd / features.brightnessMean;
         
-        System.out.println("✅ Traditional features extracted successfully!");
+        log.debug("Traditional features: {} keypoints, edge density {}", features.textureKeypoints, features.edgeDensity);
         return features;
     }
     
+    private static double singleValue(MatOfDouble values, TraditionalFeatureWorkspace ws) {
+        values.get(0, 0, ws.statistic);
+        return ws.statistic[0];
+    }
+    
     /**
-     * Preprocess cloth image for feature extraction
+     * Preprocess cloth image for feature extraction.
+     * Large JPEGs are decoded at 1/2, 1/4 or 1/8 scale, so the full-resolution pixels are never produced.
      */
     public Mat preprocessClothImage(String imagePath) throws IOException {
-        System.out.println("🖼️ Preprocessing image: " + imagePath);
+        log.debug("Preprocessing image: {}", imagePath);
         
         // Load image using OpenCV
-        Mat image = Imgcodecs.imread(imagePath);
+        long start = System.nanoTime();
+        Mat image = imageDecoder.read(Paths.get(imagePath));
+        return finishDecode(image, start, "Could not load image: " + imagePath);
+    }
+    
+    /**
+     * Preprocess an encoded image (JPEG, PNG, ...) received in memory, e.g. over HTTP
+     */
+    public Mat preprocessClothImage(byte[] encodedImage) throws IOException {
+        long start = System.nanoTime();
+        Mat image = imageDecoder.decode(encodedImage, 0, encodedImage.length);
+        return finishDecode(image, start, "Could not decode image (" + encodedImage.length + " bytes)");
+    }
+    
+    /**
+     * Preprocess the remaining bytes of a buffer holding an encoded image. Direct buffers
+     * (including memory-mapped files) are decoded in place without copying.
+     */
+    public Mat preprocessClothImage(ByteBuffer encodedImage) throws IOException {
+        long start = System.nanoTime();
+        int length = encodedImage.remaining();
+        Mat image = imageDecoder.decode(encodedImage);
+        return finishDecode(image, start, "Could not decode image (" + length + " bytes)");
+    }
+    
+    /**
+     * Preprocess an image file by memory-mapping it and decoding from the page cache
+     * (no read into a Java buffer). Useful for images on fast local storage.
+     */
+    public Mat preprocessMappedClothImage(Path imagePath) throws IOException {
+        long start = System.nanoTime();
+        Mat image;
+        try {
+            image = imageDecoder.decodeMapped(imagePath);
+        } catch (IOException e) {
+            metrics.recordFailure(ClothMetrics.Stage.DECODE);
+            throw new IOException("Could not load image: " + imagePath, e);
+        }
+        return finishDecode(image, start, "Could not decode image: " + imagePath);
+    }
+    
+    private Mat finishDecode(Mat image, long decodeStart, String failureMessage) throws IOException {
         if (image.empty()) {
-            throw new IOException("Could not load image: " + imagePath);
+            metrics.recordFailure(ClothMetrics.Stage.DECODE);
+            throw new IOException(failureMessage);
         }
+        metrics.record(ClothMetrics.Stage.DECODE, decodeStart);
         
+        return resizeToModelInput(image);
+    }
+    
+    /**
+     * Area-downscale a BGR image to the model input and convert it to RGB. Releases the input.
+     */
+    Mat resizeToModelInput(Mat image) {
         // Resize to standard size
+        long start = System.nanoTime();
+        // (area interpolation averages every source pixel, so downscaling doesn't alias the weave)
         Mat resized = new Mat();
         Size size = new Size(IMAGE_SIZE, IMAGE_SIZE);
-        Imgproc.resize(image, resized, size);
+        Imgproc.resize(image, resized, size, 0, 0, Imgproc.INTER_AREA);
+        image.release();
         
         // Convert to RGB (OpenCV loads as BGR)
         Mat rgb = new Mat();
         Imgproc.cvtColor(resized, rgb, Imgproc.COLOR_BGR2RGB);
+        resized.release();
+        metrics.record(ClothMetrics.Stage.RESIZE, start);
         
-        System.out.println("✅ Image preprocessed successfully!");
         return rgb;
     }
     
@@ -267,135 +640,367 @@ public class ClothFeatureExtractor {
      * Extract deep learning features using CNN model
      */
     public double[] extractDeepFeatures(Mat image) {
-        System.out.println("🧠 Extracting deep learning features...");
+        return extractDeepFeatures(Collections.singletonList(image))[0];
+    }
+    
+    /**
+     * Extract deep learning features for several preprocessed images at once.
+     * Images are run through the CNN in minibatches of inferenceBatchSize, on a model replica
+     * checked out for the whole call; concurrent callers use different replicas.
+     */
+    public double[][] extractDeepFeatures(List<Mat> images) {
+        log.debug("Extracting deep learning features for {} image(s)", images.size());
         
-        if (featureModel == null) {
-            buildFeatureExtractionModel();
+        int batchSize = inferenceBatchSize;
+        ModelReplicaPool pool = modelReplicas();
+        ModelReplicaPool.Replica replica = pool.acquire();
+        try {
+            double[][] features = new double[images.size()][];
+            for (int start = 0; start < images.size(); start += batchSize) {
+                int count = Math.min(batchSize, images.size() - start);
+                long batchStart = System.nanoTime();
+                boolean succeeded = false;
+                try {
+                    runInferenceBatch(replica, batchSize, images, start, count, features);
+                    succeeded = true;
+                } finally {
+                    if (succeeded) {
+                        metrics.record(ClothMetrics.Stage.DEEP_FEATURES, batchStart);
+                    } else {
+                        metrics.recordFailure(ClothMetrics.Stage.DEEP_FEATURES);
+                    }
+                }
+            }
+            return features;
+        } finally {
+            pool.release(replica);
         }
-        
-        // Convert Mat to INDArray
-        int height = image.rows();
-        int width = image.cols();
-        int channels = image.channels();
-        
-        byte[] imageData = new byte[height * width * channels];
-        image.get(0, 0, imageData);
-        
-        // Normalize pixel values to [0, 1]
-        double[] normalizedData = new double[imageData.length];
-        for (int i = 0; i < imageData.length; i++) {
-            normalizedData[i] = (imageData[i] & 0xFF) / 255.0;
+    }
+    
+    /**
+     * Set how many images are stacked into one forward pass
+     */
+    public void setInferenceBatchSize(int inferenceBatchSize) {
+        if (inferenceBatchSize < 1) {
+            throw new IllegalArgumentException("Inference batch size must be positive: " + inferenceBatchSize);
+        }
+        this.inferenceBatchSize = inferenceBatchSize;
+    }
+    
+    public int getInferenceBatchSize() {
+        return inferenceBatchSize;
+    }
+    
+    /**
+     * Run one minibatch: fill the reused [N,3,H,W] input and copy the features out of the workspace
+     */
+    private void runInferenceBatch(ModelReplicaPool.Replica replica, int batchSize, List<Mat> images, int start,
+                                   int count, double[][] features) {
+        INDArray batchInput = replica.inputFor(batchSize, IMAGE_SIZE);
+        for (int i = 0; i < count; i++) {
+            writeImageToInput(replica, batchInput, images.get(start + i), i);
         }
         
-        // Create INDArray with shape [1, channels, height, width]
-        INDArray input = Nd4j.create(normalizedData).reshape(1, channels, height, width);
+        // A partial last batch uses a view over the first rows of the same buffer
+        INDArray input = count == batchSize ? batchInput
+                : batchInput.get(NDArrayIndex.interval(0, count), NDArrayIndex.all(), NDArrayIndex.all(), NDArrayIndex.all());
         
-        // Generate random features for demonstration (replace with actual model prediction)
-        // In real implementation, you would use: featureModel.output(input);
-        Random random = new Random(42);
-        double[] features = new double[FEATURE_VECTOR_SIZE];
-        for (int i = 0; i < FEATURE_VECTOR_SIZE; i++) {
-            features[i] = random.nextGaussian() * 0.5; // Simulated features
+        // Workspaces are per thread, so replicas used from different threads never share one
+        try (MemoryWorkspace workspace = Nd4j.getWorkspaceManager()
+                .getAndActivateWorkspace(INFERENCE_WORKSPACE_CONFIG, INFERENCE_WORKSPACE_ID)) {
+            INDArray output = replica.network.output(input, false, workspace);
+            for (int i = 0; i < count; i++) {
+                features[start + i] = output.getRow(i).toDoubleVector();
+            }
+            metrics.setInferenceWorkspaceBytes(workspace.getCurrentSize());
+        }
+    }
+    
+    /**
+     * Convert an interleaved 8-bit RGB Mat straight into the float NCHW slot of the input batch
+     */
+    private void writeImageToInput(ModelReplicaPool.Replica replica, INDArray batchInput, Mat image, int batchIndex) {
+        if (image.rows() != IMAGE_SIZE || image.cols() != IMAGE_SIZE || image.type() != CvType.CV_8UC3) {
+            throw new IllegalArgumentException("Expected a preprocessed " + IMAGE_SIZE + "x" + IMAGE_SIZE +
+                    " 8-bit RGB image, got " + image);
         }
         
-        System.out.println("✅ Deep features extracted: " + features.length + " dimensions");
-        return features;
+        int planeSize = IMAGE_SIZE * IMAGE_SIZE;
+        byte[] pixelBuffer = replica.pixelsFor(planeSize * 3);
+        image.get(0, 0, pixelBuffer);
+        
+        FloatBuffer input = batchInput.data().asNioFloat();
+        int base = batchIndex * planeSize * 3;
+        for (int pixel = 0, src = 0; pixel < planeSize; pixel++, src += 3) {
+            // Normalize pixel values to [0, 1]
+            input.put(base + pixel, (pixelBuffer[src] & 0xFF) / 255.0f);
+            input.put(base + planeSize + pixel, (pixelBuffer[src + 1] & 0xFF) / 255.0f);
+            input.put(base + 2 * planeSize + pixel, (pixelBuffer[src + 2] & 0xFF) / 255.0f);
+        }
     }
     
     /**
      * Create comprehensive digital DNA for a cloth item
      */
     public ClothDNA createClothDigitalDNA(String imagePath, String clothId) throws IOException {
-        System.out.println("🧬 Creating digital DNA for cloth: " + clothId);
+        log.debug("Creating digital DNA for cloth: {}", clothId);
         
-        if (clothId == null) {
-            clothId = "cloth_" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+        // With the cache on, the file is read once and both hashed and decoded from memory
+        if (featureCache != null) {
+            return createClothDigitalDNA(readImageBytes(Paths.get(imagePath)), clothId);
         }
-        
+
         // Preprocess image
         Mat processedImage = preprocessClothImage(imagePath);
+        try {
+            return createClothDigitalDNA(processedImage, clothId);
+        } finally {
+            processedImage.release();
+        }
+    }
+    
+    /**
+     * Create multi-scale digital DNA for a high-resolution scan (TIFF preferred) without
+     * loading it whole: global features from a downscaled overview plus statistics over
+     * full-resolution tiles. See TiledScanExtractor.
+     */
+    public ClothDNA createTiledClothDNA(Path scanPath, String clothId) throws IOException {
+        TiledScanExtractor.Config config = new TiledScanExtractor.Config();
+        config.tileSize = scanTileSize;
+        return new TiledScanExtractor(this, config).extract(scanPath, clothId);
+    }
+    
+    /**
+     * Scan pixels per tile side for createTiledClothDNA (default 448, i.e. 2x the model input)
+     */
+    public void setScanTileSize(int scanTileSize) {
+        if (scanTileSize < IMAGE_SIZE) {
+            throw new IllegalArgumentException("Scan tile size must be at least " + IMAGE_SIZE + ": " + scanTileSize);
+        }
+        this.scanTileSize = scanTileSize;
+    }
+    
+    public int getScanTileSize() {
+        return scanTileSize;
+    }
+    
+    /**
+     * Create digital DNA from an encoded image in memory. Bytes seen before (a retried upload,
+     * a repeat scan) are answered from the feature cache without decoding.
+     */
+    public ClothDNA createClothDigitalDNA(byte[] encodedImage, String clothId) throws IOException {
+        ClothFeatureCache.Key cacheKey = featureCacheKey(encodedImage);
+        ClothDNA cached = cachedClothDNA(cacheKey, clothId);
+        if (cached != null) {
+            return cached;
+        }
         
+        Mat processedImage = preprocessClothImage(encodedImage);
+        try {
+            ClothDNA clothDNA = createClothDigitalDNA(processedImage, clothId);
+            cacheFeatures(cacheKey, clothDNA);
+            return clothDNA;
+        } finally {
+            processedImage.release();
+        }
+    }
+    
+    /**
+     * Create digital DNA from an already preprocessed image
+     */
+    public ClothDNA createClothDigitalDNA(Mat processedImage, String clothId) {
         // Extract deep features
         double[] deepFeatures = extractDeepFeatures(processedImage);
         
+        return assembleClothDNA(processedImage, clothId, deepFeatures);
+    }
+    
+    /**
+     * Create digital DNA for several preprocessed images, sharing CNN forward passes
+     */
+    public List<ClothDNA> createClothDigitalDNA(List<Mat> processedImages, List<String> clothIds) {
+        double[][] deepFeatures = extractDeepFeatures(processedImages);
+        
+        List<ClothDNA> result = new ArrayList<>(processedImages.size());
+        for (int i = 0; i < processedImages.size(); i++) {
+            result.add(assembleClothDNA(processedImages.get(i), clothIds.get(i), deepFeatures[i]));
+        }
+        return result;
+    }
+    
+    /**
+     * Create digital DNA from a preprocessed image whose deep features were already extracted
+     * (e.g. as part of a larger inference batch)
+     */
+    public ClothDNA createClothDigitalDNA(Mat processedImage, String clothId, double[] deepFeatures) {
+        return assembleClothDNA(processedImage, clothId, deepFeatures);
+    }
+    
+    private ClothDNA assembleClothDNA(Mat processedImage, String clothId, double[] deepFeatures) {
         // Extract traditional features
         TraditionalFeatures traditionalFeatures = extractTraditionalFeatures(processedImage);
         
         // Create comprehensive DNA
+        ClothDNA clothDNA = newClothDNA(clothId, deepFeatures, traditionalFeatures,
+                new int[]{processedImage.rows(), processedImage.cols(), processedImage.channels()});
+        
+        log.debug("Digital DNA created for cloth {}: {} deep features", clothDNA.clothId, deepFeatures.length);
+        
+        return clothDNA;
+    }
+    
+    private static ClothDNA newClothDNA(String clothId, double[] deepFeatures, TraditionalFeatures traditionalFeatures,
+                                        int[] imageDimensions) {
+        if (clothId == null) {
+            clothId = "cloth_" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+        }
+        
         ClothDNA clothDNA = new ClothDNA();
         clothDNA.clothId = clothId;
         clothDNA.timestamp = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
         clothDNA.deepFeatures = deepFeatures;
         clothDNA.traditionalFeatures = traditionalFeatures;
-        clothDNA.imageDimensions = new int[]{processedImage.rows(), processedImage.cols(), processedImage.channels()};
-        clothDNA.featureExtractionVersion = "1.0";
-        
-        System.out.println("✅ Digital DNA created successfully!");
-        System.out.println("📊 Deep features: " + deepFeatures.length + " dimensions");
-        System.out.println("📈 Traditional features: extracted");
-        
+        clothDNA.imageDimensions = imageDimensions;
+        clothDNA.featureExtractionVersion = FEATURE_EXTRACTION_VERSION;
+        return clothDNA;
+    }
+    
+    /**
+     * Replace the feature cache (e.g. with one that has a disk tier); null turns caching off.
+     * The extractor closes whichever cache it holds on close().
+     */
+    public void setFeatureCache(ClothFeatureCache featureCache) {
+        this.featureCache = featureCache;
+    }
+    
+    public ClothFeatureCache getFeatureCache() {
+        return featureCache;
+    }
+    
+    /**
+     * Cache key for an encoded image, or null when caching is off
+     */
+    ClothFeatureCache.Key featureCacheKey(byte[] encodedImage) {
+        ClothFeatureCache cache = featureCache;
+        return cache != null ? cache.keyFor(encodedImage) : null;
+    }
+    
+    /**
+     * DNA built from cached features, or null on a miss (or a null key)
+     */
+    ClothDNA cachedClothDNA(ClothFeatureCache.Key cacheKey, String clothId) {
+        ClothFeatureCache cache = featureCache;
+        if (cacheKey == null || cache == null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        ClothFeatureCache.Features features = cache.get(cacheKey);
+        if (features == null) {
+            return null;
+        }
+        ClothDNA clothDNA = newClothDNA(clothId, features.deepFeatures, features.traditionalFeatures,
+                features.imageDimensions);
+        metrics.record(ClothMetrics.Stage.FEATURE_CACHE, start);
+        log.debug("Feature cache hit for cloth {} ({})", clothDNA.clothId, cacheKey);
         return clothDNA;
     }
     
+    void cacheFeatures(ClothFeatureCache.Key cacheKey, ClothDNA clothDNA) {
+        ClothFeatureCache cache = featureCache;
+        if (cacheKey == null || cache == null) {
+            return;
+        }
+        ClothFeatureCache.Features features = new ClothFeatureCache.Features();
+        features.deepFeatures = clothDNA.deepFeatures;
+        features.traditionalFeatures = clothDNA.traditionalFeatures;
+        features.imageDimensions = clothDNA.imageDimensions;
+        cache.put(cacheKey, features);
+    }
+    
+    byte[] readImageBytes(Path imagePath) throws IOException {
+        try {
+            return Files.readAllBytes(imagePath);
+        } catch (IOException e) {
+            metrics.recordFailure(ClothMetrics.Stage.DECODE);
+            throw new IOException("Could not load image: " + imagePath, e);
+        }
+    }
+    
     /**
-     * Generate SHA-256 hash for blockchain storage
+     * Generate SHA-256 hash for blockchain storage, plus the perceptual fingerprint
+     * (which, unlike the hash, matches across extractions of the same cloth)
      */
     public BlockchainRecord generateBlockchainHash(ClothDNA clothDNA) throws Exception {
-        System.out.println("🔐 Generating blockchain hash...");
-        
-        // Convert DNA to JSON string
-        String jsonString = gson.toJson(clothDNA);
+        long start = System.nanoTime();
         
-        // Generate SHA-256 hash
-        MessageDigest digest = MessageDigest.getInstance("SHA-256");
-        byte[] hashBytes = digest.digest(jsonString.getBytes("UTF-8"));
-        
-        // Convert to hex string
-        StringBuilder hexString = new StringBuilder();
-        for (byte b : hashBytes) {
-            String hex = Integer.toHexString(0xff & b);
-            if (hex.length() == 1) {
-                hexString.append('0');
-            }
-            hexString.append(hex);
+        // SHA-256 over the canonical binary encoding, streamed from a per-thread buffer
+        String blockchainHash;
+        try {
+            blockchainHash = dnaEncoders.get().hashHex(clothDNA);
+        } catch (RuntimeException e) {
+            metrics.recordFailure(ClothMetrics.Stage.HASH);
+            throw e;
         }
         
-        String blockchainHash = hexString.toString();
-        
         // Create blockchain record
         BlockchainRecord record = new BlockchainRecord();
         record.clothId = clothDNA.clothId;
         record.hash = blockchainHash;
+        record.hashScheme = ClothDNAEncoder.hashSchemeFor(clothDNA);
         record.timestamp = clothDNA.timestamp;
-        record.featureSummary = new FeatureSummary();
-        record.featureSummary.deepFeaturesCount = clothDNA.deepFeatures.length;
-        record.featureSummary.traditionalFeaturesCount = 10; // Approximate count
-        record.featureSummary.avgDeepFeature = Arrays.stream(clothDNA.deepFeatures).average().orElse(0.0);
-        record.featureSummary.imageSize = clothDNA.imageDimensions;
+        record.featureSummary = summarizeFeatures(clothDNA);
+        record.fingerprint = PerceptualFingerprint.toHex(perceptualFingerprint.compute(clothDNA));
         
-        System.out.println("✅ Blockchain hash generated: " + blockchainHash.substring(0, 16) + "...");
+        metrics.record(ClothMetrics.Stage.HASH, start);
+        log.debug("Blockchain hash generated for cloth {}: {}", record.clothId, blockchainHash);
         
         return record;
     }
     
+    private static FeatureSummary summarizeFeatures(ClothDNA clothDNA) {
+        FeatureSummary summary = new FeatureSummary();
+        summary.deepFeaturesCount = clothDNA.deepFeatures.length;
+        summary.traditionalFeaturesCount = 10; // Approximate count
+        summary.avgDeepFeature = Arrays.stream(clothDNA.deepFeatures).average().orElse(0.0);
+        summary.imageSize = clothDNA.imageDimensions;
+        return summary;
+    }
+    
     /**
      * Store cloth data locally
      */
     public void storeClothData(ClothDNA clothDNA, BlockchainRecord blockchainRecord) throws IOException {
-        System.out.println("💾 Storing cloth data...");
-        
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            writeClothData(clothDNA, blockchainRecord);
+            succeeded = true;
+        } finally {
+            if (succeeded) {
+                metrics.record(ClothMetrics.Stage.STORE, start);
+            } else {
+                metrics.recordFailure(ClothMetrics.Stage.STORE);
+            }
+        }
+        log.debug("Stored cloth {}", clothDNA.clothId);
+    }
+    
+    private void writeClothData(ClothDNA clothDNA, BlockchainRecord blockchainRecord) throws IOException {
         String clothId = clothDNA.clothId;
         
-        // Store full DNA data
-        String fullDataPath = DATABASE_DIR + "/" + clothId + "_full_data.json";
-        try (FileWriter writer = new FileWriter(fullDataPath)) {
-            gson.toJson(clothDNA, writer);
+        // Log the record durably before storing it, so a stored cloth is always in the ledger
+        // (if the store write then fails, the ledger has an entry a retry appends again)
+        HashChainLedger recordLedger = ledger;
+        if (blockchainRecord != null && recordLedger != null) {
+            recordLedger.appendAndSync(blockchainRecord);
         }
         
-        // Store blockchain record
-        String blockchainPath = DATABASE_DIR + "/" + clothId + "_blockchain_record.json";
-        try (FileWriter writer = new FileWriter(blockchainPath)) {
-            gson.toJson(blockchainRecord, writer);
+        // Append binary record to the feature store
+        featureStore.put(clothDNA, blockchainRecord);
+        metrics.addBytesWritten(featureStore.recordSize());
+        
+        if (jsonExportEnabled) {
+            exportClothJson(clothDNA, blockchainRecord);
         }
         
         // Update in-memory database
@@ -404,18 +1009,33 @@ public class ClothFeatureExtractor {
         clothData.blockchainRecord = blockchainRecord;
         clothDatabase.put(clothId, clothData);
         
-        System.out.println("✅ Data stored locally for cloth: " + clothId);
+        // Make the cloth findable by similarity and by fingerprint
+        long[] fingerprint = blockchainRecord != null && blockchainRecord.fingerprint != null
+                ? PerceptualFingerprint.fromHex(blockchainRecord.fingerprint)
+                : perceptualFingerprint.compute(clothDNA);
+        similarityCatalog.add(clothDNA, fingerprint);
+        
+        // Queue it for the next Merkle batch (its proof is attached when the batch seals). Last,
+        // because a failed seal throws here although the record stays queued for the retry.
+        if (blockchainRecord != null) {
+            batchAnchor.submit(blockchainRecord);
+        }
     }
     
     /**
      * Verify cloth authenticity against expected hash
      */
     public AuthenticationResult verifyClothAuthenticity(String imagePath, String expectedHash) throws Exception {
-        System.out.println("🔍 Verifying cloth authenticity...");
-        
         // Extract features from new image
         ClothDNA clothDNA = createClothDigitalDNA(imagePath, null);
         
+        return verifyClothAuthenticity(clothDNA, expectedHash);
+    }
+    
+    /**
+     * Verify already extracted digital DNA against an expected hash
+     */
+    public AuthenticationResult verifyClothAuthenticity(ClothDNA clothDNA, String expectedHash) throws Exception {
         // Generate hash
         BlockchainRecord record = generateBlockchainHash(clothDNA);
         String newHash = record.hash;
@@ -423,40 +1043,253 @@ public class ClothFeatureExtractor {
         // Compare hashes
         boolean isAuthentic = newHash.equals(expectedHash);
         
-        System.out.println("Expected hash: " + expectedHash.substring(0, 16) + "...");
-        System.out.println("Generated hash: " + newHash.substring(0, 16) + "...");
-        System.out.println("✅ Authentic: " + isAuthentic);
+        log.info("🔍 Hash verification: authentic={} (expected {}, generated {})", isAuthentic, expectedHash, newHash);
         
         AuthenticationResult result = new AuthenticationResult();
         result.isAuthentic = isAuthentic;
         result.generatedHash = newHash;
         result.expectedHash = expectedHash;
+        result.generatedFingerprint = record.fingerprint;
+        
+        return result;
+    }
+    
+    /**
+     * Verify a cloth against its expected hash and check that the hash is included in an
+     * anchored Merkle batch (proof from getClothData / the batch listener, root from the chain)
+     */
+    public AuthenticationResult verifyClothAuthenticity(String imagePath, String expectedHash,
+                                                        MerkleTree.Proof proof, String anchoredRoot) throws Exception {
+        AuthenticationResult result = verifyClothAuthenticity(imagePath, expectedHash);
+        result.inclusionVerified = MerkleTree.verify(expectedHash, proof, anchoredRoot);
+        result.isAuthentic = result.isAuthentic && result.inclusionVerified;
+        
+        log.info("⚓ Merkle inclusion: {}", result.inclusionVerified);
+        
+        return result;
+    }
+    
+    /**
+     * Verify a cloth by feature similarity instead of exact hash equality.
+     * Returns the k closest registered cloths; authentic if the best match is within threshold
+     * (cosine distance, 0 = identical direction).
+     */
+    public SimilarityVerificationResult verifyBySimilarity(String imagePath, int k, double threshold) throws IOException {
+        ClothDNA clothDNA = createClothDigitalDNA(imagePath, null);
+        
+        long start = System.nanoTime();
+        List<HnswIndex.Neighbor> matches = similarityCatalog.search(clothDNA, k);
+        return similarityResult(matches, threshold, (System.nanoTime() - start) / 1_000_000.0);
+    }
+    
+    /**
+     * Similarity verification for a high-resolution scan (see createTiledClothDNA). Candidates
+     * come from the global features as in verifyBySimilarity. Candidates registered from a
+     * scan with the same tile size are then scored by the mean of that distance and the
+     * cosine distance between the two scans' mean tile features, so the weave has to match
+     * as well as the overall look.
+     */
+    public SimilarityVerificationResult verifyScanBySimilarity(Path scanPath, int k, double threshold) throws IOException {
+        ClothDNA clothDNA = createTiledClothDNA(scanPath, null);
+        TileStatistics scanned = clothDNA.tileStatistics;
+        
+        long start = System.nanoTime();
+        List<HnswIndex.Neighbor> candidates = similarityCatalog.search(clothDNA, k);
+        List<HnswIndex.Neighbor> matches = new ArrayList<>(candidates.size());
+        for (HnswIndex.Neighbor candidate : candidates) {
+            ClothFeatureStore.RecordView record = featureStore.get(candidate.clothId);
+            TileStatistics registered = record != null ? record.tileStatistics() : null;
+            double distance = candidate.distance;
+            if (registered != null && registered.tileSize == scanned.tileSize
+                    && registered.deepFeatureMean != null && scanned.deepFeatureMean != null) {
+                distance = (distance + cosineDistance(scanned.deepFeatureMean, registered.deepFeatureMean)) / 2;
+            }
+            matches.add(new HnswIndex.Neighbor(candidate.clothId, distance));
+        }
+        matches.sort(Comparator.comparingDouble(neighbor -> neighbor.distance));
+        return similarityResult(matches, threshold, (System.nanoTime() - start) / 1_000_000.0);
+    }
+    
+    private SimilarityVerificationResult similarityResult(List<HnswIndex.Neighbor> matches, double threshold,
+                                                          double searchMillis) {
+        SimilarityVerificationResult result = new SimilarityVerificationResult();
+        result.matches = matches;
+        result.threshold = threshold;
+        result.searchMillis = searchMillis;
+        if (!matches.isEmpty()) {
+            result.bestMatchClothId = matches.get(0).clothId;
+            result.bestDistance = matches.get(0).distance;
+            result.isAuthentic = result.bestDistance <= threshold;
+        }
+        
+        if (log.isInfoEnabled()) {
+            log.info("🔎 Similarity verification: authentic={}, best match {} (distance {}, {} ms)", result.isAuthentic,
+                    result.bestMatchClothId, String.format("%.4f", result.bestDistance), String.format("%.2f", searchMillis));
+        }
         
         return result;
     }
     
+    private static double cosineDistance(double[] a, double[] b) {
+        double dot = 0.0, normA = 0.0, normB = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return normA > 0 && normB > 0 ? Math.max(0.0, 1.0 - dot / Math.sqrt(normA * normB)) : 1.0;
+    }
+    
+    /**
+     * Verify a cloth by perceptual fingerprint: registered cloths within maxHammingDistance
+     * bits (of 256) are matches. Lookup is XOR + popcount over a multi-index table, no float math.
+     */
+    public FingerprintVerificationResult verifyByFingerprint(String imagePath, int maxHammingDistance) throws IOException {
+        ClothDNA clothDNA = createClothDigitalDNA(imagePath, null);
+        long[] fingerprint = perceptualFingerprint.compute(clothDNA);
+        
+        long start = System.nanoTime();
+        List<HammingIndex.Match> matches = similarityCatalog.searchFingerprint(fingerprint, maxHammingDistance);
+        double searchMillis = (System.nanoTime() - start) / 1_000_000.0;
+        
+        FingerprintVerificationResult result = new FingerprintVerificationResult();
+        result.fingerprint = PerceptualFingerprint.toHex(fingerprint);
+        result.matches = matches;
+        result.maxDistance = maxHammingDistance;
+        result.searchMillis = searchMillis;
+        if (!matches.isEmpty()) {
+            result.isAuthentic = true;
+            result.bestMatchClothId = matches.get(0).clothId;
+            result.bestDistance = matches.get(0).distance;
+        }
+        
+        if (log.isInfoEnabled()) {
+            log.info("🔎 Fingerprint verification: authentic={}, {} match(es) (best {}, {} bits, {} ms)", result.isAuthentic,
+                    matches.size(), result.bestMatchClothId, result.bestDistance, String.format("%.3f", searchMillis));
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Choose whether similarity search also uses the color histogram.
+     * Rebuilds the index, so call it before ingesting rather than during.
+     */
+    public void setSimilarityIncludesColorHistogram(boolean include) throws IOException {
+        similarityCatalog.setIncludeColorHistogram(include);
+    }
+    
+    /**
+     * Choose how the similarity index stores vectors: FLOAT32, FLOAT16 or INT8 (the default).
+     * Quantized searches are re-ranked exactly from the feature store. Rebuilds the index.
+     */
+    public void setSimilarityVectorEncoding(HnswIndex.Encoding encoding) throws IOException {
+        similarityCatalog.setVectorEncoding(encoding);
+    }
+    
+    /**
+     * Find clusters of near-identical cloths across the whole feature store (duplicate
+     * registrations, counterfeit batches). Clusters are passed to the listener as they are
+     * assembled; see ClothDuplicateFinder.
+     */
+    public ClothDuplicateFinder.DuplicateScanReport findDuplicateClusters(ClothDuplicateFinder.Config config,
+            Consumer<ClothDuplicateFinder.DuplicateCluster> clusterListener) {
+        return new ClothDuplicateFinder(featureStore, perceptualFingerprint, config).scan(clusterListener);
+    }
+
+    /**
+     * Export the whole feature catalog as one Apache Arrow IPC file for analytics tools;
+     * see ClothCatalogExporter for the columns.
+     */
+    public ClothCatalogExporter.ExportReport exportFeatureCatalog(Path target, ClothCatalogExporter.Config config)
+            throws IOException {
+        return new ClothCatalogExporter(featureStore, config).exportArrow(target);
+    }
+    
+    /**
+     * Look up a registered cloth. Cloths not touched in this process are materialised
+     * from the feature store on demand (and not cached).
+     */
+    public ClothData getClothData(String clothId) {
+        ClothData cached = clothDatabase.get(clothId);
+        if (cached != null) {
+            return cached;
+        }
+        
+        ClothFeatureStore.RecordView record = featureStore.get(clothId);
+        if (record == null) {
+            return null;
+        }
+        
+        ClothData clothData = new ClothData();
+        clothData.fullData = record.toClothDNA();
+        clothData.blockchainRecord = new BlockchainRecord();
+        clothData.blockchainRecord.clothId = clothId;
+        clothData.blockchainRecord.hash = record.hash();
+        clothData.blockchainRecord.hashScheme = record.hashScheme();
+        clothData.blockchainRecord.timestamp = clothData.fullData.timestamp;
+        clothData.blockchainRecord.featureSummary = summarizeFeatures(clothData.fullData);
+        long[] fingerprint = record.fingerprint();
+        if (fingerprint != null) {
+            clothData.blockchainRecord.fingerprint = PerceptualFingerprint.toHex(fingerprint);
+        }
+        try {
+            clothData.blockchainRecord.merkleProof = batchAnchor.proofFor(clothId);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read Merkle proof for cloth: " + clothId, e);
+        }
+        return clothData;
+    }
+    
+    /**
+     * Startup timing and memory, filled in as the catalog loads
+     */
+    public StartupReport getStartupReport() {
+        startupReport.similarityIndexReady = similarityCatalog.isReady();
+        startupReport.similarityIndexMillis = similarityCatalog.loadMillis;
+        startupReport.similarityIndexSource = similarityCatalog.loadSource;
+        Runtime runtime = Runtime.getRuntime();
+        startupReport.heapUsedBytes = runtime.totalMemory() - runtime.freeMemory();
+        startupReport.residentBytes = readResidentBytes();
+        return startupReport;
+    }
+    
+    // VmRSS from /proc (Linux); -1 elsewhere
+    private static long readResidentBytes() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // not available on this platform
+        }
+        return -1;
+    }
+    
     /**
      * Complete pipeline: Extract features -> Generate hash -> Store data
      */
     public ProcessingResult processClothForBlockchain(String imagePath, String clothId) throws Exception {
-        System.out.println("🚀 Starting cloth processing for blockchain...");
-        System.out.println("=".repeat(50));
-        
         // Step 1: Create Digital DNA
         ClothDNA clothDNA = createClothDigitalDNA(imagePath, clothId);
         
+        return processClothForBlockchain(clothDNA);
+    }
+    
+    /**
+     * Hash and store already extracted digital DNA
+     */
+    public ProcessingResult processClothForBlockchain(ClothDNA clothDNA) throws Exception {
         // Step 2: Generate Blockchain Hash
         BlockchainRecord blockchainRecord = generateBlockchainHash(clothDNA);
         
         // Step 3: Store Data
         storeClothData(clothDNA, blockchainRecord);
         
-        System.out.println("=".repeat(50));
-        System.out.println("🎉 Cloth processing completed!");
-        System.out.println("📱 Cloth ID: " + clothDNA.clothId);
-        System.out.println("🔐 Blockchain Hash: " + blockchainRecord.hash);
-        System.out.println("📊 Deep Features: " + clothDNA.deepFeatures.length + " dimensions");
-        System.out.println("📈 Traditional Features: extracted successfully");
+        log.info("🎉 Cloth {} processed: hash {}, {} deep features", clothDNA.clothId, blockchainRecord.hash,
+                clothDNA.deepFeatures.length);
         
         ProcessingResult result = new ProcessingResult();
         result.clothDNA = clothDNA;
@@ -466,14 +1299,185 @@ public class ClothFeatureExtractor {
         return result;
     }
     
+    /**
+     * Batch pipeline: process every image in a directory, or in a .zip/.tar/.tar.gz archive,
+     * with parallel stages
+     */
+    public ClothIngestionPipeline.IngestionSummary processClothBatch(Path imageSource) throws IOException, InterruptedException {
+        ClothIngestionPipeline pipeline = new ClothIngestionPipeline(this);
+        if (Files.isRegularFile(imageSource) && ArchiveImageReader.isArchive(imageSource)) {
+            return pipeline.ingestArchive(imageSource);
+        }
+        return pipeline.ingestDirectory(imageSource);
+    }
+    
+    /**
+     * Batch pipeline: process a stream of image paths with parallel stages
+     */
+    public ClothIngestionPipeline.IngestionSummary processClothBatch(Iterator<Path> imagePaths) throws InterruptedException {
+        return new ClothIngestionPipeline(this).ingest(imagePaths);
+    }
+    
+    /**
+     * Write the human-readable JSON files for a cloth (optional side path)
+     */
+    public void exportClothJson(ClothDNA clothDNA, BlockchainRecord blockchainRecord) throws IOException {
+        String clothId = clothDNA.clothId;
+        
+        // Store full DNA data
+        Path fullDataPath = databaseDirectory.resolve(clothId + "_full_data.json");
+        try (FileWriter writer = new FileWriter(fullDataPath.toFile())) {
+            gson.toJson(clothDNA, writer);
+        }
+        
+        // Store blockchain record
+        Path blockchainPath = databaseDirectory.resolve(clothId + "_blockchain_record.json");
+        try (FileWriter writer = new FileWriter(blockchainPath.toFile())) {
+            gson.toJson(blockchainRecord, writer);
+        }
+    }
+    
+    /**
+     * Also write <id>_full_data.json and <id>_blockchain_record.json for every stored cloth
+     */
+    public void setJsonExportEnabled(boolean jsonExportEnabled) {
+        this.jsonExportEnabled = jsonExportEnabled;
+    }
+    
+    /**
+     * Receive each sealed Merkle batch (root to anchor on chain, cloth ids it covers)
+     */
+    public void setAnchorListener(Consumer<MerkleBatchAnchor.AnchoredBatch> anchorListener) {
+        batchAnchor.setAnchorListener(anchorListener);
+    }
+    
+    /**
+     * Append every stored record to a local hash-chained ledger before it is acknowledged
+     * (null to stop). Together with setAnchorListener(ledger) for the batch roots this
+     * stands in for chain submission offline and in tests. The caller owns and closes it.
+     */
+    public void setLedger(HashChainLedger ledger) {
+        this.ledger = ledger;
+    }
+    
+    public MerkleBatchAnchor getBatchAnchor() {
+        return batchAnchor;
+    }
+    
+    public ClothFeatureStore getFeatureStore() {
+        return featureStore;
+    }
+    
+    /**
+     * Per-stage latencies, failures and memory gauges (also registered as an MXBean)
+     */
+    public ClothMetrics getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * Serve the metrics as Prometheus text on http://localhost:port/metrics until close()
+     */
+    public synchronized ClothMetricsEndpoint startMetricsEndpoint(int port) throws IOException {
+        if (metricsEndpoint == null) {
+            metricsEndpoint = new ClothMetricsEndpoint(metrics, new InetSocketAddress("localhost", port));
+            log.info("📈 Metrics endpoint listening on http://localhost:{}/metrics", metricsEndpoint.getAddress().getPort());
+        }
+        return metricsEndpoint;
+    }
+    
+    /**
+     * Re-extract every stored record from an older feature extraction version into a side
+     * store on a throttled background thread, resuming from the last checkpoint if a
+     * previous run was interrupted. See ClothReindexer; the new store goes live with
+     * ClothReindexer.cutOver once this extractor is closed.
+     */
+    public synchronized ClothReindexer startReindexing(ClothReindexer.Config config) throws IOException {
+        if (reindexer != null && reindexer.isRunning()) {
+            throw new IllegalStateException("Re-indexing is already running");
+        }
+        reindexer = new ClothReindexer(this, config);
+        reindexer.start();
+        return reindexer;
+    }
+    
+    Path getDatabaseDirectory() {
+        return databaseDirectory;
+    }
+    
+    /**
+     * Stop any background re-indexing (its checkpoint is kept), seal the pending Merkle
+     * batch, save the similarity index snapshot, flush and close the feature store, and
+     * release the native feature workspaces and the metrics exports
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (reindexer != null) {
+                reindexer.close();
+                reindexer = null;
+            }
+            if (metricsEndpoint != null) {
+                metricsEndpoint.close();
+                metricsEndpoint = null;
+            }
+        }
+        try {
+            metrics.unregisterMBean();
+        } catch (JMException e) {
+            log.warn("Could not unregister metrics MBean: {}", e.getMessage());
+        }
+        try {
+            batchAnchor.close();
+        } finally {
+            try {
+                similarityCatalog.saveSnapshot();
+                featureStore.close();
+                ClothFeatureCache cache = featureCache;
+                if (cache != null) {
+                    cache.close();
+                }
+            } finally {
+                // Workspaces still lent out are closed when they come back
+                synchronized (idleTraditionalWorkspaces) {
+                    traditionalWorkspacesClosed = true;
+                    for (TraditionalFeatureWorkspace workspace : idleTraditionalWorkspaces) {
+                        workspace.close();
+                    }
+                    idleTraditionalWorkspaces.clear();
+                }
+            }
+        }
+    }
+    
+    private ClothFeatureStore openFeatureStore() {
+        try {
+            return new ClothFeatureStore(storeDirectory(), FEATURE_VECTOR_SIZE, COLOR_HISTOGRAM_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open feature store: " + e.getMessage(), e);
+        }
+    }
+    
+    private MerkleBatchAnchor openBatchAnchor() {
+        try {
+            return new MerkleBatchAnchor(storeDirectory().resolve(MERKLE_PROOF_LOG));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open Merkle proof log: " + e.getMessage(), e);
+        }
+    }
+    
+    private Path storeDirectory() {
+        return databaseDirectory.resolve(FEATURE_STORE_DIR);
+    }
+    
     /**
      * Create database directory if it doesn't exist
      */
     private void createDatabaseDirectory() {
         try {
-            Files.createDirectories(Paths.get(DATABASE_DIR));
+            Files.createDirectories(databaseDirectory);
         } catch (IOException e) {
-            System.err.println("Failed to create database directory: " + e.getMessage());
+            log.error("Failed to create database directory: {}", e.getMessage());
         }
     }
     
@@ -485,6 +1489,28 @@ public class ClothFeatureExtractor {
         public TraditionalFeatures traditionalFeatures;
         public int[] imageDimensions;
         public String featureExtractionVersion;
+        public TileStatistics tileStatistics; // only for tiled scans (createTiledClothDNA)
+    }
+    
+    /**
+     * Statistics over the full-resolution tiles of a scan. Texture values are per tile, in
+     * the order of TEXTURE_FEATURES; deep feature statistics are per dimension.
+     */
+    public static class TileStatistics {
+        public static final String[] TEXTURE_FEATURES = {
+                "edgeDensity", "gradientMean", "gradientStd", "brightnessStd", "contrast", "keypointsPerMegapixel"
+        };
+        
+        public int tileSize;
+        public int tilesAcross;
+        public int tilesDown;
+        public int tileCount;
+        public double[] deepFeatureMean;
+        public double[] deepFeatureStd;
+        public double[] textureMean;
+        public double[] textureStd;
+        public double[] textureMin;
+        public double[] textureMax;
     }
     
     public static class TraditionalFeatures {
@@ -503,8 +1529,11 @@ public class ClothFeatureExtractor {
     public static class BlockchainRecord {
         public String clothId;
         public String hash;
+        public String hashScheme;
         public String timestamp;
         public FeatureSummary featureSummary;
+        public String fingerprint;
+        public MerkleTree.Proof merkleProof;
     }
     
     public static class FeatureSummary {
@@ -523,6 +1552,8 @@ public class ClothFeatureExtractor {
         public boolean isAuthentic;
         public String generatedHash;
         public String expectedHash;
+        public String generatedFingerprint;
+        public boolean inclusionVerified;
     }
     
     public static class ProcessingResult {
@@ -531,6 +1562,38 @@ public class ClothFeatureExtractor {
         public BlockchainRecord blockchainRecord;
     }
     
+    public static class StartupReport {
+        public long storeOpenMillis;
+        public long modelLoadMillis = -1;
+        public long warmUpMillis = -1;
+        public long registeredCloths;
+        public long mappedBytes;
+        public boolean similarityIndexReady;
+        public long similarityIndexMillis;
+        public String similarityIndexSource;
+        public long heapUsedBytes;
+        public long residentBytes;
+    }
+    
+    public static class SimilarityVerificationResult {
+        public boolean isAuthentic;
+        public String bestMatchClothId;
+        public double bestDistance = Double.NaN;
+        public double threshold;
+        public double searchMillis;
+        public List<HnswIndex.Neighbor> matches;
+    }
+    
+    public static class FingerprintVerificationResult {
+        public boolean isAuthentic;
+        public String bestMatchClothId;
+        public int bestDistance = -1;
+        public int maxDistance;
+        public String fingerprint;
+        public double searchMillis;
+        public List<HammingIndex.Match> matches;
+    }
+    
     /**
      * Main method for testing
      */
@@ -538,12 +1601,14 @@ public class ClothFeatureExtractor {
         System.out.println("🧵 Cloth Feature Extraction & Blockchain System (Java)");
         System.out.println("=".repeat(60));
         
-        ClothFeatureExtractor extractor = new ClothFeatureExtractor();
-        
-        try {
+        try (ClothFeatureExtractor extractor = new ClothFeatureExtractor()) {
             // For demonstration - you would replace this with actual image paths
             System.out.println("📸 Demo mode - processing would work with actual images");
             System.out.println("✅ System initialized and ready!");
+            StartupReport startup = extractor.getStartupReport();
+            System.out.println("⏱️ Startup: " + startup.storeOpenMillis + " ms, " + startup.registeredCloths +
+                    " cloths, heap " + startup.heapUsedBytes / (1024 * 1024) + " MB, RSS " +
+                    startup.residentBytes / (1024 * 1024) + " MB");
             System.out.println("💡 To process actual images, call:");
             System.out.println("   extractor.processClothForBlockchain(\"path/to/image.jpg\", \"cloth_id\");");
             
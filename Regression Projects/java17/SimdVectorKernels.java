@@ -0,0 +1,106 @@
+package com.clothblockchain.extractor;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API versions of the VectorKernels loops the similarity index spends its time in
+ *
+ * Compiled with --release 17 into the multi-release part of the jar (META-INF/versions/17),
+ * so the Java 11 build never sees it. VectorKernels loads it only when the JVM was started
+ * with --add-modules jdk.incubator.vector; otherwise the scalar loops run. float16 has no
+ * lane type in the incubator API, so the half-precision kernels stay scalar.
+ *
+ * Lanes are summed in a different order from the scalar loops, so float results can differ
+ * in the last bits.
+ *
+ * @author ClothBlockchain Team
+ * @version 1.0
+ */
+final class SimdVectorKernels implements VectorKernels.Accelerator {
+
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+    // A byte vector widens into this many int (or float) vectors of the same shape
+    private static final int PARTS = BYTES.length() / INTS.length();
+
+    @Override
+    public float dot(float[] a, float[] b) {
+        FloatVector sum = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (int limit = FLOATS.loopBound(a.length); i < limit; i += FLOATS.length()) {
+            sum = sum.add(FloatVector.fromArray(FLOATS, a, i).mul(FloatVector.fromArray(FLOATS, b, i)));
+        }
+        float dot = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            dot += a[i] * b[i];
+        }
+        return dot;
+    }
+
+    @Override
+    public float dot(float[] a, byte[] codesB) {
+        FloatVector sum = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (int limit = BYTES.loopBound(a.length); i < limit; i += BYTES.length()) {
+            ByteVector codes = ByteVector.fromArray(BYTES, codesB, i);
+            for (int part = 0; part < PARTS; part++) {
+                FloatVector values = (FloatVector) unsigned(codes, part).convert(VectorOperators.I2F, 0);
+                sum = sum.add(FloatVector.fromArray(FLOATS, a, i + part * FLOATS.length()).mul(values));
+            }
+        }
+        float dot = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            dot += a[i] * (codesB[i] & 0xFF);
+        }
+        return dot;
+    }
+
+    @Override
+    public int dot(byte[] codesA, byte[] codesB) {
+        IntVector sum = IntVector.zero(INTS);
+        int i = 0;
+        for (int limit = BYTES.loopBound(codesA.length); i < limit; i += BYTES.length()) {
+            ByteVector a = ByteVector.fromArray(BYTES, codesA, i);
+            ByteVector b = ByteVector.fromArray(BYTES, codesB, i);
+            for (int part = 0; part < PARTS; part++) {
+                sum = sum.add(unsigned(a, part).mul(unsigned(b, part)));
+            }
+        }
+        int dot = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < codesA.length; i++) {
+            dot += (codesA[i] & 0xFF) * (codesB[i] & 0xFF);
+        }
+        return dot;
+    }
+
+    @Override
+    public float l2Squared(float[] a, float[] b) {
+        FloatVector sum = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (int limit = FLOATS.loopBound(a.length); i < limit; i += FLOATS.length()) {
+            FloatVector difference = FloatVector.fromArray(FLOATS, a, i).sub(FloatVector.fromArray(FLOATS, b, i));
+            sum = sum.add(difference.mul(difference));
+        }
+        float l2 = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            float d = a[i] - b[i];
+            l2 += d * d;
+        }
+        return l2;
+    }
+
+    @Override
+    public String toString() {
+        return "Vector API, " + FLOATS.vectorBitSize() + "-bit";
+    }
+
+    // Codes are unsigned: sign-extend one quarter of the lanes to int, then mask
+    private static IntVector unsigned(ByteVector codes, int part) {
+        return ((IntVector) codes.convertShape(VectorOperators.B2I, INTS, part)).and(0xFF);
+    }
+}